@@ -19,5 +19,17 @@ package github.luckygc.ecm.common.enums;
 
 public enum StorageType {
     LOCAL,
-    S3
+    S3,
+    /**
+     * 冷热分层，热数据存本地，冷数据存S3
+     */
+    TIERED,
+    /**
+     * 多副本，同时写入本地和S3
+     */
+    REPLICATED,
+    /**
+     * 分片，按一致性哈希分散到多个本地目录和存储桶
+     */
+    SHARDED
 }
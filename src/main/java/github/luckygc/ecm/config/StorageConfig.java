@@ -17,21 +17,52 @@
 
 package github.luckygc.ecm.config;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import github.luckygc.ecm.common.enums.StorageType;
+import github.luckygc.ecm.config.property.DBQueueProperties;
 import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.manager.StorageBlobManager;
+import github.luckygc.ecm.module.storage.manager.StorageChecksumManager;
+import github.luckygc.ecm.module.storage.service.AsyncStorageManager;
+import github.luckygc.ecm.module.storage.service.ChunkedUploadStore;
 import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.module.storage.service.impl.CachingStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.ChecksummingStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.CompressingStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.DeduplicatingStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.ExecutorAsyncStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.LocalChunkedUploadStore;
 import github.luckygc.ecm.module.storage.service.impl.LocalStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.MeteredAsyncStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.MeteredStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.PackedStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.ReplicatedStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.S3AsyncStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.S3ChunkedUploadStore;
 import github.luckygc.ecm.module.storage.service.impl.S3StorageManager;
+import github.luckygc.ecm.module.storage.service.impl.ShardedStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.StatCachingStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.TieredStorageManager;
+import github.luckygc.ecm.module.support.queue.db.manager.DBQueueManager;
 import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import software.amazon.awssdk.auth.credentials.AwsBasicCredentials;
 import software.amazon.awssdk.auth.credentials.StaticCredentialsProvider;
 import software.amazon.awssdk.regions.Region;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
 import software.amazon.awssdk.services.s3.S3Client;
 import software.amazon.awssdk.services.s3.S3Configuration;
 import software.amazon.awssdk.services.s3.presigner.S3Presigner;
@@ -44,7 +75,21 @@ import software.amazon.awssdk.services.s3.presigner.S3Presigner;
 @RequiredArgsConstructor
 public class StorageConfig {
 
+    /**
+     * S3客户端在S3存储、冷热分层存储、多副本存储或分片存储时创建.
+     */
+    private static final String S3_ENABLED =
+            "'${app.storage.type:local}'.equalsIgnoreCase('s3')"
+                    + " or '${app.storage.type:local}'.equalsIgnoreCase('tiered')"
+                    + " or '${app.storage.type:local}'.equalsIgnoreCase('replicated')"
+                    + " or '${app.storage.type:local}'.equalsIgnoreCase('sharded')";
+
     private final StorageProperties storageProperties;
+    private final StorageBlobManager storageBlobManager;
+    private final StorageChecksumManager storageChecksumManager;
+    private final DBQueueManager dbQueueManager;
+    private final DBQueueProperties dbQueueProperties;
+    private final MeterRegistry meterRegistry;
 
     /**
      * 本地存储服务 当storage.type=local或未配置时启用（默认）.
@@ -53,7 +98,121 @@ public class StorageConfig {
     @ConditionalOnProperty(name = "app.storage.type", havingValue = "local", matchIfMissing = true)
     public StorageManager localStorageService(SnowflakeIdGenerator snowflakeIdGenerator) {
         log.info("启用本地存储服务，存储路径: {}", storageProperties.getLocal().getBasePath());
-        return new LocalStorageManager(storageProperties.getLocal(), snowflakeIdGenerator);
+        return decorate(localBackend(snowflakeIdGenerator), snowflakeIdGenerator);
+    }
+
+    /**
+     * 冷热分层存储服务 当storage.type=tiered时启用，热存储为本地存储，冷存储为S3.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "tiered")
+    public StorageManager tieredStorageService(
+            S3Client s3Client, SnowflakeIdGenerator snowflakeIdGenerator) {
+        log.info(
+                "启用冷热分层存储服务，热存储路径: {}，冷存储桶: {}",
+                storageProperties.getLocal().getBasePath(),
+                storageProperties.getS3().getBucket());
+        return decorate(
+                new TieredStorageManager(
+                        localBackend(snowflakeIdGenerator),
+                        s3Backend(s3Client, snowflakeIdGenerator),
+                        storageProperties.getTiering()),
+                snowflakeIdGenerator);
+    }
+
+    /**
+     * 多副本存储服务 当storage.type=replicated时启用，本地存储和S3各保存一份.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "replicated")
+    public StorageManager replicatedStorageService(
+            S3Client s3Client, SnowflakeIdGenerator snowflakeIdGenerator) {
+        log.info(
+                "启用多副本存储服务，本地路径: {}，存储桶: {}，写入法定数: {}",
+                storageProperties.getLocal().getBasePath(),
+                storageProperties.getS3().getBucket(),
+                storageProperties.getReplication().getWriteQuorum());
+        Map<String, StorageManager> replicas = new LinkedHashMap<>();
+        replicas.put("local", localBackend(snowflakeIdGenerator));
+        replicas.put("s3", s3Backend(s3Client, snowflakeIdGenerator));
+        return decorate(
+                new ReplicatedStorageManager(
+                        replicas,
+                        storageProperties.getReplication(),
+                        snowflakeIdGenerator,
+                        dbQueueManager,
+                        dbQueueProperties),
+                snowflakeIdGenerator);
+    }
+
+    /**
+     * 分片存储服务 当storage.type=sharded时启用，对象按一致性哈希分散到配置的本地目录和存储桶.
+     * 分片以"local:目录"、"s3:存储桶"命名，增加分片时已有分片的配置不能改变，多节点部署时所有节点须一起切换配置.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "app.storage.type", havingValue = "sharded")
+    public StorageManager shardedStorageService(
+            ObjectProvider<S3Client> s3Client, SnowflakeIdGenerator snowflakeIdGenerator) {
+        StorageProperties.Sharding sharding = storageProperties.getSharding();
+        log.info(
+                "启用分片存储服务，本地目录: {}，存储桶: {}",
+                sharding.getLocalPaths(),
+                sharding.getBuckets());
+        Map<String, StorageManager> shards = new LinkedHashMap<>();
+        for (String localPath : sharding.getLocalPaths()) {
+            String shardName = "local:" + localPath;
+            shards.put(
+                    shardName,
+                    metered(
+                            new LocalStorageManager(
+                                    storageProperties.getLocal().withBasePath(localPath),
+                                    snowflakeIdGenerator),
+                            shardName));
+        }
+        for (String bucket : sharding.getBuckets()) {
+            String shardName = "s3:" + bucket;
+            shards.put(
+                    shardName,
+                    metered(
+                            new S3StorageManager(
+                                    s3Client.getObject(),
+                                    storageProperties.getS3().withBucket(bucket),
+                                    snowflakeIdGenerator),
+                            shardName));
+        }
+        return decorate(
+                new ShardedStorageManager(shards, sharding, snowflakeIdGenerator),
+                snowflakeIdGenerator);
+    }
+
+    private StorageManager localBackend(SnowflakeIdGenerator snowflakeIdGenerator) {
+        StorageManager backend =
+                new LocalStorageManager(storageProperties.getLocal(), snowflakeIdGenerator);
+        StorageProperties.Pack pack = storageProperties.getLocal().getPack();
+        if (pack.isEnabled()) {
+            log.info(
+                    "启用小文件打包存储，目录: {}，对象上限: {}字节",
+                    pack.getDirectory(),
+                    pack.getMaxObjectBytes());
+            backend = new PackedStorageManager(backend, pack, snowflakeIdGenerator);
+        }
+        return metered(backend, "local");
+    }
+
+    private StorageManager s3Backend(S3Client s3Client, SnowflakeIdGenerator snowflakeIdGenerator) {
+        return metered(
+                new S3StorageManager(s3Client, storageProperties.getS3(), snowflakeIdGenerator),
+                "s3");
+    }
+
+    /**
+     * 指标装饰器直接包装存储后端，分层存储时冷热两层分别采集，便于定位慢的一层
+     */
+    private StorageManager metered(StorageManager backend, String backendName) {
+        if (!storageProperties.getMetrics().isEnabled()) {
+            return backend;
+        }
+        return new MeteredStorageManager(backend, meterRegistry, backendName);
     }
 
     /**
@@ -64,14 +223,130 @@ public class StorageConfig {
     public StorageManager s3StorageService(
             S3Client s3Client, S3Presigner s3Presigner, SnowflakeIdGenerator snowflakeIdGenerator) {
         log.info("启用S3存储服务，区域: {}", storageProperties.getS3().getRegion());
-        return new S3StorageManager(s3Client, storageProperties.getS3(), snowflakeIdGenerator);
+        return decorate(s3Backend(s3Client, snowflakeIdGenerator), snowflakeIdGenerator);
     }
 
     /**
-     * S3客户端 (SDK v2) 当storage.type=s3时创建.
+     * 异步存储服务 存储服务未叠加装饰器的S3后端直接使用S3AsyncClient，其余情况由有界线程池执行同步调用.
+     * 仅叠加了指标装饰器时同样使用S3AsyncClient，异步调用经异步指标装饰器计入同一组存储指标.
      */
     @Bean
-    @ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+    public AsyncStorageManager asyncStorageManager(
+            StorageManager storageManager,
+            ObjectProvider<S3AsyncClient> s3AsyncClient,
+            SnowflakeIdGenerator snowflakeIdGenerator) {
+        int concurrency = storageProperties.getAsync().getConcurrency();
+        StorageManager backend =
+                storageManager instanceof MeteredStorageManager metered
+                        ? metered.getBackend()
+                        : storageManager;
+        if (backend instanceof S3StorageManager && s3AsyncClient.getIfAvailable() != null) {
+            log.info("启用S3异步存储服务");
+            S3AsyncStorageManager s3AsyncStorageManager =
+                    new S3AsyncStorageManager(
+                            s3AsyncClient.getObject(),
+                            storageProperties.getS3(),
+                            snowflakeIdGenerator,
+                            newAsyncExecutor("s3-async-read-%d", concurrency));
+            return storageManager instanceof MeteredStorageManager metered
+                    ? new MeteredAsyncStorageManager(s3AsyncStorageManager, metered)
+                    : s3AsyncStorageManager;
+        }
+
+        log.info("启用线程池异步存储服务，线程数: {}", concurrency);
+        return new ExecutorAsyncStorageManager(
+                storageManager, newAsyncExecutor("storage-async-%d", concurrency));
+    }
+
+    /**
+     * 分片上传的分片存放 未叠加去重、压缩、完整性校验的S3存储直接使用S3分片上传，
+     * 其余情况分片暂存本地，提交时经存储服务写入以保留装饰器的处理.
+     */
+    @Bean
+    public ChunkedUploadStore chunkedUploadStore(
+            StorageManager storageManager, ObjectProvider<S3Client> s3Client) {
+        if (storageProperties.getType() == StorageType.S3
+                && !storageProperties.getDeduplication().isEnabled()
+                && !storageProperties.getCompression().isEnabled()
+                && !storageProperties.getIntegrity().isEnabled()
+                && s3Client.getIfAvailable() != null) {
+            log.info("分片上传使用S3分片上传");
+            return new S3ChunkedUploadStore(s3Client.getObject(), storageProperties.getS3());
+        }
+
+        log.info(
+                "分片上传使用本地暂存，目录: {}",
+                storageProperties.getChunkedUpload().getStagingDirectory());
+        return new LocalChunkedUploadStore(
+                storageProperties.getChunkedUpload().getStagingDirectory(), storageManager);
+    }
+
+    private static ExecutorService newAsyncExecutor(String nameFormat, int concurrency) {
+        return Executors.newFixedThreadPool(
+                concurrency,
+                new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build());
+    }
+
+    /**
+     * 按配置在存储后端之上叠加装饰器 校验和紧贴后端以覆盖实际存储的字节，压缩在其上，缓存保存解压后的内容，
+     * 去重在其上使相同内容只缓存一份，元数据缓存在最外层缓存逻辑对象的元数据.
+     */
+    private StorageManager decorate(
+            StorageManager backend, SnowflakeIdGenerator snowflakeIdGenerator) {
+        StorageManager storageManager = backend;
+        if (storageProperties.getIntegrity().isEnabled()) {
+            log.info(
+                    "启用完整性校验，巡检限速: {}字节/秒",
+                    storageProperties.getIntegrity().getScrubBytesPerSecond());
+            ChecksummingStorageManager checksummingStorageManager =
+                    new ChecksummingStorageManager(
+                            storageManager,
+                            storageChecksumManager,
+                            storageProperties.getIntegrity(),
+                            backend instanceof ReplicatedStorageManager);
+            checksummingStorageManager.bindTo(meterRegistry);
+            storageManager = checksummingStorageManager;
+        }
+        if (storageProperties.getCompression().isEnabled()) {
+            log.info("启用透明压缩，压缩级别: {}", storageProperties.getCompression().getLevel());
+            storageManager =
+                    new CompressingStorageManager(
+                            storageManager, storageProperties.getCompression());
+        }
+        if (storageProperties.getCache().isEnabled()) {
+            log.info(
+                    "启用本地磁盘读缓存，目录: {}，上限: {}字节",
+                    storageProperties.getCache().getDirectory(),
+                    storageProperties.getCache().getMaxBytes());
+            CachingStorageManager cachingStorageManager =
+                    new CachingStorageManager(storageManager, storageProperties.getCache());
+            cachingStorageManager.bindTo(meterRegistry);
+            storageManager = cachingStorageManager;
+        }
+        if (storageProperties.getDeduplication().isEnabled()) {
+            log.info("启用内容寻址去重存储");
+            storageManager =
+                    new DeduplicatingStorageManager(
+                            storageManager,
+                            storageBlobManager,
+                            storageProperties.getDeduplication(),
+                            snowflakeIdGenerator);
+        }
+        if (storageProperties.getStatCache().isEnabled()) {
+            log.info("启用元数据缓存，缓存时间: {}ms", storageProperties.getStatCache().getTtlMs());
+            StatCachingStorageManager statCachingStorageManager =
+                    new StatCachingStorageManager(storageManager, storageProperties.getStatCache());
+            statCachingStorageManager.bindTo(meterRegistry);
+            storageManager = statCachingStorageManager;
+        }
+        return storageManager;
+    }
+
+    /**
+     * S3客户端 (SDK v2) 当storage.type=s3、tiered、replicated或sharded时创建.
+     */
+    @Bean
+    @ConditionalOnExpression(S3_ENABLED)
     public S3Client s3Client() {
         StorageProperties.S3 s3Config = storageProperties.getS3();
 
@@ -99,10 +374,36 @@ public class StorageConfig {
     }
 
     /**
-     * S3预签名器 (SDK v2) 当storage.type=s3时创建.
+     * S3异步客户端 (SDK v2) 当storage.type=s3、tiered、replicated或sharded时创建.
      */
     @Bean
-    @ConditionalOnProperty(name = "app.storage.type", havingValue = "s3")
+    @ConditionalOnExpression(S3_ENABLED)
+    public S3AsyncClient s3AsyncClient() {
+        StorageProperties.S3 s3Config = storageProperties.getS3();
+
+        AwsBasicCredentials credentials =
+                AwsBasicCredentials.create(
+                        s3Config.getAccessKeyId(), s3Config.getSecretAccessKey());
+
+        var builder =
+                S3AsyncClient.builder()
+                        .credentialsProvider(StaticCredentialsProvider.create(credentials))
+                        .region(Region.of(s3Config.getRegion()))
+                        .forcePathStyle(s3Config.isPathStyleAccess());
+
+        // 如果配置了自定义端点（用于兼容S3的服务）
+        if (StringUtils.isNotEmpty(s3Config.getEndpoint())) {
+            builder.endpointOverride(URI.create(s3Config.getEndpoint()));
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * S3预签名器 (SDK v2) 当storage.type=s3、tiered、replicated或sharded时创建.
+     */
+    @Bean
+    @ConditionalOnExpression(S3_ENABLED)
     public S3Presigner s3Presigner() {
         StorageProperties.S3 s3Config = storageProperties.getS3();
 
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.config.property;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Data
+@Component
+@ConfigurationProperties(prefix = "app.db-queue")
+public class DBQueueProperties {
+
+    /**
+     * 是否在本节点消费数据库队列，关闭时仍参与回收租约到期的任务
+     */
+    private boolean enabled = false;
+
+    /**
+     * 消费的队列名称
+     */
+    private List<String> queues = new ArrayList<>();
+
+    /**
+     * 单次领取的任务数上限
+     */
+    private int claimBatchSize = 10;
+
+    /**
+     * 每个队列同时处理的任务数上限，即该队列的处理线程数
+     */
+    private int concurrency = 4;
+
+    /**
+     * 按队列名称覆盖同时处理的任务数上限
+     */
+    private Map<String, Integer> queueConcurrency = new HashMap<>();
+
+    /**
+     * 每个队列已领取但等待处理线程的任务数上限，处理中和等待中的任务都达到上限时暂停领取
+     */
+    private int bufferSize = 10;
+
+    /**
+     * 是否监听PostgreSQL的入队通知，监听期间空闲的消费者只按兜底间隔轮询
+     */
+    private boolean listenEnabled = true;
+
+    /**
+     * 队列中没有可领取的任务且未在监听通知时的轮询间隔(毫秒)
+     */
+    private long pollIntervalMs = 1000;
+
+    /**
+     * 监听通知期间的兜底轮询间隔(毫秒)，用于领取到期的重试任务和补偿丢失的通知
+     */
+    private long idlePollIntervalMs = 30 * 1000;
+
+    /**
+     * 首次重试的等待时间(毫秒)，之后每次重试翻倍并叠加随机抖动
+     */
+    private long retryDelayMs = 60 * 1000;
+
+    /**
+     * 重试等待时间的上限(毫秒)
+     */
+    private long retryMaxDelayMs = 60 * 60 * 1000;
+
+    /**
+     * 领取任务的租约时长(毫秒)，处理节点未在到期前续约的任务视为节点失联
+     */
+    private long leaseMs = 5 * 60 * 1000;
+
+    /**
+     * 处理中的任务的续约间隔(毫秒)，应明显小于租约时长
+     */
+    private long heartbeatIntervalMs = 60 * 1000;
+
+    /**
+     * 回收租约到期任务的间隔(毫秒)，集群中同一时刻只有一个节点执行回收
+     */
+    private long reapIntervalMs = 60 * 1000;
+
+    /**
+     * 单次回收的任务数上限
+     */
+    private int reapBatchSize = 500;
+
+    /**
+     * 批量入队时单条insert语句写入的任务数，超过单条语句参数个数上限(32767)允许的任务数时按上限拆分
+     */
+    private int enqueueBatchSize = 500;
+
+    /**
+     * 批量入队的任务数达到该值时改用COPY写入
+     */
+    private int enqueueCopyThreshold = 10000;
+}
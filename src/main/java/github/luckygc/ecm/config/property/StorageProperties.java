@@ -18,6 +18,10 @@
 package github.luckygc.ecm.config.property;
 
 import github.luckygc.ecm.common.enums.StorageType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -28,7 +32,7 @@ import org.springframework.stereotype.Component;
 public class StorageProperties {
 
     /**
-     * 存储类型：local、s3
+     * 存储类型：local、s3、tiered、replicated、sharded
      */
     private StorageType type = StorageType.LOCAL;
 
@@ -42,6 +46,61 @@ public class StorageProperties {
      */
     private S3 s3 = new S3();
 
+    /**
+     * 内容寻址去重配置
+     */
+    private Deduplication deduplication = new Deduplication();
+
+    /**
+     * 完整性校验配置
+     */
+    private Integrity integrity = new Integrity();
+
+    /**
+     * 透明压缩配置
+     */
+    private Compression compression = new Compression();
+
+    /**
+     * 本地磁盘读缓存配置
+     */
+    private Cache cache = new Cache();
+
+    /**
+     * 元数据缓存配置
+     */
+    private StatCache statCache = new StatCache();
+
+    /**
+     * 存储指标配置
+     */
+    private Metrics metrics = new Metrics();
+
+    /**
+     * 异步存储服务配置
+     */
+    private Async async = new Async();
+
+    /**
+     * 冷热分层配置（当storage.type=tiered时生效）
+     */
+    private Tiering tiering = new Tiering();
+
+    /**
+     * 多副本配置（当storage.type=replicated时生效）
+     */
+    private Replication replication = new Replication();
+
+    /**
+     * 分片上传配置
+     */
+    private ChunkedUpload chunkedUpload = new ChunkedUpload();
+
+    /**
+     * 分片存储配置（当storage.type=sharded时生效）
+     */
+    private Sharding sharding = new Sharding();
+
     @Data
     public static class Local {
 
@@ -49,6 +108,67 @@ public class StorageProperties {
          * 本地存储基础路径
          */
         private String basePath = "./storage";
+
+        /**
+         * 批量删除的并发线程数
+         */
+        private int deleteConcurrency = 8;
+
+        /**
+         * 批量查询元数据的并发线程数
+         */
+        private int statConcurrency = 8;
+
+        /**
+         * 小文件打包存储配置
+         */
+        private Pack pack = new Pack();
+
+        /**
+         * 复制配置并替换基础路径，用于分片存储的各个目录
+         */
+        public Local withBasePath(String basePath) {
+            Local local = new Local();
+            local.setBasePath(basePath);
+            local.setDeleteConcurrency(deleteConcurrency);
+            local.setStatConcurrency(statConcurrency);
+            local.setPack(pack);
+            return local;
+        }
+    }
+
+    @Data
+    public static class Pack {
+
+        /**
+         * 是否启用小文件打包存储，启用后小文件追加写入段文件，不再单独占用目录和文件
+         */
+        private boolean enabled = false;
+
+        /**
+         * 段文件目录
+         */
+        private String directory = "./storage-pack";
+
+        /**
+         * 打包存储的对象大小上限(字节)，超过的对象仍按单个文件存储
+         */
+        private int maxObjectBytes = 64 * 1024;
+
+        /**
+         * 单个段文件大小(字节)，达到后切换到新的段文件
+         */
+        private long segmentBytes = 256L * 1024 * 1024;
+
+        /**
+         * 压缩检查间隔(毫秒)
+         */
+        private long compactIntervalMs = 10L * 60 * 1000;
+
+        /**
+         * 触发压缩的垃圾占比，已删除或已被覆盖的记录超过该比例时回收段文件
+         */
+        private double compactGarbageRatio = 0.5;
     }
 
     @Data
@@ -83,12 +203,295 @@ public class StorageProperties {
          * 是否启用路径样式访问
          */
         private boolean pathStyleAccess = true;
+
+        /**
+         * 分片上传阈值(字节)，文件大小达到该值时使用分片上传
+         */
+        private long multipartThreshold = 64L * 1024 * 1024;
+
+        /**
+         * 分片大小(字节)，S3要求除最后一个分片外不小于5MB
+         */
+        private long multipartPartSize = 16L * 1024 * 1024;
+
+        /**
+         * 并行上传的分片数量
+         */
+        private int multipartConcurrency = 4;
+
+        /**
+         * 单个分片的最大尝试次数
+         */
+        private int multipartMaxAttempts = 3;
+
+        /**
+         * 预签名地址有效期(毫秒)
+         */
+        private long presignExpireMs = 15L * 60 * 1000;
+
+        /**
+         * 复制配置并替换存储桶，用于分片存储的各个存储桶
+         */
+        public S3 withBucket(String bucket) {
+            S3 s3 = new S3();
+            s3.setAccessKeyId(accessKeyId);
+            s3.setSecretAccessKey(secretAccessKey);
+            s3.setRegion(region);
+            s3.setEndpoint(endpoint);
+            s3.setBucket(bucket);
+            s3.setPathStyleAccess(pathStyleAccess);
+            s3.setMultipartThreshold(multipartThreshold);
+            s3.setMultipartPartSize(multipartPartSize);
+            s3.setMultipartConcurrency(multipartConcurrency);
+            s3.setMultipartMaxAttempts(multipartMaxAttempts);
+            s3.setPresignExpireMs(presignExpireMs);
+            return s3;
+        }
+    }
+
+    @Data
+    public static class Deduplication {
+
+        /**
+         * 是否启用内容寻址去重，启用后相同内容只保存一份
+         */
+        private boolean enabled = false;
+
+        /**
+         * 上传流时在内存中暂存并先计算摘要的最大长度(字节)，内容已存在时只写元数据.
+         * 更大或长度未知的流边写入边计算摘要，内容重复时再删除刚写入的副本
+         */
+        private int stageMaxBytes = 1024 * 1024;
+    }
+
+    @Data
+    public static class Integrity {
+
+        /**
+         * 是否启用完整性校验，启用后上传时登记校验和并在后台巡检
+         */
+        private boolean enabled = false;
+
+        /**
+         * 巡检间隔(毫秒)，上一轮巡检结束后开始计时
+         */
+        private long scrubIntervalMs = 24L * 60 * 60 * 1000;
+
+        /**
+         * 巡检读取速率上限(字节/秒)
+         */
+        private long scrubBytesPerSecond = 16L * 1024 * 1024;
+
+        /**
+         * 前台传输数超过该值时巡检暂停，0表示有任何前台传输即暂停
+         */
+        private int scrubMaxForegroundTransfers = 0;
+    }
+
+    @Data
+    public static class Compression {
+
+        /**
+         * 是否启用透明压缩，启用后可压缩类型的对象压缩存储，读取时自动解压
+         */
+        private boolean enabled = false;
+
+        /**
+         * deflate压缩级别，1最快，9压缩率最高
+         */
+        private int level = 6;
+
+        /**
+         * 压缩的最小对象大小(字节)，更小的对象压缩收益低于标记头开销
+         */
+        private long minBytes = 1024;
+
+        /**
+         * 压缩的内容类型前缀，按文件名推断的内容类型匹配任一前缀时压缩，已压缩的格式不应列入
+         */
+        private List<String> contentTypes =
+                new ArrayList<>(
+                        List.of(
+                                "text/",
+                                "application/xml",
+                                "application/json",
+                                "application/javascript",
+                                "application/rtf",
+                                "application/x-tar",
+                                "image/bmp",
+                                "image/tiff",
+                                "image/svg+xml"));
+    }
+
+    @Data
+    public static class Cache {
+
+        /**
+         * 是否启用本地磁盘读缓存
+         */
+        private boolean enabled = false;
+
+        /**
+         * 缓存目录，启动时清空
+         */
+        private String directory = "./storage-cache";
+
+        /**
+         * 缓存总大小上限(字节)
+         */
+        private long maxBytes = 1024L * 1024 * 1024;
+
+        /**
+         * 单个对象大小上限(字节)，超过的对象不缓存
+         */
+        private long maxObjectBytes = 64L * 1024 * 1024;
+    }
+
+    @Data
+    public static class StatCache {
+
+        /**
+         * 是否启用元数据缓存，缓存对象元数据查询和存在性检查的结果
+         */
+        private boolean enabled = false;
+
+        /**
+         * 存在的对象的缓存时间(毫秒)
+         */
+        private long ttlMs = 5000;
+
+        /**
+         * 不存在的对象的缓存时间(毫秒)
+         */
+        private long negativeTtlMs = 1000;
+
+        /**
+         * 最多缓存的对象数
+         */
+        private long maxEntries = 100_000;
+    }
+
+    @Data
+    public static class Metrics {
+
+        /**
+         * 是否采集各存储后端的操作耗时、传输字节数等指标
+         */
+        private boolean enabled = true;
+    }
+
+    @Data
+    public static class Async {
+
+        /**
+         * 异步存储服务的线程数，决定经线程池执行的传输可同时进行的数量
+         */
+        private int concurrency = 16;
+    }
+
+    @Data
+    public static class Tiering {
+
+        /**
+         * 对象超过该时长(毫秒)未访问时迁移到冷存储
+         */
+        private long coldAfterMs = 7L * 24 * 60 * 60 * 1000;
+
+        /**
+         * 迁移检查间隔(毫秒)
+         */
+        private long migrateIntervalMs = 60L * 60 * 1000;
+
+        /**
+         * 召回热存储的对象大小上限(字节)，超过的对象从冷存储读取但不召回
+         */
+        private long promoteMaxBytes = 64L * 1024 * 1024;
+
+        /**
+         * 并行召回的线程数
+         */
+        private int promoteConcurrency = 2;
+    }
+
+    @Data
+    public static class Replication {
+
+        /**
+         * 写入法定数，成功写入的副本数达到该值即返回，不能超过副本数
+         */
+        private int writeQuorum = 2;
+
+        /**
+         * 副本连续读取失败达到该次数后暂停从其读取
+         */
+        private int failureThreshold = 3;
+
+        /**
+         * 副本暂停读取的时长(毫秒)
+         */
+        private long unhealthyCooldownMs = 30L * 1000;
+
+        /**
+         * 修复漏写副本的检查间隔(毫秒)
+         */
+        private long repairIntervalMs = 60L * 1000;
+    }
+
+    @Data
+    public static class ChunkedUpload {
+
+        /**
+         * 分片暂存目录，存储服务不能直接使用S3分片上传时使用，多节点部署时各节点须挂载同一目录
+         */
+        private String stagingDirectory = "./storage-upload";
+
+        /**
+         * 分片大小(字节)，不小于5MB，文件过大时自动调大使分片数不超过10000
+         */
+        private long chunkSize = 8L * 1024 * 1024;
+
+        /**
+         * 会话有效期(毫秒)，过期未提交的会话及其分片会被清理
+         */
+        private long sessionExpireMs = 24L * 60 * 60 * 1000;
+
+        /**
+         * 提交超时(毫秒)，提交中的会话过期超过该时长仍未结束时视为提交中断，由清理补记结果
+         */
+        private long commitTimeoutMs = 60L * 60 * 1000;
+    }
+
+    @Data
+    public static class Sharding {
+
+        /**
+         * 本地分片目录，每个目录一个分片
+         */
+        private List<String> localPaths = new ArrayList<>();
+
+        /**
+         * S3分片存储桶，每个存储桶一个分片，使用s3下的连接配置
+         */
+        private List<String> buckets = new ArrayList<>();
+
+        /**
+         * 每个分片在哈希环上的虚拟节点数，越多分布越均匀
+         */
+        private int virtualNodes = 128;
+
+        /**
+         * 重新均衡未完成时的重试间隔(毫秒)
+         */
+        private long rebalanceRetryIntervalMs = 10L * 60 * 1000;
     }
 
     public String getFinalBucketName() {
         return switch (type) {
-            case S3 -> s3.getBucket();
+            case S3, TIERED, REPLICATED -> s3.getBucket();
             case LOCAL -> local.getBasePath();
+            case SHARDED ->
+                    Stream.concat(sharding.getLocalPaths().stream(), sharding.getBuckets().stream())
+                            .collect(Collectors.joining(","));
         };
     }
 }
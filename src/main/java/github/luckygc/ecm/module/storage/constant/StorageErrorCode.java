@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.constant;
+
+public interface StorageErrorCode {
+
+    String OBJECT_NOT_FOUND = "storage_object_not_found";
+
+    String PRESIGN_NOT_SUPPORTED = "storage_presign_not_supported";
+
+    String UPLOAD_SESSION_NOT_FOUND = "storage_upload_session_not_found";
+
+    String UPLOAD_SESSION_CLOSED = "storage_upload_session_closed";
+
+    String UPLOAD_CHUNK_INVALID = "storage_upload_chunk_invalid";
+
+    String UPLOAD_INCOMPLETE = "storage_upload_incomplete";
+
+    String STAT_LIMIT_EXCEEDED = "storage_stat_limit_exceeded";
+
+    String INVALID_OBJECT_NAME = "storage_invalid_object_name";
+}
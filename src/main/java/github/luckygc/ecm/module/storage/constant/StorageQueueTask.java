@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.constant;
+
+/**
+ * 存储模块投递到数据库队列的任务
+ */
+public interface StorageQueueTask {
+
+    String QUEUE_NAME = "storage";
+
+    /**
+     * 以其他副本为准修复多副本存储中的一个副本，任务数据包含objectName和replica
+     */
+    String REPLICA_REPAIR = "storage_replica_repair";
+
+    /**
+     * 以校验和一致的副本为准修复巡检发现损坏或丢失的对象，任务数据包含objectName、checksum和size
+     */
+    String INTEGRITY_REPAIR = "storage_integrity_repair";
+}
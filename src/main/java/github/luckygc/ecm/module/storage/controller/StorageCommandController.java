@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.controller;
+
+import github.luckygc.ecm.common.domain.Result;
+import github.luckygc.ecm.common.exception.BusinessException;
+import github.luckygc.ecm.module.storage.constant.StorageErrorCode;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.domain.dto.PresignedUrlDTO;
+import github.luckygc.ecm.module.storage.domain.dto.UploadResult;
+import github.luckygc.ecm.module.storage.domain.dto.UploadSessionDTO;
+import github.luckygc.ecm.module.storage.domain.request.CompleteUploadRequest;
+import github.luckygc.ecm.module.storage.domain.request.OpenUploadSessionRequest;
+import github.luckygc.ecm.module.storage.domain.request.PresignUploadRequest;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.module.storage.service.StoragePresignService;
+import github.luckygc.ecm.module.storage.service.StorageUploadSessionService;
+import github.luckygc.ecm.util.StorageUtils;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import java.io.IOException;
+import java.io.InputStream;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 存储写操作控制器
+ */
+@Slf4j
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class StorageCommandController {
+
+    private final StorageManager storageManager;
+    private final StoragePresignService storagePresignService;
+    private final StorageUploadSessionService storageUploadSessionService;
+
+    /**
+     * 流式上传文件，请求体即为文件内容，数据直接写入存储不经过临时文件. 不接受multipart请求，避免容器先将请求体落盘.
+     * 返回写入时同步得到的大小、SHA-256、内容类型等信息.
+     */
+    @PostMapping(value = "/storage/upload", consumes = "!multipart/form-data")
+    public Result<UploadResult> upload(@RequestParam String filename, HttpServletRequest request)
+            throws IOException {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            throw new IllegalArgumentException("缺少Content-Length请求头");
+        }
+
+        try (InputStream inputStream = request.getInputStream()) {
+            UploadResult uploadResult =
+                    storageManager.uploadInspected(inputStream, contentLength, filename);
+            log.debug(
+                    "流式上传完成: {}, {}字节, {}",
+                    uploadResult.objectName(),
+                    uploadResult.size(),
+                    uploadResult.contentType());
+            return Result.ok(uploadResult);
+        }
+    }
+
+    /**
+     * 申请预签名上传地址，客户端凭地址直接上传到对象存储，完成后调用完成接口登记
+     */
+    @PostMapping("/storage/presign/upload")
+    public Result<PresignedUrlDTO> presignUpload(
+            @Valid @RequestBody PresignUploadRequest presignUploadRequest) {
+        return Result.ok(storagePresignService.presignUpload(presignUploadRequest));
+    }
+
+    /**
+     * 预签名上传完成回调
+     */
+    @PostMapping("/storage/presign/complete")
+    public Result<ObjectMetadata> completeUpload(
+            @Valid @RequestBody CompleteUploadRequest completeUploadRequest) throws IOException {
+        String objectName = completeUploadRequest.getObjectName();
+        if (!StorageUtils.isSafeObjectName(objectName)) {
+            throw BusinessException.of(
+                    StorageErrorCode.INVALID_OBJECT_NAME, "非法的对象名: " + objectName);
+        }
+        return Result.ok(storagePresignService.completeUpload(objectName));
+    }
+
+    /**
+     * 创建分片上传会话，返回对象名称、分片大小和分片数量
+     */
+    @PostMapping("/storage/upload-sessions")
+    public Result<UploadSessionDTO> openUploadSession(
+            @Valid @RequestBody OpenUploadSessionRequest openUploadSessionRequest)
+            throws IOException {
+        return Result.ok(storageUploadSessionService.openSession(openUploadSessionRequest));
+    }
+
+    /**
+     * 上传分片，请求体即为分片内容，不同分片可以并行上传
+     */
+    @PostMapping(
+            value = "/storage/upload-sessions/{sessionId}/chunks/{chunkNumber}",
+            consumes = "!multipart/form-data")
+    public Result<Void> uploadChunk(
+            @PathVariable Long sessionId,
+            @PathVariable int chunkNumber,
+            HttpServletRequest request)
+            throws IOException {
+        long contentLength = request.getContentLengthLong();
+        if (contentLength < 0) {
+            throw new IllegalArgumentException("缺少Content-Length请求头");
+        }
+
+        try (InputStream inputStream = request.getInputStream()) {
+            storageUploadSessionService.uploadChunk(
+                    sessionId, chunkNumber, inputStream, contentLength);
+            return Result.ok();
+        }
+    }
+
+    /**
+     * 提交分片上传会话，全部分片到达后合并为目标对象
+     */
+    @PostMapping("/storage/upload-sessions/{sessionId}/commit")
+    public Result<ObjectMetadata> commitUploadSession(@PathVariable Long sessionId)
+            throws IOException {
+        return Result.ok(storageUploadSessionService.commitSession(sessionId));
+    }
+
+    /**
+     * 取消分片上传会话
+     */
+    @PostMapping("/storage/upload-sessions/{sessionId}/abort")
+    public Result<Void> abortUploadSession(@PathVariable Long sessionId) throws IOException {
+        storageUploadSessionService.abortSession(sessionId);
+        return Result.ok();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.controller;
+
+import github.luckygc.ecm.common.domain.Result;
+import github.luckygc.ecm.common.exception.BusinessException;
+import github.luckygc.ecm.module.storage.constant.StorageErrorCode;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.domain.dto.PresignedUrlDTO;
+import github.luckygc.ecm.module.storage.domain.dto.UploadSessionDTO;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.module.storage.service.StoragePresignService;
+import github.luckygc.ecm.module.storage.service.StorageUploadSessionService;
+import github.luckygc.ecm.util.StorageUtils;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+/**
+ * 存储读操作控制器
+ */
+@RestController
+@RequestMapping("/api")
+@RequiredArgsConstructor
+public class StorageQueryController {
+
+    private final StorageManager storageManager;
+    private final StoragePresignService storagePresignService;
+    private final StorageUploadSessionService storageUploadSessionService;
+
+    /**
+     * 分页列出对象名称 单页最多1000个，通过续传标记翻页
+     */
+    @GetMapping("/storage/list")
+    public Result<ObjectListing> list(
+            @RequestParam(required = false) @Nullable String prefix,
+            @RequestParam(required = false) @Nullable String continuationToken,
+            @RequestParam(defaultValue = "1000") int maxKeys)
+            throws IOException {
+        if (prefix != null && !StorageUtils.isSafePrefix(prefix)) {
+            throw BusinessException.of(StorageErrorCode.INVALID_OBJECT_NAME, "非法的前缀: " + prefix);
+        }
+        int pageSize = Math.min(Math.max(maxKeys, 1), 1000);
+        return Result.ok(storageManager.listFiles(prefix, continuationToken, pageSize));
+    }
+
+    /**
+     * 批量查询对象元数据 单次最多1000个，按传入顺序返回，不存在的对象不在结果中. MIME类型可能按对象名称推断
+     */
+    @GetMapping("/storage/stat")
+    public Result<List<ObjectMetadata>> stat(@RequestParam List<String> objectNames)
+            throws IOException {
+        if (objectNames.size() > 1000) {
+            throw BusinessException.of(
+                    StorageErrorCode.STAT_LIMIT_EXCEEDED, "单次最多查询1000个对象");
+        }
+        objectNames.forEach(StorageQueryController::checkObjectName);
+        return Result.ok(new ArrayList<>(storageManager.statAll(objectNames).values()));
+    }
+
+    /**
+     * 查询分片上传会话及已接收的分片号，客户端中断后据此补传缺少的分片
+     */
+    @GetMapping("/storage/upload-sessions/{sessionId}")
+    public Result<UploadSessionDTO> getUploadSession(@PathVariable Long sessionId) {
+        return Result.ok(storageUploadSessionService.getSession(sessionId));
+    }
+
+    /**
+     * 申请预签名下载地址，客户端凭地址直接从对象存储下载
+     */
+    @GetMapping("/storage/presign/download")
+    public Result<PresignedUrlDTO> presignDownload(@RequestParam String objectName)
+            throws IOException {
+        checkObjectName(objectName);
+        return Result.ok(storagePresignService.presignDownload(objectName));
+    }
+
+    /**
+     * 下载文件 支持单区间的Range请求，If-Range校验失败、多区间或Range不合法时返回完整内容
+     */
+    @GetMapping("/storage/download")
+    public ResponseEntity<StreamingResponseBody> download(
+            @RequestParam String objectName,
+            @RequestHeader(value = HttpHeaders.RANGE, required = false) @Nullable String range,
+            @RequestHeader(value = HttpHeaders.IF_RANGE, required = false) @Nullable String ifRange)
+            throws IOException {
+        checkObjectName(objectName);
+        ObjectMetadata metadata =
+                storageManager
+                        .stat(objectName)
+                        .orElseThrow(
+                                BusinessException.ofSupplier(
+                                        StorageErrorCode.OBJECT_NOT_FOUND, "文件不存在: " + objectName));
+        long size = metadata.size();
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+        headers.setContentType(MediaType.parseMediaType(metadata.contentType()));
+        headers.setLastModified(metadata.lastModified());
+        if (metadata.eTag() != null) {
+            headers.setETag(metadata.eTag());
+        }
+        headers.setContentDisposition(
+                ContentDisposition.inline()
+                        .filename(filename(objectName), StandardCharsets.UTF_8)
+                        .build());
+
+        HttpRange httpRange = ifRangeMatches(ifRange, metadata) ? singleRange(range) : null;
+        if (httpRange == null) {
+            headers.setContentLength(size);
+            return ResponseEntity.ok()
+                    .headers(headers)
+                    .body(out -> copy(storageManager.downloadFile(objectName), out));
+        }
+
+        long start;
+        long end;
+        try {
+            start = httpRange.getRangeStart(size);
+            end = httpRange.getRangeEnd(size);
+        } catch (IllegalArgumentException e) {
+            start = size;
+            end = size;
+        }
+        if (start >= size || start > end) {
+            return ResponseEntity.status(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE)
+                    .header(HttpHeaders.CONTENT_RANGE, "bytes */" + size)
+                    .build();
+        }
+
+        long offset = start;
+        long length = end - start + 1;
+        headers.setContentLength(length);
+        headers.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+        return ResponseEntity.status(HttpStatus.PARTIAL_CONTENT)
+                .headers(headers)
+                .body(out -> copy(storageManager.downloadRange(objectName, offset, length), out));
+    }
+
+    /**
+     * 对象名来自客户端，拒绝可能跳出存储目录的名称
+     */
+    private static void checkObjectName(String objectName) {
+        if (!StorageUtils.isSafeObjectName(objectName)) {
+            throw BusinessException.of(
+                    StorageErrorCode.INVALID_OBJECT_NAME, "非法的对象名: " + objectName);
+        }
+    }
+
+    private static void copy(InputStream inputStream, OutputStream out) throws IOException {
+        try (inputStream) {
+            inputStream.transferTo(out);
+        }
+    }
+
+    /**
+     * 解析Range请求头，只处理单区间请求
+     */
+    private static @Nullable HttpRange singleRange(@Nullable String range) {
+        if (range == null) {
+            return null;
+        }
+
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(range);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * If-Range为实体标签时做强比较，为日期时与最后修改时间按秒比较
+     */
+    private static boolean ifRangeMatches(@Nullable String ifRange, ObjectMetadata metadata) {
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"")) {
+            return ifRange.equals(metadata.eTag());
+        }
+        if (ifRange.startsWith("W/")) {
+            return false;
+        }
+
+        try {
+            ZonedDateTime date = ZonedDateTime.parse(ifRange, DateTimeFormatter.RFC_1123_DATE_TIME);
+            return date.toEpochSecond() == metadata.lastModified().getEpochSecond();
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private static String filename(String objectName) {
+        return objectName.substring(objectName.lastIndexOf('/') + 1);
+    }
+}
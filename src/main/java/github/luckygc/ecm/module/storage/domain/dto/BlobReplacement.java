@@ -0,0 +1,28 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.domain.dto;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 覆盖逻辑对象关联的数据块的结果
+ *
+ * @param blobObjectName 最终关联的数据块对象名称，与新写入的数据块不同时说明新写入的数据块是重复的
+ * @param unreferencedBlobObjectName 引用计数归零的旧数据块对象名称，需要从底层存储删除；否则为空
+ */
+public record BlobReplacement(String blobObjectName, @Nullable String unreferencedBlobObjectName) {}
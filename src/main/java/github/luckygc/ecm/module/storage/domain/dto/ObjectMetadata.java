@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.domain.dto;
+
+import java.time.Instant;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 存储对象元数据
+ *
+ * @param objectName 对象名称
+ * @param size 对象大小(字节)
+ * @param lastModified 最后修改时间
+ * @param eTag 实体标签，带双引号，可作为强校验器
+ * @param contentType MIME类型
+ */
+public record ObjectMetadata(
+        String objectName,
+        long size,
+        Instant lastModified,
+        @Nullable String eTag,
+        String contentType) {}
@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.domain.dto;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * 预签名地址 客户端使用指定的方法和请求头直接访问对象存储
+ *
+ * @param objectName 对象名称
+ * @param method HTTP方法
+ * @param url 预签名地址
+ * @param headers 请求时必须携带的请求头
+ * @param expiration 过期时间
+ */
+public record PresignedUrlDTO(
+        String objectName,
+        String method,
+        String url,
+        Map<String, String> headers,
+        Instant expiration) {}
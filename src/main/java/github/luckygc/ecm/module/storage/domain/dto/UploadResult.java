@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.domain.dto;
+
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 上传结果 写入时同步得到的内容信息，后续处理无需再次读取对象
+ *
+ * @param objectName 对象名称
+ * @param size 对象大小(字节)
+ * @param sha256 内容的SHA-256，十六进制小写
+ * @param contentType 按文件头识别的MIME类型
+ * @param pageCount PDF页数，其他格式或无法识别时为空
+ * @param width 图片宽度(像素)，其他格式或无法识别时为空
+ * @param height 图片高度(像素)，其他格式或无法识别时为空
+ */
+public record UploadResult(
+        String objectName,
+        long size,
+        String sha256,
+        String contentType,
+        @Nullable Integer pageCount,
+        @Nullable Integer width,
+        @Nullable Integer height) {}
@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.domain.dto;
+
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity.UploadSessionStatus;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 分片上传会话 客户端按分片大小切分文件，分片号从1开始，断点续传时只需补传未接收的分片
+ *
+ * @param sessionId 会话ID
+ * @param objectName 提交后的对象名称
+ * @param contentLength 文件大小
+ * @param chunkSize 分片大小，最后一个分片可以更小
+ * @param chunkCount 分片数量
+ * @param status 会话状态
+ * @param receivedChunks 已接收的分片号
+ * @param expireTime 过期时间
+ */
+public record UploadSessionDTO(
+        Long sessionId,
+        String objectName,
+        long contentLength,
+        long chunkSize,
+        int chunkCount,
+        UploadSessionStatus status,
+        List<Integer> receivedChunks,
+        LocalDateTime expireTime) {}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.domain.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.proxy.HibernateProxy;
+
+/**
+ * 对象校验和 上传时记录，由后台巡检重新计算并比对
+ */
+@Table(name = "storage_checksum")
+@Entity(name = "StorageChecksum")
+@Accessors(chain = true)
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+public class StorageChecksumEntity {
+
+    @Id
+    @Column(length = 1024, comment = "底层存储中的对象名称")
+    private String objectName;
+
+    @CreationTimestamp
+    private LocalDateTime createTime;
+
+    @UpdateTimestamp
+    private LocalDateTime updateTime;
+
+    @Column(nullable = false, length = 64, comment = "内容SHA-256摘要")
+    private String checksum;
+
+    @Column(nullable = false, comment = "内容大小(字节)")
+    private Long size;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20, comment = "校验状态")
+    private ChecksumStatus status = ChecksumStatus.OK;
+
+    @Column(comment = "最近一次巡检时间")
+    private LocalDateTime verifyTime;
+
+    /**
+     * 校验状态枚举
+     */
+    public enum ChecksumStatus {
+        OK, // 校验通过
+        CORRUPT, // 内容与校验和不一致
+        MISSING // 对象丢失
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null) {
+            return false;
+        }
+        Class<?> oEffectiveClass = o instanceof HibernateProxy
+                ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass()
+                : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy
+                ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass()
+                : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) {
+            return false;
+        }
+        StorageChecksumEntity storageChecksumEntity = (StorageChecksumEntity) o;
+        return getObjectName() != null
+                && Objects.equals(getObjectName(), storageChecksumEntity.getObjectName());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
+                .getPersistentClass()
+                .hashCode() : getClass().hashCode();
+    }
+}
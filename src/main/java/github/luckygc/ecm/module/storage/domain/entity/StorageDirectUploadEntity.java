@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.domain.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.proxy.HibernateProxy;
+
+/**
+ * 预签名直传记录 签发上传地址时登记，客户端确认完成后记录对象的大小和ETag
+ */
+@Table(name = "storage_direct_upload")
+@Entity(name = "StorageDirectUpload")
+@Accessors(chain = true)
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+public class StorageDirectUploadEntity {
+
+    @Id
+    @Column(length = 1024, comment = "对象名称")
+    private String objectName;
+
+    @CreationTimestamp
+    private LocalDateTime createTime;
+
+    @UpdateTimestamp
+    private LocalDateTime updateTime;
+
+    @Column(nullable = false, length = 255, comment = "原始文件名")
+    private String filename;
+
+    @Column(comment = "签发时声明的大小(字节)，未声明时为空")
+    private Long expectedSize;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20, comment = "直传状态")
+    private DirectUploadStatus status = DirectUploadStatus.PENDING;
+
+    @Column(comment = "实际大小(字节)")
+    private Long size;
+
+    @Column(length = 128, comment = "对象ETag")
+    private String eTag;
+
+    @Column(comment = "确认完成时间")
+    private LocalDateTime completeTime;
+
+    /**
+     * 直传状态枚举
+     */
+    public enum DirectUploadStatus {
+        PENDING, // 已签发地址，等待客户端确认
+        COMPLETED // 已确认完成
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null) {
+            return false;
+        }
+        Class<?> oEffectiveClass = o instanceof HibernateProxy
+                ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass()
+                : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy
+                ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass()
+                : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) {
+            return false;
+        }
+        StorageDirectUploadEntity storageDirectUploadEntity = (StorageDirectUploadEntity) o;
+        return getObjectName() != null
+                && Objects.equals(getObjectName(), storageDirectUploadEntity.getObjectName());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
+                .getPersistentClass()
+                .hashCode() : getClass().hashCode();
+    }
+}
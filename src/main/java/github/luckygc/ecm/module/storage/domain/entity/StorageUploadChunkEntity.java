@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.domain.entity;
+
+import github.luckygc.ecm.common.annotation.hibernate.SnowflakeId;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.proxy.HibernateProxy;
+
+/**
+ * 分片上传会话中已接收的分片
+ */
+@Table(
+        name = "storage_upload_chunk",
+        indexes = {
+            @Index(
+                    name = "uk_storage_upload_chunk_session_chunk",
+                    columnList = "sessionId, chunkNumber",
+                    unique = true)
+        })
+@Entity(name = "StorageUploadChunk")
+@Accessors(chain = true)
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+public class StorageUploadChunkEntity {
+
+    @Id
+    @SnowflakeId
+    private Long id;
+
+    @CreationTimestamp
+    private LocalDateTime createTime;
+
+    @Column(nullable = false, comment = "上传会话ID")
+    private Long sessionId;
+
+    @Column(nullable = false, comment = "分片号，从1开始")
+    private Integer chunkNumber;
+
+    @Column(nullable = false, comment = "分片大小(字节)")
+    private Long size;
+
+    @Column(length = 255, comment = "S3分片ETag，分片暂存在本地时为空")
+    private String eTag;
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null) {
+            return false;
+        }
+        Class<?> oEffectiveClass = o instanceof HibernateProxy
+                ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass()
+                : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy
+                ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass()
+                : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) {
+            return false;
+        }
+        StorageUploadChunkEntity storageUploadChunkEntity = (StorageUploadChunkEntity) o;
+        return getId() != null && Objects.equals(getId(), storageUploadChunkEntity.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
+                .getPersistentClass()
+                .hashCode() : getClass().hashCode();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.domain.entity;
+
+import github.luckygc.ecm.common.annotation.hibernate.SnowflakeId;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+import org.hibernate.proxy.HibernateProxy;
+
+/**
+ * 分片上传会话 客户端按分片号并行上传，提交时按顺序合并为一个对象
+ */
+@Table(name = "storage_upload_session")
+@Entity(name = "StorageUploadSession")
+@Accessors(chain = true)
+@Getter
+@Setter
+@ToString
+@RequiredArgsConstructor
+public class StorageUploadSessionEntity {
+
+    @Id
+    @SnowflakeId
+    private Long id;
+
+    @CreationTimestamp
+    private LocalDateTime createTime;
+
+    @UpdateTimestamp
+    private LocalDateTime updateTime;
+
+    @Column(nullable = false, length = 1024, comment = "提交后的对象名称")
+    private String objectName;
+
+    @Column(nullable = false, length = 255, comment = "原始文件名")
+    private String filename;
+
+    @Column(nullable = false, comment = "文件大小(字节)")
+    private Long contentLength;
+
+    @Column(nullable = false, comment = "分片大小(字节)，最后一个分片可以更小")
+    private Long chunkSize;
+
+    @Column(length = 1024, comment = "S3分片上传标识或本地暂存目录名")
+    private String uploadId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20, comment = "会话状态")
+    private UploadSessionStatus status = UploadSessionStatus.UPLOADING;
+
+    @Column(nullable = false, comment = "过期时间，过期未提交的会话被清理")
+    private LocalDateTime expireTime;
+
+    /**
+     * 分片数量
+     */
+    public int getChunkCount() {
+        return (int) ((contentLength + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * 指定分片的大小
+     *
+     * @param chunkNumber 分片号，从1开始
+     */
+    public long getChunkLength(int chunkNumber) {
+        return Math.min(chunkSize, contentLength - (chunkNumber - 1) * chunkSize);
+    }
+
+    /**
+     * 会话状态枚举
+     */
+    public enum UploadSessionStatus {
+        UPLOADING, // 上传中
+        COMMITTING, // 提交中
+        COMMITTED, // 已提交
+        ABORTED // 已取消
+    }
+
+    @Override
+    public final boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null) {
+            return false;
+        }
+        Class<?> oEffectiveClass = o instanceof HibernateProxy
+                ? ((HibernateProxy) o).getHibernateLazyInitializer().getPersistentClass()
+                : o.getClass();
+        Class<?> thisEffectiveClass = this instanceof HibernateProxy
+                ? ((HibernateProxy) this).getHibernateLazyInitializer().getPersistentClass()
+                : this.getClass();
+        if (thisEffectiveClass != oEffectiveClass) {
+            return false;
+        }
+        StorageUploadSessionEntity storageUploadSessionEntity = (StorageUploadSessionEntity) o;
+        return getId() != null && Objects.equals(getId(), storageUploadSessionEntity.getId());
+    }
+
+    @Override
+    public final int hashCode() {
+        return this instanceof HibernateProxy ? ((HibernateProxy) this).getHibernateLazyInitializer()
+                .getPersistentClass()
+                .hashCode() : getClass().hashCode();
+    }
+}
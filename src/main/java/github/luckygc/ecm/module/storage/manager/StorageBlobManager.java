@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.manager;
+
+import github.luckygc.ecm.module.storage.domain.dto.BlobReplacement;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.entity.StorageBlobEntity;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 内容寻址存储管理器接口 负责维护数据块引用计数等需要事务的逻辑
+ */
+public interface StorageBlobManager {
+
+    /**
+     * 将逻辑对象关联到已存在的数据块（事务操作）
+     *
+     * @param objectName 逻辑对象名称
+     * @param digest 内容摘要
+     * @return 数据块在底层存储中的对象名称，数据块不存在时为空
+     */
+    Optional<String> link(String objectName, String digest);
+
+    /**
+     * 登记新写入的数据块并关联逻辑对象，相同内容的数据块已存在时关联到已有数据块（事务操作）
+     *
+     * @param objectName 逻辑对象名称
+     * @param digest 内容摘要
+     * @param blobObjectName 新写入数据块在底层存储中的对象名称
+     * @param size 内容大小
+     * @return 最终关联的数据块对象名称，与blobObjectName不同时说明新写入的数据块是重复的
+     */
+    String register(String objectName, String digest, String blobObjectName, long size);
+
+    /**
+     * 覆盖逻辑对象 在同一事务中登记新写入的数据块并关联，再解除与旧数据块的关联（事务操作）.
+     * 事务失败时旧关联保持不变
+     *
+     * @param objectName 逻辑对象名称
+     * @param digest 新内容摘要
+     * @param blobObjectName 新写入数据块在底层存储中的对象名称
+     * @param size 内容大小
+     * @return 最终关联的数据块及引用计数归零的旧数据块
+     */
+    BlobReplacement replace(String objectName, String digest, String blobObjectName, long size);
+
+    /**
+     * 覆盖逻辑对象 内容已存在时改为关联已有数据块，并解除与旧数据块的关联（事务操作）
+     *
+     * @param objectName 逻辑对象名称
+     * @param digest 新内容摘要
+     * @return 关联的数据块及引用计数归零的旧数据块，数据块不存在时为空且旧关联保持不变
+     */
+    Optional<BlobReplacement> relink(String objectName, String digest);
+
+    /**
+     * 解除逻辑对象与数据块的关联（事务操作）
+     *
+     * @param objectName 逻辑对象名称
+     * @return 引用计数归零的数据块对象名称，需要从底层存储删除；否则为空
+     */
+    Optional<String> unlink(String objectName);
+
+    /**
+     * 查询逻辑对象关联的数据块
+     *
+     * @param objectName 逻辑对象名称
+     * @return 数据块，逻辑对象不存在时为空
+     */
+    Optional<StorageBlobEntity> findBlob(String objectName);
+
+    /**
+     * 批量查询逻辑对象关联的数据块
+     *
+     * @param objectNames 逻辑对象名称
+     * @return 逻辑对象名称到数据块的映射，不存在的逻辑对象不在其中
+     */
+    Map<String, StorageBlobEntity> findBlobs(Collection<String> objectNames);
+
+    /**
+     * 按前缀列出逻辑对象名称 内部按页查询，单条查询的结果数有上限
+     *
+     * @param prefix 前缀，可为空
+     * @return 逻辑对象名称
+     */
+    List<String> listObjectNames(String prefix);
+
+    /**
+     * 按前缀分页列出逻辑对象名称 以对象名称作为游标，翻页不随页码变慢
+     *
+     * @param prefix 前缀，可为空
+     * @param after 上一页最后一个对象名称，首页传空
+     * @param limit 本页最多返回的数量
+     * @return 一页结果
+     */
+    ObjectListing listObjectNames(String prefix, @Nullable String after, int limit);
+}
@@ -0,0 +1,234 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.manager;
+
+import com.google.common.collect.Iterables;
+import github.luckygc.ecm.module.storage.domain.dto.BlobReplacement;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.entity.StorageBlobEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageObjectRefEntity;
+import github.luckygc.ecm.module.storage.repository.StorageBlobRepository;
+import jakarta.data.Limit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 内容寻址存储管理器实现类 引用计数通过条件更新维护，并发写入同一数据块时由行锁串行化
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageBlobManagerImpl implements StorageBlobManager {
+
+    /**
+     * 单条查询语句的对象数上限，避免in列表过长
+     */
+    private static final int QUERY_BATCH_SIZE = 500;
+
+    /**
+     * 列出全部逻辑对象名称时单页查询的数量
+     */
+    private static final int LIST_PAGE_SIZE = 1000;
+
+    private final StorageBlobRepository storageBlobRepository;
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public Optional<String> link(String objectName, String digest) {
+        if (storageBlobRepository.incrementRefCount(digest) == 0) {
+            return Optional.empty();
+        }
+
+        insertRef(objectName, digest);
+        return storageBlobRepository.findBlobByDigest(digest).map(StorageBlobEntity::getObjectName);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public String register(String objectName, String digest, String blobObjectName, long size) {
+        Optional<String> existing = link(objectName, digest);
+        if (existing.isPresent()) {
+            return existing.get();
+        }
+
+        StorageBlobEntity blob =
+                new StorageBlobEntity()
+                        .setDigest(digest)
+                        .setObjectName(blobObjectName)
+                        .setSize(size)
+                        .setRefCount(1L);
+        storageBlobRepository.insertBlob(blob);
+        insertRef(objectName, digest);
+        return blobObjectName;
+    }
+
+    /**
+     * 先删除旧引用再登记新内容，新旧内容相同时引用计数不会先归零
+     */
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public BlobReplacement replace(
+            String objectName, String digest, String blobObjectName, long size) {
+        Optional<StorageObjectRefEntity> previous =
+                storageBlobRepository.findRefByObjectName(objectName);
+        if (previous.isPresent()) {
+            storageBlobRepository.deleteRefByObjectName(objectName);
+        }
+
+        String effectiveBlobObjectName = register(objectName, digest, blobObjectName, size);
+        String unreferenced = previous.flatMap(ref -> release(ref.getDigest())).orElse(null);
+        return new BlobReplacement(effectiveBlobObjectName, unreferenced);
+    }
+
+    /**
+     * 先增加新数据块的引用计数，数据块不存在时不改动旧关联
+     */
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public Optional<BlobReplacement> relink(String objectName, String digest) {
+        if (storageBlobRepository.incrementRefCount(digest) == 0) {
+            return Optional.empty();
+        }
+
+        Optional<StorageObjectRefEntity> previous =
+                storageBlobRepository.findRefByObjectName(objectName);
+        if (previous.isPresent()) {
+            storageBlobRepository.deleteRefByObjectName(objectName);
+        }
+        insertRef(objectName, digest);
+        String unreferenced = previous.flatMap(ref -> release(ref.getDigest())).orElse(null);
+        String blobObjectName =
+                storageBlobRepository
+                        .findBlobByDigest(digest)
+                        .map(StorageBlobEntity::getObjectName)
+                        .orElseThrow();
+        return Optional.of(new BlobReplacement(blobObjectName, unreferenced));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public Optional<String> unlink(String objectName) {
+        Optional<StorageObjectRefEntity> ref =
+                storageBlobRepository.findRefByObjectName(objectName);
+        if (ref.isEmpty()) {
+            return Optional.empty();
+        }
+
+        storageBlobRepository.deleteRefByObjectName(objectName);
+        return release(ref.get().getDigest());
+    }
+
+    /**
+     * 减少数据块的引用计数，归零时删除数据块记录
+     *
+     * @return 引用计数归零的数据块对象名称
+     */
+    private Optional<String> release(String digest) {
+        storageBlobRepository.decrementRefCount(digest);
+
+        Optional<StorageBlobEntity> blob = storageBlobRepository.findBlobByDigest(digest);
+        if (blob.isPresent() && blob.get().getRefCount() <= 0) {
+            storageBlobRepository.deleteUnreferencedBlob(digest);
+            log.debug("数据块引用计数归零: {}", digest);
+            return Optional.of(blob.get().getObjectName());
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<StorageBlobEntity> findBlob(String objectName) {
+        return storageBlobRepository
+                .findRefByObjectName(objectName)
+                .flatMap(ref -> storageBlobRepository.findBlobByDigest(ref.getDigest()));
+    }
+
+    @Override
+    public Map<String, StorageBlobEntity> findBlobs(Collection<String> objectNames) {
+        Map<String, StorageBlobEntity> result = new HashMap<>();
+        for (List<String> batch : Iterables.partition(objectNames, QUERY_BATCH_SIZE)) {
+            List<StorageObjectRefEntity> refs =
+                    storageBlobRepository.findRefsByObjectNames(batch);
+            if (refs.isEmpty()) {
+                continue;
+            }
+            List<String> digests =
+                    refs.stream().map(StorageObjectRefEntity::getDigest).distinct().toList();
+            Map<String, StorageBlobEntity> blobs = new HashMap<>();
+            for (StorageBlobEntity blob : storageBlobRepository.findBlobsByDigests(digests)) {
+                blobs.put(blob.getDigest(), blob);
+            }
+            for (StorageObjectRefEntity ref : refs) {
+                StorageBlobEntity blob = blobs.get(ref.getDigest());
+                if (blob != null) {
+                    result.put(ref.getObjectName(), blob);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public List<String> listObjectNames(String prefix) {
+        List<String> result = new ArrayList<>();
+        String after = null;
+        do {
+            ObjectListing listing = listObjectNames(prefix, after, LIST_PAGE_SIZE);
+            result.addAll(listing.objectNames());
+            after = listing.nextContinuationToken();
+        } while (after != null);
+        return result;
+    }
+
+    @Override
+    public ObjectListing listObjectNames(String prefix, @Nullable String after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit必须大于0: " + limit);
+        }
+
+        String safePrefix = prefix == null ? "" : prefix;
+        List<String> objectNames =
+                storageBlobRepository.findObjectNamesLikeAfter(
+                        safePrefix + "%", after == null ? "" : after, Limit.of(limit));
+        List<String> result = new ArrayList<>(objectNames.size());
+        for (String objectName : objectNames) {
+            if (objectName.startsWith(safePrefix)) {
+                result.add(objectName);
+            }
+        }
+
+        // 游标取本页扫描到的最后一条，被前缀过滤掉的记录不影响翻页
+        String nextAfter =
+                objectNames.size() < limit ? null : objectNames.get(objectNames.size() - 1);
+        return new ObjectListing(result, nextAfter);
+    }
+
+    private void insertRef(String objectName, String digest) {
+        storageBlobRepository.insertRef(
+                new StorageObjectRefEntity().setObjectName(objectName).setDigest(digest));
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.manager;
+
+import github.luckygc.ecm.module.storage.domain.entity.StorageChecksumEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageChecksumEntity.ChecksumStatus;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 对象校验和管理器接口 负责校验和的登记及巡检结果的记录
+ */
+public interface StorageChecksumManager {
+
+    /**
+     * 登记对象校验和，已存在时覆盖（事务操作）
+     *
+     * @param objectName 底层存储中的对象名称
+     * @param checksum 内容SHA-256摘要
+     * @param size 内容大小
+     */
+    void record(String objectName, String checksum, long size);
+
+    /**
+     * 查找对象校验和
+     *
+     * @param objectName 底层存储中的对象名称
+     * @return 校验和，未登记时为空
+     */
+    Optional<StorageChecksumEntity> find(String objectName);
+
+    /**
+     * 删除对象校验和
+     *
+     * @param objectNames 底层存储中的对象名称
+     */
+    void removeAll(Collection<String> objectNames);
+
+    /**
+     * 按对象名称分页列出校验和
+     *
+     * @param after 上一页最后一个对象名称，首页传空
+     * @param limit 本页最多返回的数量
+     * @return 校验和
+     */
+    List<StorageChecksumEntity> listAfter(@Nullable String after, int limit);
+
+    /**
+     * 记录巡检通过，校验和已被覆盖时忽略
+     *
+     * @param objectName 底层存储中的对象名称
+     * @param checksum 巡检依据的校验和
+     */
+    void markVerified(String objectName, String checksum);
+
+    /**
+     * 记录巡检失败，对象由正常变为损坏或丢失时在同一事务中投递修复任务（事务操作）
+     *
+     * @param entity 巡检依据的校验和
+     * @param status 损坏或丢失
+     * @param reason 失败原因
+     * @param queueRepair 是否投递修复任务，存储后端无法修复时传false
+     * @return 对象是否由正常变为损坏或丢失
+     */
+    boolean markFailed(
+            StorageChecksumEntity entity,
+            ChecksumStatus status,
+            String reason,
+            boolean queueRepair);
+
+    /**
+     * 持有集群范围的咨询锁执行巡检，同一时间只有一个节点巡检，锁被其他节点持有时直接返回
+     *
+     * @param scrub 巡检
+     * @return 是否取得锁并执行了巡检
+     */
+    boolean runScrubExclusively(Runnable scrub);
+}
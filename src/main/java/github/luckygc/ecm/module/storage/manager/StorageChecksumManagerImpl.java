@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.manager;
+
+import com.google.common.collect.Iterables;
+import github.luckygc.ecm.common.util.ObjectMapperUtils;
+import github.luckygc.ecm.module.storage.constant.StorageQueueTask;
+import github.luckygc.ecm.module.storage.domain.entity.StorageChecksumEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageChecksumEntity.ChecksumStatus;
+import github.luckygc.ecm.module.storage.repository.StorageChecksumRepository;
+import github.luckygc.ecm.module.support.queue.db.domain.entity.DBQueue;
+import github.luckygc.ecm.module.support.queue.db.manager.DBQueueManager;
+import jakarta.data.Limit;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 对象校验和管理器实现类 状态变更带上巡检依据的校验和作为条件，巡检期间对象被覆盖时不会误判
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class StorageChecksumManagerImpl implements StorageChecksumManager {
+
+    /**
+     * 单条删除语句的对象数上限，避免in列表过长
+     */
+    private static final int DELETE_BATCH_SIZE = 500;
+
+    /**
+     * 会话级咨询锁，需显式释放，连接断开时自动释放
+     */
+    private static final String TRY_LOCK_SQL = "select pg_try_advisory_lock(?)";
+
+    private static final String UNLOCK_SQL = "select pg_advisory_unlock(?)";
+
+    /**
+     * 巡检的咨询锁键
+     */
+    private static final long SCRUB_LOCK_KEY = 0x7374_6f72_6167_6501L;
+
+    private final StorageChecksumRepository storageChecksumRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final DBQueueManager dbQueueManager;
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public void record(String objectName, String checksum, long size) {
+        storageChecksumRepository.deleteByObjectName(objectName);
+        storageChecksumRepository.insert(
+                new StorageChecksumEntity()
+                        .setObjectName(objectName)
+                        .setChecksum(checksum)
+                        .setSize(size));
+    }
+
+    @Override
+    public Optional<StorageChecksumEntity> find(String objectName) {
+        return storageChecksumRepository.findByObjectName(objectName);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public void removeAll(Collection<String> objectNames) {
+        for (List<String> batch : Iterables.partition(objectNames, DELETE_BATCH_SIZE)) {
+            storageChecksumRepository.deleteByObjectNames(batch);
+        }
+    }
+
+    @Override
+    public List<StorageChecksumEntity> listAfter(@Nullable String after, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit必须大于0: " + limit);
+        }
+        return storageChecksumRepository.findAfter(after == null ? "" : after, Limit.of(limit));
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public void markVerified(String objectName, String checksum) {
+        storageChecksumRepository.updateStatus(
+                objectName, checksum, ChecksumStatus.OK, LocalDateTime.now());
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public boolean markFailed(
+            StorageChecksumEntity entity,
+            ChecksumStatus status,
+            String reason,
+            boolean queueRepair) {
+        String objectName = entity.getObjectName();
+        String checksum = entity.getChecksum();
+        LocalDateTime now = LocalDateTime.now();
+        int updated =
+                storageChecksumRepository.compareAndUpdateStatus(
+                        objectName, checksum, ChecksumStatus.OK, status, now);
+        if (updated == 0) {
+            // 已记录过的失败只刷新巡检时间，不重复投递修复任务
+            storageChecksumRepository.updateStatus(objectName, checksum, status, now);
+            return false;
+        }
+        if (!queueRepair) {
+            return true;
+        }
+
+        DBQueue task = new DBQueue();
+        task.setQueueName(StorageQueueTask.QUEUE_NAME);
+        task.setTaskType(StorageQueueTask.INTEGRITY_REPAIR);
+        task.setTaskData(
+                ObjectMapperUtils.writeValueAsString(
+                        Map.of(
+                                "objectName",
+                                objectName,
+                                "checksum",
+                                checksum,
+                                "size",
+                                entity.getSize(),
+                                "reason",
+                                reason)));
+        dbQueueManager.enqueue(task);
+        log.debug("已投递对象修复任务: {}", objectName);
+        return true;
+    }
+
+    @Override
+    public boolean runScrubExclusively(Runnable scrub) {
+        // 锁绑定在连接上，巡检期间占用一个连接，节点宕机时随连接断开释放
+        ConnectionCallback<Boolean> callback =
+                con -> {
+                    if (!advisoryLock(con, TRY_LOCK_SQL)) {
+                        return false;
+                    }
+                    try {
+                        scrub.run();
+                        return true;
+                    } finally {
+                        advisoryLock(con, UNLOCK_SQL);
+                    }
+                };
+        return Boolean.TRUE.equals(jdbcTemplate.execute(callback));
+    }
+
+    private static boolean advisoryLock(Connection con, String sql) throws SQLException {
+        try (PreparedStatement ps = con.prepareStatement(sql)) {
+            ps.setLong(1, SCRUB_LOCK_KEY);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        }
+    }
+}
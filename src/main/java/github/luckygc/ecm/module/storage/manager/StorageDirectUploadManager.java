@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.manager;
+
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.domain.entity.StorageDirectUploadEntity;
+import java.util.Optional;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 预签名直传记录管理器接口 负责直传的登记及完成结果的记录
+ */
+public interface StorageDirectUploadManager {
+
+    /**
+     * 登记签发的直传（事务操作）
+     *
+     * @param objectName 对象名称
+     * @param filename 原始文件名
+     * @param expectedSize 声明的大小，未声明时为空
+     */
+    void register(String objectName, String filename, @Nullable Long expectedSize);
+
+    /**
+     * 查找直传记录
+     *
+     * @param objectName 对象名称
+     * @return 直传记录，未签发时为空
+     */
+    Optional<StorageDirectUploadEntity> find(String objectName);
+
+    /**
+     * 记录直传完成，已完成时忽略（事务操作）
+     *
+     * @param metadata 存储中的对象元数据
+     * @return 是否由等待确认变为已完成
+     */
+    boolean complete(ObjectMetadata metadata);
+}
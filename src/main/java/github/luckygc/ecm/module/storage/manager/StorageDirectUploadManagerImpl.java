@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.manager;
+
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.domain.entity.StorageDirectUploadEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageDirectUploadEntity.DirectUploadStatus;
+import github.luckygc.ecm.module.storage.repository.StorageDirectUploadRepository;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.jspecify.annotations.Nullable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 预签名直传记录管理器实现类 完成状态以等待确认为条件更新，重复确认只记录一次
+ */
+@Component
+@RequiredArgsConstructor
+public class StorageDirectUploadManagerImpl implements StorageDirectUploadManager {
+
+    private final StorageDirectUploadRepository storageDirectUploadRepository;
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public void register(String objectName, String filename, @Nullable Long expectedSize) {
+        storageDirectUploadRepository.insert(
+                new StorageDirectUploadEntity()
+                        .setObjectName(objectName)
+                        .setFilename(filename)
+                        .setExpectedSize(expectedSize));
+    }
+
+    @Override
+    public Optional<StorageDirectUploadEntity> find(String objectName) {
+        return storageDirectUploadRepository.findByObjectName(objectName);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public boolean complete(ObjectMetadata metadata) {
+        return storageDirectUploadRepository.compareAndComplete(
+                        metadata.objectName(),
+                        DirectUploadStatus.PENDING,
+                        DirectUploadStatus.COMPLETED,
+                        metadata.size(),
+                        metadata.eTag(),
+                        LocalDateTime.now())
+                > 0;
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.manager;
+
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadChunkEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity.UploadSessionStatus;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 分片上传会话管理器接口 状态变更以当前状态为条件，并发的提交、取消只有一个生效
+ */
+public interface StorageUploadSessionManager {
+
+    /**
+     * 创建会话
+     *
+     * @param session 会话
+     */
+    void createSession(StorageUploadSessionEntity session);
+
+    /**
+     * 查询会话
+     *
+     * @param sessionId 会话ID
+     * @return 会话，不存在时为空
+     */
+    Optional<StorageUploadSessionEntity> findSession(Long sessionId);
+
+    /**
+     * 登记已接收的分片，重复上传的分片覆盖之前的记录（事务操作）
+     *
+     * @param sessionId 会话ID
+     * @param chunkNumber 分片号
+     * @param size 分片大小
+     * @param eTag S3分片ETag，可为空
+     */
+    void recordChunk(Long sessionId, int chunkNumber, long size, String eTag);
+
+    /**
+     * 按分片号顺序列出已接收的分片
+     *
+     * @param sessionId 会话ID
+     * @return 分片
+     */
+    List<StorageUploadChunkEntity> listChunks(Long sessionId);
+
+    /**
+     * 变更会话状态
+     *
+     * @param sessionId 会话ID
+     * @param expectedStatus 当前状态
+     * @param status 目标状态
+     * @return 当前状态不符时返回false
+     */
+    boolean transition(
+            Long sessionId, UploadSessionStatus expectedStatus, UploadSessionStatus status);
+
+    /**
+     * 结束会话并删除分片记录（事务操作）
+     *
+     * @param sessionId 会话ID
+     * @param expectedStatus 当前状态
+     * @param status 提交或取消
+     * @return 当前状态不符时返回false
+     */
+    boolean close(Long sessionId, UploadSessionStatus expectedStatus, UploadSessionStatus status);
+
+    /**
+     * 按过期时间顺序列出处于指定状态且在给定时间之前过期的会话
+     *
+     * @param status 上传中或提交中
+     * @param expireBefore 过期时间上限
+     * @param limit 最多返回的数量
+     * @return 会话
+     */
+    List<StorageUploadSessionEntity> listExpiredSessions(
+            UploadSessionStatus status, LocalDateTime expireBefore, int limit);
+}
@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.manager;
+
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadChunkEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity.UploadSessionStatus;
+import github.luckygc.ecm.module.storage.repository.StorageUploadSessionRepository;
+import jakarta.data.Limit;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 分片上传会话管理器实现类
+ */
+@Component
+@RequiredArgsConstructor
+public class StorageUploadSessionManagerImpl implements StorageUploadSessionManager {
+
+    private final StorageUploadSessionRepository storageUploadSessionRepository;
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public void createSession(StorageUploadSessionEntity session) {
+        storageUploadSessionRepository.insertSession(session);
+    }
+
+    @Override
+    public Optional<StorageUploadSessionEntity> findSession(Long sessionId) {
+        return storageUploadSessionRepository.findSessionById(sessionId);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public void recordChunk(Long sessionId, int chunkNumber, long size, String eTag) {
+        storageUploadSessionRepository.deleteChunk(sessionId, chunkNumber);
+        storageUploadSessionRepository.insertChunk(
+                new StorageUploadChunkEntity()
+                        .setSessionId(sessionId)
+                        .setChunkNumber(chunkNumber)
+                        .setSize(size)
+                        .setETag(eTag));
+    }
+
+    @Override
+    public List<StorageUploadChunkEntity> listChunks(Long sessionId) {
+        return storageUploadSessionRepository.findChunks(sessionId);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public boolean transition(
+            Long sessionId, UploadSessionStatus expectedStatus, UploadSessionStatus status) {
+        return storageUploadSessionRepository.compareAndUpdateStatus(
+                        sessionId, expectedStatus, status)
+                > 0;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public boolean close(
+            Long sessionId, UploadSessionStatus expectedStatus, UploadSessionStatus status) {
+        if (storageUploadSessionRepository.compareAndUpdateStatus(sessionId, expectedStatus, status)
+                == 0) {
+            return false;
+        }
+        storageUploadSessionRepository.deleteChunks(sessionId);
+        return true;
+    }
+
+    @Override
+    public List<StorageUploadSessionEntity> listExpiredSessions(
+            UploadSessionStatus status, LocalDateTime expireBefore, int limit) {
+        return storageUploadSessionRepository.findExpiredSessions(
+                status, expireBefore, Limit.of(limit));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.repository;
+
+import github.luckygc.ecm.module.storage.domain.entity.StorageBlobEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageObjectRefEntity;
+import jakarta.data.Limit;
+import jakarta.data.repository.Find;
+import jakarta.data.repository.Insert;
+import jakarta.data.repository.Query;
+import jakarta.data.repository.Repository;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 内容寻址存储仓库 维护数据块及其引用
+ */
+@Repository
+public interface StorageBlobRepository {
+
+    @Find
+    Optional<StorageBlobEntity> findBlobByDigest(String digest);
+
+    @Query("from StorageBlob where digest in :digests")
+    List<StorageBlobEntity> findBlobsByDigests(List<String> digests);
+
+    @Insert
+    void insertBlob(StorageBlobEntity storageBlobEntity);
+
+    @Query("update StorageBlob set refCount = refCount + 1 where digest = :digest")
+    int incrementRefCount(String digest);
+
+    @Query("update StorageBlob set refCount = refCount - 1 where digest = :digest")
+    int decrementRefCount(String digest);
+
+    @Query("delete from StorageBlob where digest = :digest and refCount <= 0")
+    int deleteUnreferencedBlob(String digest);
+
+    @Find
+    Optional<StorageObjectRefEntity> findRefByObjectName(String objectName);
+
+    @Query("from StorageObjectRef where objectName in :objectNames")
+    List<StorageObjectRefEntity> findRefsByObjectNames(List<String> objectNames);
+
+    @Insert
+    void insertRef(StorageObjectRefEntity storageObjectRefEntity);
+
+    @Query("delete from StorageObjectRef where objectName = :objectName")
+    int deleteRefByObjectName(String objectName);
+
+    @Query(
+            "select objectName from StorageObjectRef"
+                    + " where objectName like :pattern and objectName > :after order by objectName")
+    List<String> findObjectNamesLikeAfter(String pattern, String after, Limit limit);
+}
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.repository;
+
+import github.luckygc.ecm.module.storage.domain.entity.StorageChecksumEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageChecksumEntity.ChecksumStatus;
+import jakarta.data.Limit;
+import jakarta.data.repository.Find;
+import jakarta.data.repository.Insert;
+import jakarta.data.repository.Query;
+import jakarta.data.repository.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 对象校验和仓库
+ */
+@Repository
+public interface StorageChecksumRepository {
+
+    @Insert
+    void insert(StorageChecksumEntity storageChecksumEntity);
+
+    @Find
+    Optional<StorageChecksumEntity> findByObjectName(String objectName);
+
+    @Query("delete from StorageChecksum where objectName = :objectName")
+    int deleteByObjectName(String objectName);
+
+    @Query("delete from StorageChecksum where objectName in :objectNames")
+    int deleteByObjectNames(List<String> objectNames);
+
+    @Query("from StorageChecksum where objectName > :after order by objectName")
+    List<StorageChecksumEntity> findAfter(String after, Limit limit);
+
+    @Query(
+            "update StorageChecksum set status = :status, verifyTime = :verifyTime"
+                    + " where objectName = :objectName and checksum = :checksum")
+    int updateStatus(
+            String objectName, String checksum, ChecksumStatus status, LocalDateTime verifyTime);
+
+    @Query(
+            "update StorageChecksum set status = :status, verifyTime = :verifyTime"
+                    + " where objectName = :objectName and checksum = :checksum"
+                    + " and status = :expectedStatus")
+    int compareAndUpdateStatus(
+            String objectName,
+            String checksum,
+            ChecksumStatus expectedStatus,
+            ChecksumStatus status,
+            LocalDateTime verifyTime);
+}
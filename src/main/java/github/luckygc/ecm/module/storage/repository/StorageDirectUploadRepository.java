@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.repository;
+
+import github.luckygc.ecm.module.storage.domain.entity.StorageDirectUploadEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageDirectUploadEntity.DirectUploadStatus;
+import jakarta.data.repository.Find;
+import jakarta.data.repository.Insert;
+import jakarta.data.repository.Query;
+import jakarta.data.repository.Repository;
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+/**
+ * 预签名直传记录仓库
+ */
+@Repository
+public interface StorageDirectUploadRepository {
+
+    @Insert
+    void insert(StorageDirectUploadEntity storageDirectUploadEntity);
+
+    @Find
+    Optional<StorageDirectUploadEntity> findByObjectName(String objectName);
+
+    @Query(
+            "update StorageDirectUpload set status = :status, size = :size, eTag = :eTag,"
+                    + " completeTime = :completeTime"
+                    + " where objectName = :objectName and status = :expectedStatus")
+    int compareAndComplete(
+            String objectName,
+            DirectUploadStatus expectedStatus,
+            DirectUploadStatus status,
+            Long size,
+            String eTag,
+            LocalDateTime completeTime);
+}
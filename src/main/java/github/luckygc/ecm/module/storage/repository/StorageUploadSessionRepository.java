@@ -0,0 +1,69 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.repository;
+
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadChunkEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity.UploadSessionStatus;
+import jakarta.data.Limit;
+import jakarta.data.repository.Find;
+import jakarta.data.repository.Insert;
+import jakarta.data.repository.Query;
+import jakarta.data.repository.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 分片上传会话仓库 维护会话及其已接收的分片
+ */
+@Repository
+public interface StorageUploadSessionRepository {
+
+    @Insert
+    void insertSession(StorageUploadSessionEntity storageUploadSessionEntity);
+
+    @Find
+    Optional<StorageUploadSessionEntity> findSessionById(Long id);
+
+    @Query(
+            "update StorageUploadSession set status = :status"
+                    + " where id = :id and status = :expectedStatus")
+    int compareAndUpdateStatus(
+            Long id, UploadSessionStatus expectedStatus, UploadSessionStatus status);
+
+    @Query(
+            "from StorageUploadSession where status = :status and expireTime < :time"
+                    + " order by expireTime")
+    List<StorageUploadSessionEntity> findExpiredSessions(
+            UploadSessionStatus status, LocalDateTime time, Limit limit);
+
+    @Insert
+    void insertChunk(StorageUploadChunkEntity storageUploadChunkEntity);
+
+    @Query(
+            "delete from StorageUploadChunk"
+                    + " where sessionId = :sessionId and chunkNumber = :chunkNumber")
+    int deleteChunk(Long sessionId, Integer chunkNumber);
+
+    @Query("delete from StorageUploadChunk where sessionId = :sessionId")
+    int deleteChunks(Long sessionId);
+
+    @Query("from StorageUploadChunk where sessionId = :sessionId order by chunkNumber")
+    List<StorageUploadChunkEntity> findChunks(Long sessionId);
+}
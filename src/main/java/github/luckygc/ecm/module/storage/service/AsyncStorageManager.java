@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service;
+
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 异步存储服务 方法立即返回，I/O完成后结束返回的future，调用方无需为每次传输占用一个线程.
+ * 失败时future以对应的IOException或运行时异常异常结束.
+ */
+public interface AsyncStorageManager {
+
+    /**
+     * 上传本地文件
+     *
+     * @param filePath 本地文件路径
+     * @return 对象名称
+     */
+    CompletableFuture<String> uploadFile(Path filePath);
+
+    /**
+     * 上传输入流 调用方在future结束前不得关闭输入流
+     *
+     * @param inputStream 输入流
+     * @param contentLength 内容长度
+     * @param filename 原始文件名
+     * @return 对象名称
+     */
+    CompletableFuture<String> uploadStream(
+            InputStream inputStream, long contentLength, String filename);
+
+    /**
+     * 下载文件 响应头到达后即结束，内容通过返回的输入流按需读取
+     *
+     * @param objectName 对象名称
+     * @return 文件输入流，使用完毕后需要关闭
+     */
+    CompletableFuture<InputStream> downloadFile(String objectName);
+
+    /**
+     * 读取对象的一个字节区间
+     *
+     * @param objectName 对象名称
+     * @param offset 起始偏移量
+     * @param length 读取长度
+     * @return 区间内容输入流，使用完毕后需要关闭
+     */
+    CompletableFuture<InputStream> downloadRange(String objectName, long offset, long length);
+
+    /**
+     * 查询对象元数据
+     *
+     * @param objectName 对象名称
+     * @return 对象元数据，对象不存在时为空
+     */
+    CompletableFuture<Optional<ObjectMetadata>> stat(String objectName);
+
+    CompletableFuture<Void> deleteFile(String objectName);
+
+    CompletableFuture<Boolean> fileExists(String objectName);
+}
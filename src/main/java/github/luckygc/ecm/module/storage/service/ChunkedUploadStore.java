@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service;
+
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadChunkEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 分片上传的分片存放 分片直接写入本地暂存文件或S3分片，提交时合并为会话的目标对象
+ */
+public interface ChunkedUploadStore {
+
+    /**
+     * 打开会话
+     *
+     * @param objectName 目标对象名称
+     * @return S3分片上传标识或本地暂存目录名
+     */
+    @Nullable String open(String objectName) throws IOException;
+
+    /**
+     * 写入分片，同一分片号重复写入时覆盖
+     *
+     * @param session 会话
+     * @param chunkNumber 分片号，从1开始
+     * @param inputStream 分片内容
+     * @param contentLength 分片大小
+     * @return S3分片ETag，分片暂存在本地时为空
+     */
+    @Nullable String writeChunk(
+            StorageUploadSessionEntity session,
+            int chunkNumber,
+            InputStream inputStream,
+            long contentLength)
+            throws IOException;
+
+    /**
+     * 按分片号顺序合并分片为目标对象
+     *
+     * @param session 会话
+     * @param chunks 全部分片，按分片号排序
+     */
+    void commit(StorageUploadSessionEntity session, List<StorageUploadChunkEntity> chunks)
+            throws IOException;
+
+    /**
+     * 丢弃会话的全部分片
+     *
+     * @param session 会话
+     */
+    void abort(StorageUploadSessionEntity session) throws IOException;
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import github.luckygc.ecm.module.storage.domain.dto.UploadResult;
+import github.luckygc.ecm.util.ContentSniffer;
+import github.luckygc.ecm.util.ContentSniffer.ImageSize;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 在读取的同时检查内容的输入流 累计大小和SHA-256、保留文件头用于识别类型和图片尺寸，
+ * PDF则逐字节统计页对象数量. 结果只反映实际读出的字节，应在写入方读完后再获取.
+ */
+public final class InspectingInputStream extends FilterInputStream {
+
+    private static final byte[] PDF = "%PDF-".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TYPE = "/Type".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] PAGE = "/Page".getBytes(StandardCharsets.US_ASCII);
+
+    private final Hasher hasher = Hashing.sha256().newHasher();
+    private final byte[] head = new byte[ContentSniffer.HEAD_BYTES];
+    private int headLength;
+    private long count;
+
+    private boolean pdf;
+    private int typeMatched;
+    // 匹配到/Type之后已匹配的/Page字符数，-1表示不在/Type之后
+    private int pageMatched = -1;
+    private int pageCount;
+
+    public InspectingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        int b = in.read();
+        if (b != -1) {
+            inspect(new byte[] {(byte) b}, 0, 1);
+        }
+        return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int read = in.read(b, off, len);
+        if (read > 0) {
+            inspect(b, off, read);
+        }
+        return read;
+    }
+
+    /**
+     * 跳过的内容同样需要计入摘要，因此读取后丢弃
+     */
+    @Override
+    public long skip(long n) throws IOException {
+        byte[] buffer = new byte[(int) Math.min(Math.max(n, 0), 8192)];
+        long skipped = 0;
+        while (skipped < n) {
+            int read = read(buffer, 0, (int) Math.min(buffer.length, n - skipped));
+            if (read < 0) {
+                break;
+            }
+            skipped += read;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {}
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("不支持reset");
+    }
+
+    /**
+     * 生成上传结果，只能调用一次
+     *
+     * @param objectName 对象名称
+     * @param filename 原始文件名，文件头无法确定类型时参考扩展名
+     * @return 上传结果
+     */
+    public UploadResult toUploadResult(String objectName, String filename) {
+        ImageSize imageSize = ContentSniffer.readImageSize(head, headLength);
+        return new UploadResult(
+                objectName,
+                count,
+                hasher.hash().toString(),
+                ContentSniffer.detectContentType(head, headLength, filename),
+                pdf && pageCount > 0 ? pageCount : null,
+                imageSize != null ? imageSize.width() : null,
+                imageSize != null ? imageSize.height() : null);
+    }
+
+    private void inspect(byte[] b, int off, int len) {
+        hasher.putBytes(b, off, len);
+        count += len;
+        if (headLength < head.length) {
+            int copied = Math.min(len, head.length - headLength);
+            System.arraycopy(b, off, head, headLength, copied);
+            boolean checkPdf = headLength < PDF.length && headLength + copied >= PDF.length;
+            headLength += copied;
+            if (checkPdf) {
+                pdf = Arrays.equals(head, 0, PDF.length, PDF, 0, PDF.length);
+            }
+        }
+        if (pdf) {
+            for (int i = off; i < off + len; i++) {
+                scanPdf(b[i]);
+            }
+        }
+    }
+
+    /**
+     * 统计/Type /Page出现的次数，与/Type /Pages区分. 页对象位于压缩的对象流中时无法统计
+     */
+    private void scanPdf(byte b) {
+        if (pageMatched == PAGE.length) {
+            if (!Character.isLetterOrDigit(b)) {
+                pageCount++;
+            }
+            pageMatched = -1;
+        } else if (pageMatched >= 0) {
+            if (b == PAGE[pageMatched]) {
+                pageMatched++;
+                return;
+            }
+            if (pageMatched == 0 && isPdfWhitespace(b)) {
+                return;
+            }
+            pageMatched = -1;
+        }
+
+        if (b == TYPE[typeMatched]) {
+            typeMatched++;
+            if (typeMatched == TYPE.length) {
+                typeMatched = 0;
+                pageMatched = 0;
+            }
+        } else {
+            typeMatched = b == TYPE[0] ? 1 : 0;
+        }
+    }
+
+    private static boolean isPdfWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t' || b == '\f' || b == 0;
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service;
+
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 按续传标记逐页拉取对象名称的迭代器 同一时刻只持有一页数据
+ */
+final class ObjectListingIterator implements Iterator<String> {
+
+    static final int PAGE_SIZE = 1000;
+
+    private final StorageManager storageManager;
+    private final String prefix;
+    private List<String> page = List.of();
+    private int index;
+    private @Nullable String continuationToken;
+    private boolean lastPage;
+
+    ObjectListingIterator(StorageManager storageManager, String prefix) {
+        this.storageManager = storageManager;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (index >= page.size()) {
+            if (lastPage) {
+                return false;
+            }
+            fetchNextPage();
+        }
+        return true;
+    }
+
+    @Override
+    public String next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return page.get(index++);
+    }
+
+    private void fetchNextPage() {
+        ObjectListing listing;
+        try {
+            listing = storageManager.listFiles(prefix, continuationToken, PAGE_SIZE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        page = listing.objectNames();
+        index = 0;
+        continuationToken = listing.nextContinuationToken();
+        lastPage = continuationToken == null;
+    }
+}
@@ -17,10 +17,27 @@
 
 package github.luckygc.ecm.module.storage.service;
 
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.domain.dto.UploadResult;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.jspecify.annotations.Nullable;
 
 /**
  * 存储服务接口 支持本地存储、S3协议
@@ -29,11 +46,176 @@ public interface StorageManager {
 
     String uploadFile(Path filePath) throws IOException;
 
+    /**
+     * 流式上传文件，数据直接写入存储，不经过临时文件
+     *
+     * @param inputStream 文件内容，由调用方负责关闭
+     * @param contentLength 内容长度，小于0表示长度未知
+     * @param filename 原始文件名
+     * @return 对象名称
+     */
+    String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException;
+
+    /**
+     * 流式上传文件，数据直接写入存储，不经过临时文件
+     *
+     * @param channel 文件内容，由调用方负责关闭
+     * @param contentLength 内容长度，小于0表示长度未知
+     * @param filename 原始文件名
+     * @return 对象名称
+     */
+    default String uploadStream(ReadableByteChannel channel, long contentLength, String filename)
+            throws IOException {
+        return uploadStream(Channels.newInputStream(channel), contentLength, filename);
+    }
+
+    /**
+     * 流式上传文件，并在同一次读取中得到大小、SHA-256、按文件头识别的类型以及PDF页数、图片尺寸
+     *
+     * @param inputStream 文件内容，由调用方负责关闭
+     * @param contentLength 内容长度，小于0表示长度未知
+     * @param filename 原始文件名
+     * @return 上传结果
+     */
+    default UploadResult uploadInspected(
+            InputStream inputStream, long contentLength, String filename) throws IOException {
+        InspectingInputStream inspectingInputStream = new InspectingInputStream(inputStream);
+        String objectName = uploadStream(inspectingInputStream, contentLength, filename);
+        return inspectingInputStream.toUploadResult(objectName, filename);
+    }
+
+    /**
+     * 以指定的对象名称写入，已存在时覆盖. 用于在存储之间迁移对象，保持对象名称不变.
+     *
+     * @param objectName 对象名称
+     * @param inputStream 文件内容，由调用方负责关闭
+     * @param contentLength 内容长度，小于0表示长度未知
+     */
+    void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException;
+
     InputStream downloadFile(String objectName) throws IOException;
 
+    /**
+     * 读取对象的指定区间
+     *
+     * @param objectName 对象名称
+     * @param offset 起始偏移量
+     * @param length 读取长度，超出对象末尾的部分被忽略
+     * @return 区间内容
+     */
+    InputStream downloadRange(String objectName, long offset, long length) throws IOException;
+
+    /**
+     * 查询对象元数据
+     *
+     * @param objectName 对象名称
+     * @return 对象元数据，对象不存在时为空
+     */
+    Optional<ObjectMetadata> stat(String objectName) throws IOException;
+
+    /**
+     * 批量查询对象元数据 默认逐个查询，存储后端应尽量合并请求. 合并请求的结果可能不含写入时保存的MIME类型，
+     * 此时按对象名称推断，与{@link #stat}的结果不一定相同，需要准确的MIME类型时使用{@link #stat}
+     *
+     * @param objectNames 对象名称
+     * @return 对象名称到元数据的映射，按传入顺序排列，不存在的对象不在其中
+     */
+    default Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        Map<String, ObjectMetadata> result = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            Optional<ObjectMetadata> metadata = stat(objectName);
+            if (metadata.isPresent()) {
+                result.put(objectName, metadata.get());
+            }
+        }
+        return result;
+    }
+
     void deleteFile(String objectName) throws IOException;
 
+    /**
+     * 批量删除对象 不存在的对象视为删除成功，单个对象删除失败不影响其余对象
+     *
+     * @param objectNames 对象名称
+     * @return 删除失败的对象，全部成功时为空
+     */
+    default List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        List<DeleteFailure> failures = new ArrayList<>();
+        for (String objectName : objectNames) {
+            try {
+                deleteFile(objectName);
+            } catch (IOException | RuntimeException e) {
+                failures.add(new DeleteFailure(objectName, String.valueOf(e.getMessage())));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * 复制对象，目标已存在时覆盖，源和目标相同时不做任何操作. 默认读出后重新写入，存储后端应尽量在服务端完成
+     *
+     * @param sourceObjectName 源对象名称
+     * @param targetObjectName 目标对象名称
+     * @throws FileNotFoundException 源对象不存在
+     */
+    default void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        ObjectMetadata metadata =
+                stat(sourceObjectName)
+                        .orElseThrow(() -> new FileNotFoundException("文件不存在: " + sourceObjectName));
+        try (InputStream inputStream = downloadFile(sourceObjectName)) {
+            putStream(targetObjectName, inputStream, metadata.size());
+        }
+    }
+
+    /**
+     * 移动对象，目标已存在时覆盖，源和目标相同时不做任何操作. 默认复制后删除源对象
+     *
+     * @param sourceObjectName 源对象名称
+     * @param targetObjectName 目标对象名称
+     * @throws FileNotFoundException 源对象不存在
+     */
+    default void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        copyFile(sourceObjectName, targetObjectName);
+        deleteFile(sourceObjectName);
+    }
+
     boolean fileExists(String objectName) throws IOException;
 
     List<String> listFiles(String prefix) throws IOException;
+
+    /**
+     * 分页列出对象名称
+     *
+     * @param prefix 前缀，可为空
+     * @param continuationToken 上一页返回的续传标记，首页传空
+     * @param maxKeys 本页最多返回的数量
+     * @return 一页结果
+     */
+    ObjectListing listFiles(String prefix, @Nullable String continuationToken, int maxKeys)
+            throws IOException;
+
+    /**
+     * 惰性遍历对象名称，按需逐页拉取，内存占用与对象总数无关. 返回的流使用完毕后需要关闭.
+     *
+     * @param prefix 前缀，可为空
+     * @return 对象名称流
+     */
+    default Stream<String> streamFiles(String prefix) throws IOException {
+        return StreamSupport.stream(
+                Spliterators.spliteratorUnknownSize(
+                        new ObjectListingIterator(this, prefix),
+                        Spliterator.ORDERED | Spliterator.NONNULL),
+                false);
+    }
 }
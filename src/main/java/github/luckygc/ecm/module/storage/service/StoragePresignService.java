@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service;
+
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.domain.dto.PresignedUrlDTO;
+import github.luckygc.ecm.module.storage.domain.request.PresignUploadRequest;
+import java.io.IOException;
+
+/**
+ * 预签名直传服务 签发短时有效的地址，文件内容由客户端与对象存储直接传输，不经过应用服务器
+ */
+public interface StoragePresignService {
+
+    /**
+     * 签发上传地址 对象名称由服务端生成
+     *
+     * @param presignUploadRequest 上传请求
+     * @return 预签名PUT地址
+     */
+    PresignedUrlDTO presignUpload(PresignUploadRequest presignUploadRequest);
+
+    /**
+     * 签发下载地址
+     *
+     * @param objectName 对象名称
+     * @return 预签名GET地址
+     */
+    PresignedUrlDTO presignDownload(String objectName) throws IOException;
+
+    /**
+     * 确认直传完成 校验对象已签发且已存在于存储中，记录对象的大小和ETag，重复确认时不再记录
+     *
+     * @param objectName 对象名称
+     * @return 对象元数据
+     */
+    ObjectMetadata completeUpload(String objectName) throws IOException;
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service;
+
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.domain.dto.UploadSessionDTO;
+import github.luckygc.ecm.module.storage.domain.request.OpenUploadSessionRequest;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * 分片上传服务 客户端创建会话后并行上传分片，全部分片到达后提交，中断后可查询已接收的分片继续上传
+ */
+public interface StorageUploadSessionService {
+
+    /**
+     * 创建会话 对象名称和分片大小由服务端决定
+     *
+     * @param openUploadSessionRequest 创建请求
+     * @return 会话
+     */
+    UploadSessionDTO openSession(OpenUploadSessionRequest openUploadSessionRequest)
+            throws IOException;
+
+    /**
+     * 查询会话及已接收的分片
+     *
+     * @param sessionId 会话ID
+     * @return 会话
+     */
+    UploadSessionDTO getSession(Long sessionId);
+
+    /**
+     * 上传分片 同一分片可以重复上传，以最后一次为准
+     *
+     * @param sessionId 会话ID
+     * @param chunkNumber 分片号，从1开始
+     * @param inputStream 分片内容
+     * @param contentLength 分片大小，必须与会话约定的一致
+     */
+    void uploadChunk(Long sessionId, int chunkNumber, InputStream inputStream, long contentLength)
+            throws IOException;
+
+    /**
+     * 提交会话 校验全部分片已到达后合并为目标对象
+     *
+     * @param sessionId 会话ID
+     * @return 对象元数据
+     */
+    ObjectMetadata commitSession(Long sessionId) throws IOException;
+
+    /**
+     * 取消会话并丢弃已上传的分片
+     *
+     * @param sessionId 会话ID
+     */
+    void abortSession(Long sessionId) throws IOException;
+}
@@ -0,0 +1,504 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 本地磁盘读缓存 下载时边读边写入缓存文件，按LRU淘汰，总大小不超过配置上限.
+ * 覆盖、删除、复制和移动在写入底层存储前后都会失效缓存，并作废进行中的填充，避免填充完成时写回旧内容；
+ * 其他节点修改的对象在本节点缓存淘汰前仍可读到.
+ */
+@Slf4j
+public class CachingStorageManager extends ForwardingStorageManager implements MeterBinder {
+
+    private static final String CACHE_FILE_PREFIX = "cache-";
+    private static final String CACHE_FILE_SUFFIX = ".bin";
+
+    private final Path cacheDirectory;
+    private final long maxBytes;
+    private final long maxObjectBytes;
+
+    private final Lock lock = new ReentrantLock();
+
+    /**
+     * 按访问顺序排列，头部为最久未访问的条目
+     */
+    private final LinkedHashMap<String, CacheEntry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * 进行中的填充，失效时移除，填充完成时令牌已不一致的结果直接丢弃
+     */
+    private final Map<String, Object> fillTokens = new HashMap<>();
+
+    private long currentBytes;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public CachingStorageManager(StorageManager delegate, StorageProperties.Cache properties) {
+        super(delegate);
+        this.cacheDirectory = Paths.get(properties.getDirectory());
+        this.maxBytes = properties.getMaxBytes();
+        this.maxObjectBytes = Math.min(properties.getMaxObjectBytes(), properties.getMaxBytes());
+        resetCacheDirectory();
+    }
+
+    /**
+     * 缓存文件重启后无法还原索引，因此启动时清空. 只删除本类创建的缓存文件，
+     * 缓存目录误配置为共享目录时不会误删其他文件
+     */
+    private void resetCacheDirectory() {
+        try {
+            Files.createDirectories(cacheDirectory);
+            try (DirectoryStream<Path> stream =
+                    Files.newDirectoryStream(
+                            cacheDirectory, CACHE_FILE_PREFIX + "*" + CACHE_FILE_SUFFIX)) {
+                for (Path path : stream) {
+                    if (Files.isRegularFile(path)) {
+                        Files.deleteIfExists(path);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("初始化缓存目录失败: " + cacheDirectory, e);
+        }
+    }
+
+    @Override
+    public String uploadStream(ReadableByteChannel channel, long contentLength, String filename)
+            throws IOException {
+        return delegate.uploadStream(channel, contentLength, filename);
+    }
+
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        invalidate(objectName);
+        try {
+            delegate.putStream(objectName, inputStream, contentLength);
+        } finally {
+            // 写入期间开始的填充可能读到旧内容
+            invalidate(objectName);
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        CacheEntry entry = get(objectName);
+        if (entry != null) {
+            try {
+                InputStream inputStream = Files.newInputStream(entry.path());
+                hits.increment();
+                bytesSaved.add(entry.size());
+                return inputStream;
+            } catch (NoSuchFileException e) {
+                // 查找之后被淘汰
+                invalidate(objectName);
+            }
+        }
+
+        misses.increment();
+        // 先登记令牌再打开底层对象，打开之后完成的覆盖或删除一定能作废本次填充
+        Object token = new Object();
+        lock.lock();
+        try {
+            fillTokens.put(objectName, token);
+        } finally {
+            lock.unlock();
+        }
+
+        InputStream inputStream;
+        try {
+            inputStream = delegate.downloadFile(objectName);
+        } catch (IOException | RuntimeException e) {
+            release(objectName, token);
+            throw e;
+        }
+        Path tempFile;
+        try {
+            tempFile = Files.createTempFile(cacheDirectory, CACHE_FILE_PREFIX, CACHE_FILE_SUFFIX);
+        } catch (IOException e) {
+            log.warn("创建缓存文件失败，跳过缓存: {}", objectName, e);
+            release(objectName, token);
+            return inputStream;
+        }
+        try {
+            return new CacheFillingInputStream(inputStream, objectName, tempFile, token);
+        } catch (IOException e) {
+            log.warn("打开缓存文件失败，跳过缓存: {}", objectName, e);
+            deleteQuietly(tempFile);
+            release(objectName, token);
+            return inputStream;
+        }
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        CacheEntry entry = get(objectName);
+        if (entry != null) {
+            try {
+                InputStream inputStream = FileRegionInputStream.open(entry.path(), offset, length);
+                hits.increment();
+                bytesSaved.add(Math.max(0, Math.min(length, entry.size() - offset)));
+                return inputStream;
+            } catch (NoSuchFileException e) {
+                invalidate(objectName);
+            }
+        }
+
+        // 区间读取不填充缓存
+        misses.increment();
+        return delegate.downloadRange(objectName, offset, length);
+    }
+
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        invalidate(targetObjectName);
+        try {
+            delegate.copyFile(sourceObjectName, targetObjectName);
+        } finally {
+            invalidate(targetObjectName);
+        }
+    }
+
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            delegate.moveFile(sourceObjectName, targetObjectName);
+            return;
+        }
+
+        invalidate(sourceObjectName);
+        invalidate(targetObjectName);
+        try {
+            delegate.moveFile(sourceObjectName, targetObjectName);
+        } finally {
+            invalidate(sourceObjectName);
+            invalidate(targetObjectName);
+        }
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws IOException {
+        invalidate(objectName);
+        try {
+            delegate.deleteFile(objectName);
+        } finally {
+            invalidate(objectName);
+        }
+    }
+
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        objectNames.forEach(this::invalidate);
+        try {
+            return delegate.deleteFiles(objectNames);
+        } finally {
+            objectNames.forEach(this::invalidate);
+        }
+    }
+
+    @Override
+    public boolean fileExists(String objectName) throws IOException {
+        return get(objectName) != null || delegate.fileExists(objectName);
+    }
+
+    @Override
+    public Stream<String> streamFiles(String prefix) throws IOException {
+        return delegate.streamFiles(prefix);
+    }
+
+    private @Nullable CacheEntry get(String objectName) {
+        lock.lock();
+        try {
+            return entries.get(objectName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void invalidate(String objectName) {
+        CacheEntry removed;
+        lock.lock();
+        try {
+            fillTokens.remove(objectName);
+            removed = entries.remove(objectName);
+            if (removed != null) {
+                currentBytes -= removed.size();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (removed != null) {
+            deleteQuietly(removed.path());
+        }
+    }
+
+    /**
+     * 填充文件直接作为缓存文件，每次填充的文件名都不同，失效时删除旧文件不会误删新填充的文件
+     */
+    private void commit(String objectName, Path cacheFile, long size, Object token) {
+        List<CacheEntry> evicted = new ArrayList<>();
+        lock.lock();
+        try {
+            if (fillTokens.get(objectName) != token) {
+                // 填充期间对象被修改或删除，或已有更新的填充
+                evicted.add(new CacheEntry(cacheFile, size));
+                return;
+            }
+            fillTokens.remove(objectName);
+
+            CacheEntry previous = entries.put(objectName, new CacheEntry(cacheFile, size));
+            if (previous != null) {
+                currentBytes -= previous.size();
+                evicted.add(previous);
+            }
+            currentBytes += size;
+
+            Iterator<Map.Entry<String, CacheEntry>> iterator = entries.entrySet().iterator();
+            while (currentBytes > maxBytes && iterator.hasNext()) {
+                Map.Entry<String, CacheEntry> eldest = iterator.next();
+                if (eldest.getKey().equals(objectName)) {
+                    continue;
+                }
+                iterator.remove();
+                currentBytes -= eldest.getValue().size();
+                evicted.add(eldest.getValue());
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+            // 文件删除放在锁外
+            evicted.forEach(entry -> deleteQuietly(entry.path()));
+        }
+    }
+
+    /**
+     * 放弃填充，令牌仍属于本次填充时移除
+     */
+    private void release(String objectName, Object token) {
+        lock.lock();
+        try {
+            fillTokens.remove(objectName, token);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("删除缓存文件失败: {}", path, e);
+        }
+    }
+
+    private long cachedBytes() {
+        lock.lock();
+        try {
+            return currentBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("storage.cache.hits", hits, LongAdder::sum)
+                .description("缓存命中次数")
+                .register(registry);
+        FunctionCounter.builder("storage.cache.misses", misses, LongAdder::sum)
+                .description("缓存未命中次数")
+                .register(registry);
+        FunctionCounter.builder("storage.cache.evictions", evictions, LongAdder::sum)
+                .description("缓存淘汰次数")
+                .register(registry);
+        FunctionCounter.builder("storage.cache.bytes.saved", bytesSaved, LongAdder::sum)
+                .description("由缓存提供、无需访问底层存储的字节数")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        Gauge.builder("storage.cache.size", this, CachingStorageManager::cachedBytes)
+                .description("缓存占用的磁盘空间")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+        Gauge.builder("storage.cache.hit.ratio", this, CachingStorageManager::hitRatio)
+                .description("缓存命中率")
+                .register(registry);
+    }
+
+    private record CacheEntry(Path path, long size) {}
+
+    /**
+     * 边读边写入缓存文件 完整读到流末尾后才提交到缓存，中途关闭、跳过或超过单对象上限时放弃.
+     * 填充期间对象被失效时令牌不再匹配，读完也不提交
+     */
+    private final class CacheFillingInputStream extends FilterInputStream {
+
+        private final String objectName;
+        private final Path tempFile;
+        private final Object token;
+        private @Nullable OutputStream cacheOut;
+        private long written;
+        private boolean eof;
+
+        private CacheFillingInputStream(
+                InputStream in, String objectName, Path tempFile, Object token)
+                throws IOException {
+            super(in);
+            this.objectName = objectName;
+            this.tempFile = tempFile;
+            this.token = token;
+            this.cacheOut = Files.newOutputStream(tempFile);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                eof = true;
+            } else if (cacheOut != null) {
+                tee(new byte[] {(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n == -1) {
+                eof = true;
+            } else if (n > 0 && cacheOut != null) {
+                tee(b, off, n);
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            abandon();
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                finish();
+            }
+        }
+
+        private void tee(byte[] b, int off, int len) {
+            if (written + len > maxObjectBytes) {
+                abandon();
+                return;
+            }
+            try {
+                cacheOut.write(b, off, len);
+                written += len;
+            } catch (IOException e) {
+                log.warn("写入缓存文件失败: {}", objectName, e);
+                abandon();
+            }
+        }
+
+        private void finish() {
+            if (cacheOut == null) {
+                return;
+            }
+            try {
+                cacheOut.close();
+            } catch (IOException e) {
+                log.warn("关闭缓存文件失败: {}", objectName, e);
+                cacheOut = null;
+                release(objectName, token);
+                deleteQuietly(tempFile);
+                return;
+            }
+            cacheOut = null;
+
+            if (eof) {
+                commit(objectName, tempFile, written, token);
+            } else {
+                release(objectName, token);
+                deleteQuietly(tempFile);
+            }
+        }
+
+        private void abandon() {
+            if (cacheOut == null) {
+                return;
+            }
+            try {
+                cacheOut.close();
+            } catch (IOException e) {
+                log.debug("关闭缓存文件失败: {}", objectName, e);
+            }
+            cacheOut = null;
+            release(objectName, token);
+            deleteQuietly(tempFile);
+        }
+    }
+}
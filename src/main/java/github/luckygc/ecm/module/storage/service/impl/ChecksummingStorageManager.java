@@ -0,0 +1,411 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.MoreFiles;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.entity.StorageChecksumEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageChecksumEntity.ChecksumStatus;
+import github.luckygc.ecm.module.storage.manager.StorageChecksumManager;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 完整性校验存储 写入时在同一次读取中计算SHA-256并登记，后台巡检按限速重新读取对象比对校验和，
+ * 发现损坏或丢失的对象时记录状态. 存储后端为多副本存储时同时投递修复任务，由多副本存储以校验和一致的副本
+ * 重写其他副本；其他存储后端没有可用于修复的数据来源，只记录状态，由运维根据校验和表中的状态处理.
+ *
+ * <p>校验和表为集群共享，巡检通过数据库咨询锁只在一个节点上运行. 多节点部署本地存储时各节点须挂载同一目录，
+ * 否则巡检节点会把其他节点写入的对象判为丢失.
+ *
+ * <p>JVM无法设置线程的磁盘I/O优先级，巡检线程以最低线程优先级运行，并在前台传输数超过上限时暂停，
+ * 避免与前台读写争抢磁盘和网络.
+ */
+@Slf4j
+public class ChecksummingStorageManager extends ForwardingStorageManager implements MeterBinder {
+
+    private static final int PAGE_SIZE = 100;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * 前台传输繁忙时巡检的等待间隔
+     */
+    private static final long YIELD_MS = 200;
+
+    private final StorageChecksumManager storageChecksumManager;
+    private final boolean queueRepair;
+    private final RateLimiter rateLimiter;
+    private final int maxForegroundTransfers;
+
+    private final AtomicInteger foregroundTransfers = new AtomicInteger();
+
+    private final LongAdder verified = new LongAdder();
+    private final LongAdder corrupt = new LongAdder();
+    private final LongAdder missing = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder bytesScrubbed = new LongAdder();
+
+    private final ScheduledExecutorService scrubber;
+
+    public ChecksummingStorageManager(
+            StorageManager delegate,
+            StorageChecksumManager storageChecksumManager,
+            StorageProperties.Integrity properties,
+            boolean queueRepair) {
+        super(delegate);
+        this.storageChecksumManager = storageChecksumManager;
+        this.queueRepair = queueRepair;
+        this.rateLimiter = RateLimiter.create(properties.getScrubBytesPerSecond());
+        this.maxForegroundTransfers = properties.getScrubMaxForegroundTransfers();
+        this.scrubber =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("storage-scrubber-%d")
+                                .setPriority(Thread.MIN_PRIORITY)
+                                .setDaemon(true)
+                                .build());
+        scrubber.scheduleWithFixedDelay(
+                this::scrubQuietly,
+                properties.getScrubIntervalMs(),
+                properties.getScrubIntervalMs(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String uploadFile(Path filePath) throws IOException {
+        foregroundTransfers.incrementAndGet();
+        try {
+            String checksum = MoreFiles.asByteSource(filePath).hash(Hashing.sha256()).toString();
+            String objectName = delegate.uploadFile(filePath);
+            record(objectName, checksum, Files.size(filePath));
+            return objectName;
+        } finally {
+            foregroundTransfers.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        foregroundTransfers.incrementAndGet();
+        try {
+            CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+            HashingInputStream hashingInputStream =
+                    new HashingInputStream(Hashing.sha256(), countingInputStream);
+            String objectName =
+                    delegate.uploadStream(hashingInputStream, contentLength, filename);
+            record(
+                    objectName,
+                    hashingInputStream.hash().toString(),
+                    countingInputStream.getCount());
+            return objectName;
+        } finally {
+            foregroundTransfers.decrementAndGet();
+        }
+    }
+
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        foregroundTransfers.incrementAndGet();
+        try {
+            CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+            HashingInputStream hashingInputStream =
+                    new HashingInputStream(Hashing.sha256(), countingInputStream);
+            delegate.putStream(objectName, hashingInputStream, contentLength);
+            storageChecksumManager.record(
+                    objectName,
+                    hashingInputStream.hash().toString(),
+                    countingInputStream.getCount());
+        } finally {
+            foregroundTransfers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 登记失败时删除刚写入的对象，避免留下没有校验和的对象
+     */
+    private void record(String objectName, String checksum, long size) throws IOException {
+        try {
+            storageChecksumManager.record(objectName, checksum, size);
+        } catch (RuntimeException e) {
+            delegate.deleteFile(objectName);
+            throw e;
+        }
+    }
+
+    /**
+     * 服务端复制不经过本服务，目标沿用源对象的校验和，源对象未登记时清除目标的旧校验和
+     */
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+        Optional<StorageChecksumEntity> source = storageChecksumManager.find(sourceObjectName);
+        delegate.copyFile(sourceObjectName, targetObjectName);
+        copyRecord(source, targetObjectName);
+    }
+
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+        Optional<StorageChecksumEntity> source = storageChecksumManager.find(sourceObjectName);
+        delegate.moveFile(sourceObjectName, targetObjectName);
+        copyRecord(source, targetObjectName);
+        storageChecksumManager.removeAll(List.of(sourceObjectName));
+    }
+
+    private void copyRecord(Optional<StorageChecksumEntity> source, String targetObjectName) {
+        if (source.isPresent()) {
+            storageChecksumManager.record(
+                    targetObjectName, source.get().getChecksum(), source.get().getSize());
+        } else {
+            storageChecksumManager.removeAll(List.of(targetObjectName));
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        return track(() -> delegate.downloadFile(objectName));
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        return track(() -> delegate.downloadRange(objectName, offset, length));
+    }
+
+    /**
+     * 先删除校验和再删除对象，删除失败时留下的对象只是不再巡检，不会被误判为丢失
+     */
+    @Override
+    public void deleteFile(String objectName) throws IOException {
+        storageChecksumManager.removeAll(List.of(objectName));
+        delegate.deleteFile(objectName);
+    }
+
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        storageChecksumManager.removeAll(objectNames);
+        return delegate.deleteFiles(objectNames);
+    }
+
+    private InputStream track(IOSupplier<InputStream> opener) throws IOException {
+        foregroundTransfers.incrementAndGet();
+        InputStream inputStream;
+        try {
+            inputStream = opener.get();
+        } catch (IOException | RuntimeException e) {
+            foregroundTransfers.decrementAndGet();
+            throw e;
+        }
+        return new TrackedInputStream(inputStream);
+    }
+
+    private void scrubQuietly() {
+        try {
+            if (!storageChecksumManager.runScrubExclusively(this::scrubInterruptibly)) {
+                log.debug("其他节点正在巡检，跳过本轮巡检");
+            }
+        } catch (RuntimeException e) {
+            log.error("对象完整性巡检失败", e);
+        }
+    }
+
+    private void scrubInterruptibly() {
+        try {
+            scrub();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 按对象名称顺序遍历全部校验和，逐个读取对象重新计算
+     */
+    private void scrub() throws InterruptedException {
+        long startTime = System.currentTimeMillis();
+        long corruptBefore = corrupt.sum();
+        long missingBefore = missing.sum();
+        long count = 0;
+        String after = null;
+        while (true) {
+            List<StorageChecksumEntity> page = storageChecksumManager.listAfter(after, PAGE_SIZE);
+            for (StorageChecksumEntity entity : page) {
+                verify(entity);
+                count++;
+            }
+            if (page.size() < PAGE_SIZE) {
+                break;
+            }
+            after = page.get(page.size() - 1).getObjectName();
+        }
+
+        log.info(
+                "对象完整性巡检完成，对象数: {}，损坏: {}，丢失: {}，耗时: {}ms",
+                count,
+                corrupt.sum() - corruptBefore,
+                missing.sum() - missingBefore,
+                System.currentTimeMillis() - startTime);
+    }
+
+    private void verify(StorageChecksumEntity entity) throws InterruptedException {
+        String objectName = entity.getObjectName();
+        String expected = entity.getChecksum();
+        String actual;
+        long size = 0;
+        try (InputStream inputStream = delegate.downloadFile(objectName)) {
+            HashingInputStream hashingInputStream =
+                    new HashingInputStream(Hashing.sha256(), inputStream);
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while (true) {
+                awaitForegroundIdle();
+                read = hashingInputStream.read(buffer);
+                if (read < 0) {
+                    break;
+                }
+                if (read > 0) {
+                    rateLimiter.acquire(read);
+                    size += read;
+                    bytesScrubbed.add(read);
+                }
+            }
+            actual = hashingInputStream.hash().toString();
+        } catch (FileNotFoundException e) {
+            missing.increment();
+            fail(entity, ChecksumStatus.MISSING, "对象丢失");
+            return;
+        } catch (IOException e) {
+            // 读取失败可能是暂时的网络或磁盘问题，留待下次巡检
+            errors.increment();
+            log.warn("巡检读取对象失败: {}", objectName, e);
+            return;
+        }
+
+        if (size != entity.getSize() || !actual.equals(expected)) {
+            corrupt.increment();
+            fail(
+                    entity,
+                    ChecksumStatus.CORRUPT,
+                    "校验和不一致，期望" + expected + "/" + entity.getSize() + "字节，实际"
+                            + actual + "/" + size + "字节");
+            return;
+        }
+
+        verified.increment();
+        storageChecksumManager.markVerified(objectName, expected);
+    }
+
+    private void fail(StorageChecksumEntity entity, ChecksumStatus status, String reason) {
+        log.error("巡检发现对象异常: {}，{}", entity.getObjectName(), reason);
+        storageChecksumManager.markFailed(entity, status, reason, queueRepair);
+    }
+
+    private void awaitForegroundIdle() throws InterruptedException {
+        while (foregroundTransfers.get() > maxForegroundTransfers) {
+            Thread.sleep(YIELD_MS);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("storage.scrub.objects", verified, LongAdder::sum)
+                .description("巡检通过的对象数")
+                .tag("result", "ok")
+                .register(registry);
+        FunctionCounter.builder("storage.scrub.objects", corrupt, LongAdder::sum)
+                .description("巡检发现损坏的对象数")
+                .tag("result", "corrupt")
+                .register(registry);
+        FunctionCounter.builder("storage.scrub.objects", missing, LongAdder::sum)
+                .description("巡检发现丢失的对象数")
+                .tag("result", "missing")
+                .register(registry);
+        FunctionCounter.builder("storage.scrub.objects", errors, LongAdder::sum)
+                .description("巡检读取失败的对象数")
+                .tag("result", "error")
+                .register(registry);
+        FunctionCounter.builder("storage.scrub.bytes", bytesScrubbed, LongAdder::sum)
+                .description("巡检读取的字节数")
+                .baseUnit(BaseUnits.BYTES)
+                .register(registry);
+    }
+
+    @Override
+    public void close() throws Exception {
+        scrubber.shutdownNow();
+        scrubber.awaitTermination(30, TimeUnit.SECONDS);
+        super.close();
+    }
+
+    @FunctionalInterface
+    private interface IOSupplier<T> {
+
+        T get() throws IOException;
+    }
+
+    /**
+     * 关闭时结束前台传输计数，重复关闭只计一次
+     */
+    private final class TrackedInputStream extends FilterInputStream {
+
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private TrackedInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                foregroundTransfers.decrementAndGet();
+            }
+            super.close();
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.io.CountingInputStream;
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.util.StorageUtils;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * 透明压缩存储 按文件名推断的内容类型决定是否压缩，可压缩的对象以deflate流式压缩后写入底层存储，
+ * 并在开头写入标记头记录原始长度. 读取时识别标记头并流式解压，没有标记头的对象原样返回，
+ * 因此启用前写入的对象和跳过压缩的对象都不受影响.
+ */
+public class CompressingStorageManager extends ForwardingStorageManager {
+
+    /**
+     * 标记头魔数，首字节为非ASCII字符，避免与文本内容混淆
+     */
+    private static final byte[] MAGIC = {(byte) 0x89, 'E', 'C', 'M', 'Z', '\r', '\n', 0x1A};
+
+    private static final byte MODE_DEFLATE = 1;
+
+    /**
+     * 标记头: magic(8) | mode(1) | originalLength(8)
+     */
+    static final int HEADER_BYTES = MAGIC.length + 1 + Long.BYTES;
+
+    /**
+     * 原始长度不超过该值的对象在内存中压缩，以已知长度写入底层存储
+     */
+    private static final long BUFFERED_BYTES = 1024L * 1024;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final int level;
+    private final long minBytes;
+    private final List<String> contentTypes;
+
+    public CompressingStorageManager(
+            StorageManager delegate, StorageProperties.Compression properties) {
+        super(delegate);
+        this.level = properties.getLevel();
+        this.minBytes = properties.getMinBytes();
+        this.contentTypes = List.copyOf(properties.getContentTypes());
+    }
+
+    @Override
+    public String uploadFile(Path filePath) throws IOException {
+        String filename = filePath.getFileName().toString();
+        long size = Files.size(filePath);
+        if (!shouldCompress(filename, size)) {
+            return delegate.uploadFile(filePath);
+        }
+
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            return uploadStream(inputStream, size, filename);
+        }
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        if (!shouldCompress(filename, contentLength)) {
+            return delegate.uploadStream(inputStream, contentLength, filename);
+        }
+
+        CountingInputStream source = new CountingInputStream(inputStream);
+        Deflater deflater = new Deflater(level);
+        String objectName;
+        try {
+            if (contentLength <= BUFFERED_BYTES) {
+                byte[] compressed = compress(source, contentLength, deflater);
+                checkLength(source, contentLength);
+                return delegate.uploadStream(
+                        new ByteArrayInputStream(compressed), compressed.length, filename);
+            }
+            objectName =
+                    delegate.uploadStream(
+                            compressing(source, contentLength, deflater), -1, filename);
+        } finally {
+            deflater.end();
+        }
+
+        // 流式写入时长度不足也会写完，需在写入后校验并删除不完整的对象
+        try {
+            checkLength(source, contentLength);
+        } catch (EOFException e) {
+            delegate.deleteFile(objectName);
+            throw e;
+        }
+        return objectName;
+    }
+
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        if (!shouldCompress(objectName, contentLength)) {
+            delegate.putStream(objectName, inputStream, contentLength);
+            return;
+        }
+
+        CountingInputStream source = new CountingInputStream(inputStream);
+        Deflater deflater = new Deflater(level);
+        try {
+            if (contentLength <= BUFFERED_BYTES) {
+                byte[] compressed = compress(source, contentLength, deflater);
+                checkLength(source, contentLength);
+                delegate.putStream(
+                        objectName, new ByteArrayInputStream(compressed), compressed.length);
+                return;
+            }
+            delegate.putStream(objectName, compressing(source, contentLength, deflater), -1);
+        } finally {
+            deflater.end();
+        }
+
+        try {
+            checkLength(source, contentLength);
+        } catch (EOFException e) {
+            delegate.deleteFile(objectName);
+            throw e;
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        InputStream inputStream = delegate.downloadFile(objectName);
+        try {
+            PushbackInputStream pushbackInputStream =
+                    new PushbackInputStream(inputStream, HEADER_BYTES);
+            byte[] header = pushbackInputStream.readNBytes(HEADER_BYTES);
+            if (parseOriginalLength(header) < 0) {
+                pushbackInputStream.unread(header);
+                return pushbackInputStream;
+            }
+            return inflating(pushbackInputStream);
+        } catch (IOException | RuntimeException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * 压缩对象无法定位到原始偏移，需从头解压并跳过区间之前的内容
+     */
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("非法的读取区间: offset=" + offset + ", length=" + length);
+        }
+
+        if (!isCompressible(objectName)) {
+            return delegate.downloadRange(objectName, offset, length);
+        }
+        long originalLength = readOriginalLength(objectName);
+        if (originalLength < 0) {
+            return delegate.downloadRange(objectName, offset, length);
+        }
+        if (length == 0 || offset >= originalLength) {
+            return InputStream.nullInputStream();
+        }
+
+        InputStream inputStream = downloadFile(objectName);
+        try {
+            inputStream.skipNBytes(offset);
+        } catch (IOException | RuntimeException e) {
+            inputStream.close();
+            throw e;
+        }
+        return ByteStreams.limit(inputStream, length);
+    }
+
+    /**
+     * 压缩对象返回原始大小，按类型不会被压缩的对象不读取标记头
+     */
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        Optional<ObjectMetadata> metadata = delegate.stat(objectName);
+        if (metadata.isEmpty()
+                || metadata.get().size() < HEADER_BYTES
+                || !isCompressible(objectName)) {
+            return metadata;
+        }
+
+        long originalLength = readOriginalLength(objectName);
+        if (originalLength < 0) {
+            return metadata;
+        }
+        ObjectMetadata stored = metadata.get();
+        return Optional.of(
+                new ObjectMetadata(
+                        stored.objectName(),
+                        originalLength,
+                        stored.lastModified(),
+                        stored.eTag(),
+                        stored.contentType()));
+    }
+
+    /**
+     * 只读取按类型可能被压缩的对象的标记头，其余对象直接使用底层存储的批量查询结果
+     */
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        Map<String, ObjectMetadata> result = new LinkedHashMap<>(delegate.statAll(objectNames));
+        Iterator<Map.Entry<String, ObjectMetadata>> iterator = result.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ObjectMetadata> entry = iterator.next();
+            ObjectMetadata stored = entry.getValue();
+            if (stored.size() < HEADER_BYTES || !isCompressible(entry.getKey())) {
+                continue;
+            }
+
+            long originalLength;
+            try {
+                originalLength = readOriginalLength(entry.getKey());
+            } catch (FileNotFoundException e) {
+                iterator.remove();
+                continue;
+            }
+            if (originalLength >= 0) {
+                entry.setValue(
+                        new ObjectMetadata(
+                                stored.objectName(),
+                                originalLength,
+                                stored.lastModified(),
+                                stored.eTag(),
+                                stored.contentType()));
+            }
+        }
+        return result;
+    }
+
+    private boolean shouldCompress(String filename, long contentLength) {
+        // 长度未知时无法写入标记头中的原始长度
+        return contentLength >= minBytes && isCompressible(filename);
+    }
+
+    private boolean isCompressible(String filename) {
+        String contentType = StorageUtils.guessContentType(filename);
+        for (String prefix : contentTypes) {
+            if (contentType.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] compress(InputStream source, long contentLength, Deflater deflater)
+            throws IOException {
+        // 输入流由调用方关闭，这里只读取不关闭
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        compressing(source, contentLength, deflater).transferTo(outputStream);
+        return outputStream.toByteArray();
+    }
+
+    /**
+     * 标记头与压缩流拼接，读取时才逐块压缩，不占用与对象大小成比例的内存
+     */
+    private static InputStream compressing(
+            InputStream source, long contentLength, Deflater deflater) {
+        byte[] header =
+                ByteBuffer.allocate(HEADER_BYTES)
+                        .put(MAGIC)
+                        .put(MODE_DEFLATE)
+                        .putLong(contentLength)
+                        .array();
+        InputStream limited = ByteStreams.limit(source, contentLength);
+        return new SequenceInputStream(
+                new ByteArrayInputStream(header),
+                new DeflaterInputStream(limited, deflater, BUFFER_SIZE));
+    }
+
+    private static InputStream inflating(InputStream source) {
+        Inflater inflater = new Inflater();
+        return new InflaterInputStream(source, inflater, BUFFER_SIZE) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inflater.end();
+                }
+            }
+        };
+    }
+
+    private static void checkLength(CountingInputStream source, long contentLength)
+            throws EOFException {
+        if (source.getCount() != contentLength) {
+            throw new EOFException(
+                    "上传内容不完整，期望" + contentLength + "字节，实际" + source.getCount() + "字节");
+        }
+    }
+
+    private long readOriginalLength(String objectName) throws IOException {
+        try (InputStream inputStream = delegate.downloadRange(objectName, 0, HEADER_BYTES)) {
+            return parseOriginalLength(inputStream.readNBytes(HEADER_BYTES));
+        }
+    }
+
+    /**
+     * 解析标记头，不是压缩对象时返回-1
+     */
+    static long parseOriginalLength(byte[] header) {
+        if (header.length < HEADER_BYTES
+                || !Arrays.equals(header, 0, MAGIC.length, MAGIC, 0, MAGIC.length)
+                || header[MAGIC.length] != MODE_DEFLATE) {
+            return -1;
+        }
+        return ByteBuffer.wrap(header, MAGIC.length + 1, Long.BYTES).getLong();
+    }
+}
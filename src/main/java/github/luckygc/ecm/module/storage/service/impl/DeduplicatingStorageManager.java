@@ -0,0 +1,368 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.CountingInputStream;
+import com.google.common.io.MoreFiles;
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.BlobReplacement;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.domain.entity.StorageBlobEntity;
+import github.luckygc.ecm.module.storage.manager.StorageBlobManager;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.util.StorageUtils;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 内容寻址去重存储 相同内容在底层存储只保存一份，逻辑对象名通过引用计数映射到内容摘要.
+ * 上传本地文件和不超过暂存上限的流时先计算摘要，内容已存在则只写元数据；更大或长度未知的流边写边计算摘要，
+ * 内容重复时删除刚写入的副本，这部分上传仍会完整写入一次底层存储.
+ */
+@Slf4j
+public class DeduplicatingStorageManager extends ForwardingStorageManager {
+
+    private final StorageBlobManager storageBlobManager;
+    private final int stageMaxBytes;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+
+    public DeduplicatingStorageManager(
+            StorageManager delegate,
+            StorageBlobManager storageBlobManager,
+            StorageProperties.Deduplication properties,
+            SnowflakeIdGenerator snowflakeIdGenerator) {
+        super(delegate);
+        this.storageBlobManager = storageBlobManager;
+        this.stageMaxBytes = properties.getStageMaxBytes();
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+    }
+
+    @Override
+    public String uploadFile(Path filePath) throws IOException {
+        String digest = MoreFiles.asByteSource(filePath).hash(Hashing.sha256()).toString();
+        String objectName =
+                StorageUtils.generateObjectName(
+                        snowflakeIdGenerator.nextId(), filePath.getFileName().toString());
+
+        // 内容已存在时只写元数据
+        if (storageBlobManager.link(objectName, digest).isPresent()) {
+            log.debug("内容已存在，跳过上传: {}, {}", objectName, digest);
+            return objectName;
+        }
+
+        String blobObjectName = delegate.uploadFile(filePath);
+        register(objectName, digest, blobObjectName, Files.size(filePath));
+        return objectName;
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        String objectName =
+                StorageUtils.generateObjectName(snowflakeIdGenerator.nextId(), filename);
+        if (isStaged(contentLength)) {
+            byte[] data = readStaged(inputStream, contentLength);
+            String digest = Hashing.sha256().hashBytes(data).toString();
+            if (storageBlobManager.link(objectName, digest).isPresent()) {
+                log.debug("内容已存在，跳过上传: {}, {}", objectName, digest);
+                return objectName;
+            }
+            String blobObjectName =
+                    delegate.uploadStream(new ByteArrayInputStream(data), data.length, filename);
+            register(objectName, digest, blobObjectName, data.length);
+            return objectName;
+        }
+
+        // 单次读取，写入底层存储的同时计算摘要和实际长度
+        CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+        HashingInputStream hashingInputStream =
+                new HashingInputStream(Hashing.sha256(), countingInputStream);
+        String blobObjectName = delegate.uploadStream(hashingInputStream, contentLength, filename);
+        String digest = hashingInputStream.hash().toString();
+        register(objectName, digest, blobObjectName, countingInputStream.getCount());
+        return objectName;
+    }
+
+    /**
+     * 先写入数据块，再在同一事务中登记新内容并解除旧内容的关联，登记失败时旧内容仍然可读.
+     * 暂存的小对象内容已存在时不写入数据块
+     */
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        String filename = objectName.substring(objectName.lastIndexOf('/') + 1);
+        String digest;
+        String blobObjectName;
+        long size;
+        if (isStaged(contentLength)) {
+            byte[] data = readStaged(inputStream, contentLength);
+            digest = Hashing.sha256().hashBytes(data).toString();
+            size = data.length;
+            Optional<BlobReplacement> relinked = storageBlobManager.relink(objectName, digest);
+            if (relinked.isPresent()) {
+                log.debug("内容已存在，跳过上传: {}, {}", objectName, digest);
+                deleteUnreferenced(relinked.get());
+                return;
+            }
+            blobObjectName =
+                    delegate.uploadStream(new ByteArrayInputStream(data), data.length, filename);
+        } else {
+            CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+            HashingInputStream hashingInputStream =
+                    new HashingInputStream(Hashing.sha256(), countingInputStream);
+            blobObjectName = delegate.uploadStream(hashingInputStream, contentLength, filename);
+            digest = hashingInputStream.hash().toString();
+            size = countingInputStream.getCount();
+        }
+
+        replace(objectName, digest, blobObjectName, size);
+    }
+
+    private boolean isStaged(long contentLength) {
+        return contentLength >= 0 && contentLength <= stageMaxBytes;
+    }
+
+    private static byte[] readStaged(InputStream inputStream, long contentLength)
+            throws IOException {
+        byte[] data = inputStream.readNBytes((int) contentLength);
+        if (data.length < contentLength) {
+            throw new EOFException(
+                    "上传内容不完整，期望" + contentLength + "字节，实际" + data.length + "字节");
+        }
+        return data;
+    }
+
+    private void register(String objectName, String digest, String blobObjectName, long size)
+            throws IOException {
+        String effectiveBlobObjectName;
+        try {
+            effectiveBlobObjectName = registerWithRetry(objectName, digest, blobObjectName, size);
+        } catch (RuntimeException e) {
+            delegate.deleteFile(blobObjectName);
+            throw e;
+        }
+
+        if (!effectiveBlobObjectName.equals(blobObjectName)) {
+            log.debug("内容重复，删除新写入的副本: {}, {}", blobObjectName, digest);
+            delegate.deleteFile(blobObjectName);
+        }
+    }
+
+    private void replace(String objectName, String digest, String blobObjectName, long size)
+            throws IOException {
+        BlobReplacement replacement;
+        try {
+            replacement = replaceWithRetry(objectName, digest, blobObjectName, size);
+        } catch (RuntimeException e) {
+            delegate.deleteFile(blobObjectName);
+            throw e;
+        }
+
+        if (!replacement.blobObjectName().equals(blobObjectName)) {
+            log.debug("内容重复，删除新写入的副本: {}, {}", blobObjectName, digest);
+            delegate.deleteFile(blobObjectName);
+        }
+        deleteUnreferenced(replacement);
+    }
+
+    private BlobReplacement replaceWithRetry(
+            String objectName, String digest, String blobObjectName, long size) {
+        try {
+            return storageBlobManager.replace(objectName, digest, blobObjectName, size);
+        } catch (RuntimeException e) {
+            // 并发写入相同内容或同一对象时主键冲突，整个事务已回滚，重试即可
+            log.debug("覆盖逻辑对象失败，重试: {}, {}", objectName, digest, e);
+            return storageBlobManager.replace(objectName, digest, blobObjectName, size);
+        }
+    }
+
+    /**
+     * 逻辑对象已改为关联新内容，旧数据块删除失败只会留下孤立数据
+     */
+    private void deleteUnreferenced(BlobReplacement replacement) throws IOException {
+        if (replacement.unreferencedBlobObjectName() != null) {
+            delegate.deleteFile(replacement.unreferencedBlobObjectName());
+        }
+    }
+
+    private String registerWithRetry(
+            String objectName, String digest, String blobObjectName, long size) {
+        try {
+            return storageBlobManager.register(objectName, digest, blobObjectName, size);
+        } catch (RuntimeException e) {
+            // 并发写入相同内容时数据块主键冲突，重试即可关联到对方写入的数据块
+            log.debug("登记数据块失败，重试: {}", digest, e);
+            return storageBlobManager.register(objectName, digest, blobObjectName, size);
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        return delegate.downloadFile(resolve(objectName).getObjectName());
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        return delegate.downloadRange(resolve(objectName).getObjectName(), offset, length);
+    }
+
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        Optional<StorageBlobEntity> blob = storageBlobManager.findBlob(objectName);
+        if (blob.isEmpty()) {
+            return Optional.empty();
+        }
+        return delegate.stat(blob.get().getObjectName())
+                .map(metadata -> toLogical(objectName, blob.get(), metadata));
+    }
+
+    /**
+     * 批量解析数据块后合并为一次底层存储的批量查询
+     */
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        Map<String, StorageBlobEntity> blobs = storageBlobManager.findBlobs(objectNames);
+        Map<String, ObjectMetadata> stored =
+                delegate.statAll(
+                        blobs.values().stream()
+                                .map(StorageBlobEntity::getObjectName)
+                                .distinct()
+                                .toList());
+
+        Map<String, ObjectMetadata> result = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            StorageBlobEntity blob = blobs.get(objectName);
+            ObjectMetadata metadata = blob == null ? null : stored.get(blob.getObjectName());
+            if (metadata != null) {
+                result.put(objectName, toLogical(objectName, blob, metadata));
+            }
+        }
+        return result;
+    }
+
+    private static ObjectMetadata toLogical(
+            String objectName, StorageBlobEntity blob, ObjectMetadata metadata) {
+        // 摘要即内容标识，直接作为实体标签
+        return new ObjectMetadata(
+                objectName,
+                metadata.size(),
+                metadata.lastModified(),
+                "\"" + blob.getDigest() + "\"",
+                StorageUtils.guessContentType(objectName));
+    }
+
+    /**
+     * 只增加数据块引用，不复制内容
+     */
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        String digest = resolve(sourceObjectName).getDigest();
+        deleteFile(targetObjectName);
+        // 解析后源对象被并发删除时数据块可能已回收
+        if (storageBlobManager.link(targetObjectName, digest).isEmpty()) {
+            throw new FileNotFoundException("文件不存在: " + sourceObjectName);
+        }
+    }
+
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+        copyFile(sourceObjectName, targetObjectName);
+        deleteFile(sourceObjectName);
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws IOException {
+        Optional<String> unreferenced = storageBlobManager.unlink(objectName);
+        if (unreferenced.isPresent()) {
+            delegate.deleteFile(unreferenced.get());
+        }
+    }
+
+    /**
+     * 逐个解除引用，引用归零的数据块再交给底层存储批量删除
+     */
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        List<DeleteFailure> failures = new ArrayList<>();
+        List<String> unreferencedBlobs = new ArrayList<>();
+        for (String objectName : objectNames) {
+            try {
+                storageBlobManager.unlink(objectName).ifPresent(unreferencedBlobs::add);
+            } catch (RuntimeException e) {
+                failures.add(new DeleteFailure(objectName, String.valueOf(e.getMessage())));
+            }
+        }
+
+        // 逻辑对象已删除，数据块删除失败只会留下孤立数据
+        for (DeleteFailure failure : delegate.deleteFiles(unreferencedBlobs)) {
+            log.warn("数据块删除失败: {}, {}", failure.objectName(), failure.reason());
+        }
+        return failures;
+    }
+
+    @Override
+    public boolean fileExists(String objectName) {
+        return storageBlobManager.findBlob(objectName).isPresent();
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) {
+        return storageBlobManager.listObjectNames(prefix);
+    }
+
+    @Override
+    public ObjectListing listFiles(
+            String prefix, @Nullable String continuationToken, int maxKeys) {
+        return storageBlobManager.listObjectNames(prefix, continuationToken, maxKeys);
+    }
+
+    private StorageBlobEntity resolve(String objectName) throws FileNotFoundException {
+        Optional<StorageBlobEntity> blob = storageBlobManager.findBlob(objectName);
+        if (blob.isEmpty()) {
+            throw new FileNotFoundException("文件不存在: " + objectName);
+        }
+        return blob.get();
+    }
+}
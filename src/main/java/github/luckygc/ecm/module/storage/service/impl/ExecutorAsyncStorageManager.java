@@ -0,0 +1,108 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.AsyncStorageManager;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 基于线程池的异步存储服务 将同步存储服务的调用提交到有界线程池执行，适用于本地存储及叠加了装饰器的存储.
+ * 线程池大小决定了同时进行的传输数量，超出的请求在队列中等待.
+ */
+public class ExecutorAsyncStorageManager implements AsyncStorageManager, AutoCloseable {
+
+    private final StorageManager storageManager;
+    private final ExecutorService executor;
+
+    public ExecutorAsyncStorageManager(StorageManager storageManager, ExecutorService executor) {
+        this.storageManager = storageManager;
+        this.executor = executor;
+    }
+
+    @Override
+    public CompletableFuture<String> uploadFile(Path filePath) {
+        return submit(() -> storageManager.uploadFile(filePath));
+    }
+
+    @Override
+    public CompletableFuture<String> uploadStream(
+            InputStream inputStream, long contentLength, String filename) {
+        return submit(() -> storageManager.uploadStream(inputStream, contentLength, filename));
+    }
+
+    @Override
+    public CompletableFuture<InputStream> downloadFile(String objectName) {
+        return submit(() -> storageManager.downloadFile(objectName));
+    }
+
+    @Override
+    public CompletableFuture<InputStream> downloadRange(
+            String objectName, long offset, long length) {
+        return submit(() -> storageManager.downloadRange(objectName, offset, length));
+    }
+
+    @Override
+    public CompletableFuture<Optional<ObjectMetadata>> stat(String objectName) {
+        return submit(() -> storageManager.stat(objectName));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFile(String objectName) {
+        return submit(
+                () -> {
+                    storageManager.deleteFile(objectName);
+                    return null;
+                });
+    }
+
+    @Override
+    public CompletableFuture<Boolean> fileExists(String objectName) {
+        return submit(() -> storageManager.fileExists(objectName));
+    }
+
+    private <T> CompletableFuture<T> submit(IOCallable<T> callable) {
+        return CompletableFuture.supplyAsync(
+                () -> {
+                    try {
+                        return callable.call();
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                },
+                executor);
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    @FunctionalInterface
+    private interface IOCallable<T> {
+
+        T call() throws IOException;
+    }
+}
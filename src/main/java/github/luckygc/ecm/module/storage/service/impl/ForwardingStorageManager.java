@@ -0,0 +1,136 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 存储服务装饰器基类 默认将调用转发给被装饰的存储服务，子类只需覆盖关心的方法.
+ * 接口的默认方法不在此转发，使其经过子类覆盖的方法；复制、移动、批量查询元数据和批量删除例外，
+ * 转发后由底层存储在服务端完成或合并请求，覆盖了单个对象方法的子类需要一并覆盖.
+ */
+public abstract class ForwardingStorageManager implements StorageManager, AutoCloseable {
+
+    protected final StorageManager delegate;
+
+    protected ForwardingStorageManager(StorageManager delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public String uploadFile(Path filePath) throws IOException {
+        return delegate.uploadFile(filePath);
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        return delegate.uploadStream(inputStream, contentLength, filename);
+    }
+
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        delegate.putStream(objectName, inputStream, contentLength);
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        return delegate.downloadFile(objectName);
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        return delegate.downloadRange(objectName, offset, length);
+    }
+
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        return delegate.stat(objectName);
+    }
+
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        return delegate.statAll(objectNames);
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws IOException {
+        delegate.deleteFile(objectName);
+    }
+
+    /**
+     * 批量删除不经过本装饰器的单个删除，覆盖了单个删除的子类应一并覆盖
+     */
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        return delegate.deleteFiles(objectNames);
+    }
+
+    /**
+     * 复制对象的字节不经过本装饰器，需要维护元数据的子类应覆盖
+     */
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        delegate.copyFile(sourceObjectName, targetObjectName);
+    }
+
+    /**
+     * 移动对象的字节不经过本装饰器，需要维护元数据的子类应覆盖
+     */
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        delegate.moveFile(sourceObjectName, targetObjectName);
+    }
+
+    @Override
+    public boolean fileExists(String objectName) throws IOException {
+        return delegate.fileExists(objectName);
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) throws IOException {
+        return delegate.listFiles(prefix);
+    }
+
+    @Override
+    public ObjectListing listFiles(
+            String prefix, @Nullable String continuationToken, int maxKeys) throws IOException {
+        return delegate.listFiles(prefix, continuationToken, maxKeys);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadChunkEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity;
+import github.luckygc.ecm.module.storage.service.ChunkedUploadStore;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 本地暂存的分片存放 分片写入暂存目录下的分片文件，提交时按顺序拼接后经存储服务写入目标对象，
+ * 适用于任何存储类型及装饰器组合.
+ *
+ * <p>同一会话的分片可能由不同节点接收，多节点部署时各节点须挂载同一暂存目录. 打开会话时创建会话的暂存目录，
+ * 其他节点接收分片时找不到该目录说明暂存目录未共享，直接拒绝，而不是等到提交时才发现分片缺失.
+ */
+@Slf4j
+public class LocalChunkedUploadStore implements ChunkedUploadStore {
+
+    private final Path stagingDirectory;
+    private final StorageManager storageManager;
+
+    public LocalChunkedUploadStore(String stagingDirectory, StorageManager storageManager) {
+        this.stagingDirectory = Paths.get(stagingDirectory);
+        this.storageManager = storageManager;
+        try {
+            Files.createDirectories(this.stagingDirectory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("初始化分片暂存目录失败: " + stagingDirectory, e);
+        }
+        if (!Files.isWritable(this.stagingDirectory)) {
+            throw new IllegalStateException("分片暂存目录不可写: " + stagingDirectory);
+        }
+    }
+
+    /**
+     * 创建会话的暂存目录，以目录名作为会话的上传标识
+     */
+    @Override
+    public String open(String objectName) throws IOException {
+        String stagingId = UUID.randomUUID().toString();
+        Files.createDirectory(stagingDirectory.resolve(stagingId));
+        return stagingId;
+    }
+
+    /**
+     * 先写入临时文件再原子替换分片文件，并发重传同一分片时不会读到写了一半的内容
+     */
+    @Override
+    public @Nullable String writeChunk(
+            StorageUploadSessionEntity session,
+            int chunkNumber,
+            InputStream inputStream,
+            long contentLength)
+            throws IOException {
+        Path sessionDirectory = sessionDirectory(session);
+        if (!Files.isDirectory(sessionDirectory)) {
+            throw new IllegalStateException(
+                    "分片暂存目录中不存在会话" + session.getId() + "，多节点部署时各节点须挂载同一暂存目录: "
+                            + stagingDirectory);
+        }
+        Path tempFile = Files.createTempFile(sessionDirectory, chunkNumber + "-", ".tmp");
+        try {
+            try (FileChannel fileChannel =
+                    FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                transferFrom(Channels.newChannel(inputStream), fileChannel, contentLength);
+            }
+            Files.move(
+                    tempFile,
+                    chunkFile(sessionDirectory, chunkNumber),
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        return null;
+    }
+
+    private static void transferFrom(ReadableByteChannel source, FileChannel target, long count)
+            throws IOException {
+        long position = 0;
+        while (position < count) {
+            long transferred = target.transferFrom(source, position, count - position);
+            if (transferred <= 0) {
+                throw new EOFException("分片内容不完整，期望" + count + "字节，实际" + position + "字节");
+            }
+            position += transferred;
+        }
+    }
+
+    /**
+     * 分片文件按顺序依次打开，同一时刻只打开一个
+     */
+    @Override
+    public void commit(StorageUploadSessionEntity session, List<StorageUploadChunkEntity> chunks)
+            throws IOException {
+        Path sessionDirectory = sessionDirectory(session);
+        Iterator<StorageUploadChunkEntity> iterator = chunks.iterator();
+        Enumeration<InputStream> chunkStreams =
+                new Enumeration<>() {
+                    @Override
+                    public boolean hasMoreElements() {
+                        return iterator.hasNext();
+                    }
+
+                    @Override
+                    public InputStream nextElement() {
+                        Path chunkFile =
+                                chunkFile(sessionDirectory, iterator.next().getChunkNumber());
+                        try {
+                            return Files.newInputStream(chunkFile);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                };
+
+        try (InputStream inputStream = new SequenceInputStream(chunkStreams)) {
+            storageManager.putStream(
+                    session.getObjectName(), inputStream, session.getContentLength());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        abort(session);
+    }
+
+    @Override
+    public void abort(StorageUploadSessionEntity session) throws IOException {
+        Path sessionDirectory = sessionDirectory(session);
+        if (Files.exists(sessionDirectory)) {
+            MoreFiles.deleteRecursively(sessionDirectory, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+    }
+
+    private Path sessionDirectory(StorageUploadSessionEntity session) {
+        return stagingDirectory.resolve(session.getUploadId());
+    }
+
+    private static Path chunkFile(Path sessionDirectory, int chunkNumber) {
+        return sessionDirectory.resolve(chunkNumber + ".part");
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 本地存储的对象列举
+ *
+ * <p>分页列举深度优先遍历目录树，每个目录只保留当前批次的目录项，内存占用与对象总数无关.
+ * 目录项按目录名补'/'后的码点顺序排列，遍历结果与完整对象名称的{@link #OBJECT_NAME_ORDER}一致.
+ * 续传标记为上一页最后一个对象名称，翻页时沿标记所在路径重新扫描目录并跳过不大于标记的目录项.
+ */
+final class LocalObjectLister {
+
+    /**
+     * 所有存储分页列举共用的对象名称顺序 与S3列举一致的UTF-8字节序，等价于按码点比较.
+     * 多个存储的列举结果按此顺序归并
+     */
+    static final Comparator<String> OBJECT_NAME_ORDER =
+            (left, right) -> {
+                int length = Math.min(left.length(), right.length());
+                int i = 0;
+                while (i < length) {
+                    int l = left.codePointAt(i);
+                    int r = right.codePointAt(i);
+                    if (l != r) {
+                        return Integer.compare(l, r);
+                    }
+                    i += Character.charCount(l);
+                }
+                return Integer.compare(left.length(), right.length());
+            };
+
+    /**
+     * 写入中的临时文件名前缀，写完后原子重命名为目标文件，列举时跳过
+     */
+    static final String TEMP_FILE_PREFIX = ".ecm-tmp-";
+
+    private final Path basePath;
+
+    LocalObjectLister(String basePath) {
+        this.basePath = Path.of(basePath).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 惰性遍历，不保证顺序，流关闭时释放目录句柄
+     */
+    Stream<String> stream(@Nullable String prefix) throws IOException {
+        String safePrefix = prefix == null ? "" : prefix;
+        Path startDir = resolveDirectory(parentOf(safePrefix));
+        if (!Files.isDirectory(startDir)) {
+            return Stream.empty();
+        }
+
+        return Files.walk(startDir)
+                .filter(path -> !path.getFileName().toString().startsWith(TEMP_FILE_PREFIX))
+                .filter(Files::isRegularFile)
+                .map(this::toObjectName)
+                .filter(name -> name.startsWith(safePrefix));
+    }
+
+    ObjectListing list(@Nullable String prefix, @Nullable String continuationToken, int maxKeys)
+            throws IOException {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys必须大于0: " + maxKeys);
+        }
+
+        String safePrefix = prefix == null ? "" : prefix;
+        String relativeDir = parentOf(safePrefix);
+        String namePrefix =
+                safePrefix.substring(relativeDir.isEmpty() ? 0 : relativeDir.length() + 1);
+
+        List<String> after = null;
+        if (continuationToken != null) {
+            String dirPrefix = relativeDir.isEmpty() ? "" : relativeDir + "/";
+            if (!continuationToken.startsWith(dirPrefix)) {
+                throw new IllegalArgumentException("续传标记与前缀不匹配: " + continuationToken);
+            }
+            after = Arrays.asList(continuationToken.substring(dirPrefix.length()).split("/"));
+        }
+
+        List<String> objectNames = new ArrayList<>(Math.min(maxKeys, 1024));
+        Path startDir = resolveDirectory(relativeDir);
+        if (Files.isDirectory(startDir)) {
+            collect(startDir, relativeDir, after, namePrefix, maxKeys, objectNames);
+        }
+
+        String nextContinuationToken =
+                objectNames.size() < maxKeys ? null : objectNames.get(objectNames.size() - 1);
+        return new ObjectListing(objectNames, nextContinuationToken);
+    }
+
+    /**
+     * 按目录项顺序深度优先收集对象名称
+     *
+     * @param after 续传标记在当前目录下的剩余路径分段，为空时不设下界
+     */
+    private static void collect(
+            Path dir,
+            String relativeDir,
+            @Nullable List<String> after,
+            String namePrefix,
+            int limit,
+            List<String> objectNames)
+            throws IOException {
+        String lowerBound = after == null ? null : after.get(0);
+        // 标记还有更深的分段时，同名目录下仍有未返回的对象
+        boolean inclusive = after != null && after.size() > 1;
+
+        while (objectNames.size() < limit) {
+            NavigableSet<String> batch =
+                    nextBatch(dir, lowerBound, inclusive, namePrefix, limit - objectNames.size());
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            for (String name : batch) {
+                Path path = dir.resolve(name);
+                String objectName = relativeDir.isEmpty() ? name : relativeDir + "/" + name;
+                if (Files.isDirectory(path)) {
+                    List<String> childAfter =
+                            inclusive && name.equals(lowerBound)
+                                    ? after.subList(1, after.size())
+                                    : null;
+                    collect(path, objectName, childAfter, "", limit, objectNames);
+                } else if (Files.isRegularFile(path)) {
+                    objectNames.add(objectName);
+                }
+
+                if (objectNames.size() >= limit) {
+                    return;
+                }
+            }
+
+            lowerBound = batch.last();
+            inclusive = false;
+        }
+    }
+
+    /**
+     * 扫描一次目录，取出大于下界的最小若干个目录项
+     */
+    private static NavigableSet<String> nextBatch(
+            Path dir, @Nullable String lowerBound, boolean inclusive, String namePrefix, int size)
+            throws IOException {
+        Map<String, Boolean> directories = new HashMap<>();
+        // 下界为标记路径中的目录时按目录比较，该目录已被删除时也不会改变顺序
+        Comparator<String> order =
+                entryOrder(
+                        name ->
+                                (inclusive && name.equals(lowerBound))
+                                        || directories.computeIfAbsent(
+                                                name, n -> Files.isDirectory(dir.resolve(n))));
+        TreeSet<String> batch = new TreeSet<>(order);
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path path : stream) {
+                String name = path.getFileName().toString();
+                if (!name.startsWith(namePrefix) || name.startsWith(TEMP_FILE_PREFIX)) {
+                    continue;
+                }
+
+                if (lowerBound != null) {
+                    int cmp = order.compare(name, lowerBound);
+                    if (cmp < 0 || (cmp == 0 && !inclusive)) {
+                        continue;
+                    }
+                }
+
+                if (batch.size() < size) {
+                    batch.add(name);
+                } else if (order.compare(name, batch.last()) < 0) {
+                    batch.pollLast();
+                    batch.add(name);
+                }
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * 同一目录下目录项的顺序 目录名视为补上'/'后再按码点比较. 只有一个名称是另一个名称的前缀时
+     * 补上的'/'才影响结果，此时才需要区分目录，其余情况直接比较名称
+     */
+    private static Comparator<String> entryOrder(Predicate<String> isDirectory) {
+        return (left, right) -> {
+            if (right.length() > left.length() && right.startsWith(left)) {
+                return isDirectory.test(left)
+                        ? Integer.compare('/', right.codePointAt(left.length()))
+                        : -1;
+            }
+            if (left.length() > right.length() && left.startsWith(right)) {
+                return isDirectory.test(right)
+                        ? Integer.compare(left.codePointAt(right.length()), '/')
+                        : 1;
+            }
+            return OBJECT_NAME_ORDER.compare(left, right);
+        };
+    }
+
+    private Path resolveDirectory(String relativeDir) {
+        Path dir = basePath.resolve(relativeDir).normalize();
+        if (!dir.startsWith(basePath)) {
+            throw new IllegalArgumentException("非法的前缀: " + relativeDir);
+        }
+        return dir;
+    }
+
+    private String toObjectName(Path path) {
+        return basePath.relativize(path).toString().replace(File.separatorChar, '/');
+    }
+
+    private static String parentOf(String prefix) {
+        int index = prefix.lastIndexOf('/');
+        return index < 0 ? "" : prefix.substring(0, index);
+    }
+}
@@ -17,41 +17,102 @@
 
 package github.luckygc.ecm.module.storage.service.impl;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
 import github.luckygc.ecm.module.storage.service.StorageManager;
 import github.luckygc.ecm.util.StorageUtils;
 import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.EOFException;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileSystemException;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
-import lombok.RequiredArgsConstructor;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
 
 /**
- * 本地存储服务实现
+ * 本地存储服务实现 批量查询元数据和批量删除共用一个有界线程池，并发调用时排队，线程总数不随调用数增长
  */
 @Slf4j
-@RequiredArgsConstructor
-public class LocalStorageManager implements StorageManager {
+public class LocalStorageManager implements StorageManager, AutoCloseable {
+
+    /**
+     * 空闲的线程超过该时间后回收，不做批量操作时不占用线程
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
 
     private final StorageProperties.Local properties;
     private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final ThreadPoolExecutor executor;
+
+    public LocalStorageManager(
+            StorageProperties.Local properties, SnowflakeIdGenerator snowflakeIdGenerator) {
+        this.properties = properties;
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+        int threads =
+                Math.max(
+                        1,
+                        Math.max(
+                                properties.getStatConcurrency(),
+                                properties.getDeleteConcurrency()));
+        this.executor =
+                new ThreadPoolExecutor(
+                        threads,
+                        threads,
+                        KEEP_ALIVE_SECONDS,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(),
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("local-storage-%d")
+                                .setDaemon(true)
+                                .build());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
 
     @Override
     public String uploadFile(Path filePath) throws IOException {
-        Path basePath = Paths.get(properties.getBasePath());
-        Files.createDirectories(basePath);
+        Files.createDirectories(basePath());
 
         String objectName =
                 StorageUtils.generateObjectName(
                         snowflakeIdGenerator.nextId(), filePath.getFileName().toString());
-        Path targetPath = basePath.resolve(objectName);
+        Path targetPath = resolve(objectName);
         Files.createDirectories(targetPath.getParent());
 
         // 直接复制文件，效率最高
@@ -61,57 +122,347 @@ public class LocalStorageManager implements StorageManager {
     }
 
     @Override
-    public InputStream downloadFile(String objectName) throws IOException {
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        return uploadStream(Channels.newChannel(inputStream), contentLength, filename);
+    }
+
+    @Override
+    public String uploadStream(ReadableByteChannel channel, long contentLength, String filename)
+            throws IOException {
+        String objectName =
+                StorageUtils.generateObjectName(snowflakeIdGenerator.nextId(), filename);
+        write(objectName, channel, contentLength);
+        return objectName;
+    }
+
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        write(objectName, Channels.newChannel(inputStream), contentLength);
+    }
+
+    /**
+     * 先写入同目录下的临时文件，写完后原子替换目标文件. 并发读取只会看到完整的旧版本或新版本，
+     * 写入失败时保留旧版本；替换的是目录项，目标是复制产生的硬链接时不影响共享同一文件的其他对象
+     */
+    private void write(String objectName, ReadableByteChannel channel, long contentLength)
+            throws IOException {
+        Path targetPath = resolve(objectName);
+        Files.createDirectories(targetPath.getParent());
+        Path tempFile =
+                targetPath.resolveSibling(LocalObjectLister.TEMP_FILE_PREFIX + UUID.randomUUID());
+
         try {
-            Path filePath = Paths.get(properties.getBasePath(), objectName);
-            if (!Files.exists(filePath)) {
-                throw new FileNotFoundException("文件不存在: " + filePath);
+            try (FileChannel fileChannel =
+                    FileChannel.open(
+                            tempFile, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                transferFrom(channel, fileChannel, contentLength);
             }
-            return Files.newInputStream(filePath);
+            Files.move(
+                    tempFile,
+                    targetPath,
+                    StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
         } catch (IOException e) {
-            log.error("文件下载失败: {}", objectName, e);
-            throw new RuntimeException("文件下载失败", e);
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+    }
+
+    private Path basePath() {
+        return Paths.get(properties.getBasePath()).toAbsolutePath().normalize();
+    }
+
+    /**
+     * 解析对象在本地的路径，对象名包含..或为绝对路径等跳出存储目录的情况直接拒绝
+     */
+    private Path resolve(String objectName) {
+        Path basePath = basePath();
+        Path path = basePath.resolve(objectName).normalize();
+        if (!path.startsWith(basePath) || path.equals(basePath)) {
+            throw new IllegalArgumentException("非法的对象名: " + objectName);
+        }
+        return path;
+    }
+
+    /**
+     * 由FileChannel直接从源通道读取，省去用户态的中间缓冲 长度未知(小于0)时读取到流末尾
+     */
+    private static void transferFrom(ReadableByteChannel source, FileChannel target, long count)
+            throws IOException {
+        long position = 0;
+        if (count < 0) {
+            long transferred;
+            while ((transferred = target.transferFrom(source, position, Long.MAX_VALUE)) > 0) {
+                position += transferred;
+            }
+            return;
+        }
+        while (position < count) {
+            long transferred = target.transferFrom(source, position, count - position);
+            // 阻塞通道返回0表示已读到流末尾
+            if (transferred <= 0) {
+                throw new EOFException("上传内容不完整，期望" + count + "字节，实际" + position + "字节");
+            }
+            position += transferred;
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        Path filePath = resolve(objectName);
+        try {
+            return Files.newInputStream(filePath);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("文件不存在: " + filePath);
+        }
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        Path filePath = resolve(objectName);
+        try {
+            return FileRegionInputStream.open(filePath, offset, length);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("文件不存在: " + filePath);
+        }
+    }
+
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        Path filePath = resolve(objectName);
+        BasicFileAttributes attributes;
+        try {
+            attributes = Files.readAttributes(filePath, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return Optional.empty();
+        }
+
+        if (!attributes.isRegularFile()) {
+            return Optional.empty();
+        }
+
+        Instant lastModified = attributes.lastModifiedTime().toInstant();
+        return Optional.of(
+                new ObjectMetadata(
+                        objectName,
+                        attributes.size(),
+                        lastModified,
+                        eTag(attributes.size(), lastModified),
+                        StorageUtils.guessContentType(objectName)));
+    }
+
+    /**
+     * 由修改时间和大小生成实体标签，与nginx的做法一致
+     */
+    private static String eTag(long size, Instant lastModified) {
+        return "\""
+                + Long.toHexString(lastModified.toEpochMilli())
+                + "-"
+                + Long.toHexString(size)
+                + "\"";
+    }
+
+    /**
+     * 文件属性读取是阻塞的系统调用，由多个线程并行读取
+     */
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        if (objectNames.size() <= 1) {
+            return StorageManager.super.statAll(objectNames);
+        }
+
+        List<String> names = new ArrayList<>(objectNames);
+        ObjectMetadata[] results = new ObjectMetadata[names.size()];
+        AtomicReference<IOException> failure = new AtomicReference<>();
+        runParallel(
+                names.size(),
+                properties.getStatConcurrency(),
+                "批量查询元数据",
+                index -> {
+                    try {
+                        results[index] = stat(names.get(index)).orElse(null);
+                    } catch (IOException e) {
+                        failure.compareAndSet(null, e);
+                    }
+                });
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+
+        Map<String, ObjectMetadata> result = new LinkedHashMap<>();
+        for (int i = 0; i < results.length; i++) {
+            if (results[i] != null) {
+                result.put(names.get(i), results[i]);
+            }
         }
+        return result;
     }
 
     @Override
     public void deleteFile(String objectName) throws IOException {
         try {
-            Path filePath = Paths.get(properties.getBasePath(), objectName);
+            Path filePath = resolve(objectName);
             Files.deleteIfExists(filePath);
         } catch (IOException e) {
             log.error("文件删除失败: {}", objectName, e);
         }
     }
 
+    /**
+     * 由固定数量的线程从同一列表领取对象逐个删除，内存占用不随对象数量增长
+     */
     @Override
-    public boolean fileExists(String objectName) throws IOException {
-        Path filePath = Paths.get(properties.getBasePath(), objectName);
-        return Files.exists(filePath);
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        if (objectNames.isEmpty()) {
+            return List.of();
+        }
+
+        List<String> names =
+                objectNames instanceof List<String> list ? list : new ArrayList<>(objectNames);
+        Queue<DeleteFailure> failures = new ConcurrentLinkedQueue<>();
+        runParallel(
+                names.size(),
+                properties.getDeleteConcurrency(),
+                "批量删除",
+                index -> deleteQuietly(names.get(index), failures));
+
+        log.info("批量删除完成，共{}个，失败{}个", names.size(), failures.size());
+        return new ArrayList<>(failures);
     }
 
-    @Override
-    public List<String> listFiles(String prefix) throws IOException {
+    /**
+     * 多个线程按下标领取任务，直到全部完成
+     */
+    private void runParallel(int count, int maxConcurrency, String action, IntConsumer task)
+            throws IOException {
+        int concurrency = Math.max(1, Math.min(maxConcurrency, count));
+        AtomicInteger nextIndex = new AtomicInteger();
+        List<Future<?>> workers = new ArrayList<>(concurrency);
         try {
-            Path basePath = Paths.get(properties.getBasePath());
-            Path targetPath = Paths.get(properties.getBasePath(), prefix);
-            if (!Files.exists(basePath)) {
-                return List.of();
+            for (int i = 0; i < concurrency; i++) {
+                workers.add(
+                        executor.submit(
+                                () -> {
+                                    int index;
+                                    while ((index = nextIndex.getAndIncrement()) < count) {
+                                        task.accept(index);
+                                    }
+                                }));
             }
 
-            if (Files.isRegularFile(basePath)) {
-                return List.of(basePath.relativize(targetPath).toString());
+            for (Future<?> worker : workers) {
+                worker.get();
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException(action + "被中断");
+        } catch (ExecutionException e) {
+            throw new IOException(action + "失败", e.getCause());
+        } catch (RejectedExecutionException e) {
+            throw new IOException(action + "失败，存储服务已关闭", e);
+        } finally {
+            // 调用方中断或失败时不再领取剩余的任务
+            nextIndex.set(count);
+        }
+    }
 
-            try (var stream = Files.walk(targetPath)) {
-                return stream.filter(Files::isRegularFile)
-                        .map(path -> basePath.relativize(path).toString())
-                        .filter(name -> prefix == null || name.startsWith(prefix))
-                        .collect(Collectors.toList());
+    private void deleteQuietly(String objectName, Queue<DeleteFailure> failures) {
+        try {
+            Files.deleteIfExists(resolve(objectName));
+        } catch (IOException | RuntimeException e) {
+            failures.add(new DeleteFailure(objectName, String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * 优先创建硬链接，只增加一个目录项；文件系统不支持或跨设备时退回为复制文件.
+     * 对象写入时总是创建新文件，因此共享同一文件的对象之后不会互相影响.
+     */
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        Path sourcePath = resolve(sourceObjectName);
+        Path targetPath = resolve(targetObjectName);
+        if (!Files.isRegularFile(sourcePath)) {
+            throw new FileNotFoundException("文件不存在: " + sourcePath);
+        }
+        Files.createDirectories(targetPath.getParent());
+        Files.deleteIfExists(targetPath);
+
+        try {
+            Files.createLink(targetPath, sourcePath);
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            log.debug("创建硬链接失败，改为复制文件: {} -> {}", sourcePath, targetPath, e);
+            try {
+                Files.copy(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            } catch (NoSuchFileException ex) {
+                throw new FileNotFoundException("文件不存在: " + sourcePath);
             }
-        } catch (IOException e) {
-            log.error("列出文件失败: {}", prefix, e);
-            return List.of();
         }
     }
+
+    /**
+     * 同一文件系统内为原子重命名，不复制数据
+     */
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        Path sourcePath = resolve(sourceObjectName);
+        Path targetPath = resolve(targetObjectName);
+        Files.createDirectories(targetPath.getParent());
+        try {
+            try {
+                Files.move(
+                        sourcePath,
+                        targetPath,
+                        StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(sourcePath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException("文件不存在: " + sourcePath);
+        }
+    }
+
+    @Override
+    public boolean fileExists(String objectName) throws IOException {
+        Path filePath = resolve(objectName);
+        return Files.exists(filePath);
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) throws IOException {
+        try (Stream<String> stream = streamFiles(prefix)) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public ObjectListing listFiles(
+            String prefix, @Nullable String continuationToken, int maxKeys) throws IOException {
+        return new LocalObjectLister(properties.getBasePath())
+                .list(prefix, continuationToken, maxKeys);
+    }
+
+    @Override
+    public Stream<String> streamFiles(String prefix) throws IOException {
+        return new LocalObjectLister(properties.getBasePath()).stream(prefix);
+    }
+
+    @Override
+    public void close() throws Exception {
+        executor.shutdownNow();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+    }
 }
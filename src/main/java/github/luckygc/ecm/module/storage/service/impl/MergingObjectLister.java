@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 合并多个存储的分页列举 各存储的分页列举都按{@link LocalObjectLister#OBJECT_NAME_ORDER}排列，
+ * 分别分页后按同一顺序归并，同名对象只返回一次.
+ * 续传标记依次记录每个存储已消费到的位置，以'.'分隔.
+ */
+final class MergingObjectLister {
+
+    /**
+     * 分页列举时某个存储已列举完毕的标记
+     */
+    private static final String EXHAUSTED = "~";
+
+    private MergingObjectLister() {
+    }
+
+    static ObjectListing list(
+            List<StorageManager> sources,
+            String prefix,
+            @Nullable String continuationToken,
+            int maxKeys)
+            throws IOException {
+        int count = sources.size();
+        @Nullable String[] cursors = decodeCursors(continuationToken, count);
+        List<ObjectListing> pages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            pages.add(page(sources.get(i), prefix, cursors[i], maxKeys));
+        }
+
+        int[] consumed = new int[count];
+        List<String> objectNames = new ArrayList<>(maxKeys);
+        while (objectNames.size() < maxKeys) {
+            String smallest = null;
+            boolean waitingForNextPage = false;
+            for (int i = 0; i < count; i++) {
+                List<String> names = pages.get(i).objectNames();
+                if (consumed[i] < names.size()) {
+                    String objectName = names.get(consumed[i]);
+                    if (smallest == null
+                            || LocalObjectLister.OBJECT_NAME_ORDER.compare(objectName, smallest)
+                                    < 0) {
+                        smallest = objectName;
+                    }
+                } else if (pages.get(i).nextContinuationToken() != null) {
+                    waitingForNextPage = true;
+                }
+            }
+            // 某个存储的本页已消费完但还有下一页时停止，下一页可能有更小的名称
+            if (smallest == null || waitingForNextPage) {
+                break;
+            }
+
+            objectNames.add(smallest);
+            for (int i = 0; i < count; i++) {
+                List<String> names = pages.get(i).objectNames();
+                if (consumed[i] < names.size() && smallest.equals(names.get(consumed[i]))) {
+                    consumed[i]++;
+                }
+            }
+        }
+
+        @Nullable String[] nextCursors = new String[count];
+        boolean exhausted = true;
+        for (int i = 0; i < count; i++) {
+            nextCursors[i] = nextCursor(cursors[i], pages.get(i), consumed[i]);
+            exhausted &= EXHAUSTED.equals(nextCursors[i]);
+        }
+        return new ObjectListing(objectNames, exhausted ? null : encodeCursors(nextCursors));
+    }
+
+    private static ObjectListing page(
+            StorageManager source, String prefix, @Nullable String cursor, int maxKeys)
+            throws IOException {
+        if (EXHAUSTED.equals(cursor)) {
+            return new ObjectListing(List.of(), null);
+        }
+        return source.listFiles(prefix, cursor, maxKeys);
+    }
+
+    /**
+     * 本页消费完时沿用该存储的续传标记，否则以最后消费的对象名称作为下次的起点
+     */
+    private static @Nullable String nextCursor(
+            @Nullable String cursor, ObjectListing listing, int consumed) {
+        List<String> objectNames = listing.objectNames();
+        if (consumed < objectNames.size()) {
+            return consumed == 0 ? cursor : objectNames.get(consumed - 1);
+        }
+        return listing.nextContinuationToken() == null
+                ? EXHAUSTED
+                : listing.nextContinuationToken();
+    }
+
+    private static String encodeCursors(@Nullable String[] cursors) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < cursors.length; i++) {
+            if (i > 0) {
+                builder.append('.');
+            }
+            builder.append(encodeCursor(cursors[i]));
+        }
+        return builder.toString();
+    }
+
+    private static String encodeCursor(@Nullable String cursor) {
+        if (cursor == null) {
+            return "";
+        }
+        if (EXHAUSTED.equals(cursor)) {
+            return EXHAUSTED;
+        }
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static @Nullable String[] decodeCursors(
+            @Nullable String continuationToken, int count) {
+        if (continuationToken == null) {
+            return new String[count];
+        }
+
+        String[] parts = continuationToken.split("\\.", -1);
+        if (parts.length != count) {
+            throw new IllegalArgumentException("非法的续传标记: " + continuationToken);
+        }
+        @Nullable String[] cursors = new String[count];
+        for (int i = 0; i < count; i++) {
+            cursors[i] = decodeCursor(parts[i]);
+        }
+        return cursors;
+    }
+
+    private static @Nullable String decodeCursor(String part) {
+        if (part.isEmpty()) {
+            return null;
+        }
+        if (EXHAUSTED.equals(part)) {
+            return EXHAUSTED;
+        }
+        return new String(Base64.getUrlDecoder().decode(part), StandardCharsets.UTF_8);
+    }
+}
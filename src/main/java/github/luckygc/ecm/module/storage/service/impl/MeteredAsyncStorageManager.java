@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.io.CountingInputStream;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.AsyncStorageManager;
+import github.luckygc.ecm.module.storage.service.impl.MeteredStorageManager.Operation;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 指标采集异步存储 直接访问存储后端的异步存储服务绕过了同步的指标装饰器，由本装饰器把异步调用计入
+ * 该装饰器的指标，同一后端的同步和异步调用共用一组指标.
+ */
+public class MeteredAsyncStorageManager implements AsyncStorageManager, AutoCloseable {
+
+    private final AsyncStorageManager delegate;
+    private final MeteredStorageManager metered;
+
+    public MeteredAsyncStorageManager(
+            AsyncStorageManager delegate, MeteredStorageManager metered) {
+        this.delegate = delegate;
+        this.metered = metered;
+    }
+
+    @Override
+    public CompletableFuture<String> uploadFile(Path filePath) {
+        long size;
+        try {
+            size = Files.size(filePath);
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        metered.uploadStarted();
+        return metered.recordAsync(Operation.UPLOAD, () -> delegate.uploadFile(filePath))
+                .whenComplete(
+                        (objectName, throwable) ->
+                                metered.uploadFinished(throwable == null ? size : 0));
+    }
+
+    @Override
+    public CompletableFuture<String> uploadStream(
+            InputStream inputStream, long contentLength, String filename) {
+        CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+        metered.uploadStarted();
+        return metered.recordAsync(
+                        Operation.UPLOAD,
+                        () -> delegate.uploadStream(countingInputStream, contentLength, filename))
+                .whenComplete(
+                        (objectName, throwable) ->
+                                metered.uploadFinished(countingInputStream.getCount()));
+    }
+
+    @Override
+    public CompletableFuture<InputStream> downloadFile(String objectName) {
+        long startTime = System.nanoTime();
+        return metered.recordAsync(Operation.DOWNLOAD, () -> delegate.downloadFile(objectName))
+                .thenApply(inputStream -> metered.meterDownload(inputStream, startTime));
+    }
+
+    @Override
+    public CompletableFuture<InputStream> downloadRange(
+            String objectName, long offset, long length) {
+        long startTime = System.nanoTime();
+        return metered.recordAsync(
+                        Operation.DOWNLOAD,
+                        () -> delegate.downloadRange(objectName, offset, length))
+                .thenApply(inputStream -> metered.meterDownload(inputStream, startTime));
+    }
+
+    @Override
+    public CompletableFuture<Optional<ObjectMetadata>> stat(String objectName) {
+        return metered.recordAsync(Operation.STAT, () -> delegate.stat(objectName));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFile(String objectName) {
+        return metered.recordAsync(Operation.DELETE, () -> delegate.deleteFile(objectName));
+    }
+
+    @Override
+    public CompletableFuture<Boolean> fileExists(String objectName) {
+        return metered.recordAsync(Operation.EXISTS, () -> delegate.fileExists(objectName));
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (delegate instanceof AutoCloseable closeable) {
+            closeable.close();
+        }
+    }
+}
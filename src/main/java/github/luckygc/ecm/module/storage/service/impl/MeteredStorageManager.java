@@ -0,0 +1,388 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.io.CountingInputStream;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 指标采集存储 按操作记录耗时和异常，统计读写字节数和进行中的传输数，指标带backend标签区分存储后端.
+ *
+ * <p>下载的操作耗时只包含打开对象，完整的传输耗时在返回的流关闭时另行记录.
+ */
+public class MeteredStorageManager extends ForwardingStorageManager {
+
+    private final MeterRegistry registry;
+    private final String backend;
+
+    private final Map<Operation, Timer> successTimers = new EnumMap<>(Operation.class);
+    private final Timer downloadTransferTimer;
+    private final Counter bytesIn;
+    private final Counter bytesOut;
+    private final AtomicInteger activeUploads = new AtomicInteger();
+    private final AtomicInteger activeDownloads = new AtomicInteger();
+
+    public MeteredStorageManager(StorageManager delegate, MeterRegistry registry, String backend) {
+        super(delegate);
+        this.registry = registry;
+        this.backend = backend;
+
+        for (Operation operation : Operation.values()) {
+            successTimers.put(operation, operationTimer(operation, "success"));
+        }
+        this.downloadTransferTimer =
+                Timer.builder("storage.download.transfer")
+                        .description("下载从打开对象到关闭流的耗时")
+                        .tag("backend", backend)
+                        .register(registry);
+        this.bytesIn =
+                Counter.builder("storage.bytes")
+                        .description("写入存储的字节数")
+                        .baseUnit(BaseUnits.BYTES)
+                        .tag("backend", backend)
+                        .tag("direction", "in")
+                        .register(registry);
+        this.bytesOut =
+                Counter.builder("storage.bytes")
+                        .description("从存储读出的字节数")
+                        .baseUnit(BaseUnits.BYTES)
+                        .tag("backend", backend)
+                        .tag("direction", "out")
+                        .register(registry);
+        Gauge.builder("storage.transfers.active", activeUploads, AtomicInteger::get)
+                .description("进行中的上传数")
+                .tag("backend", backend)
+                .tag("direction", "in")
+                .register(registry);
+        Gauge.builder("storage.transfers.active", activeDownloads, AtomicInteger::get)
+                .description("进行中的下载数")
+                .tag("backend", backend)
+                .tag("direction", "out")
+                .register(registry);
+    }
+
+    /**
+     * 被采集指标的存储后端
+     */
+    public StorageManager getBackend() {
+        return delegate;
+    }
+
+    @Override
+    public String uploadFile(Path filePath) throws IOException {
+        activeUploads.incrementAndGet();
+        try {
+            String objectName = record(Operation.UPLOAD, () -> delegate.uploadFile(filePath));
+            bytesIn.increment(Files.size(filePath));
+            return objectName;
+        } finally {
+            activeUploads.decrementAndGet();
+        }
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+        activeUploads.incrementAndGet();
+        try {
+            return record(
+                    Operation.UPLOAD,
+                    () -> delegate.uploadStream(countingInputStream, contentLength, filename));
+        } finally {
+            activeUploads.decrementAndGet();
+            bytesIn.increment(countingInputStream.getCount());
+        }
+    }
+
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        CountingInputStream countingInputStream = new CountingInputStream(inputStream);
+        activeUploads.incrementAndGet();
+        try {
+            record(
+                    Operation.UPLOAD,
+                    () -> {
+                        delegate.putStream(objectName, countingInputStream, contentLength);
+                        return null;
+                    });
+        } finally {
+            activeUploads.decrementAndGet();
+            bytesIn.increment(countingInputStream.getCount());
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        long startTime = System.nanoTime();
+        InputStream inputStream =
+                record(Operation.DOWNLOAD, () -> delegate.downloadFile(objectName));
+        return new MeteredInputStream(inputStream, startTime);
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        long startTime = System.nanoTime();
+        InputStream inputStream =
+                record(
+                        Operation.DOWNLOAD,
+                        () -> delegate.downloadRange(objectName, offset, length));
+        return new MeteredInputStream(inputStream, startTime);
+    }
+
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        return record(Operation.STAT, () -> delegate.stat(objectName));
+    }
+
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        return record(Operation.STAT, () -> delegate.statAll(objectNames));
+    }
+
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        record(
+                Operation.COPY,
+                () -> {
+                    delegate.copyFile(sourceObjectName, targetObjectName);
+                    return null;
+                });
+    }
+
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        record(
+                Operation.MOVE,
+                () -> {
+                    delegate.moveFile(sourceObjectName, targetObjectName);
+                    return null;
+                });
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws IOException {
+        record(
+                Operation.DELETE,
+                () -> {
+                    delegate.deleteFile(objectName);
+                    return null;
+                });
+    }
+
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        return record(Operation.DELETE, () -> delegate.deleteFiles(objectNames));
+    }
+
+    @Override
+    public boolean fileExists(String objectName) throws IOException {
+        return record(Operation.EXISTS, () -> delegate.fileExists(objectName));
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) throws IOException {
+        return record(Operation.LIST, () -> delegate.listFiles(prefix));
+    }
+
+    @Override
+    public ObjectListing listFiles(
+            String prefix, @Nullable String continuationToken, int maxKeys) throws IOException {
+        return record(
+                Operation.LIST, () -> delegate.listFiles(prefix, continuationToken, maxKeys));
+    }
+
+    private <T> T record(Operation operation, IOCallable<T> callable) throws IOException {
+        long startTime = System.nanoTime();
+        try {
+            T result = callable.call();
+            recordSuccess(operation, startTime);
+            return result;
+        } catch (IOException | RuntimeException e) {
+            recordFailure(operation, startTime, e);
+            throw e;
+        }
+    }
+
+    /**
+     * 记录直接访问后端的异步操作，计入与同步调用相同的指标. 异步存储服务绕过同步装饰器时使用，
+     * 调用直接抛出的异常也以异常结束的future返回
+     */
+    <T> CompletableFuture<T> recordAsync(
+            Operation operation, Supplier<CompletableFuture<T>> callable) {
+        long startTime = System.nanoTime();
+        CompletableFuture<T> future;
+        try {
+            future = callable.get();
+        } catch (RuntimeException e) {
+            recordFailure(operation, startTime, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        return future.whenComplete(
+                (result, throwable) -> {
+                    if (throwable == null) {
+                        recordSuccess(operation, startTime);
+                    } else {
+                        recordFailure(
+                                operation,
+                                startTime,
+                                throwable instanceof CompletionException
+                                                && throwable.getCause() != null
+                                        ? throwable.getCause()
+                                        : throwable);
+                    }
+                });
+    }
+
+    /**
+     * 异步上传开始时调用，与{@link #uploadFinished(long)}成对出现
+     */
+    void uploadStarted() {
+        activeUploads.incrementAndGet();
+    }
+
+    void uploadFinished(long bytes) {
+        activeUploads.decrementAndGet();
+        bytesIn.increment(bytes);
+    }
+
+    /**
+     * 统计异步下载返回的流，关闭时记录传输耗时
+     */
+    InputStream meterDownload(InputStream inputStream, long startTime) {
+        return new MeteredInputStream(inputStream, startTime);
+    }
+
+    private void recordSuccess(Operation operation, long startTime) {
+        successTimers.get(operation).record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+    }
+
+    private void recordFailure(Operation operation, long startTime, Throwable throwable) {
+        // 异常路径较少，按需注册带异常类型标签的指标
+        operationTimer(operation, "error")
+                .record(System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+        Counter.builder("storage.errors")
+                .description("存储操作异常次数")
+                .tag("backend", backend)
+                .tag("operation", operation.tagValue())
+                .tag("exception", throwable.getClass().getSimpleName())
+                .register(registry)
+                .increment();
+    }
+
+    private Timer operationTimer(Operation operation, String outcome) {
+        return Timer.builder("storage.operations")
+                .description("存储操作耗时")
+                .tag("backend", backend)
+                .tag("operation", operation.tagValue())
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    enum Operation {
+        UPLOAD,
+        DOWNLOAD,
+        STAT,
+        COPY,
+        MOVE,
+        DELETE,
+        EXISTS,
+        LIST;
+
+        String tagValue() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private interface IOCallable<T> {
+
+        T call() throws IOException;
+    }
+
+    /**
+     * 统计读出的字节数，关闭时结束进行中的下载并记录传输耗时，重复关闭只计一次
+     */
+    private final class MeteredInputStream extends FilterInputStream {
+
+        private final long startTime;
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private MeteredInputStream(InputStream in, long startTime) {
+            super(in);
+            this.startTime = startTime;
+            activeDownloads.incrementAndGet();
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                bytesOut.increment();
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = super.read(b, off, len);
+            if (read > 0) {
+                bytesOut.increment(read);
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed.compareAndSet(false, true)) {
+                activeDownloads.decrementAndGet();
+                downloadTransferTimer.record(
+                        System.nanoTime() - startTime, TimeUnit.NANOSECONDS);
+            }
+            super.close();
+        }
+    }
+}
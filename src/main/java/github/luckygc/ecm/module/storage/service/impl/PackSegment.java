@@ -0,0 +1,324 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 打包存储的段文件 只追加写入，每条记录的格式为：
+ *
+ * <pre>
+ * magic(4) type(1) nameLength(2) dataLength(4) createTime(8) name data crc32(4)
+ * </pre>
+ *
+ * <p>校验和覆盖记录中除自身外的全部字节，启动扫描时据此识别写入中断留下的残缺记录.
+ */
+@Slf4j
+final class PackSegment implements Closeable {
+
+    static final byte TYPE_PUT = 1;
+    static final byte TYPE_DELETE = 2;
+
+    private static final int MAGIC = 0x45434D50;
+    private static final int HEADER_BYTES = 19;
+    private static final int TRAILER_BYTES = 4;
+    private static final String FILE_PREFIX = "pack-";
+    private static final String FILE_SUFFIX = ".seg";
+
+    private final long id;
+    private final Path path;
+    private final AtomicLong size;
+    private final AtomicLong garbageBytes = new AtomicLong();
+    private volatile FileChannel channel;
+    private volatile boolean retired;
+
+    private PackSegment(long id, Path path, FileChannel channel) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = new AtomicLong(channel.size());
+    }
+
+    static PackSegment open(Path directory, long id) throws IOException {
+        Path path = directory.resolve(String.format("%s%016d%s", FILE_PREFIX, id, FILE_SUFFIX));
+        return new PackSegment(id, path, openChannel(path));
+    }
+
+    /**
+     * 由文件名解析段编号
+     *
+     * @return 段编号，不是段文件时返回-1
+     */
+    static long parseId(Path path) {
+        String name = path.getFileName().toString();
+        if (!name.startsWith(FILE_PREFIX) || !name.endsWith(FILE_SUFFIX)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(
+                    name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static FileChannel openChannel(Path path) throws IOException {
+        return FileChannel.open(
+                path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    long id() {
+        return id;
+    }
+
+    long size() {
+        return size.get();
+    }
+
+    long garbageBytes() {
+        return garbageBytes.get();
+    }
+
+    void addGarbage(long bytes) {
+        garbageBytes.addAndGet(bytes);
+    }
+
+    /**
+     * 追加一条记录 调用方负责串行化同一段的写入
+     */
+    Entry append(byte type, String objectName, long createTime, byte[] data) throws IOException {
+        byte[] name = objectName.getBytes(StandardCharsets.UTF_8);
+        if (name.length > 0xFFFF) {
+            throw new IllegalArgumentException("对象名称过长: " + objectName);
+        }
+
+        ByteBuffer buffer =
+                ByteBuffer.allocate(HEADER_BYTES + name.length + data.length + TRAILER_BYTES);
+        buffer.putInt(MAGIC)
+                .put(type)
+                .putShort((short) name.length)
+                .putInt(data.length)
+                .putLong(createTime)
+                .put(name)
+                .put(data);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        int checksum = (int) crc.getValue();
+        buffer.putInt(checksum);
+        buffer.flip();
+
+        long recordOffset = size.get();
+        long position = recordOffset;
+        FileChannel fileChannel = channel();
+        while (buffer.hasRemaining()) {
+            position += fileChannel.write(buffer, position);
+        }
+        size.set(position);
+
+        return new Entry(
+                id,
+                recordOffset,
+                buffer.limit(),
+                recordOffset + HEADER_BYTES + name.length,
+                data.length,
+                createTime,
+                checksum);
+    }
+
+    /**
+     * 按位置读取记录中的一段数据，不移动通道位置，可并发调用
+     */
+    byte[] read(Entry entry, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        long position = entry.dataOffset() + offset;
+        FileChannel fileChannel = channel();
+        while (buffer.hasRemaining()) {
+            int read = fileChannel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                throw new EOFException("段文件已截断: " + path);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * 顺序扫描全部记录，遇到残缺记录时停止
+     *
+     * @param truncateTail 是否截断残缺记录及其之后的内容，仅用于最后一个段
+     */
+    void scan(RecordVisitor visitor, boolean truncateTail) throws IOException {
+        FileChannel fileChannel = channel();
+        long fileSize = fileChannel.size();
+        long position = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (position < fileSize) {
+            Record record = readRecord(fileChannel, header, position, fileSize);
+            if (record == null) {
+                break;
+            }
+            visitor.visit(record);
+            position += record.entry().recordLength();
+        }
+
+        if (position < fileSize) {
+            if (truncateTail) {
+                log.warn("截断段文件的残缺记录: {}, 偏移{}, 丢弃{}字节", path, position, fileSize - position);
+                fileChannel.truncate(position);
+                size.set(position);
+            } else {
+                log.error("段文件存在损坏的记录，其后的内容被忽略: {}, 偏移{}", path, position);
+            }
+        }
+    }
+
+    private @Nullable Record readRecord(
+            FileChannel fileChannel, ByteBuffer header, long position, long fileSize)
+            throws IOException {
+        if (fileSize - position < HEADER_BYTES + TRAILER_BYTES) {
+            return null;
+        }
+
+        header.clear();
+        readFully(fileChannel, header, position);
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            return null;
+        }
+        byte type = header.get();
+        int nameLength = Short.toUnsignedInt(header.getShort());
+        int dataLength = header.getInt();
+        long createTime = header.getLong();
+        long recordLength = (long) HEADER_BYTES + nameLength + dataLength + TRAILER_BYTES;
+        if ((type != TYPE_PUT && type != TYPE_DELETE)
+                || dataLength < 0
+                || recordLength > fileSize - position) {
+            return null;
+        }
+
+        ByteBuffer record = ByteBuffer.allocate((int) recordLength);
+        readFully(fileChannel, record, position);
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 0, record.capacity() - TRAILER_BYTES);
+        int checksum = record.getInt(record.capacity() - TRAILER_BYTES);
+        if ((int) crc.getValue() != checksum) {
+            return null;
+        }
+
+        String objectName =
+                new String(record.array(), HEADER_BYTES, nameLength, StandardCharsets.UTF_8);
+        Entry entry =
+                new Entry(
+                        id,
+                        position,
+                        (int) recordLength,
+                        position + HEADER_BYTES + nameLength,
+                        dataLength,
+                        createTime,
+                        checksum);
+        return new Record(type, objectName, entry);
+    }
+
+    private static void readFully(FileChannel fileChannel, ByteBuffer buffer, long position)
+            throws IOException {
+        while (buffer.hasRemaining()) {
+            if (fileChannel.read(buffer, position + buffer.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    /**
+     * 读线程被中断时通道会被关闭，此时重新打开，已回收的段不再打开
+     */
+    private FileChannel channel() throws IOException {
+        FileChannel current = channel;
+        if (current.isOpen()) {
+            return current;
+        }
+
+        synchronized (this) {
+            if (retired) {
+                throw new ClosedChannelException();
+            }
+            if (!channel.isOpen()) {
+                channel = openChannel(path);
+            }
+            return channel;
+        }
+    }
+
+    /**
+     * 回收段 关闭通道并删除文件
+     */
+    void retire() throws IOException {
+        synchronized (this) {
+            retired = true;
+            channel.close();
+        }
+        Files.deleteIfExists(path);
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            retired = true;
+            channel.close();
+        }
+    }
+
+    /**
+     * 记录位置
+     *
+     * @param segmentId 段编号
+     * @param recordOffset 记录在段内的偏移
+     * @param recordLength 记录总长度
+     * @param dataOffset 数据在段内的偏移
+     * @param length 数据长度
+     * @param createTime 写入时间戳(毫秒)
+     * @param checksum 记录校验和
+     */
+    record Entry(
+            long segmentId,
+            long recordOffset,
+            int recordLength,
+            long dataOffset,
+            int length,
+            long createTime,
+            int checksum) {}
+
+    record Record(byte type, String objectName, Entry entry) {}
+
+    @FunctionalInterface
+    interface RecordVisitor {
+
+        void visit(Record record) throws IOException;
+    }
+}
@@ -0,0 +1,661 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.util.StorageUtils;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 小文件打包存储 不超过阈值的对象追加写入滚动的段文件，由内存索引映射到(段, 偏移, 长度)，读取时按位置读取，
+ * 省去每个小文件的目录、inode和open调用. 超过阈值的对象仍交给被装饰的本地存储.
+ *
+ * <p>删除写入墓碑记录，启动时按段顺序扫描全部记录重建索引. 后台线程定期把垃圾占比超过阈值的段中的存活记录
+ * 搬到当前段后删除旧段，回收已删除的空间.
+ */
+@Slf4j
+public class PackedStorageManager extends ForwardingStorageManager {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final Path directory;
+    private final int maxObjectBytes;
+    private final long segmentBytes;
+    private final double compactGarbageRatio;
+
+    private final ConcurrentSkipListMap<String, PackSegment.Entry> index =
+            new ConcurrentSkipListMap<>(LocalObjectLister.OBJECT_NAME_ORDER);
+    private final ConcurrentSkipListMap<Long, PackSegment> segments = new ConcurrentSkipListMap<>();
+
+    /**
+     * 串行化段文件的追加写入及索引的对应更新
+     */
+    private final Lock writeLock = new ReentrantLock();
+
+    /**
+     * 已被覆盖或删除、但仍留在段文件中的写入记录数，按对象名称计数. 没有这类记录的对象不再需要墓碑，
+     * 压缩时不再复制其墓碑. 由写锁保护
+     */
+    private final Map<String, Integer> deadPuts = new HashMap<>();
+
+    private volatile PackSegment activeSegment;
+    private final ScheduledExecutorService compactor;
+
+    public PackedStorageManager(
+            StorageManager delegate,
+            StorageProperties.Pack properties,
+            SnowflakeIdGenerator snowflakeIdGenerator) {
+        super(delegate);
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+        this.directory = Paths.get(properties.getDirectory());
+        this.maxObjectBytes = properties.getMaxObjectBytes();
+        this.segmentBytes = properties.getSegmentBytes();
+        this.compactGarbageRatio = properties.getCompactGarbageRatio();
+
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("加载段文件失败: " + directory, e);
+        }
+
+        this.compactor =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("pack-compactor-%d")
+                                .setDaemon(true)
+                                .build());
+        compactor.scheduleWithFixedDelay(
+                this::compactQuietly,
+                properties.getCompactIntervalMs(),
+                properties.getCompactIntervalMs(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 按段编号顺序重放全部记录重建索引，后写入的记录覆盖先写入的记录
+     */
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        TreeMap<Long, Path> files = new TreeMap<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path path : stream) {
+                long id = PackSegment.parseId(path);
+                if (id >= 0) {
+                    files.put(id, path);
+                }
+            }
+        }
+
+        for (Long id : files.keySet()) {
+            PackSegment segment = PackSegment.open(directory, id);
+            segments.put(id, segment);
+            segment.scan(this::replay, id.equals(files.lastKey()));
+        }
+
+        Map.Entry<Long, PackSegment> last = segments.lastEntry();
+        activeSegment =
+                last != null && last.getValue().size() < segmentBytes
+                        ? last.getValue()
+                        : newSegment();
+        log.info("打包存储加载完成: {}，段文件{}个，对象{}个", directory, segments.size(), index.size());
+    }
+
+    private void replay(PackSegment.Record record) {
+        PackSegment.Entry entry = record.entry();
+        PackSegment.Entry previous =
+                record.type() == PackSegment.TYPE_PUT
+                        ? index.put(record.objectName(), entry)
+                        : index.remove(record.objectName());
+        if (previous != null) {
+            discard(record.objectName(), previous);
+        }
+        if (record.type() == PackSegment.TYPE_DELETE) {
+            addGarbage(entry);
+        }
+    }
+
+    @Override
+    public String uploadFile(Path filePath) throws IOException {
+        if (Files.size(filePath) > maxObjectBytes) {
+            return delegate.uploadFile(filePath);
+        }
+
+        String objectName =
+                StorageUtils.generateObjectName(
+                        snowflakeIdGenerator.nextId(), filePath.getFileName().toString());
+        append(objectName, Files.readAllBytes(filePath));
+        return objectName;
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        if (contentLength < 0 || contentLength > maxObjectBytes) {
+            return delegate.uploadStream(inputStream, contentLength, filename);
+        }
+
+        byte[] data = inputStream.readNBytes((int) contentLength);
+        if (data.length < contentLength) {
+            throw new EOFException(
+                    "上传内容不完整，期望" + contentLength + "字节，实际" + data.length + "字节");
+        }
+
+        String objectName =
+                StorageUtils.generateObjectName(snowflakeIdGenerator.nextId(), filename);
+        append(objectName, data);
+        return objectName;
+    }
+
+    /**
+     * 小对象写入段文件并删除底层存储中的同名对象，大对象则删除段文件中的同名对象
+     */
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        if (contentLength < 0 || contentLength > maxObjectBytes) {
+            deletePacked(objectName);
+            delegate.putStream(objectName, inputStream, contentLength);
+            return;
+        }
+
+        byte[] data = inputStream.readNBytes((int) contentLength);
+        if (data.length < contentLength) {
+            throw new EOFException(
+                    "上传内容不完整，期望" + contentLength + "字节，实际" + data.length + "字节");
+        }
+        append(objectName, data);
+        if (delegate.fileExists(objectName)) {
+            delegate.deleteFile(objectName);
+        }
+    }
+
+    private void append(String objectName, byte[] data) throws IOException {
+        writeLock.lock();
+        try {
+            PackSegment.Entry entry =
+                    writableSegment()
+                            .append(
+                                    PackSegment.TYPE_PUT,
+                                    objectName,
+                                    System.currentTimeMillis(),
+                                    data);
+            PackSegment.Entry previous = index.put(objectName, entry);
+            if (previous != null) {
+                discard(objectName, previous);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        PackSegment.Entry entry = index.get(objectName);
+        if (entry == null) {
+            return delegate.downloadFile(objectName);
+        }
+        return new ByteArrayInputStream(read(objectName, entry, 0, entry.length()));
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("非法的读取区间: offset=" + offset + ", length=" + length);
+        }
+
+        PackSegment.Entry entry = index.get(objectName);
+        if (entry == null) {
+            return delegate.downloadRange(objectName, offset, length);
+        }
+
+        int count = (int) Math.max(0, Math.min(length, entry.length() - offset));
+        if (count == 0) {
+            return InputStream.nullInputStream();
+        }
+        return new ByteArrayInputStream(read(objectName, entry, offset, count));
+    }
+
+    /**
+     * 读取期间段可能被压缩回收，此时按索引中的新位置重试
+     */
+    private byte[] read(String objectName, PackSegment.Entry entry, long offset, int length)
+            throws IOException {
+        PackSegment.Entry current = entry;
+        while (true) {
+            PackSegment segment = segments.get(current.segmentId());
+            if (segment != null) {
+                try {
+                    return segment.read(current, offset, length);
+                } catch (ClosedChannelException e) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw e;
+                    }
+                }
+            }
+
+            PackSegment.Entry relocated = index.get(objectName);
+            if (relocated == null) {
+                throw new FileNotFoundException("文件不存在: " + objectName);
+            }
+            if (relocated.equals(current)) {
+                throw new IOException("段文件不可用: " + current.segmentId());
+            }
+            current = relocated;
+        }
+    }
+
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        PackSegment.Entry entry = index.get(objectName);
+        if (entry == null) {
+            return delegate.stat(objectName);
+        }
+        return Optional.of(toMetadata(objectName, entry));
+    }
+
+    /**
+     * 段文件中的对象直接由索引得到，其余对象合并为一次底层存储的批量查询
+     */
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        Map<String, ObjectMetadata> packed = new HashMap<>();
+        List<String> unpacked = new ArrayList<>();
+        for (String objectName : objectNames) {
+            PackSegment.Entry entry = index.get(objectName);
+            if (entry != null) {
+                packed.put(objectName, toMetadata(objectName, entry));
+            } else {
+                unpacked.add(objectName);
+            }
+        }
+        Map<String, ObjectMetadata> stored =
+                unpacked.isEmpty() ? Map.of() : delegate.statAll(unpacked);
+
+        Map<String, ObjectMetadata> result = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            ObjectMetadata metadata = packed.getOrDefault(objectName, stored.get(objectName));
+            if (metadata != null) {
+                result.put(objectName, metadata);
+            }
+        }
+        return result;
+    }
+
+    private static ObjectMetadata toMetadata(String objectName, PackSegment.Entry entry) {
+        return new ObjectMetadata(
+                objectName,
+                entry.length(),
+                Instant.ofEpochMilli(entry.createTime()),
+                "\""
+                        + Integer.toHexString(entry.checksum())
+                        + "-"
+                        + Integer.toHexString(entry.length())
+                        + "\"",
+                StorageUtils.guessContentType(objectName));
+    }
+
+    /**
+     * 段文件中的对象追加一条新记录，小对象复制只是一次顺序追加；其余对象交给底层存储复制
+     */
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        PackSegment.Entry entry = index.get(sourceObjectName);
+        if (entry == null) {
+            deletePacked(targetObjectName);
+            delegate.copyFile(sourceObjectName, targetObjectName);
+            return;
+        }
+
+        append(targetObjectName, read(sourceObjectName, entry, 0, entry.length()));
+        if (delegate.fileExists(targetObjectName)) {
+            delegate.deleteFile(targetObjectName);
+        }
+    }
+
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        if (!index.containsKey(sourceObjectName)) {
+            deletePacked(targetObjectName);
+            delegate.moveFile(sourceObjectName, targetObjectName);
+            return;
+        }
+
+        copyFile(sourceObjectName, targetObjectName);
+        deletePacked(sourceObjectName);
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws IOException {
+        if (!deletePacked(objectName)) {
+            delegate.deleteFile(objectName);
+        }
+    }
+
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        List<DeleteFailure> failures = new ArrayList<>();
+        List<String> unpacked = new ArrayList<>();
+        for (String objectName : objectNames) {
+            try {
+                if (!deletePacked(objectName)) {
+                    unpacked.add(objectName);
+                }
+            } catch (IOException e) {
+                failures.add(new DeleteFailure(objectName, String.valueOf(e.getMessage())));
+            }
+        }
+
+        failures.addAll(delegate.deleteFiles(unpacked));
+        return failures;
+    }
+
+    /**
+     * 写入墓碑记录并移出索引
+     *
+     * @return 对象是否存储在段文件中
+     */
+    private boolean deletePacked(String objectName) throws IOException {
+        if (!index.containsKey(objectName)) {
+            return false;
+        }
+
+        writeLock.lock();
+        try {
+            PackSegment.Entry entry = index.get(objectName);
+            if (entry == null) {
+                return true;
+            }
+
+            PackSegment.Entry tombstone =
+                    writableSegment()
+                            .append(
+                                    PackSegment.TYPE_DELETE,
+                                    objectName,
+                                    System.currentTimeMillis(),
+                                    EMPTY);
+            index.remove(objectName);
+            discard(objectName, entry);
+            addGarbage(tombstone);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public boolean fileExists(String objectName) throws IOException {
+        return index.containsKey(objectName) || delegate.fileExists(objectName);
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) throws IOException {
+        List<String> objectNames = new ArrayList<>(delegate.listFiles(prefix));
+        try (Stream<String> packed = packedNames(prefix, null)) {
+            packed.forEach(objectNames::add);
+        }
+        return objectNames;
+    }
+
+    /**
+     * 合并两个来源中大于续传标记的有序结果，两者顺序一致，取合并后的前maxKeys个
+     */
+    @Override
+    public ObjectListing listFiles(
+            String prefix, @Nullable String continuationToken, int maxKeys) throws IOException {
+        ObjectListing delegated = delegate.listFiles(prefix, continuationToken, maxKeys);
+        List<String> packed;
+        try (Stream<String> stream = packedNames(prefix, continuationToken)) {
+            packed = stream.limit(maxKeys).collect(Collectors.toList());
+        }
+
+        List<String> left = delegated.objectNames();
+        List<String> objectNames = new ArrayList<>(Math.min(maxKeys, left.size() + packed.size()));
+        int i = 0;
+        int j = 0;
+        while (objectNames.size() < maxKeys && (i < left.size() || j < packed.size())) {
+            if (j >= packed.size()
+                    || (i < left.size()
+                            && LocalObjectLister.OBJECT_NAME_ORDER.compare(
+                                            left.get(i), packed.get(j))
+                                    <= 0)) {
+                objectNames.add(left.get(i++));
+            } else {
+                objectNames.add(packed.get(j++));
+            }
+        }
+
+        String nextContinuationToken = null;
+        if (objectNames.size() >= maxKeys || delegated.nextContinuationToken() != null) {
+            nextContinuationToken =
+                    objectNames.isEmpty()
+                            ? delegated.nextContinuationToken()
+                            : objectNames.get(objectNames.size() - 1);
+        }
+        return new ObjectListing(objectNames, nextContinuationToken);
+    }
+
+    @Override
+    public Stream<String> streamFiles(String prefix) throws IOException {
+        return Stream.concat(delegate.streamFiles(prefix), packedNames(prefix, null));
+    }
+
+    /**
+     * 以前缀开头的名称在索引中连续排列
+     */
+    private Stream<String> packedNames(@Nullable String prefix, @Nullable String after) {
+        String safePrefix = prefix == null ? "" : prefix;
+        Map<String, PackSegment.Entry> tail =
+                after != null && LocalObjectLister.OBJECT_NAME_ORDER.compare(after, safePrefix) >= 0
+                        ? index.tailMap(after, false)
+                        : index.tailMap(safePrefix, true);
+        return tail.keySet().stream().takeWhile(name -> name.startsWith(safePrefix));
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("段文件压缩失败: {}", directory, e);
+        }
+    }
+
+    /**
+     * 压缩垃圾占比超过阈值的已封存段
+     */
+    void compact() throws IOException {
+        for (PackSegment segment : new ArrayList<>(segments.values())) {
+            if (segment == activeSegment || segment.size() == 0) {
+                continue;
+            }
+            if ((double) segment.garbageBytes() / segment.size() >= compactGarbageRatio) {
+                compact(segment);
+            }
+        }
+    }
+
+    /**
+     * 把段中仍被索引引用的记录搬到当前段，再删除该段.
+     * 其余段中还留有该对象已失效的写入记录时墓碑也需要保留，否则重启后对象会复活；
+     * 对象已被重新写入时不复制墓碑，否则重启重放时墓碑排在新写入之后，对象会被删除.
+     */
+    private void compact(PackSegment segment) throws IOException {
+        long reclaimed = segment.size();
+        List<String> discardedPuts = new ArrayList<>();
+        List<PackSegment.Record> tombstones = new ArrayList<>();
+        segment.scan(
+                record -> {
+                    if (record.type() == PackSegment.TYPE_DELETE) {
+                        tombstones.add(record);
+                    } else if (!relocate(segment, record)) {
+                        discardedPuts.add(record.objectName());
+                    }
+                },
+                false);
+
+        writeLock.lock();
+        try {
+            for (String objectName : discardedPuts) {
+                deadPuts.computeIfPresent(objectName, (key, count) -> count > 1 ? count - 1 : null);
+            }
+            for (PackSegment.Record record : tombstones) {
+                if (!index.containsKey(record.objectName())
+                        && deadPuts.containsKey(record.objectName())) {
+                    copyTombstone(record);
+                }
+            }
+            segments.remove(segment.id());
+        } finally {
+            writeLock.unlock();
+        }
+        segment.retire();
+        log.info("段文件压缩完成: {}，回收{}字节", segment.id(), reclaimed);
+    }
+
+    /**
+     * @return 记录是否仍被索引引用并已搬到当前段
+     */
+    private boolean relocate(PackSegment segment, PackSegment.Record record) throws IOException {
+        PackSegment.Entry entry = record.entry();
+        if (!entry.equals(index.get(record.objectName()))) {
+            return false;
+        }
+
+        byte[] data = segment.read(entry, 0, entry.length());
+        writeLock.lock();
+        try {
+            // 搬运期间对象可能已被删除
+            if (!entry.equals(index.get(record.objectName()))) {
+                return false;
+            }
+            PackSegment.Entry moved =
+                    writableSegment()
+                            .append(
+                                    PackSegment.TYPE_PUT,
+                                    record.objectName(),
+                                    entry.createTime(),
+                                    data);
+            index.put(record.objectName(), moved);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * 调用方需持有写锁
+     */
+    private void copyTombstone(PackSegment.Record record) throws IOException {
+        PackSegment.Entry tombstone =
+                writableSegment()
+                        .append(
+                                PackSegment.TYPE_DELETE,
+                                record.objectName(),
+                                record.entry().createTime(),
+                                EMPTY);
+        addGarbage(tombstone);
+    }
+
+    /**
+     * 当前段写满时切换到新段 调用方需持有写锁
+     */
+    private PackSegment writableSegment() throws IOException {
+        if (activeSegment.size() >= segmentBytes) {
+            activeSegment = newSegment();
+        }
+        return activeSegment;
+    }
+
+    private PackSegment newSegment() throws IOException {
+        Map.Entry<Long, PackSegment> last = segments.lastEntry();
+        long id = last == null ? 0 : last.getKey() + 1;
+        PackSegment segment = PackSegment.open(directory, id);
+        segments.put(id, segment);
+        return segment;
+    }
+
+    /**
+     * 写入记录被覆盖或删除 调用方需持有写锁或处于启动恢复阶段
+     */
+    private void discard(String objectName, PackSegment.Entry entry) {
+        addGarbage(entry);
+        deadPuts.merge(objectName, 1, Integer::sum);
+    }
+
+    private void addGarbage(PackSegment.Entry entry) {
+        PackSegment segment = segments.get(entry.segmentId());
+        if (segment != null) {
+            segment.addGarbage(entry.recordLength());
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        compactor.shutdownNow();
+        compactor.awaitTermination(30, TimeUnit.SECONDS);
+        for (PackSegment segment : segments.values()) {
+            segment.close();
+        }
+        super.close();
+    }
+}
@@ -0,0 +1,1155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingInputStream;
+import com.google.common.io.ByteStreams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import github.luckygc.ecm.common.util.ObjectMapperUtils;
+import github.luckygc.ecm.config.property.DBQueueProperties;
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.constant.StorageQueueTask;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.module.support.queue.db.domain.entity.DBQueue;
+import github.luckygc.ecm.module.support.queue.db.manager.DBQueueManager;
+import github.luckygc.ecm.util.StorageUtils;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 多副本存储 同一对象以相同名称并行写入所有副本，成功的副本数达到写入法定数即返回，
+ * 其余副本在后台继续写入，失败的副本登记后由后台修复.
+ *
+ * <p>上传流只读取一次，逐块分发到各副本的内存管道. 管道写满的慢副本不再阻塞上传，后续数据溢出到临时文件，
+ * 由该副本在后台从文件继续读取，上传速度取决于最快的副本而不是最慢的副本. 溢出文件最大为整个对象的大小，
+ * 在全部副本结束后删除.
+ *
+ * <p>读取时优先选择健康且延迟最低的副本，失败时依次切换到其他副本；读到对象的副本之前返回不存在的副本
+ * 视为漏写，同样登记修复. 待修复的副本作为数据库队列任务保存，重启后不丢失，由各节点的修复线程领取，
+ * 失败时按队列的退避策略重试. 多节点部署时各节点的本地副本须挂载同一目录.
+ *
+ * <p>修复线程同时领取完整性巡检投递的修复任务，逐个读取副本比对登记的校验和，以一致的副本重写损坏或丢失的副本.
+ */
+@Slf4j
+public class ReplicatedStorageManager implements StorageManager, AutoCloseable {
+
+    /**
+     * 单个副本的管道缓冲块大小及块数，慢副本写满缓冲后改从溢出文件读取
+     */
+    private static final int PIPE_CHUNK_SIZE = 64 * 1024;
+
+    private static final int PIPE_CAPACITY = 16;
+
+    /**
+     * 修复任务的最大重试次数，副本长时间不可用时依靠退避拉长重试间隔
+     */
+    private static final int REPAIR_MAX_RETRY_COUNT = 10;
+
+    private final List<Replica> replicas;
+    private final int writeQuorum;
+    private final int failureThreshold;
+    private final long unhealthyCooldownMs;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final DBQueueManager dbQueueManager;
+
+    /**
+     * 副本写入任务在上传流读完之前一直占用线程，有界线程池在并发上传时会相互等待，因此不限线程数，
+     * 并发度由调用方的上传数决定
+     */
+    private final ExecutorService writer;
+
+    /**
+     * 修复线程及修复任务的续约线程
+     */
+    private final ScheduledExecutorService repairer;
+
+    /**
+     * 正在执行的修复任务，复制大对象期间由续约线程延长租约
+     */
+    private volatile @Nullable DBQueue repairing;
+
+    public ReplicatedStorageManager(
+            Map<String, StorageManager> replicas,
+            StorageProperties.Replication properties,
+            SnowflakeIdGenerator snowflakeIdGenerator,
+            DBQueueManager dbQueueManager,
+            DBQueueProperties dbQueueProperties) {
+        if (properties.getWriteQuorum() < 1 || properties.getWriteQuorum() > replicas.size()) {
+            throw new IllegalArgumentException(
+                    "写入法定数必须在1到副本数之间: " + properties.getWriteQuorum());
+        }
+
+        List<Replica> replicaList = new ArrayList<>(replicas.size());
+        for (Map.Entry<String, StorageManager> entry : replicas.entrySet()) {
+            replicaList.add(new Replica(entry.getKey(), entry.getValue()));
+        }
+        this.replicas = List.copyOf(replicaList);
+        this.writeQuorum = properties.getWriteQuorum();
+        this.failureThreshold = properties.getFailureThreshold();
+        this.unhealthyCooldownMs = properties.getUnhealthyCooldownMs();
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+        this.dbQueueManager = dbQueueManager;
+        this.writer =
+                Executors.newCachedThreadPool(
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("replica-writer-%d")
+                                .setDaemon(true)
+                                .build());
+        this.repairer =
+                Executors.newScheduledThreadPool(
+                        2,
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("replica-repairer-%d")
+                                .setDaemon(true)
+                                .build());
+        repairer.scheduleWithFixedDelay(
+                this::repairQuietly,
+                properties.getRepairIntervalMs(),
+                properties.getRepairIntervalMs(),
+                TimeUnit.MILLISECONDS);
+        repairer.scheduleWithFixedDelay(
+                this::heartbeatQuietly,
+                dbQueueProperties.getHeartbeatIntervalMs(),
+                dbQueueProperties.getHeartbeatIntervalMs(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String uploadFile(Path filePath) throws IOException {
+        String objectName =
+                StorageUtils.generateObjectName(
+                        snowflakeIdGenerator.nextId(), filePath.getFileName().toString());
+        long size = Files.size(filePath);
+
+        // 各副本独立读取文件，无需经过管道
+        List<CompletableFuture<Void>> futures = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            futures.add(
+                    runAsync(
+                            () -> {
+                                try (InputStream inputStream = Files.newInputStream(filePath)) {
+                                    replica.storageManager.putStream(objectName, inputStream, size);
+                                }
+                            }));
+        }
+        awaitWrite(objectName, futures, true);
+        return objectName;
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        String objectName =
+                StorageUtils.generateObjectName(snowflakeIdGenerator.nextId(), filename);
+        writeAll(objectName, inputStream, contentLength, true);
+        return objectName;
+    }
+
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        writeAll(objectName, inputStream, contentLength, false);
+    }
+
+    /**
+     * 上传流只读取一次，逐块分发到各副本的管道，各副本并行写入. 有副本溢出时同时把数据块写入溢出文件
+     */
+    private void writeAll(
+            String objectName, InputStream inputStream, long contentLength, boolean newObject)
+            throws IOException {
+        Spool spool = new Spool();
+        List<Pipe> pipes = new ArrayList<>(replicas.size());
+        List<CompletableFuture<Void>> futures = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            Pipe pipe = new Pipe(spool);
+            pipes.add(pipe);
+            CompletableFuture<Void> future =
+                    runAsync(
+                            () ->
+                                    replica.storageManager.putStream(
+                                            objectName, pipe, contentLength));
+            // 副本提前结束时不再向其管道写入，避免阻塞其他副本
+            future.whenComplete((v, ex) -> pipe.abandon());
+            futures.add(future);
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                .whenComplete((v, ex) -> spool.close());
+
+        try {
+            byte[] buffer = new byte[PIPE_CHUNK_SIZE];
+            long offset = 0;
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                if (read == 0) {
+                    continue;
+                }
+                byte[] chunk = Arrays.copyOf(buffer, read);
+                boolean spilled = false;
+                for (Pipe pipe : pipes) {
+                    spilled |= pipe.deliver(chunk);
+                }
+                if (spilled) {
+                    spool.append(chunk, offset);
+                }
+                offset += read;
+            }
+            for (Pipe pipe : pipes) {
+                pipe.finish();
+            }
+            spool.finish();
+        } catch (IOException | RuntimeException e) {
+            for (Pipe pipe : pipes) {
+                pipe.fail(e);
+            }
+            spool.fail(e);
+            throw e;
+        }
+
+        awaitWrite(objectName, futures, newObject);
+    }
+
+    /**
+     * 等待写入法定数的副本成功 达到后未完成的副本在后台继续，失败时登记修复；未达到时写入失败，
+     * 新对象在全部副本结束后删除已写入的副本
+     */
+    private void awaitWrite(
+            String objectName, List<CompletableFuture<Void>> futures, boolean newObject)
+            throws IOException {
+        CompletableFuture<Void> quorum = new CompletableFuture<>();
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger failures = new AtomicInteger();
+        int maxFailures = futures.size() - writeQuorum;
+        for (CompletableFuture<Void> future : futures) {
+            future.whenComplete(
+                    (v, ex) -> {
+                        if (ex == null) {
+                            if (successes.incrementAndGet() == writeQuorum) {
+                                quorum.complete(null);
+                            }
+                        } else if (failures.incrementAndGet() == maxFailures + 1) {
+                            quorum.completeExceptionally(ex);
+                        }
+                    });
+        }
+
+        try {
+            quorum.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("等待副本写入被中断: " + objectName);
+        } catch (ExecutionException e) {
+            if (newObject) {
+                CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+                        .whenComplete((v, ex) -> deleteWritten(objectName, futures));
+            }
+            throw new IOException(
+                    "写入成功的副本数未达到" + writeQuorum + ": " + objectName, unwrap(e.getCause()));
+        }
+
+        for (int i = 0; i < futures.size(); i++) {
+            Replica replica = replicas.get(i);
+            futures.get(i)
+                    .whenComplete(
+                            (v, ex) -> {
+                                if (ex != null) {
+                                    log.warn(
+                                            "副本写入失败，登记修复: {}, {}",
+                                            replica.name,
+                                            objectName,
+                                            unwrap(ex));
+                                    scheduleRepair(objectName, replica, false);
+                                }
+                            });
+        }
+    }
+
+    private void deleteWritten(String objectName, List<CompletableFuture<Void>> futures) {
+        for (int i = 0; i < futures.size(); i++) {
+            if (futures.get(i).isCompletedExceptionally()) {
+                continue;
+            }
+            Replica replica = replicas.get(i);
+            try {
+                replica.storageManager.deleteFile(objectName);
+            } catch (IOException | RuntimeException e) {
+                log.warn("清理写入失败的对象出错，登记修复: {}, {}", replica.name, objectName, e);
+                scheduleRepair(objectName, replica, true);
+            }
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        return readObject(objectName, storageManager -> storageManager.downloadFile(objectName));
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        return readObject(
+                objectName,
+                storageManager -> storageManager.downloadRange(objectName, offset, length));
+    }
+
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        try {
+            return Optional.of(
+                    readObject(
+                            objectName, storageManager -> requireStat(storageManager, objectName)));
+        } catch (FileNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 按读取顺序依次批量查询，前面的副本没有的对象交给下一个副本，查到时为前面的副本登记补写
+     */
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        Map<String, ObjectMetadata> found = new HashMap<>();
+        List<String> remaining = new ArrayList<>(objectNames);
+        List<Replica> answered = new ArrayList<>();
+        IOException lastFailure = null;
+        for (Replica replica : readOrder()) {
+            if (remaining.isEmpty()) {
+                break;
+            }
+            long startTime = System.nanoTime();
+            Map<String, ObjectMetadata> metadata;
+            try {
+                metadata = replica.storageManager.statAll(remaining);
+                replica.recordSuccess(System.nanoTime() - startTime);
+            } catch (IOException | RuntimeException e) {
+                replica.recordFailure();
+                log.warn("副本查询失败，切换到其他副本: {}", replica.name, e);
+                lastFailure = e instanceof IOException ioe ? ioe : new IOException(e);
+                continue;
+            }
+
+            for (String objectName : metadata.keySet()) {
+                for (Replica missing : answered) {
+                    log.warn("副本缺少对象，登记修复: {}, {}", missing.name, objectName);
+                    scheduleRepair(objectName, missing, false);
+                }
+            }
+            found.putAll(metadata);
+            answered.add(replica);
+            remaining.removeIf(metadata::containsKey);
+        }
+        if (answered.isEmpty() && lastFailure != null) {
+            throw lastFailure;
+        }
+
+        Map<String, ObjectMetadata> result = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            ObjectMetadata metadata = found.get(objectName);
+            if (metadata != null) {
+                result.put(objectName, metadata);
+            }
+        }
+        return result;
+    }
+
+    private static ObjectMetadata requireStat(StorageManager storageManager, String objectName)
+            throws IOException {
+        return storageManager
+                .stat(objectName)
+                .orElseThrow(() -> new FileNotFoundException("文件不存在: " + objectName));
+    }
+
+    @Override
+    public boolean fileExists(String objectName) throws IOException {
+        return stat(objectName).isPresent();
+    }
+
+    /**
+     * 按读取顺序依次尝试各副本 读到对象之前返回不存在的副本登记补写
+     */
+    private <T> T readObject(String objectName, ReplicaCall<T> call) throws IOException {
+        List<Replica> missingOn = new ArrayList<>();
+        IOException lastFailure = null;
+        for (Replica replica : readOrder()) {
+            long startTime = System.nanoTime();
+            try {
+                T result = call.call(replica.storageManager);
+                replica.recordSuccess(System.nanoTime() - startTime);
+                for (Replica missing : missingOn) {
+                    log.warn("副本缺少对象，登记修复: {}, {}", missing.name, objectName);
+                    scheduleRepair(objectName, missing, false);
+                }
+                return result;
+            } catch (FileNotFoundException e) {
+                replica.recordSuccess(System.nanoTime() - startTime);
+                missingOn.add(replica);
+            } catch (IOException | RuntimeException e) {
+                replica.recordFailure();
+                log.warn("副本读取失败，切换到其他副本: {}, {}", replica.name, objectName, e);
+                lastFailure = e instanceof IOException ioe ? ioe : new IOException(e);
+            }
+        }
+
+        if (lastFailure != null) {
+            throw lastFailure;
+        }
+        throw new FileNotFoundException("文件不存在: " + objectName);
+    }
+
+    /**
+     * 各副本在各自的存储内并行复制，缺少源对象的副本复制失败后按目标对象登记修复
+     */
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+        if (!fileExists(sourceObjectName)) {
+            throw new FileNotFoundException("文件不存在: " + sourceObjectName);
+        }
+
+        List<CompletableFuture<Void>> futures = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            futures.add(
+                    runAsync(
+                            () ->
+                                    replica.storageManager.copyFile(
+                                            sourceObjectName, targetObjectName)));
+        }
+        awaitWrite(targetObjectName, futures, false);
+    }
+
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+        copyFile(sourceObjectName, targetObjectName);
+        deleteFile(sourceObjectName);
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws IOException {
+        List<DeleteFailure> failures = deleteFiles(List.of(objectName));
+        if (!failures.isEmpty()) {
+            throw new IOException("删除对象失败: " + objectName + ", " + failures.get(0).reason());
+        }
+    }
+
+    /**
+     * 各副本并行批量删除 成功删除的副本数未达到写入法定数的对象视为删除失败，部分失败的副本登记修复
+     */
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        List<String> names = List.copyOf(objectNames);
+        List<CompletableFuture<List<DeleteFailure>>> futures = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            futures.add(
+                    CompletableFuture.supplyAsync(
+                            () -> {
+                                try {
+                                    return replica.storageManager.deleteFiles(names);
+                                } catch (IOException e) {
+                                    throw new CompletionException(e);
+                                }
+                            },
+                            writer));
+        }
+
+        Map<String, List<String>> reasons = new HashMap<>();
+        List<DBQueue> repairs = new ArrayList<>();
+        try {
+            for (int i = 0; i < futures.size(); i++) {
+                Replica replica = replicas.get(i);
+                List<DeleteFailure> replicaFailures;
+                try {
+                    replicaFailures = futures.get(i).get();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("等待副本删除被中断");
+                } catch (ExecutionException e) {
+                    Throwable cause = unwrap(e.getCause());
+                    replicaFailures = new ArrayList<>(names.size());
+                    for (String name : names) {
+                        replicaFailures.add(new DeleteFailure(name, cause.toString()));
+                    }
+                }
+                for (DeleteFailure failure : replicaFailures) {
+                    reasons.computeIfAbsent(failure.objectName(), k -> new ArrayList<>())
+                            .add(replica.name + ": " + failure.reason());
+                    repairs.add(repairTask(failure.objectName(), replica, true));
+                }
+            }
+        } finally {
+            // 副本整体不可用时失败的对象较多，合并为一次批量入队
+            scheduleRepairs(repairs);
+        }
+
+        List<DeleteFailure> failures = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : reasons.entrySet()) {
+            if (replicas.size() - entry.getValue().size() < writeQuorum) {
+                failures.add(
+                        new DeleteFailure(entry.getKey(), String.join("; ", entry.getValue())));
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * 列举由单个副本提供，失败时切换到其他副本
+     */
+    @Override
+    public List<String> listFiles(String prefix) throws IOException {
+        return readAny(storageManager -> storageManager.listFiles(prefix));
+    }
+
+    @Override
+    public ObjectListing listFiles(
+            String prefix, @Nullable String continuationToken, int maxKeys) throws IOException {
+        return readAny(
+                storageManager -> storageManager.listFiles(prefix, continuationToken, maxKeys));
+    }
+
+    private <T> T readAny(ReplicaCall<T> call) throws IOException {
+        IOException lastFailure = null;
+        for (Replica replica : readOrder()) {
+            long startTime = System.nanoTime();
+            try {
+                T result = call.call(replica.storageManager);
+                replica.recordSuccess(System.nanoTime() - startTime);
+                return result;
+            } catch (IOException | RuntimeException e) {
+                replica.recordFailure();
+                log.warn("副本列举失败，切换到其他副本: {}", replica.name, e);
+                lastFailure = e instanceof IOException ioe ? ioe : new IOException(e);
+            }
+        }
+        throw lastFailure;
+    }
+
+    /**
+     * 健康的副本在前并按平均延迟升序，冷却中的副本作为最后的选择
+     */
+    private List<Replica> readOrder() {
+        long now = System.currentTimeMillis();
+        List<Replica> ordered = new ArrayList<>(replicas);
+        ordered.sort(
+                Comparator.comparing((Replica replica) -> !replica.isHealthy(now))
+                        .thenComparingDouble(replica -> replica.latencyNanos));
+        return ordered;
+    }
+
+    private void scheduleRepair(String objectName, Replica replica, boolean delete) {
+        scheduleRepairs(List.of(repairTask(objectName, replica, delete)));
+    }
+
+    /**
+     * 登记修复任务 登记失败时只记录日志，漏写的副本由后续读取重新发现
+     */
+    private void scheduleRepairs(List<DBQueue> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        try {
+            dbQueueManager.enqueueAll(tasks);
+        } catch (RuntimeException e) {
+            log.error("登记副本修复任务失败，任务数: {}", tasks.size(), e);
+        }
+    }
+
+    /**
+     * 修复任务 delete为true表示需要删除，false表示需要补写
+     */
+    private static DBQueue repairTask(String objectName, Replica replica, boolean delete) {
+        DBQueue task = new DBQueue();
+        task.setQueueName(StorageQueueTask.QUEUE_NAME);
+        task.setTaskType(StorageQueueTask.REPLICA_REPAIR);
+        task.setMaxRetryCount(REPAIR_MAX_RETRY_COUNT);
+        task.setTaskData(
+                ObjectMapperUtils.writeValueAsString(
+                        Map.of(
+                                "objectName",
+                                objectName,
+                                "replica",
+                                replica.name,
+                                "delete",
+                                delete)));
+        return task;
+    }
+
+    /**
+     * 逐个领取并执行修复任务，直到没有待修复的任务. 每次只领取一个，已领取的任务都在执行中并持续续约，
+     * 不会因排队等待而租约到期被其他节点重复执行. 其他节点同时领取时跳过已被领取的任务
+     */
+    private void repairQuietly() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                List<DBQueue> tasks =
+                        dbQueueManager.claim(
+                                StorageQueueTask.QUEUE_NAME,
+                                List.of(
+                                        StorageQueueTask.REPLICA_REPAIR,
+                                        StorageQueueTask.INTEGRITY_REPAIR),
+                                1);
+                if (tasks.isEmpty()) {
+                    return;
+                }
+                repairing = tasks.get(0);
+                try {
+                    repair(tasks.get(0));
+                } finally {
+                    repairing = null;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("领取副本修复任务失败", e);
+        }
+    }
+
+    /**
+     * 为执行中的修复任务续约，续约失败说明租约已被回收，修复结果会被忽略
+     */
+    private void heartbeatQuietly() {
+        DBQueue task = repairing;
+        if (task == null) {
+            return;
+        }
+        try {
+            if (dbQueueManager.extendLeases(List.of(task)) == 0) {
+                log.warn("副本修复任务续约失败，租约可能已被回收: {}", task.getId());
+            }
+        } catch (RuntimeException e) {
+            log.error("副本修复任务续约失败", e);
+        }
+    }
+
+    private void repair(DBQueue task) {
+        if (StorageQueueTask.INTEGRITY_REPAIR.equals(task.getTaskType())) {
+            restore(task);
+            return;
+        }
+
+        Map<String, Object> data =
+                ObjectMapperUtils.readValue(task.getTaskData(), new TypeReference<>() {});
+        String objectName = (String) data.get("objectName");
+        String replicaName = (String) data.get("replica");
+        boolean delete = Boolean.TRUE.equals(data.get("delete"));
+        Optional<Replica> target =
+                replicas.stream().filter(replica -> replica.name.equals(replicaName)).findFirst();
+        if (target.isEmpty()) {
+            // 副本已从配置中移除
+            dbQueueManager.complete(task, "副本不存在: " + replicaName);
+            return;
+        }
+
+        try {
+            repair(objectName, target.get(), delete);
+        } catch (IOException | RuntimeException e) {
+            log.warn("副本修复失败，稍后重试: {}, {}", replicaName, objectName, e);
+            dbQueueManager.fail(task, e.toString());
+            return;
+        }
+        dbQueueManager.complete(task, null);
+    }
+
+    private void repair(String objectName, Replica target, boolean delete) throws IOException {
+        if (delete) {
+            target.storageManager.deleteFile(objectName);
+            return;
+        }
+
+        for (Replica source : readOrder()) {
+            if (source == target) {
+                continue;
+            }
+            Optional<ObjectMetadata> metadata = source.storageManager.stat(objectName);
+            if (metadata.isEmpty()) {
+                continue;
+            }
+            try (InputStream inputStream = source.storageManager.downloadFile(objectName)) {
+                target.storageManager.putStream(objectName, inputStream, metadata.get().size());
+            }
+            log.info("副本已修复: {}, {}，来源: {}", target.name, objectName, source.name);
+            return;
+        }
+        // 所有副本都没有该对象，说明已被删除
+        log.debug("对象已不存在，跳过修复: {}", objectName);
+    }
+
+    private void restore(DBQueue task) {
+        Map<String, Object> data =
+                ObjectMapperUtils.readValue(task.getTaskData(), new TypeReference<>() {});
+        String objectName = (String) data.get("objectName");
+        String checksum = (String) data.get("checksum");
+        long size = ((Number) data.get("size")).longValue();
+
+        String result;
+        try {
+            result = restore(objectName, checksum, size);
+        } catch (IOException | RuntimeException e) {
+            log.warn("对象修复失败，稍后重试: {}", objectName, e);
+            dbQueueManager.fail(task, e.toString());
+            return;
+        }
+        dbQueueManager.complete(task, result);
+    }
+
+    /**
+     * 以校验和一致的副本重写损坏或丢失的副本 读取副本出错时抛出异常，由队列稍后重试
+     *
+     * @return 无需修复或无法修复时的原因，修复完成时为空
+     */
+    private @Nullable String restore(String objectName, String checksum, long size)
+            throws IOException {
+        Replica source = null;
+        List<Replica> damaged = new ArrayList<>();
+        for (Replica replica : readOrder()) {
+            if (isIntact(replica, objectName, checksum, size)) {
+                if (source == null) {
+                    source = replica;
+                }
+            } else {
+                damaged.add(replica);
+            }
+        }
+
+        if (source == null) {
+            log.error("所有副本均已损坏或丢失，无法修复: {}", objectName);
+            return "没有校验和一致的副本";
+        }
+        if (damaged.isEmpty()) {
+            // 巡检读取时的异常是暂时的，或已由副本修复任务修复
+            return "所有副本校验和一致";
+        }
+        for (Replica target : damaged) {
+            try (InputStream inputStream = source.storageManager.downloadFile(objectName)) {
+                target.storageManager.putStream(objectName, inputStream, size);
+            }
+            log.info("损坏的副本已修复: {}, {}，来源: {}", target.name, objectName, source.name);
+        }
+        return null;
+    }
+
+    private static boolean isIntact(
+            Replica replica, String objectName, String checksum, long size) throws IOException {
+        try (HashingInputStream inputStream =
+                new HashingInputStream(
+                        Hashing.sha256(), replica.storageManager.downloadFile(objectName))) {
+            return ByteStreams.exhaust(inputStream) == size
+                    && inputStream.hash().toString().equals(checksum);
+        } catch (FileNotFoundException e) {
+            return false;
+        }
+    }
+
+    private CompletableFuture<Void> runAsync(ReplicaTask task) {
+        return CompletableFuture.runAsync(
+                () -> {
+                    try {
+                        task.run();
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
+                    }
+                },
+                writer);
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+    }
+
+    @Override
+    public void close() throws Exception {
+        repairer.shutdownNow();
+        writer.shutdown();
+        writer.awaitTermination(30, TimeUnit.SECONDS);
+        for (Replica replica : replicas) {
+            if (replica.storageManager instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private interface ReplicaCall<T> {
+
+        T call(StorageManager storageManager) throws IOException;
+    }
+
+    private interface ReplicaTask {
+
+        void run() throws IOException;
+    }
+
+    /**
+     * 副本及其读取延迟、健康状态 统计字段允许并发更新时丢失个别样本
+     */
+    private final class Replica {
+
+        private final String name;
+        private final StorageManager storageManager;
+
+        private volatile double latencyNanos;
+        private volatile int consecutiveFailures;
+        private volatile long unhealthyUntil;
+
+        private Replica(String name, StorageManager storageManager) {
+            this.name = name;
+            this.storageManager = storageManager;
+        }
+
+        private boolean isHealthy(long now) {
+            return now >= unhealthyUntil;
+        }
+
+        private void recordSuccess(long elapsedNanos) {
+            // 指数加权平均，新样本占0.2
+            latencyNanos =
+                    latencyNanos == 0 ? elapsedNanos : latencyNanos * 0.8 + elapsedNanos * 0.2;
+            consecutiveFailures = 0;
+        }
+
+        private void recordFailure() {
+            int failures = consecutiveFailures + 1;
+            consecutiveFailures = failures;
+            if (failures >= failureThreshold) {
+                unhealthyUntil = System.currentTimeMillis() + unhealthyCooldownMs;
+                log.warn("副本连续失败{}次，暂停读取{}ms: {}", failures, unhealthyCooldownMs, name);
+            }
+        }
+    }
+
+    /**
+     * 单个副本的管道 上传线程逐块放入，副本写入线程作为输入流读取. 管道写满时不等待，标记为溢出，
+     * 副本取完已放入的块后改从溢出文件读取后续数据. 副本放弃后放入直接丢弃，上传流读取失败时副本读取到异常
+     */
+    private static final class Pipe extends InputStream {
+
+        private static final byte[] EOF = new byte[0];
+
+        private final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(PIPE_CAPACITY);
+        private final Spool spool;
+
+        private volatile boolean abandoned;
+        private volatile boolean spilled;
+        private volatile @Nullable Throwable failure;
+
+        /**
+         * 上传线程已放入管道的字节数，溢出后不再变化，即从溢出文件读取的起始位置
+         */
+        private long delivered;
+
+        private byte @Nullable [] current;
+        private int position;
+
+        /**
+         * 从溢出文件读取的位置，未溢出时为-1
+         */
+        private long spoolPosition = -1;
+
+        private Pipe(Spool spool) {
+            this.spool = spool;
+        }
+
+        /**
+         * 放入数据块，不阻塞
+         *
+         * @return 该副本是否需要从溢出文件读取这一块
+         */
+        private boolean deliver(byte[] chunk) {
+            if (abandoned) {
+                return false;
+            }
+            if (!spilled) {
+                if (queue.offer(chunk)) {
+                    delivered += chunk.length;
+                    return false;
+                }
+                spilled = true;
+            }
+            return true;
+        }
+
+        private void finish() {
+            if (!abandoned && !spilled && !queue.offer(EOF)) {
+                // 结束标记也放不下时由溢出文件的结束状态表示
+                spilled = true;
+            }
+        }
+
+        private void fail(Throwable cause) {
+            failure = cause;
+            abandoned = true;
+            queue.clear();
+            queue.offer(EOF);
+        }
+
+        private void abandon() {
+            abandoned = true;
+            queue.clear();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            int read = read(single, 0, 1);
+            return read == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (spoolPosition >= 0) {
+                int read = spool.read(spoolPosition, b, off, len);
+                if (read > 0) {
+                    spoolPosition += read;
+                }
+                return read;
+            }
+            if (current != EOF && (current == null || position == current.length)) {
+                current = take();
+                position = 0;
+                if (current == null) {
+                    spoolPosition = delivered;
+                    return read(b, off, len);
+                }
+            }
+            if (current == EOF) {
+                // 结束标记保留为当前块，重复读取时仍返回-1
+                Throwable cause = failure;
+                if (cause != null) {
+                    throw new IOException("上传流读取失败", cause);
+                }
+                return -1;
+            }
+
+            int read = Math.min(len, current.length - position);
+            System.arraycopy(current, position, b, off, read);
+            position += read;
+            return read;
+        }
+
+        /**
+         * 取下一块，已溢出且管道已取完时返回空
+         */
+        private byte @Nullable [] take() throws InterruptedIOException {
+            try {
+                while (true) {
+                    byte[] chunk = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (chunk != null) {
+                        return chunk;
+                    }
+                    if (spilled) {
+                        // 溢出后不再放入新块，再取一次确认已取完
+                        return queue.poll();
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("读取上传数据被中断");
+            }
+        }
+    }
+
+    /**
+     * 慢副本共用的溢出文件 首个副本溢出时才创建，只保存溢出之后的数据，按上传流中的偏移定位.
+     * 上传线程追加写入，副本写入线程读取到已写入的末尾时等待
+     */
+    private static final class Spool {
+
+        private final Lock lock = new ReentrantLock();
+        private final Condition appended = lock.newCondition();
+
+        private @Nullable Path file;
+        private @Nullable FileChannel channel;
+
+        /**
+         * 文件开头对应的上传流偏移
+         */
+        private long base;
+
+        /**
+         * 已写入数据的末尾对应的上传流偏移
+         */
+        private long end;
+
+        private boolean finished;
+        private boolean closed;
+        private @Nullable Throwable failure;
+
+        private void append(byte[] chunk, long offset) throws IOException {
+            FileChannel target = channel;
+            if (target == null) {
+                lock.lock();
+                try {
+                    if (closed) {
+                        // 全部副本已结束，无需再溢出
+                        return;
+                    }
+                    Path created = Files.createTempFile("replica-", ".spool");
+                    try {
+                        target =
+                                FileChannel.open(
+                                        created,
+                                        StandardOpenOption.READ,
+                                        StandardOpenOption.WRITE);
+                    } catch (IOException | RuntimeException e) {
+                        Files.deleteIfExists(created);
+                        throw e;
+                    }
+                    file = created;
+                    channel = target;
+                    base = offset;
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(chunk);
+            long filePosition = offset - base;
+            while (buffer.hasRemaining()) {
+                filePosition += target.write(buffer, filePosition);
+            }
+            lock.lock();
+            try {
+                end = offset + chunk.length;
+                appended.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void finish() {
+            lock.lock();
+            try {
+                finished = true;
+                appended.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void fail(Throwable cause) {
+            lock.lock();
+            try {
+                failure = cause;
+                appended.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * 读取上传流中position处的数据
+         *
+         * @return 读取的字节数，上传流结束时返回-1
+         */
+        private int read(long position, byte[] b, int off, int len) throws IOException {
+            FileChannel source;
+            long filePosition;
+            int length;
+            lock.lock();
+            try {
+                while (position >= end && !finished && failure == null) {
+                    appended.await();
+                }
+                if (failure != null) {
+                    throw new IOException("上传流读取失败", failure);
+                }
+                if (position >= end) {
+                    return -1;
+                }
+                source = channel;
+                filePosition = position - base;
+                length = (int) Math.min(len, end - position);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("读取溢出数据被中断");
+            } finally {
+                lock.unlock();
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(b, off, length);
+            int read = 0;
+            while (read == 0) {
+                read = source.read(buffer, filePosition);
+            }
+            return read;
+        }
+
+        /**
+         * 全部副本结束后删除溢出文件
+         */
+        private void close() {
+            lock.lock();
+            try {
+                closed = true;
+                if (channel == null) {
+                    return;
+                }
+                channel.close();
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("删除副本溢出文件失败: {}", file, e);
+            } finally {
+                channel = null;
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.AsyncStorageManager;
+import github.luckygc.ecm.util.StorageUtils;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.FileNotFoundException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.async.AsyncRequestBody;
+import software.amazon.awssdk.core.async.AsyncResponseTransformer;
+import software.amazon.awssdk.services.s3.S3AsyncClient;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+/**
+ * S3异步存储服务 基于S3AsyncClient的非阻塞I/O，传输过程不占用调用线程.
+ * 仅上传输入流时需要线程阻塞读取源数据，由传入的有界线程池承担. 与同步的S3存储一致，对象不存在时下载以
+ * FileNotFoundException结束，参数非法时返回异常结束的future而不是直接抛出.
+ */
+@Slf4j
+public class S3AsyncStorageManager implements AsyncStorageManager, AutoCloseable {
+
+    private final S3AsyncClient s3AsyncClient;
+    private final StorageProperties.S3 properties;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final ExecutorService streamReadExecutor;
+
+    public S3AsyncStorageManager(
+            S3AsyncClient s3AsyncClient,
+            StorageProperties.S3 properties,
+            SnowflakeIdGenerator snowflakeIdGenerator,
+            ExecutorService streamReadExecutor) {
+        this.s3AsyncClient = s3AsyncClient;
+        this.properties = properties;
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+        this.streamReadExecutor = streamReadExecutor;
+    }
+
+    @Override
+    public CompletableFuture<String> uploadFile(Path filePath) {
+        String objectName =
+                StorageUtils.generateObjectName(
+                        snowflakeIdGenerator.nextId(), filePath.getFileName().toString());
+        return s3AsyncClient
+                .putObject(putRequest(objectName), AsyncRequestBody.fromFile(filePath))
+                .thenApply(
+                        response -> {
+                            log.info("S3文件上传成功: {}/{}", properties.getBucket(), objectName);
+                            return objectName;
+                        });
+    }
+
+    @Override
+    public CompletableFuture<String> uploadStream(
+            InputStream inputStream, long contentLength, String filename) {
+        if (contentLength < 0) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException("contentLength不能小于0: " + contentLength));
+        }
+
+        String objectName =
+                StorageUtils.generateObjectName(snowflakeIdGenerator.nextId(), filename);
+        AsyncRequestBody requestBody =
+                AsyncRequestBody.fromInputStream(inputStream, contentLength, streamReadExecutor);
+        return s3AsyncClient
+                .putObject(putRequest(objectName), requestBody)
+                .thenApply(
+                        response -> {
+                            log.info("S3文件上传成功: {}/{}", properties.getBucket(), objectName);
+                            return objectName;
+                        });
+    }
+
+    @Override
+    public CompletableFuture<InputStream> downloadFile(String objectName) {
+        GetObjectRequest request =
+                GetObjectRequest.builder().bucket(properties.getBucket()).key(objectName).build();
+        return getObject(request);
+    }
+
+    @Override
+    public CompletableFuture<InputStream> downloadRange(
+            String objectName, long offset, long length) {
+        if (offset < 0 || length < 0) {
+            return CompletableFuture.failedFuture(
+                    new IllegalArgumentException(
+                            "非法的读取区间: offset=" + offset + ", length=" + length));
+        }
+        if (length == 0) {
+            return CompletableFuture.completedFuture(InputStream.nullInputStream());
+        }
+
+        GetObjectRequest request =
+                GetObjectRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(objectName)
+                        .range("bytes=" + offset + "-" + (offset + length - 1))
+                        .build();
+        return getObject(request);
+    }
+
+    /**
+     * 对象不存在时与同步的S3存储一致以FileNotFoundException结束
+     */
+    private CompletableFuture<InputStream> getObject(GetObjectRequest request) {
+        return s3AsyncClient
+                .getObject(request, AsyncResponseTransformer.toBlockingInputStream())
+                .handle(
+                        (response, throwable) -> {
+                            if (throwable == null) {
+                                return response;
+                            }
+
+                            Throwable cause = unwrap(throwable);
+                            if (cause instanceof NoSuchKeyException) {
+                                throw new CompletionException(
+                                        new FileNotFoundException("文件不存在: " + request.key()));
+                            }
+                            throw new CompletionException(cause);
+                        });
+    }
+
+    @Override
+    public CompletableFuture<Optional<ObjectMetadata>> stat(String objectName) {
+        HeadObjectRequest request =
+                HeadObjectRequest.builder().bucket(properties.getBucket()).key(objectName).build();
+        return s3AsyncClient
+                .headObject(request)
+                .handle(
+                        (response, throwable) -> {
+                            if (throwable == null) {
+                                return Optional.of(
+                                        S3StorageManager.toMetadata(objectName, response));
+                            }
+
+                            Throwable cause = unwrap(throwable);
+                            if (cause instanceof NoSuchKeyException) {
+                                return Optional.empty();
+                            }
+                            throw new CompletionException(cause);
+                        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteFile(String objectName) {
+        DeleteObjectRequest request =
+                DeleteObjectRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(objectName)
+                        .build();
+        return s3AsyncClient.deleteObject(request).thenApply(response -> null);
+    }
+
+    @Override
+    public CompletableFuture<Boolean> fileExists(String objectName) {
+        return stat(objectName).thenApply(Optional::isPresent);
+    }
+
+    private static Throwable unwrap(Throwable throwable) {
+        return throwable instanceof CompletionException && throwable.getCause() != null
+                ? throwable.getCause()
+                : throwable;
+    }
+
+    private PutObjectRequest putRequest(String objectName) {
+        return PutObjectRequest.builder()
+                .bucket(properties.getBucket())
+                .key(objectName)
+                .contentType(StorageUtils.guessContentType(objectName))
+                .build();
+    }
+
+    @Override
+    public void close() {
+        streamReadExecutor.shutdown();
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadChunkEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity;
+import github.luckygc.ecm.module.storage.service.ChunkedUploadStore;
+import github.luckygc.ecm.util.StorageUtils;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.NoSuchUploadException;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * S3分片存放 会话对应一次S3分片上传，分片直接上传为S3分片，提交时由S3合并，不经过本地磁盘
+ */
+@Slf4j
+public class S3ChunkedUploadStore implements ChunkedUploadStore {
+
+    private final S3Client s3Client;
+    private final StorageProperties.S3 properties;
+
+    public S3ChunkedUploadStore(S3Client s3Client, StorageProperties.S3 properties) {
+        this.s3Client = s3Client;
+        this.properties = properties;
+    }
+
+    @Override
+    public String open(String objectName) {
+        CreateMultipartUploadRequest request =
+                CreateMultipartUploadRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(objectName)
+                        .contentType(StorageUtils.guessContentType(objectName))
+                        .build();
+        return s3Client.createMultipartUpload(request).uploadId();
+    }
+
+    @Override
+    public String writeChunk(
+            StorageUploadSessionEntity session,
+            int chunkNumber,
+            InputStream inputStream,
+            long contentLength) {
+        UploadPartRequest request =
+                UploadPartRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(session.getObjectName())
+                        .uploadId(session.getUploadId())
+                        .partNumber(chunkNumber)
+                        .contentLength(contentLength)
+                        .build();
+        return s3Client.uploadPart(request, RequestBody.fromInputStream(inputStream, contentLength))
+                .eTag();
+    }
+
+    @Override
+    public void commit(StorageUploadSessionEntity session, List<StorageUploadChunkEntity> chunks) {
+        List<CompletedPart> parts = new ArrayList<>(chunks.size());
+        for (StorageUploadChunkEntity chunk : chunks) {
+            parts.add(
+                    CompletedPart.builder()
+                            .partNumber(chunk.getChunkNumber())
+                            .eTag(chunk.getETag())
+                            .build());
+        }
+
+        CompleteMultipartUploadRequest request =
+                CompleteMultipartUploadRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(session.getObjectName())
+                        .uploadId(session.getUploadId())
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                        .build();
+        s3Client.completeMultipartUpload(request);
+    }
+
+    @Override
+    public void abort(StorageUploadSessionEntity session) {
+        AbortMultipartUploadRequest request =
+                AbortMultipartUploadRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(session.getObjectName())
+                        .uploadId(session.getUploadId())
+                        .build();
+        try {
+            s3Client.abortMultipartUpload(request);
+        } catch (NoSuchUploadException e) {
+            log.debug("分片上传已不存在: {}, uploadId: {}", session.getObjectName(), session.getUploadId());
+        }
+    }
+}
@@ -0,0 +1,390 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import github.luckygc.ecm.config.property.StorageProperties;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import software.amazon.awssdk.core.exception.SdkException;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.http.ContentStreamProvider;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedMultipartUpload;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartCopyRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * S3分片上传 大对象拆分为多个分片并行上传或服务端复制，单个分片失败时只重试该分片
+ */
+@Slf4j
+final class S3MultipartUploader implements AutoCloseable {
+
+    /**
+     * S3要求除最后一个分片外，分片不小于5MB
+     */
+    private static final long MIN_PART_SIZE = 5L * 1024 * 1024;
+
+    /**
+     * S3单个对象最多10000个分片
+     */
+    private static final int MAX_PARTS = 10000;
+
+    private static final long RETRY_BACKOFF_MS = 500L;
+
+    private final S3Client s3Client;
+    private final StorageProperties.S3 properties;
+    private final int concurrency;
+    private final ExecutorService executor;
+
+    S3MultipartUploader(S3Client s3Client, StorageProperties.S3 properties) {
+        this.s3Client = s3Client;
+        this.properties = properties;
+        this.concurrency = Math.max(1, properties.getMultipartConcurrency());
+        this.executor =
+                Executors.newFixedThreadPool(
+                        concurrency,
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("s3-multipart-%d")
+                                .setDaemon(true)
+                                .build());
+    }
+
+    boolean shouldUse(long contentLength) {
+        return contentLength >= properties.getMultipartThreshold();
+    }
+
+    /**
+     * 上传本地文件 每个分片按偏移量直接从文件读取，重试时重新打开对应区间，不占用额外内存
+     */
+    void uploadFile(String objectName, Path filePath, long fileSize, String contentType)
+            throws IOException {
+        long partSize = partSize(fileSize);
+        String uploadId = createMultipartUpload(objectName, contentType);
+        List<CompletableFuture<CompletedPart>> futures = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            for (long offset = 0; offset < fileSize; offset += partSize) {
+                long length = Math.min(partSize, fileSize - offset);
+                RequestBody body =
+                        RequestBody.fromContentProvider(
+                                new FileRegionProvider(filePath, offset, length),
+                                length,
+                                contentType);
+                int currentPartNumber = partNumber++;
+                futures.add(
+                        CompletableFuture.supplyAsync(
+                                () -> uploadPart(objectName, uploadId, currentPartNumber, body),
+                                executor));
+            }
+            completeMultipartUpload(objectName, uploadId, join(futures));
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(objectName, uploadId, futures);
+            throw e;
+        }
+    }
+
+    /**
+     * 上传输入流 流只能顺序读取，分片读入内存后并行上传，同时在途的分片数不超过并发数.
+     * 长度未知(小于0)时按配置的分片大小读取直到流末尾.
+     */
+    void uploadStream(
+            String objectName, InputStream inputStream, long contentLength, String contentType)
+            throws IOException {
+        long partSize = partSize(Math.max(contentLength, 0));
+        String uploadId = createMultipartUpload(objectName, contentType);
+        List<CompletableFuture<CompletedPart>> futures = new ArrayList<>();
+        Semaphore inFlight = new Semaphore(concurrency);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            int partNumber = 1;
+            long offset = 0;
+            while (contentLength < 0 || offset < contentLength) {
+                int length =
+                        (int) (contentLength < 0
+                                ? partSize
+                                : Math.min(partSize, contentLength - offset));
+                acquire(inFlight);
+                // 已有分片失败时不再继续读取后续分片
+                if (failure.get() != null) {
+                    inFlight.release();
+                    throw new IOException("分片上传失败", failure.get());
+                }
+
+                byte[] buffer = inputStream.readNBytes(length);
+                if (contentLength >= 0 && buffer.length != length) {
+                    inFlight.release();
+                    throw new EOFException(
+                            "上传内容不完整，期望"
+                                    + contentLength
+                                    + "字节，实际"
+                                    + (offset + buffer.length)
+                                    + "字节");
+                }
+                // 长度未知时读到流末尾即结束，空的末尾分片不上传
+                if (buffer.length == 0 && partNumber > 1) {
+                    inFlight.release();
+                    break;
+                }
+                if (partNumber > MAX_PARTS) {
+                    inFlight.release();
+                    throw new IOException("分片数超过上限: " + MAX_PARTS);
+                }
+
+                RequestBody body = RequestBody.fromBytes(buffer);
+                int currentPartNumber = partNumber++;
+                CompletableFuture<CompletedPart> future =
+                        CompletableFuture.supplyAsync(
+                                () -> uploadPart(objectName, uploadId, currentPartNumber, body),
+                                executor);
+                future.whenComplete(
+                        (part, ex) -> {
+                            if (ex != null) {
+                                failure.compareAndSet(null, ex);
+                            }
+                            inFlight.release();
+                        });
+                futures.add(future);
+
+                offset += buffer.length;
+                if (buffer.length < length) {
+                    break;
+                }
+            }
+            completeMultipartUpload(objectName, uploadId, join(futures));
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(objectName, uploadId, futures);
+            throw e;
+        }
+    }
+
+    /**
+     * 服务端分片复制 各分片以UploadPartCopy按字节区间从源对象并行复制，数据不经过本服务
+     */
+    void copyObject(
+            String sourceObjectName, String targetObjectName, long size, String contentType)
+            throws IOException {
+        long partSize = partSize(size);
+        String uploadId = createMultipartUpload(targetObjectName, contentType);
+        List<CompletableFuture<CompletedPart>> futures = new ArrayList<>();
+        try {
+            int partNumber = 1;
+            for (long offset = 0; offset < size; offset += partSize) {
+                String range = "bytes=" + offset + "-" + (Math.min(offset + partSize, size) - 1);
+                int currentPartNumber = partNumber++;
+                futures.add(
+                        CompletableFuture.supplyAsync(
+                                () ->
+                                        copyPart(
+                                                sourceObjectName,
+                                                targetObjectName,
+                                                uploadId,
+                                                currentPartNumber,
+                                                range),
+                                executor));
+            }
+            completeMultipartUpload(targetObjectName, uploadId, join(futures));
+        } catch (IOException | RuntimeException e) {
+            abortMultipartUpload(targetObjectName, uploadId, futures);
+            throw e;
+        }
+    }
+
+    /**
+     * 长度未知时使用的分片大小
+     */
+    int unknownLengthPartSize() {
+        return (int) partSize(0);
+    }
+
+    private long partSize(long contentLength) {
+        long partSize = Math.max(MIN_PART_SIZE, properties.getMultipartPartSize());
+        // 分片数超过上限时放大分片
+        long minPartSizeForLimit = (contentLength + MAX_PARTS - 1) / MAX_PARTS;
+        return Math.max(partSize, minPartSizeForLimit);
+    }
+
+    private String createMultipartUpload(String objectName, String contentType) {
+        CreateMultipartUploadRequest request =
+                CreateMultipartUploadRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(objectName)
+                        .contentType(contentType)
+                        .build();
+        return s3Client.createMultipartUpload(request).uploadId();
+    }
+
+    private CompletedPart uploadPart(
+            String objectName, String uploadId, int partNumber, RequestBody body) {
+        UploadPartRequest request =
+                UploadPartRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(objectName)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .build();
+
+        return withRetry(
+                objectName, partNumber, () -> s3Client.uploadPart(request, body).eTag());
+    }
+
+    private CompletedPart copyPart(
+            String sourceObjectName,
+            String targetObjectName,
+            String uploadId,
+            int partNumber,
+            String range) {
+        UploadPartCopyRequest request =
+                UploadPartCopyRequest.builder()
+                        .sourceBucket(properties.getBucket())
+                        .sourceKey(sourceObjectName)
+                        .destinationBucket(properties.getBucket())
+                        .destinationKey(targetObjectName)
+                        .uploadId(uploadId)
+                        .partNumber(partNumber)
+                        .copySourceRange(range)
+                        .build();
+        return withRetry(
+                targetObjectName,
+                partNumber,
+                () -> s3Client.uploadPartCopy(request).copyPartResult().eTag());
+    }
+
+    /**
+     * 单个分片失败时只重试该分片
+     */
+    private CompletedPart withRetry(String objectName, int partNumber, Supplier<String> part) {
+        int maxAttempts = Math.max(1, properties.getMultipartMaxAttempts());
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return CompletedPart.builder().partNumber(partNumber).eTag(part.get()).build();
+            } catch (SdkException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.warn("分片上传失败，准备重试: {} 分片{} 第{}次", objectName, partNumber, attempt, e);
+                sleepBeforeRetry(attempt);
+            }
+        }
+    }
+
+    private void completeMultipartUpload(
+            String objectName, String uploadId, List<CompletedPart> parts) {
+        CompleteMultipartUploadRequest request =
+                CompleteMultipartUploadRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(objectName)
+                        .uploadId(uploadId)
+                        .multipartUpload(CompletedMultipartUpload.builder().parts(parts).build())
+                        .build();
+        s3Client.completeMultipartUpload(request);
+        log.debug("分片上传完成: {}, 共{}个分片", objectName, parts.size());
+    }
+
+    private void abortMultipartUpload(
+            String objectName, String uploadId, List<CompletableFuture<CompletedPart>> futures) {
+        for (CompletableFuture<CompletedPart> future : futures) {
+            future.cancel(false);
+        }
+
+        try {
+            AbortMultipartUploadRequest request =
+                    AbortMultipartUploadRequest.builder()
+                            .bucket(properties.getBucket())
+                            .key(objectName)
+                            .uploadId(uploadId)
+                            .build();
+            s3Client.abortMultipartUpload(request);
+        } catch (SdkException e) {
+            log.error("取消分片上传失败: {}, uploadId: {}", objectName, uploadId, e);
+        }
+    }
+
+    private static List<CompletedPart> join(List<CompletableFuture<CompletedPart>> futures)
+            throws IOException {
+        List<CompletedPart> parts = new ArrayList<>(futures.size());
+        try {
+            for (CompletableFuture<CompletedPart> future : futures) {
+                parts.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("分片上传被中断");
+        } catch (ExecutionException e) {
+            throw new IOException("分片上传失败", e.getCause());
+        }
+        return parts;
+    }
+
+    private static void acquire(Semaphore semaphore) throws InterruptedIOException {
+        try {
+            semaphore.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("分片上传被中断");
+        }
+    }
+
+    private static void sleepBeforeRetry(int attempt) {
+        try {
+            Thread.sleep(RETRY_BACKOFF_MS * attempt);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("分片上传重试被中断", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 文件区间内容提供者 每次重试都重新打开文件并定位到分片起始位置
+     */
+    private record FileRegionProvider(Path filePath, long offset, long length)
+            implements ContentStreamProvider {
+
+        @Override
+        public InputStream newStream() {
+            try {
+                return FileRegionInputStream.open(filePath, offset, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -17,39 +17,97 @@
 
 package github.luckygc.ecm.module.storage.service.impl;
 
+import com.google.common.collect.Iterables;
 import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
 import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.util.ContentSniffer;
 import github.luckygc.ecm.util.StorageUtils;
 import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Optional;
+import java.util.TreeSet;
 import java.util.stream.Collectors;
-import lombok.RequiredArgsConstructor;
+import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import software.amazon.awssdk.core.exception.SdkException;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.CopyObjectRequest;
+import software.amazon.awssdk.services.s3.model.Delete;
 import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsRequest;
+import software.amazon.awssdk.services.s3.model.DeleteObjectsResponse;
 import software.amazon.awssdk.services.s3.model.GetObjectRequest;
 import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
 import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.ObjectIdentifier;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Error;
 import software.amazon.awssdk.services.s3.model.S3Object;
 
 /**
  * S3存储服务实现 使用AWS SDK S3 v2
  */
 @Slf4j
-@RequiredArgsConstructor
-public class S3StorageManager implements StorageManager {
+public class S3StorageManager implements StorageManager, AutoCloseable {
+
+    /**
+     * DeleteObjects单次请求的对象数上限
+     */
+    private static final int DELETE_BATCH_SIZE = 1000;
+
+    /**
+     * 批量查询的对象数达到该值时改为列举
+     */
+    private static final int STAT_LIST_MIN_OBJECTS = 8;
+
+    /**
+     * 批量查询时列举对象数的预算，为查询对象数的倍数，且不少于一页
+     */
+    private static final int STAT_LIST_KEYS_RATIO = 10;
+
+    private static final int STAT_LIST_MIN_KEYS = 1000;
+
+    /**
+     * 单次CopyObject请求的对象大小上限
+     */
+    private static final long MAX_COPY_OBJECT_BYTES = 5L * 1024 * 1024 * 1024;
 
     private final S3Client s3Client;
     private final StorageProperties.S3 properties;
     private final SnowflakeIdGenerator snowflakeIdGenerator;
+    private final S3MultipartUploader multipartUploader;
+
+    public S3StorageManager(
+            S3Client s3Client,
+            StorageProperties.S3 properties,
+            SnowflakeIdGenerator snowflakeIdGenerator) {
+        this.s3Client = s3Client;
+        this.properties = properties;
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+        this.multipartUploader = new S3MultipartUploader(s3Client, properties);
+    }
 
     @Override
     public String uploadFile(Path filePath) throws IOException {
@@ -60,10 +118,13 @@ public class S3StorageManager implements StorageManager {
                 StorageUtils.generateObjectName(
                         snowflakeIdGenerator.nextId(), filePath.getFileName().toString());
 
-        // 尝试检测MIME类型
-        String contentType = Files.probeContentType(filePath);
-        if (contentType == null) {
-            contentType = "application/octet-stream"; // 默认类型
+        // 按文件头识别MIME类型，无法识别时按文件名推断
+        String contentType = ContentSniffer.detectContentType(filePath);
+
+        // 大文件分片并行上传
+        if (multipartUploader.shouldUse(fileSize)) {
+            multipartUploader.uploadFile(objectName, filePath, fileSize, contentType);
+            return objectName;
         }
 
         PutObjectRequest.Builder requestBuilder =
@@ -80,12 +141,248 @@ public class S3StorageManager implements StorageManager {
         return objectName;
     }
 
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        String objectName =
+                StorageUtils.generateObjectName(snowflakeIdGenerator.nextId(), filename);
+        putStream(objectName, inputStream, contentLength);
+        return objectName;
+    }
+
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        String contentType = StorageUtils.guessContentType(objectName);
+        if (contentLength < 0) {
+            putUnknownLength(objectName, inputStream, contentType);
+            return;
+        }
+        if (multipartUploader.shouldUse(contentLength)) {
+            multipartUploader.uploadStream(objectName, inputStream, contentLength, contentType);
+            return;
+        }
+
+        PutObjectRequest request =
+                PutObjectRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(objectName)
+                        .contentLength(contentLength)
+                        .contentType(contentType)
+                        .build();
+
+        s3Client.putObject(request, RequestBody.fromInputStream(inputStream, contentLength));
+    }
+
+    /**
+     * 长度未知时先读入一个分片，流在一个分片内结束的直接上传，否则转为分片上传
+     */
+    private void putUnknownLength(String objectName, InputStream inputStream, String contentType)
+            throws IOException {
+        int partSize = multipartUploader.unknownLengthPartSize();
+        byte[] head = inputStream.readNBytes(partSize);
+        if (head.length < partSize) {
+            PutObjectRequest request =
+                    PutObjectRequest.builder()
+                            .bucket(properties.getBucket())
+                            .key(objectName)
+                            .contentLength((long) head.length)
+                            .contentType(contentType)
+                            .build();
+            s3Client.putObject(request, RequestBody.fromBytes(head));
+            return;
+        }
+
+        InputStream remaining =
+                new SequenceInputStream(new ByteArrayInputStream(head), inputStream);
+        multipartUploader.uploadStream(objectName, remaining, -1, contentType);
+    }
+
     @Override
     public InputStream downloadFile(String objectName) throws IOException {
         GetObjectRequest request =
                 GetObjectRequest.builder().bucket(properties.getBucket()).key(objectName).build();
 
-        return s3Client.getObject(request);
+        return getObject(request);
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        if (offset < 0 || length < 0) {
+            throw new IllegalArgumentException("非法的读取区间: offset=" + offset + ", length=" + length);
+        }
+        if (length == 0) {
+            return InputStream.nullInputStream();
+        }
+
+        GetObjectRequest request =
+                GetObjectRequest.builder()
+                        .bucket(properties.getBucket())
+                        .key(objectName)
+                        .range("bytes=" + offset + "-" + (offset + length - 1))
+                        .build();
+
+        return getObject(request);
+    }
+
+    /**
+     * 对象不存在时与本地存储一致抛出FileNotFoundException
+     */
+    private InputStream getObject(GetObjectRequest request) throws FileNotFoundException {
+        try {
+            return s3Client.getObject(request);
+        } catch (NoSuchKeyException e) {
+            throw new FileNotFoundException("文件不存在: " + request.key());
+        }
+    }
+
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        HeadObjectRequest request =
+                HeadObjectRequest.builder().bucket(properties.getBucket()).key(objectName).build();
+
+        HeadObjectResponse response;
+        try {
+            response = s3Client.headObject(request);
+        } catch (NoSuchKeyException e) {
+            return Optional.empty();
+        }
+
+        return Optional.of(toMetadata(objectName, response));
+    }
+
+    /**
+     * 批量查询时以列举代替逐个HeadObject 从最小的对象名称开始列举公共前缀，越过最大的名称即停止，
+     * 列举数量超出预算仍未覆盖的对象再逐个查询. 列举结果不含MIME类型，按对象名称推断.
+     */
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        if (objectNames.size() < STAT_LIST_MIN_OBJECTS) {
+            return StorageManager.super.statAll(objectNames);
+        }
+
+        NavigableSet<String> pending = new TreeSet<>(LocalObjectLister.OBJECT_NAME_ORDER);
+        pending.addAll(objectNames);
+        String first = pending.first();
+        String last = pending.last();
+        // 去掉最后一个字符后排在最小名称之前，列举从最小名称开始
+        String startAfter = first.substring(0, first.offsetByCodePoints(first.length(), -1));
+        ListObjectsV2Request request =
+                listRequest(commonPrefix(first, last)).startAfter(startAfter).build();
+        long budget = Math.max(STAT_LIST_MIN_KEYS, (long) pending.size() * STAT_LIST_KEYS_RATIO);
+
+        Map<String, ObjectMetadata> found = new HashMap<>();
+        Iterator<S3Object> objects = s3Client.listObjectsV2Paginator(request).contents().iterator();
+        long listed = 0;
+        while (!pending.isEmpty() && listed < budget) {
+            // 列举到末尾或越过最大的名称时，其余名称都不存在
+            if (!objects.hasNext()) {
+                pending.clear();
+                break;
+            }
+            S3Object object = objects.next();
+            listed++;
+            if (LocalObjectLister.OBJECT_NAME_ORDER.compare(object.key(), last) > 0) {
+                pending.clear();
+                break;
+            }
+            // 排在当前对象之前仍未列出的名称不存在
+            pending.headSet(object.key(), false).clear();
+            if (pending.remove(object.key())) {
+                found.put(object.key(), toMetadata(object));
+            }
+        }
+        for (String objectName : pending) {
+            stat(objectName).ifPresent(metadata -> found.put(objectName, metadata));
+        }
+
+        Map<String, ObjectMetadata> result = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            ObjectMetadata metadata = found.get(objectName);
+            if (metadata != null) {
+                result.put(objectName, metadata);
+            }
+        }
+        return result;
+    }
+
+    private static ObjectMetadata toMetadata(S3Object object) {
+        return new ObjectMetadata(
+                object.key(),
+                object.size(),
+                object.lastModified(),
+                object.eTag(),
+                StorageUtils.guessContentType(object.key()));
+    }
+
+    private static String commonPrefix(String left, String right) {
+        int length = 0;
+        int max = Math.min(left.length(), right.length());
+        while (length < max && left.charAt(length) == right.charAt(length)) {
+            length++;
+        }
+        // 不截断代理对
+        if (length > 0 && Character.isHighSurrogate(left.charAt(length - 1))) {
+            length--;
+        }
+        return left.substring(0, length);
+    }
+
+    static ObjectMetadata toMetadata(String objectName, HeadObjectResponse response) {
+        String contentType = response.contentType();
+        return new ObjectMetadata(
+                objectName,
+                response.contentLength(),
+                response.lastModified(),
+                response.eTag(),
+                contentType != null ? contentType : StorageUtils.DEFAULT_CONTENT_TYPE);
+    }
+
+    /**
+     * 服务端复制，数据不经过本服务. 超过分片阈值或单次CopyObject上限的对象按分片并行复制
+     */
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        ObjectMetadata source =
+                stat(sourceObjectName)
+                        .orElseThrow(
+                                () -> new FileNotFoundException("文件不存在: " + sourceObjectName));
+        if (multipartUploader.shouldUse(source.size()) || source.size() > MAX_COPY_OBJECT_BYTES) {
+            multipartUploader.copyObject(
+                    sourceObjectName, targetObjectName, source.size(), source.contentType());
+            return;
+        }
+
+        CopyObjectRequest request =
+                CopyObjectRequest.builder()
+                        .sourceBucket(properties.getBucket())
+                        .sourceKey(sourceObjectName)
+                        .destinationBucket(properties.getBucket())
+                        .destinationKey(targetObjectName)
+                        .build();
+        try {
+            s3Client.copyObject(request);
+        } catch (NoSuchKeyException e) {
+            throw new FileNotFoundException("文件不存在: " + sourceObjectName);
+        }
+    }
+
+    /**
+     * S3没有重命名操作，复制后删除源对象
+     */
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+        copyFile(sourceObjectName, targetObjectName);
+        deleteFile(sourceObjectName);
     }
 
     @Override
@@ -100,6 +397,45 @@ public class S3StorageManager implements StorageManager {
         log.info("S3文件删除成功: {}/{}", properties.getBucket(), objectName);
     }
 
+    /**
+     * 每1000个对象合并为一次DeleteObjects请求，使用quiet模式只返回失败的对象
+     */
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        List<DeleteFailure> failures = new ArrayList<>();
+        for (List<String> batch : Iterables.partition(objectNames, DELETE_BATCH_SIZE)) {
+            List<ObjectIdentifier> identifiers = new ArrayList<>(batch.size());
+            for (String objectName : batch) {
+                identifiers.add(ObjectIdentifier.builder().key(objectName).build());
+            }
+
+            DeleteObjectsRequest request =
+                    DeleteObjectsRequest.builder()
+                            .bucket(properties.getBucket())
+                            .delete(Delete.builder().objects(identifiers).quiet(true).build())
+                            .build();
+            try {
+                DeleteObjectsResponse response = s3Client.deleteObjects(request);
+                for (S3Error error : response.errors()) {
+                    failures.add(
+                            new DeleteFailure(error.key(), error.code() + ": " + error.message()));
+                }
+            } catch (SdkException e) {
+                log.warn("S3批量删除请求失败，共{}个对象", batch.size(), e);
+                for (String objectName : batch) {
+                    failures.add(new DeleteFailure(objectName, String.valueOf(e.getMessage())));
+                }
+            }
+        }
+
+        log.info(
+                "S3批量删除完成: {}，共{}个，失败{}个",
+                properties.getBucket(),
+                objectNames.size(),
+                failures.size());
+        return failures;
+    }
+
     @Override
     public boolean fileExists(String objectName) throws IOException {
         try {
@@ -118,16 +454,55 @@ public class S3StorageManager implements StorageManager {
 
     @Override
     public List<String> listFiles(String prefix) throws IOException {
+        try (Stream<String> stream = streamFiles(prefix)) {
+            return stream.collect(Collectors.toList());
+        }
+    }
+
+    @Override
+    public ObjectListing listFiles(
+            String prefix, @Nullable String continuationToken, int maxKeys) throws IOException {
+        if (maxKeys <= 0) {
+            throw new IllegalArgumentException("maxKeys必须大于0: " + maxKeys);
+        }
+
+        // 与其他存储一致以上一页最后一个对象名称作为续传标记，便于多个存储的结果合并翻页
+        ListObjectsV2Request request =
+                listRequest(prefix).startAfter(continuationToken).maxKeys(maxKeys).build();
+        ListObjectsV2Response response = s3Client.listObjectsV2(request);
+
+        List<String> objectNames =
+                response.contents().stream().map(S3Object::key).collect(Collectors.toList());
+        String nextContinuationToken =
+                Boolean.TRUE.equals(response.isTruncated()) && !objectNames.isEmpty()
+                        ? objectNames.get(objectNames.size() - 1)
+                        : null;
+        return new ObjectListing(objectNames, nextContinuationToken);
+    }
+
+    /**
+     * 由分页器按续传标记逐页请求，单次ListObjectsV2最多只返回1000个对象
+     */
+    @Override
+    public Stream<String> streamFiles(String prefix) {
+        return s3Client.listObjectsV2Paginator(listRequest(prefix).build())
+                .contents()
+                .stream()
+                .map(S3Object::key);
+    }
+
+    private ListObjectsV2Request.Builder listRequest(@Nullable String prefix) {
         ListObjectsV2Request.Builder requestBuilder =
                 ListObjectsV2Request.builder().bucket(properties.getBucket());
 
         if (prefix != null && !prefix.isEmpty()) {
             requestBuilder.prefix(prefix);
         }
+        return requestBuilder;
+    }
 
-        ListObjectsV2Request request = requestBuilder.build();
-        ListObjectsV2Response response = s3Client.listObjectsV2(request);
-
-        return response.contents().stream().map(S3Object::key).collect(Collectors.toList());
+    @Override
+    public void close() {
+        multipartUploader.close();
     }
 }
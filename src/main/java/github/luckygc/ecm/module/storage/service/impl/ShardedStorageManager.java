@@ -0,0 +1,472 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.util.StorageUtils;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 分片存储 按对象名称的一致性哈希把对象分散到多个本地目录或存储桶，每个分片在哈希环上有若干虚拟节点.
+ *
+ * <p>增加分片后只有落到新分片的对象需要移动. 启动时后台遍历所有分片，把不属于所在分片的对象移动到归属分片，
+ * 遍历完成前读取、删除在归属分片找不到对象时再查其余分片，完成后只访问归属分片.
+ *
+ * <p>是否遍历完成由各节点独立判断. 多节点部署调整分片时所有节点须停机后一起以新配置启动，不能滚动发布：
+ * 遍历完成的节点不再查找其余分片，仍按旧配置运行的节点此后写入非归属分片的对象对它不可见.
+ */
+@Slf4j
+public class ShardedStorageManager implements StorageManager, AutoCloseable {
+
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
+    private final Map<String, StorageManager> shards;
+    private final NavigableMap<Long, String> ring = new TreeMap<>();
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+
+    /**
+     * 移动对象与覆盖写入、删除同一对象互斥，避免旧内容覆盖新写入
+     */
+    private final Striped<Lock> locks = Striped.lock(1024);
+
+    /**
+     * 本节点已遍历完成，所有对象都已位于归属分片. 仅在所有节点使用相同分片配置时成立
+     */
+    private volatile boolean balanced;
+
+    private final ScheduledExecutorService rebalancer;
+
+    /**
+     * @param shards 分片名称到存储的映射，名称参与哈希，调整分片时已有分片的名称不能改变
+     */
+    public ShardedStorageManager(
+            Map<String, StorageManager> shards,
+            StorageProperties.Sharding properties,
+            SnowflakeIdGenerator snowflakeIdGenerator) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("至少需要配置一个分片");
+        }
+        this.shards = new LinkedHashMap<>(shards);
+        this.snowflakeIdGenerator = snowflakeIdGenerator;
+        for (String shardName : shards.keySet()) {
+            for (int i = 0; i < properties.getVirtualNodes(); i++) {
+                ring.put(hash(shardName + "#" + i), shardName);
+            }
+        }
+
+        this.rebalancer =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("shard-rebalancer-%d")
+                                .setDaemon(true)
+                                .build());
+        rebalancer.scheduleWithFixedDelay(
+                this::rebalanceQuietly,
+                0,
+                properties.getRebalanceRetryIntervalMs(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public String uploadFile(Path filePath) throws IOException {
+        String objectName =
+                StorageUtils.generateObjectName(
+                        snowflakeIdGenerator.nextId(), filePath.getFileName().toString());
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            owner(objectName).putStream(objectName, inputStream, Files.size(filePath));
+        }
+        return objectName;
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        String objectName =
+                StorageUtils.generateObjectName(snowflakeIdGenerator.nextId(), filename);
+        owner(objectName).putStream(objectName, inputStream, contentLength);
+        return objectName;
+    }
+
+    /**
+     * 遍历完成前覆盖写入时删除其余分片上的旧副本
+     */
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        if (balanced) {
+            owner(objectName).putStream(objectName, inputStream, contentLength);
+            return;
+        }
+
+        Lock lock = locks.get(objectName);
+        lock.lock();
+        try {
+            String ownerName = ownerName(objectName);
+            shards.get(ownerName).putStream(objectName, inputStream, contentLength);
+            for (Map.Entry<String, StorageManager> shard : shards.entrySet()) {
+                if (!shard.getKey().equals(ownerName)) {
+                    shard.getValue().deleteFile(objectName);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        return read(objectName, shard -> shard.downloadFile(objectName));
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        return read(objectName, shard -> shard.downloadRange(objectName, offset, length));
+    }
+
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        Optional<ObjectMetadata> metadata = owner(objectName).stat(objectName);
+        if (metadata.isPresent() || balanced) {
+            return metadata;
+        }
+        try {
+            return Optional.of(
+                    read(
+                            objectName,
+                            shard ->
+                                    shard.stat(objectName)
+                                            .orElseThrow(
+                                                    () -> new FileNotFoundException(objectName))));
+        } catch (FileNotFoundException e) {
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * 按归属分片分组批量查询，遍历完成前归属分片上没有的对象再依次到各分片查询
+     */
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            groups.computeIfAbsent(ownerName(objectName), key -> new ArrayList<>())
+                    .add(objectName);
+        }
+        Map<String, ObjectMetadata> found = new HashMap<>();
+        for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+            found.putAll(shards.get(group.getKey()).statAll(group.getValue()));
+        }
+
+        if (!balanced) {
+            List<String> missing = new ArrayList<>(objectNames);
+            missing.removeIf(found::containsKey);
+            for (StorageManager shard : shards.values()) {
+                if (missing.isEmpty()) {
+                    break;
+                }
+                Map<String, ObjectMetadata> metadata = shard.statAll(missing);
+                found.putAll(metadata);
+                missing.removeIf(metadata::containsKey);
+            }
+        }
+
+        Map<String, ObjectMetadata> result = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            ObjectMetadata metadata = found.get(objectName);
+            if (metadata != null) {
+                result.put(objectName, metadata);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean fileExists(String objectName) throws IOException {
+        return stat(objectName).isPresent();
+    }
+
+    /**
+     * 源和目标归属同一分片时在分片内复制；跨分片或遍历完成前经本服务转写，由写入负责清理其余分片上的旧副本
+     */
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        String ownerName = ownerName(targetObjectName);
+        if (balanced && ownerName.equals(ownerName(sourceObjectName))) {
+            shards.get(ownerName).copyFile(sourceObjectName, targetObjectName);
+            return;
+        }
+
+        ObjectMetadata metadata =
+                stat(sourceObjectName)
+                        .orElseThrow(
+                                () -> new FileNotFoundException("文件不存在: " + sourceObjectName));
+        try (InputStream inputStream = downloadFile(sourceObjectName)) {
+            putStream(targetObjectName, inputStream, metadata.size());
+        }
+    }
+
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        String ownerName = ownerName(targetObjectName);
+        if (balanced && ownerName.equals(ownerName(sourceObjectName))) {
+            shards.get(ownerName).moveFile(sourceObjectName, targetObjectName);
+            return;
+        }
+        copyFile(sourceObjectName, targetObjectName);
+        deleteFile(sourceObjectName);
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws IOException {
+        if (balanced) {
+            owner(objectName).deleteFile(objectName);
+            return;
+        }
+
+        Lock lock = locks.get(objectName);
+        lock.lock();
+        try {
+            for (StorageManager shard : shards.values()) {
+                shard.deleteFile(objectName);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 按归属分片分组后分别批量删除，遍历完成前逐个删除
+     */
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        if (!balanced) {
+            return StorageManager.super.deleteFiles(objectNames);
+        }
+
+        Map<String, List<String>> groups = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            groups.computeIfAbsent(ownerName(objectName), key -> new ArrayList<>())
+                    .add(objectName);
+        }
+        List<DeleteFailure> failures = new ArrayList<>();
+        for (Map.Entry<String, List<String>> group : groups.entrySet()) {
+            failures.addAll(shards.get(group.getKey()).deleteFiles(group.getValue()));
+        }
+        return failures;
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) throws IOException {
+        Set<String> objectNames = new LinkedHashSet<>();
+        for (StorageManager shard : shards.values()) {
+            objectNames.addAll(shard.listFiles(prefix));
+        }
+        List<String> sorted = new ArrayList<>(objectNames);
+        sorted.sort(LocalObjectLister.OBJECT_NAME_ORDER);
+        return sorted;
+    }
+
+    /**
+     * 各分片分别分页后归并，移动中同时存在于两个分片的对象只返回一次
+     */
+    @Override
+    public ObjectListing listFiles(
+            String prefix, @Nullable String continuationToken, int maxKeys) throws IOException {
+        return MergingObjectLister.list(
+                List.copyOf(shards.values()), prefix, continuationToken, maxKeys);
+    }
+
+    @Override
+    public Stream<String> streamFiles(String prefix) throws IOException {
+        Stream<String> stream = Stream.empty();
+        for (StorageManager shard : shards.values()) {
+            stream = Stream.concat(stream, shard.streamFiles(prefix));
+        }
+        return stream;
+    }
+
+    private interface ShardRead<T> {
+
+        T apply(StorageManager shard) throws IOException;
+    }
+
+    /**
+     * 先读归属分片，遍历完成前依次尝试其余分片. 对象可能恰好在查找期间移动到归属分片，最后再查一次归属分片
+     */
+    private <T> T read(String objectName, ShardRead<T> action) throws IOException {
+        String ownerName = ownerName(objectName);
+        StorageManager owner = shards.get(ownerName);
+        try {
+            return action.apply(owner);
+        } catch (FileNotFoundException e) {
+            if (balanced) {
+                throw e;
+            }
+        }
+
+        for (Map.Entry<String, StorageManager> shard : shards.entrySet()) {
+            if (shard.getKey().equals(ownerName)) {
+                continue;
+            }
+            try {
+                return action.apply(shard.getValue());
+            } catch (FileNotFoundException e) {
+                // 继续查找下一个分片
+            }
+        }
+        return action.apply(owner);
+    }
+
+    private StorageManager owner(String objectName) {
+        return shards.get(ownerName(objectName));
+    }
+
+    String ownerName(String objectName) {
+        Map.Entry<Long, String> entry = ring.ceilingEntry(hash(objectName));
+        return entry != null ? entry.getValue() : ring.firstEntry().getValue();
+    }
+
+    private static long hash(String value) {
+        return HASH_FUNCTION.hashString(value, StandardCharsets.UTF_8).asLong();
+    }
+
+    private void rebalanceQuietly() {
+        if (balanced) {
+            return;
+        }
+        try {
+            rebalance();
+        } catch (IOException | RuntimeException e) {
+            log.error("分片重新均衡失败", e);
+        }
+    }
+
+    /**
+     * 遍历所有分片，把不属于所在分片的对象移动到归属分片. 全部移动成功后标记为均衡，否则等待下次重试
+     */
+    void rebalance() throws IOException {
+        int moved = 0;
+        int failed = 0;
+        for (Map.Entry<String, StorageManager> shard : shards.entrySet()) {
+            try (Stream<String> objectNames = shard.getValue().streamFiles("")) {
+                Iterator<String> iterator = objectNames.iterator();
+                while (iterator.hasNext()) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        return;
+                    }
+                    String objectName = iterator.next();
+                    String ownerName = ownerName(objectName);
+                    if (ownerName.equals(shard.getKey())) {
+                        continue;
+                    }
+                    try {
+                        move(objectName, shard.getValue(), shards.get(ownerName));
+                        moved++;
+                    } catch (IOException | RuntimeException e) {
+                        failed++;
+                        log.warn("对象移动失败: {}, {} -> {}", objectName, shard.getKey(), ownerName, e);
+                    }
+                }
+            }
+        }
+
+        if (failed > 0) {
+            log.warn("分片重新均衡未完成，移动{}个对象，失败{}个", moved, failed);
+            return;
+        }
+        balanced = true;
+        log.info("分片重新均衡完成，移动{}个对象", moved);
+    }
+
+    /**
+     * 目标分片已有对象说明上次移动在删除源对象前中断，内容相同，直接删除源对象
+     */
+    private void move(String objectName, StorageManager source, StorageManager target)
+            throws IOException {
+        Lock lock = locks.get(objectName);
+        lock.lock();
+        try {
+            Optional<ObjectMetadata> metadata = source.stat(objectName);
+            if (metadata.isEmpty()) {
+                return;
+            }
+            if (!target.fileExists(objectName)) {
+                try (InputStream inputStream = source.downloadFile(objectName)) {
+                    target.putStream(objectName, inputStream, metadata.get().size());
+                }
+            }
+            source.deleteFile(objectName);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        rebalancer.shutdownNow();
+        rebalancer.awaitTermination(30, TimeUnit.SECONDS);
+        for (StorageManager shard : shards.values()) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
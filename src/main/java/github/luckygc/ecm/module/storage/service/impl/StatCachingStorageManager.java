@@ -0,0 +1,222 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 元数据缓存 短时间缓存对象元数据查询和存在性检查的结果，不存在的对象单独以更短的时间缓存.
+ * 经本装饰器的写入、删除、复制和移动会失效相关对象，其他节点或绕过存储服务直接写入S3的变更在缓存过期前不可见.
+ */
+public class StatCachingStorageManager extends ForwardingStorageManager implements MeterBinder {
+
+    private final Cache<String, ObjectMetadata> positive;
+    private final Cache<String, Boolean> negative;
+
+    /**
+     * 每次变更递增，用于识别查询期间发生的变更
+     */
+    private final AtomicLong version = new AtomicLong();
+
+    public StatCachingStorageManager(
+            StorageManager delegate, StorageProperties.StatCache properties) {
+        super(delegate);
+        this.positive =
+                CacheBuilder.newBuilder()
+                        .expireAfterWrite(properties.getTtlMs(), TimeUnit.MILLISECONDS)
+                        .maximumSize(properties.getMaxEntries())
+                        .recordStats()
+                        .build();
+        this.negative =
+                CacheBuilder.newBuilder()
+                        .expireAfterWrite(properties.getNegativeTtlMs(), TimeUnit.MILLISECONDS)
+                        .maximumSize(properties.getMaxEntries())
+                        .recordStats()
+                        .build();
+    }
+
+    @Override
+    public String uploadFile(Path filePath) throws IOException {
+        String objectName = delegate.uploadFile(filePath);
+        invalidate(objectName);
+        return objectName;
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        String objectName = delegate.uploadStream(inputStream, contentLength, filename);
+        invalidate(objectName);
+        return objectName;
+    }
+
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        try {
+            delegate.putStream(objectName, inputStream, contentLength);
+        } finally {
+            invalidate(objectName);
+        }
+    }
+
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        ObjectMetadata cached = positive.getIfPresent(objectName);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        if (negative.getIfPresent(objectName) != null) {
+            return Optional.empty();
+        }
+
+        long before = version.get();
+        Optional<ObjectMetadata> metadata = delegate.stat(objectName);
+        cache(objectName, metadata.orElse(null), before);
+        return metadata;
+    }
+
+    /**
+     * 只把未命中缓存的对象交给底层存储批量查询 批量查询的MIME类型可能是推断的，只缓存不存在的结果，
+     * 避免{@link #stat}命中推断的元数据
+     */
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        Map<String, ObjectMetadata> cached = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for (String objectName : objectNames) {
+            ObjectMetadata metadata = positive.getIfPresent(objectName);
+            if (metadata != null) {
+                cached.put(objectName, metadata);
+            } else if (negative.getIfPresent(objectName) == null) {
+                misses.add(objectName);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            long before = version.get();
+            Map<String, ObjectMetadata> loaded = delegate.statAll(misses);
+            for (String objectName : misses) {
+                if (!loaded.containsKey(objectName)) {
+                    cache(objectName, null, before);
+                }
+            }
+            cached.putAll(loaded);
+        }
+
+        Map<String, ObjectMetadata> result = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            ObjectMetadata metadata = cached.get(objectName);
+            if (metadata != null) {
+                result.put(objectName, metadata);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean fileExists(String objectName) throws IOException {
+        return stat(objectName).isPresent();
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws IOException {
+        try {
+            delegate.deleteFile(objectName);
+        } finally {
+            invalidate(objectName);
+        }
+    }
+
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        try {
+            return delegate.deleteFiles(objectNames);
+        } finally {
+            version.incrementAndGet();
+            positive.invalidateAll(objectNames);
+            negative.invalidateAll(objectNames);
+        }
+    }
+
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        try {
+            delegate.copyFile(sourceObjectName, targetObjectName);
+        } finally {
+            invalidate(targetObjectName);
+        }
+    }
+
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        try {
+            delegate.moveFile(sourceObjectName, targetObjectName);
+        } finally {
+            invalidate(sourceObjectName);
+            invalidate(targetObjectName);
+        }
+    }
+
+    private void cache(String objectName, @Nullable ObjectMetadata metadata, long before) {
+        if (metadata != null) {
+            positive.put(objectName, metadata);
+        } else {
+            negative.put(objectName, Boolean.TRUE);
+        }
+        // 查询期间对象发生过变更时撤销，避免旧结果覆盖失效
+        if (version.get() != before) {
+            positive.invalidate(objectName);
+            negative.invalidate(objectName);
+        }
+    }
+
+    private void invalidate(String objectName) {
+        version.incrementAndGet();
+        positive.invalidate(objectName);
+        negative.invalidate(objectName);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        GuavaCacheMetrics.monitor(registry, positive, "storage-stat");
+        GuavaCacheMetrics.monitor(registry, negative, "storage-stat-absent");
+    }
+}
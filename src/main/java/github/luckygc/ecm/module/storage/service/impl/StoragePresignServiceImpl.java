@@ -0,0 +1,172 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import github.luckygc.ecm.common.enums.StorageType;
+import github.luckygc.ecm.common.exception.BusinessException;
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.constant.StorageErrorCode;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.domain.dto.PresignedUrlDTO;
+import github.luckygc.ecm.module.storage.domain.entity.StorageDirectUploadEntity.DirectUploadStatus;
+import github.luckygc.ecm.module.storage.domain.request.PresignUploadRequest;
+import github.luckygc.ecm.module.storage.manager.StorageDirectUploadManager;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.module.storage.service.StoragePresignService;
+import github.luckygc.ecm.util.StorageUtils;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Service;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.presigner.S3Presigner;
+import software.amazon.awssdk.services.s3.presigner.model.GetObjectPresignRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PresignedRequest;
+import software.amazon.awssdk.services.s3.presigner.model.PutObjectPresignRequest;
+
+/**
+ * 预签名直传服务实现类 仅S3存储且未启用去重、压缩和完整性校验时可用，去重及分层存储的逻辑对象与S3中的对象不一一对应，
+ * 直传的内容不经过本服务，无法压缩或登记校验和. 签发上传地址时登记直传记录，客户端确认完成后记录对象的大小和ETag，
+ * 未经签发的对象不能确认
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StoragePresignServiceImpl implements StoragePresignService {
+
+    private final StorageProperties storageProperties;
+    private final ObjectProvider<S3Presigner> s3Presigner;
+    private final StorageManager storageManager;
+    private final StorageDirectUploadManager storageDirectUploadManager;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+
+    @Override
+    public PresignedUrlDTO presignUpload(PresignUploadRequest presignUploadRequest) {
+        S3Presigner presigner = requirePresigner();
+
+        String objectName =
+                StorageUtils.generateObjectName(
+                        snowflakeIdGenerator.nextId(), presignUploadRequest.getFilename());
+        PutObjectRequest.Builder putObjectRequest =
+                PutObjectRequest.builder()
+                        .bucket(storageProperties.getS3().getBucket())
+                        .key(objectName)
+                        .contentType(StorageUtils.guessContentType(objectName));
+        if (presignUploadRequest.getContentLength() != null) {
+            putObjectRequest.contentLength(presignUploadRequest.getContentLength());
+        }
+
+        PutObjectPresignRequest presignRequest =
+                PutObjectPresignRequest.builder()
+                        .signatureDuration(signatureDuration())
+                        .putObjectRequest(putObjectRequest.build())
+                        .build();
+        PresignedUrlDTO presignedUrl =
+                toDTO(objectName, presigner.presignPutObject(presignRequest));
+        storageDirectUploadManager.register(
+                objectName,
+                presignUploadRequest.getFilename(),
+                presignUploadRequest.getContentLength());
+        return presignedUrl;
+    }
+
+    @Override
+    public PresignedUrlDTO presignDownload(String objectName) throws IOException {
+        S3Presigner presigner = requirePresigner();
+        if (!storageManager.fileExists(objectName)) {
+            throw BusinessException.of(StorageErrorCode.OBJECT_NOT_FOUND, "文件不存在: " + objectName);
+        }
+
+        GetObjectPresignRequest presignRequest =
+                GetObjectPresignRequest.builder()
+                        .signatureDuration(signatureDuration())
+                        .getObjectRequest(
+                                GetObjectRequest.builder()
+                                        .bucket(storageProperties.getS3().getBucket())
+                                        .key(objectName)
+                                        .build())
+                        .build();
+        return toDTO(objectName, presigner.presignGetObject(presignRequest));
+    }
+
+    @Override
+    public ObjectMetadata completeUpload(String objectName) throws IOException {
+        requirePresigner();
+        DirectUploadStatus status =
+                storageDirectUploadManager
+                        .find(objectName)
+                        .orElseThrow(
+                                BusinessException.ofSupplier(
+                                        StorageErrorCode.OBJECT_NOT_FOUND,
+                                        "未签发的直传对象: " + objectName))
+                        .getStatus();
+        ObjectMetadata metadata =
+                storageManager
+                        .stat(objectName)
+                        .orElseThrow(
+                                BusinessException.ofSupplier(
+                                        StorageErrorCode.OBJECT_NOT_FOUND, "文件未上传: " + objectName));
+
+        if (status == DirectUploadStatus.PENDING && storageDirectUploadManager.complete(metadata)) {
+            log.info("直传完成: {}, {}字节", objectName, metadata.size());
+        }
+        return metadata;
+    }
+
+    private S3Presigner requirePresigner() {
+        S3Presigner presigner = s3Presigner.getIfAvailable();
+        if (presigner == null
+                || storageProperties.getType() != StorageType.S3
+                || storageProperties.getDeduplication().isEnabled()
+                || storageProperties.getCompression().isEnabled()
+                || storageProperties.getIntegrity().isEnabled()) {
+            throw BusinessException.of(
+                    StorageErrorCode.PRESIGN_NOT_SUPPORTED, "当前存储配置不支持预签名直传");
+        }
+        return presigner;
+    }
+
+    private Duration signatureDuration() {
+        return Duration.ofMillis(storageProperties.getS3().getPresignExpireMs());
+    }
+
+    private static PresignedUrlDTO toDTO(String objectName, PresignedRequest presignedRequest) {
+        // host由地址本身携带，客户端无需另行设置
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry :
+                presignedRequest.signedHeaders().entrySet()) {
+            if (!"host".equalsIgnoreCase(entry.getKey())) {
+                headers.put(entry.getKey(), String.join(",", entry.getValue()));
+            }
+        }
+
+        return new PresignedUrlDTO(
+                objectName,
+                presignedRequest.httpRequest().method().name(),
+                presignedRequest.url().toString(),
+                headers,
+                presignedRequest.expiration());
+    }
+}
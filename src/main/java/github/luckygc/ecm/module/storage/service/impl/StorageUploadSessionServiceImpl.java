@@ -0,0 +1,296 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import github.luckygc.ecm.common.exception.BusinessException;
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.constant.StorageErrorCode;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.domain.dto.UploadSessionDTO;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadChunkEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity;
+import github.luckygc.ecm.module.storage.domain.entity.StorageUploadSessionEntity.UploadSessionStatus;
+import github.luckygc.ecm.module.storage.domain.request.OpenUploadSessionRequest;
+import github.luckygc.ecm.module.storage.manager.StorageUploadSessionManager;
+import github.luckygc.ecm.module.storage.service.ChunkedUploadStore;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.module.storage.service.StorageUploadSessionService;
+import github.luckygc.ecm.util.StorageUtils;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+/**
+ * 分片上传服务实现类 会话状态保存在数据库，分片直接写入S3分片上传时任意节点都可以接收同一会话的分片；
+ * 分片暂存本地时各节点须挂载同一暂存目录. 过期未提交的会话及中断的提交在创建新会话时顺带清理.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StorageUploadSessionServiceImpl implements StorageUploadSessionService {
+
+    /**
+     * S3要求除最后一个分片外不小于5MB，本地暂存沿用同样的限制
+     */
+    private static final long MIN_CHUNK_SIZE = 5L * 1024 * 1024;
+
+    /**
+     * S3单个对象最多10000个分片
+     */
+    private static final int MAX_CHUNKS = 10000;
+
+    /**
+     * 每次创建会话时最多清理的过期会话数
+     */
+    private static final int CLEANUP_BATCH_SIZE = 10;
+
+    private final StorageProperties storageProperties;
+    private final StorageUploadSessionManager storageUploadSessionManager;
+    private final ChunkedUploadStore chunkedUploadStore;
+    private final StorageManager storageManager;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+
+    @Override
+    public UploadSessionDTO openSession(OpenUploadSessionRequest openUploadSessionRequest)
+            throws IOException {
+        cleanupExpiredSessions();
+
+        long contentLength = openUploadSessionRequest.getContentLength();
+        String objectName =
+                StorageUtils.generateObjectName(
+                        snowflakeIdGenerator.nextId(), openUploadSessionRequest.getFilename());
+        StorageProperties.ChunkedUpload properties = storageProperties.getChunkedUpload();
+        long chunkSize =
+                Math.max(
+                        Math.max(MIN_CHUNK_SIZE, properties.getChunkSize()),
+                        (contentLength + MAX_CHUNKS - 1) / MAX_CHUNKS);
+
+        StorageUploadSessionEntity session =
+                new StorageUploadSessionEntity()
+                        .setObjectName(objectName)
+                        .setFilename(openUploadSessionRequest.getFilename())
+                        .setContentLength(contentLength)
+                        .setChunkSize(chunkSize)
+                        .setUploadId(chunkedUploadStore.open(objectName))
+                        .setExpireTime(
+                                LocalDateTime.now()
+                                        .plusNanos(properties.getSessionExpireMs() * 1_000_000));
+        storageUploadSessionManager.createSession(session);
+        log.debug(
+                "创建分片上传会话: {}, {}, 共{}个分片",
+                session.getId(),
+                objectName,
+                session.getChunkCount());
+        return toDTO(session, List.of());
+    }
+
+    @Override
+    public UploadSessionDTO getSession(Long sessionId) {
+        StorageUploadSessionEntity session = requireSession(sessionId);
+        return toDTO(session, storageUploadSessionManager.listChunks(sessionId));
+    }
+
+    @Override
+    public void uploadChunk(
+            Long sessionId, int chunkNumber, InputStream inputStream, long contentLength)
+            throws IOException {
+        StorageUploadSessionEntity session = requireUploading(sessionId);
+        if (chunkNumber < 1 || chunkNumber > session.getChunkCount()) {
+            throw BusinessException.of(
+                    StorageErrorCode.UPLOAD_CHUNK_INVALID,
+                    "分片号必须在1到" + session.getChunkCount() + "之间: " + chunkNumber);
+        }
+        long expectedLength = session.getChunkLength(chunkNumber);
+        if (contentLength != expectedLength) {
+            throw BusinessException.of(
+                    StorageErrorCode.UPLOAD_CHUNK_INVALID,
+                    "分片" + chunkNumber + "的大小应为" + expectedLength + "字节，实际" + contentLength
+                            + "字节");
+        }
+
+        String eTag =
+                chunkedUploadStore.writeChunk(session, chunkNumber, inputStream, contentLength);
+        storageUploadSessionManager.recordChunk(sessionId, chunkNumber, contentLength, eTag);
+    }
+
+    @Override
+    public ObjectMetadata commitSession(Long sessionId) throws IOException {
+        StorageUploadSessionEntity session = requireUploading(sessionId);
+        List<StorageUploadChunkEntity> chunks = storageUploadSessionManager.listChunks(sessionId);
+        List<Integer> missingChunks = missingChunks(session, chunks);
+        if (!missingChunks.isEmpty()) {
+            throw BusinessException.of(
+                    StorageErrorCode.UPLOAD_INCOMPLETE, "分片未全部上传，缺少: " + missingChunks);
+        }
+
+        // 提交期间拒绝新的分片和重复提交，失败时恢复为上传中以便重试
+        if (!storageUploadSessionManager.transition(
+                sessionId, UploadSessionStatus.UPLOADING, UploadSessionStatus.COMMITTING)) {
+            throw BusinessException.of(
+                    StorageErrorCode.UPLOAD_SESSION_CLOSED, "上传会话已结束: " + sessionId);
+        }
+        try {
+            chunkedUploadStore.commit(session, chunks);
+        } catch (IOException | RuntimeException e) {
+            storageUploadSessionManager.transition(
+                    sessionId, UploadSessionStatus.COMMITTING, UploadSessionStatus.UPLOADING);
+            throw e;
+        }
+        storageUploadSessionManager.close(
+                sessionId, UploadSessionStatus.COMMITTING, UploadSessionStatus.COMMITTED);
+
+        ObjectMetadata metadata =
+                storageManager
+                        .stat(session.getObjectName())
+                        .orElseThrow(
+                                BusinessException.ofSupplier(
+                                        StorageErrorCode.OBJECT_NOT_FOUND,
+                                        "文件不存在: " + session.getObjectName()));
+        log.info("分片上传完成: {}, {}字节", session.getObjectName(), metadata.size());
+        return metadata;
+    }
+
+    @Override
+    public void abortSession(Long sessionId) throws IOException {
+        StorageUploadSessionEntity session = requireSession(sessionId);
+        if (!storageUploadSessionManager.close(
+                sessionId, UploadSessionStatus.UPLOADING, UploadSessionStatus.ABORTED)) {
+            throw BusinessException.of(
+                    StorageErrorCode.UPLOAD_SESSION_CLOSED, "上传会话已结束: " + sessionId);
+        }
+        chunkedUploadStore.abort(session);
+    }
+
+    private void cleanupExpiredSessions() {
+        LocalDateTime now = LocalDateTime.now();
+        for (StorageUploadSessionEntity session :
+                storageUploadSessionManager.listExpiredSessions(
+                        UploadSessionStatus.UPLOADING, now, CLEANUP_BATCH_SIZE)) {
+            if (storageUploadSessionManager.close(
+                    session.getId(), UploadSessionStatus.UPLOADING, UploadSessionStatus.ABORTED)) {
+                discard(session);
+            }
+        }
+
+        // 提交只能在会话过期前开始，过期超过提交超时仍在提交中说明提交节点已宕机
+        long commitTimeoutMs = storageProperties.getChunkedUpload().getCommitTimeoutMs();
+        for (StorageUploadSessionEntity session :
+                storageUploadSessionManager.listExpiredSessions(
+                        UploadSessionStatus.COMMITTING,
+                        now.minusNanos(commitTimeoutMs * 1_000_000),
+                        CLEANUP_BATCH_SIZE)) {
+            recoverCommit(session);
+        }
+    }
+
+    /**
+     * 结束中断的提交 目标对象已完整写入时补记为已提交，否则取消会话，两种情况都丢弃剩余的分片
+     */
+    private void recoverCommit(StorageUploadSessionEntity session) {
+        boolean written;
+        try {
+            written =
+                    storageManager
+                            .stat(session.getObjectName())
+                            .map(metadata -> metadata.size() == session.getContentLength())
+                            .orElse(false);
+        } catch (IOException | RuntimeException e) {
+            log.warn("检查中断提交的目标对象失败: {}", session.getId(), e);
+            return;
+        }
+
+        UploadSessionStatus status =
+                written ? UploadSessionStatus.COMMITTED : UploadSessionStatus.ABORTED;
+        if (storageUploadSessionManager.close(
+                session.getId(), UploadSessionStatus.COMMITTING, status)) {
+            log.info("结束中断的分片上传提交: {}, {}", session.getId(), status);
+            discard(session);
+        }
+    }
+
+    private void discard(StorageUploadSessionEntity session) {
+        try {
+            chunkedUploadStore.abort(session);
+            log.debug("清理过期的分片上传会话: {}", session.getId());
+        } catch (IOException | RuntimeException e) {
+            log.warn("清理过期的分片上传会话失败: {}", session.getId(), e);
+        }
+    }
+
+    private StorageUploadSessionEntity requireSession(Long sessionId) {
+        return storageUploadSessionManager
+                .findSession(sessionId)
+                .orElseThrow(
+                        BusinessException.ofSupplier(
+                                StorageErrorCode.UPLOAD_SESSION_NOT_FOUND,
+                                "上传会话不存在: " + sessionId));
+    }
+
+    private StorageUploadSessionEntity requireUploading(Long sessionId) {
+        StorageUploadSessionEntity session = requireSession(sessionId);
+        if (session.getStatus() != UploadSessionStatus.UPLOADING
+                || session.getExpireTime().isBefore(LocalDateTime.now())) {
+            throw BusinessException.of(
+                    StorageErrorCode.UPLOAD_SESSION_CLOSED, "上传会话已结束: " + sessionId);
+        }
+        return session;
+    }
+
+    private static List<Integer> missingChunks(
+            StorageUploadSessionEntity session, List<StorageUploadChunkEntity> chunks) {
+        boolean[] received = new boolean[session.getChunkCount() + 1];
+        for (StorageUploadChunkEntity chunk : chunks) {
+            int chunkNumber = chunk.getChunkNumber();
+            if (chunkNumber <= session.getChunkCount()
+                    && chunk.getSize() == session.getChunkLength(chunkNumber)) {
+                received[chunkNumber] = true;
+            }
+        }
+
+        List<Integer> missing = new ArrayList<>();
+        for (int chunkNumber = 1; chunkNumber <= session.getChunkCount(); chunkNumber++) {
+            if (!received[chunkNumber]) {
+                missing.add(chunkNumber);
+            }
+        }
+        return missing;
+    }
+
+    private static UploadSessionDTO toDTO(
+            StorageUploadSessionEntity session, List<StorageUploadChunkEntity> chunks) {
+        List<Integer> receivedChunks = new ArrayList<>(chunks.size());
+        for (StorageUploadChunkEntity chunk : chunks) {
+            receivedChunks.add(chunk.getChunkNumber());
+        }
+        return new UploadSessionDTO(
+                session.getId(),
+                session.getObjectName(),
+                session.getContentLength(),
+                session.getChunkSize(),
+                session.getChunkCount(),
+                session.getStatus(),
+                receivedChunks,
+                session.getExpireTime());
+    }
+}
@@ -0,0 +1,530 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.DeleteFailure;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.stream.Stream;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 冷热分层存储 新对象写入热存储(本地磁盘)，后台定期把长时间未访问的对象迁移到冷存储(S3).
+ * 读取时先查热存储再查冷存储，从冷存储读取的对象在后台召回热存储.
+ *
+ * <p>访问时间记录在内存中，重启后以对象的修改时间代替. 迁移过程中对象短暂同时存在于两层，列举时可能重复出现.
+ *
+ * <p>写入(覆盖、复制、移动、删除)持有对象的共享锁，并在完成时标记正在迁移的对象. 迁移删除源层对象、
+ * 召回写入热存储时持有独占锁，发现迁移期间有写入则放弃，不会用旧内容覆盖或删除新写入的对象.
+ */
+@Slf4j
+public class TieredStorageManager implements StorageManager, AutoCloseable {
+
+    private static final int PROMOTE_QUEUE_CAPACITY = 1000;
+
+    private static final int LOCK_STRIPES = 1024;
+
+    private final StorageManager hotTier;
+    private final StorageManager coldTier;
+    private final long coldAfterMs;
+    private final long promoteMaxBytes;
+
+    private final Map<String, Long> lastAccessTimes = new ConcurrentHashMap<>();
+
+    /**
+     * 正在迁移或召回的对象，避免同一对象被并发迁移. 值表示迁移开始后对象是否被写入过
+     */
+    private final Map<String, Boolean> migrating = new ConcurrentHashMap<>();
+
+    /**
+     * 写入持有共享锁，迁移的最后一步持有独占锁
+     */
+    private final Striped<ReadWriteLock> objectLocks = Striped.readWriteLock(LOCK_STRIPES);
+
+    private final ScheduledExecutorService migrator;
+    private final ExecutorService promoter;
+
+    public TieredStorageManager(
+            StorageManager hotTier, StorageManager coldTier, StorageProperties.Tiering properties) {
+        this.hotTier = hotTier;
+        this.coldTier = coldTier;
+        this.coldAfterMs = properties.getColdAfterMs();
+        this.promoteMaxBytes = properties.getPromoteMaxBytes();
+
+        this.migrator =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("tier-migrator-%d")
+                                .setDaemon(true)
+                                .build());
+        migrator.scheduleWithFixedDelay(
+                this::migrateQuietly,
+                properties.getMigrateIntervalMs(),
+                properties.getMigrateIntervalMs(),
+                TimeUnit.MILLISECONDS);
+
+        // 召回是尽力而为的，队列满时直接丢弃
+        this.promoter =
+                new ThreadPoolExecutor(
+                        properties.getPromoteConcurrency(),
+                        properties.getPromoteConcurrency(),
+                        0L,
+                        TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<>(PROMOTE_QUEUE_CAPACITY),
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("tier-promoter-%d")
+                                .setDaemon(true)
+                                .build(),
+                        new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    @Override
+    public String uploadFile(Path filePath) throws IOException {
+        return hotTier.uploadFile(filePath);
+    }
+
+    @Override
+    public String uploadStream(InputStream inputStream, long contentLength, String filename)
+            throws IOException {
+        return hotTier.uploadStream(inputStream, contentLength, filename);
+    }
+
+    @Override
+    public String uploadStream(ReadableByteChannel channel, long contentLength, String filename)
+            throws IOException {
+        return hotTier.uploadStream(channel, contentLength, filename);
+    }
+
+    @Override
+    public void putStream(String objectName, InputStream inputStream, long contentLength)
+            throws IOException {
+        write(
+                List.of(objectName),
+                () -> {
+                    hotTier.putStream(objectName, inputStream, contentLength);
+                    coldTier.deleteFile(objectName);
+                });
+    }
+
+    @Override
+    public InputStream downloadFile(String objectName) throws IOException {
+        return read(objectName, tier -> tier.downloadFile(objectName));
+    }
+
+    @Override
+    public InputStream downloadRange(String objectName, long offset, long length)
+            throws IOException {
+        return read(objectName, tier -> tier.downloadRange(objectName, offset, length));
+    }
+
+    /**
+     * 先读热存储，不存在时读冷存储并登记召回. 两次读取之间对象可能恰好被召回到热存储并从冷存储删除，
+     * 冷存储也不存在时再读一次热存储
+     */
+    private InputStream read(String objectName, TierRead read) throws IOException {
+        try {
+            InputStream inputStream = read.open(hotTier);
+            touch(objectName);
+            return inputStream;
+        } catch (FileNotFoundException e) {
+            InputStream inputStream;
+            try {
+                inputStream = read.open(coldTier);
+            } catch (FileNotFoundException coldMiss) {
+                inputStream = read.open(hotTier);
+                touch(objectName);
+                return inputStream;
+            }
+            touch(objectName);
+            schedulePromotion(objectName);
+            return inputStream;
+        }
+    }
+
+    /**
+     * 与读取相同，冷存储也不存在时再查一次热存储
+     */
+    @Override
+    public Optional<ObjectMetadata> stat(String objectName) throws IOException {
+        Optional<ObjectMetadata> metadata = hotTier.stat(objectName);
+        if (metadata.isPresent()) {
+            return metadata;
+        }
+        metadata = coldTier.stat(objectName);
+        return metadata.isPresent() ? metadata : hotTier.stat(objectName);
+    }
+
+    /**
+     * 热存储中没有的对象再到冷存储批量查询
+     */
+    @Override
+    public Map<String, ObjectMetadata> statAll(Collection<String> objectNames)
+            throws IOException {
+        Map<String, ObjectMetadata> hot = hotTier.statAll(objectNames);
+        List<String> missing = new ArrayList<>();
+        for (String objectName : objectNames) {
+            if (!hot.containsKey(objectName)) {
+                missing.add(objectName);
+            }
+        }
+        if (missing.isEmpty()) {
+            return hot;
+        }
+
+        Map<String, ObjectMetadata> cold = coldTier.statAll(missing);
+        Map<String, ObjectMetadata> result = new LinkedHashMap<>();
+        for (String objectName : objectNames) {
+            ObjectMetadata metadata = hot.getOrDefault(objectName, cold.get(objectName));
+            if (metadata != null) {
+                result.put(objectName, metadata);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 在源对象所在的存储内复制，冷对象复制后仍在冷存储
+     */
+    @Override
+    public void copyFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        lastAccessTimes.remove(targetObjectName);
+        write(
+                List.of(sourceObjectName, targetObjectName),
+                () -> {
+                    try {
+                        hotTier.copyFile(sourceObjectName, targetObjectName);
+                        coldTier.deleteFile(targetObjectName);
+                    } catch (FileNotFoundException e) {
+                        coldTier.copyFile(sourceObjectName, targetObjectName);
+                        hotTier.deleteFile(targetObjectName);
+                    }
+                });
+    }
+
+    /**
+     * 目标沿用源对象的访问时间
+     */
+    @Override
+    public void moveFile(String sourceObjectName, String targetObjectName) throws IOException {
+        if (sourceObjectName.equals(targetObjectName)) {
+            return;
+        }
+
+        Long lastAccessTime = lastAccessTimes.remove(sourceObjectName);
+        lastAccessTimes.remove(targetObjectName);
+        write(
+                List.of(sourceObjectName, targetObjectName),
+                () -> {
+                    try {
+                        hotTier.moveFile(sourceObjectName, targetObjectName);
+                        coldTier.deleteFile(targetObjectName);
+                    } catch (FileNotFoundException e) {
+                        coldTier.moveFile(sourceObjectName, targetObjectName);
+                        hotTier.deleteFile(targetObjectName);
+                    }
+                });
+        if (lastAccessTime != null) {
+            lastAccessTimes.put(targetObjectName, lastAccessTime);
+        }
+    }
+
+    @Override
+    public void deleteFile(String objectName) throws IOException {
+        lastAccessTimes.remove(objectName);
+        write(
+                List.of(objectName),
+                () -> {
+                    hotTier.deleteFile(objectName);
+                    coldTier.deleteFile(objectName);
+                });
+    }
+
+    @Override
+    public List<DeleteFailure> deleteFiles(Collection<String> objectNames) throws IOException {
+        for (String objectName : objectNames) {
+            lastAccessTimes.remove(objectName);
+        }
+
+        Map<String, DeleteFailure> failures = new LinkedHashMap<>();
+        write(
+                objectNames,
+                () -> {
+                    for (DeleteFailure failure : hotTier.deleteFiles(objectNames)) {
+                        failures.putIfAbsent(failure.objectName(), failure);
+                    }
+                    for (DeleteFailure failure : coldTier.deleteFiles(objectNames)) {
+                        failures.putIfAbsent(failure.objectName(), failure);
+                    }
+                });
+        return new ArrayList<>(failures.values());
+    }
+
+    @Override
+    public boolean fileExists(String objectName) throws IOException {
+        return hotTier.fileExists(objectName) || coldTier.fileExists(objectName);
+    }
+
+    @Override
+    public List<String> listFiles(String prefix) throws IOException {
+        Set<String> objectNames = new LinkedHashSet<>(hotTier.listFiles(prefix));
+        objectNames.addAll(coldTier.listFiles(prefix));
+        return new ArrayList<>(objectNames);
+    }
+
+    /**
+     * 两层各自分页后合并 迁移中同时存在于两层的对象只返回一次
+     */
+    @Override
+    public ObjectListing listFiles(
+            String prefix, @Nullable String continuationToken, int maxKeys) throws IOException {
+        return MergingObjectLister.list(
+                List.of(hotTier, coldTier), prefix, continuationToken, maxKeys);
+    }
+
+    @Override
+    public Stream<String> streamFiles(String prefix) throws IOException {
+        return Stream.concat(hotTier.streamFiles(prefix), coldTier.streamFiles(prefix));
+    }
+
+    /**
+     * 持有对象的共享锁执行写入，完成后标记正在迁移的对象，使迁移放弃
+     */
+    private void write(Collection<String> objectNames, TierWrite action) throws IOException {
+        List<Lock> locks = new ArrayList<>();
+        for (ReadWriteLock lock : objectLocks.bulkGet(objectNames)) {
+            Lock readLock = lock.readLock();
+            readLock.lock();
+            locks.add(readLock);
+        }
+        try {
+            markWritten(objectNames);
+            action.run();
+        } finally {
+            markWritten(objectNames);
+            locks.forEach(Lock::unlock);
+        }
+    }
+
+    private void markWritten(Collection<String> objectNames) {
+        for (String objectName : objectNames) {
+            migrating.computeIfPresent(objectName, (key, written) -> Boolean.TRUE);
+        }
+    }
+
+    private boolean writtenDuringMigration(String objectName) {
+        return Boolean.TRUE.equals(migrating.get(objectName));
+    }
+
+    private void touch(String objectName) {
+        lastAccessTimes.put(objectName, System.currentTimeMillis());
+    }
+
+    private void schedulePromotion(String objectName) {
+        if (!migrating.containsKey(objectName)) {
+            promoter.execute(() -> promoteQuietly(objectName));
+        }
+    }
+
+    private void promoteQuietly(String objectName) {
+        try {
+            promote(objectName);
+        } catch (IOException | RuntimeException e) {
+            log.warn("对象召回失败: {}", objectName, e);
+        }
+    }
+
+    /**
+     * 把对象从冷存储召回热存储 写入热存储和删除冷存储期间持有独占锁，召回前对象被写入过时放弃，
+     * 避免用冷存储中的旧内容覆盖刚写入热存储的新内容
+     */
+    private void promote(String objectName) throws IOException {
+        if (migrating.putIfAbsent(objectName, Boolean.FALSE) != null) {
+            return;
+        }
+        try {
+            Optional<ObjectMetadata> metadata = coldTier.stat(objectName);
+            if (metadata.isEmpty() || metadata.get().size() > promoteMaxBytes) {
+                return;
+            }
+
+            Lock lock = objectLocks.get(objectName).writeLock();
+            lock.lock();
+            try {
+                Optional<ObjectMetadata> current = coldTier.stat(objectName);
+                if (writtenDuringMigration(objectName)
+                        || current.isEmpty()
+                        || !sameVersion(metadata.get(), current.get())) {
+                    return;
+                }
+                try (InputStream inputStream = coldTier.downloadFile(objectName)) {
+                    hotTier.putStream(objectName, inputStream, current.get().size());
+                }
+                coldTier.deleteFile(objectName);
+            } finally {
+                lock.unlock();
+            }
+            log.debug("对象已召回热存储: {}", objectName);
+        } finally {
+            migrating.remove(objectName);
+        }
+    }
+
+    private void migrateQuietly() {
+        try {
+            migrate();
+        } catch (IOException | RuntimeException e) {
+            log.error("冷热分层迁移失败", e);
+        }
+    }
+
+    /**
+     * 遍历热存储，把超过冷却时间未访问的对象迁移到冷存储
+     */
+    void migrate() throws IOException {
+        long threshold = System.currentTimeMillis() - coldAfterMs;
+        int demoted = 0;
+        try (Stream<String> objectNames = hotTier.streamFiles("")) {
+            Iterator<String> iterator = objectNames.iterator();
+            while (iterator.hasNext() && !Thread.currentThread().isInterrupted()) {
+                String objectName = iterator.next();
+                try {
+                    if (demote(objectName, threshold)) {
+                        demoted++;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    log.warn("对象迁移失败: {}", objectName, e);
+                }
+            }
+        }
+        if (demoted > 0) {
+            log.info("冷热分层迁移完成，迁移到冷存储{}个对象", demoted);
+        }
+    }
+
+    /**
+     * 复制到冷存储后删除热存储中的对象 复制期间对象被访问、写入或删除时撤销迁移.
+     * 最后的检查和删除持有独占锁，期间不会有新的写入
+     */
+    private boolean demote(String objectName, long threshold) throws IOException {
+        if (migrating.putIfAbsent(objectName, Boolean.FALSE) != null) {
+            return false;
+        }
+        try {
+            Optional<ObjectMetadata> metadata = hotTier.stat(objectName);
+            if (metadata.isEmpty() || lastAccessTime(objectName, metadata.get()) >= threshold) {
+                return false;
+            }
+
+            try (InputStream inputStream = hotTier.downloadFile(objectName)) {
+                coldTier.putStream(objectName, inputStream, metadata.get().size());
+            }
+
+            Lock lock = objectLocks.get(objectName).writeLock();
+            lock.lock();
+            try {
+                Optional<ObjectMetadata> current = hotTier.stat(objectName);
+                if (writtenDuringMigration(objectName)
+                        || current.isEmpty()
+                        || !sameVersion(metadata.get(), current.get())
+                        || lastAccessTime(objectName, metadata.get()) >= threshold) {
+                    // 冷存储中的副本是旧内容，热存储仍为准
+                    coldTier.deleteFile(objectName);
+                    return false;
+                }
+
+                hotTier.deleteFile(objectName);
+            } finally {
+                lock.unlock();
+            }
+            lastAccessTimes.remove(objectName);
+            return true;
+        } finally {
+            migrating.remove(objectName);
+        }
+    }
+
+    /**
+     * 迁移前后的元数据一致时视为同一版本，作为写入标记之外的兜底校验
+     */
+    private static boolean sameVersion(ObjectMetadata before, ObjectMetadata after) {
+        return before.size() == after.size()
+                && before.lastModified().equals(after.lastModified())
+                && Objects.equals(before.eTag(), after.eTag());
+    }
+
+    private long lastAccessTime(String objectName, ObjectMetadata metadata) {
+        Long lastAccessTime = lastAccessTimes.get(objectName);
+        return lastAccessTime != null ? lastAccessTime : metadata.lastModified().toEpochMilli();
+    }
+
+    @Override
+    public void close() throws Exception {
+        migrator.shutdownNow();
+        promoter.shutdownNow();
+        migrator.awaitTermination(30, TimeUnit.SECONDS);
+        promoter.awaitTermination(30, TimeUnit.SECONDS);
+        for (StorageManager tier : List.of(hotTier, coldTier)) {
+            if (tier instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private interface TierWrite {
+
+        void run() throws IOException;
+    }
+
+    private interface TierRead {
+
+        InputStream open(StorageManager tier) throws IOException;
+    }
+}
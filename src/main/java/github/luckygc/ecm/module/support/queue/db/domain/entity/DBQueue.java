@@ -23,6 +23,7 @@ import jakarta.persistence.Entity;
 import jakarta.persistence.EnumType;
 import jakarta.persistence.Enumerated;
 import jakarta.persistence.Id;
+import jakarta.persistence.Index;
 import jakarta.persistence.Table;
 import java.time.LocalDateTime;
 import java.util.Objects;
@@ -38,7 +39,14 @@ import org.hibernate.proxy.HibernateProxy;
  * 数据库队列实体 用于存储需要异步处理的任务
  */
 @Entity
-@Table(name = "db_queue")
+@Table(
+        name = "db_queue",
+        indexes = {
+            @Index(
+                    name = "idx_db_queue_claim",
+                    columnList = "queue_name, status, priority, next_retry_time"),
+            @Index(name = "idx_db_queue_lease", columnList = "status, lease_expire_time")
+        })
 @Getter
 @Setter
 @ToString
@@ -122,6 +130,12 @@ public class DBQueue {
     @Column(name = "process_start_time")
     private LocalDateTime processStartTime;
 
+    /**
+     * 租约到期时间 处理节点定期续约，到期未续约的任务被回收重新排队
+     */
+    @Column(name = "lease_expire_time")
+    private LocalDateTime leaseExpireTime;
+
     /**
      * 完成时间
      */
@@ -146,6 +160,12 @@ public class DBQueue {
     @Column(name = "processor_id")
     private Long processorId;
 
+    /**
+     * 领取令牌 每次领取重新生成，处理结果按令牌匹配，任务被回收或重新领取后旧令牌失效
+     */
+    @Column(name = "claim_token", length = 36)
+    private String claimToken;
+
     /**
      * 备注
      */
@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.support.queue.db.handler;
+
+import github.luckygc.ecm.module.support.queue.db.domain.entity.DBQueue;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 数据库队列任务处理器 按任务类型注册，声明为Spring Bean即可被队列消费者发现
+ */
+public interface DBQueueHandler {
+
+    /**
+     * 处理的任务类型，同一任务类型只能有一个处理器
+     */
+    String taskType();
+
+    /**
+     * 处理任务 抛出异常时按重试次数重新排队或标记为失败
+     *
+     * @param task 已领取的任务
+     * @return 处理结果，记录到任务的result字段，可为空
+     */
+    @Nullable String handle(DBQueue task) throws Exception;
+}
@@ -0,0 +1,85 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.support.queue.db.manager;
+
+import github.luckygc.ecm.module.support.queue.db.domain.entity.DBQueue;
+import java.util.Collection;
+import java.util.List;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 数据库队列管理器接口 负责任务的领取及处理结果的记录
+ */
+public interface DBQueueManager {
+
+    /**
+     * 任务入队，并在事务提交后通知正在监听该队列的消费者
+     *
+     * @param task 待处理的任务
+     */
+    void enqueue(DBQueue task);
+
+    /**
+     * 批量入队 绕过逐条插入，按批量insert或COPY写入，并通知涉及的每个队列
+     *
+     * @param tasks 待处理的任务，入队后回填id
+     */
+    void enqueueAll(Collection<DBQueue> tasks);
+
+    /**
+     * 领取待处理的任务并标记为处理中 多个节点同时领取时跳过已被锁定的行，同一任务只会被一个节点领取
+     *
+     * @param queueName 队列名称
+     * @param taskTypes 本节点能处理的任务类型
+     * @param limit 最多领取的数量
+     * @return 已领取的任务，按优先级排列
+     */
+    List<DBQueue> claim(String queueName, Collection<String> taskTypes, int limit);
+
+    /**
+     * 记录任务处理完成，任务已被回收或重新领取时忽略
+     *
+     * @param task 已领取的任务
+     * @param result 处理结果，可为空
+     */
+    void complete(DBQueue task, @Nullable String result);
+
+    /**
+     * 记录任务处理失败，未超过最大重试次数时按指数退避重新排队，否则标记为失败. 任务已被回收或重新领取时忽略
+     *
+     * @param task 已领取的任务
+     * @param errorMessage 错误信息
+     */
+    void fail(DBQueue task, String errorMessage);
+
+    /**
+     * 为本节点处理中的任务续约，按领取令牌匹配
+     *
+     * @param tasks 已领取且处理中的任务
+     * @return 续约成功的任务数，少于传入数量时说明部分任务的租约已被回收
+     */
+    int extendLeases(Collection<DBQueue> tasks);
+
+    /**
+     * 回收租约到期的任务，未超过最大重试次数时按指数退避重新排队，否则标记为失败.
+     * 通过数据库咨询锁保证集群中同一时刻只有一个节点执行回收
+     *
+     * @return 回收的任务数，其他节点正在回收时返回0
+     */
+    int reapExpired();
+}
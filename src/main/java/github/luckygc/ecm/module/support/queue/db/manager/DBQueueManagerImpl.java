@@ -0,0 +1,524 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.support.queue.db.manager;
+
+import com.google.common.collect.Iterables;
+import github.luckygc.ecm.config.property.AppProperties;
+import github.luckygc.ecm.config.property.DBQueueProperties;
+import github.luckygc.ecm.module.support.queue.db.domain.entity.DBQueue;
+import github.luckygc.ecm.module.support.queue.db.domain.entity.DBQueue.QueueStatus;
+import github.luckygc.ecm.module.support.queue.db.repository.DBQueueRepository;
+import github.luckygc.ecm.util.DBQueueUtils;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.nio.charset.StandardCharsets;
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * 数据库队列管理器实现类 领取使用一条update语句，子查询以for update skip locked锁定待处理的行，
+ * 锁定与标记为处理中在同一语句中完成，多个节点并发领取时互不等待也不会重复领取. 领取时同时设置租约，
+ * 处理节点失联后租约到期的任务由回收重新排队. 每次领取生成随机的领取令牌，处理结果按令牌匹配，
+ * 不依赖节点编号的唯一性，任务被回收后原处理线程的结果不会覆盖新的领取. 语句依赖PostgreSQL语法
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class DBQueueManagerImpl implements DBQueueManager {
+
+    private static final String CLAIM_SQL =
+            """
+            update db_queue
+               set status = 'PROCESSING', processor_id = ?, claim_token = ?, process_start_time = ?,
+                   update_time = ?, lease_expire_time = ?
+             where id in (select id
+                            from db_queue
+                           where queue_name = ?
+                             and status = 'PENDING'
+                             and task_type = any (?)
+                             and (next_retry_time is null or next_retry_time <= ?)
+                           order by priority, next_retry_time nulls first, id
+                           limit ?
+                             for update skip locked)
+            returning *
+            """;
+
+    /**
+     * 租约到期的任务，升级前领取的任务没有租约，按最后更新时间判断
+     */
+    private static final String EXPIRED_SQL =
+            """
+            select *
+              from db_queue
+             where status = 'PROCESSING'
+               and (lease_expire_time < ? or (lease_expire_time is null and update_time < ?))
+             order by lease_expire_time nulls first, id
+             limit ?
+               for update skip locked
+            """;
+
+    /**
+     * 事务级咨询锁，事务结束时自动释放
+     */
+    private static final String TRY_LOCK_SQL = "select pg_try_advisory_xact_lock(?)";
+
+    /**
+     * 回收租约到期任务的咨询锁键
+     */
+    private static final long REAPER_LOCK_KEY = 0x6462_7175_6575_6501L;
+
+    /**
+     * 单条续约语句的任务数上限，避免in列表过长
+     */
+    private static final int LEASE_BATCH_SIZE = 500;
+
+    /**
+     * 批量入队写入的列，与{@link #bindValues}的顺序一致
+     */
+    private static final String INSERT_COLUMNS =
+            "id, create_time, update_time, queue_name, task_type, status, priority, task_data,"
+                    + " retry_count, max_retry_count, next_retry_time, creator_id, remark";
+
+    private static final int INSERT_COLUMN_COUNT = 13;
+
+    /**
+     * PostgreSQL协议中单条语句绑定参数个数的上限
+     */
+    private static final int MAX_BIND_PARAMETERS = Short.MAX_VALUE;
+
+    /**
+     * 单条批量insert语句最多写入的任务数
+     */
+    private static final int MAX_INSERT_ROWS = MAX_BIND_PARAMETERS / INSERT_COLUMN_COUNT;
+
+    private static final String COPY_SQL =
+            "copy db_queue (" + INSERT_COLUMNS + ") from stdin with (format csv)";
+
+    /**
+     * COPY时每攒够该字符数写入一次连接
+     */
+    private static final int COPY_BUFFER_CHARS = 64 * 1024;
+
+    /**
+     * pg_notify在事务提交时才发送通知，同一事务内重复的通知只发送一次
+     */
+    private static final String NOTIFY_SQL = "select pg_notify(?, '')";
+
+    /**
+     * 错误信息的最大长度，避免异常堆栈撑大任务表
+     */
+    private static final int MAX_ERROR_LENGTH = 4000;
+
+    private static final RowMapper<DBQueue> ROW_MAPPER = DBQueueManagerImpl::mapRow;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DBQueueRepository dbQueueRepository;
+    private final DBQueueProperties dbQueueProperties;
+    private final AppProperties appProperties;
+    private final SnowflakeIdGenerator snowflakeIdGenerator;
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public void enqueue(DBQueue task) {
+        dbQueueRepository.insert(task);
+        publish(task.getQueueName());
+    }
+
+    /**
+     * 任务较少时按批量insert写入，达到阈值后使用COPY. 整批在同一事务中写入，通知在提交时才发出
+     */
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public void enqueueAll(Collection<DBQueue> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+
+        // 整批一次性分配id，不逐条竞争生成器的锁
+        long[] ids = snowflakeIdGenerator.nextIds(tasks.size());
+        LocalDateTime now = LocalDateTime.now();
+        Set<String> queueNames = new LinkedHashSet<>();
+        int index = 0;
+        for (DBQueue task : tasks) {
+            task.setId(ids[index++]);
+            task.setCreateTime(now);
+            task.setUpdateTime(now);
+            queueNames.add(task.getQueueName());
+        }
+
+        if (tasks.size() >= dbQueueProperties.getEnqueueCopyThreshold()) {
+            copy(tasks);
+        } else {
+            int batchSize =
+                    Math.max(1, Math.min(dbQueueProperties.getEnqueueBatchSize(), MAX_INSERT_ROWS));
+            for (List<DBQueue> batch : Iterables.partition(tasks, batchSize)) {
+                insert(batch);
+            }
+        }
+        queueNames.forEach(this::publish);
+        log.debug("已批量入队{}个任务: {}", tasks.size(), queueNames);
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public List<DBQueue> claim(String queueName, Collection<String> taskTypes, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit必须大于0: " + limit);
+        }
+        if (taskTypes.isEmpty()) {
+            return List.of();
+        }
+
+        LocalDateTime claimTime = LocalDateTime.now();
+        Timestamp now = Timestamp.valueOf(claimTime);
+        Timestamp leaseExpireTime = Timestamp.valueOf(leaseExpireTime(claimTime));
+        String claimToken = UUID.randomUUID().toString();
+        List<DBQueue> tasks =
+                jdbcTemplate.query(
+                        con -> {
+                            PreparedStatement ps = con.prepareStatement(CLAIM_SQL);
+                            Array types =
+                                    con.createArrayOf("varchar", taskTypes.toArray(String[]::new));
+                            ps.setLong(1, appProperties.getNumber());
+                            ps.setString(2, claimToken);
+                            ps.setTimestamp(3, now);
+                            ps.setTimestamp(4, now);
+                            ps.setTimestamp(5, leaseExpireTime);
+                            ps.setString(6, queueName);
+                            ps.setArray(7, types);
+                            ps.setTimestamp(8, now);
+                            ps.setInt(9, limit);
+                            return ps;
+                        },
+                        ROW_MAPPER);
+
+        // returning不保证顺序，按领取时的顺序重新排列
+        List<DBQueue> sorted = new ArrayList<>(tasks);
+        sorted.sort(
+                Comparator.comparing(DBQueue::getPriority)
+                        .thenComparing(
+                                DBQueue::getNextRetryTime,
+                                Comparator.nullsFirst(Comparator.naturalOrder()))
+                        .thenComparing(DBQueue::getId));
+        if (!sorted.isEmpty()) {
+            log.debug("已从队列{}领取{}个任务", queueName, sorted.size());
+        }
+        return sorted;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public void complete(DBQueue task, @Nullable String result) {
+        LocalDateTime now = LocalDateTime.now();
+        int updated =
+                dbQueueRepository.finish(
+                        task.getId(),
+                        QueueStatus.PROCESSING,
+                        task.getClaimToken(),
+                        QueueStatus.COMPLETED,
+                        result,
+                        null,
+                        now,
+                        processDuration(task, now));
+        if (updated == 0) {
+            log.warn("任务{}已被回收或重新领取，忽略处理结果", task.getId());
+        }
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public void fail(DBQueue task, String errorMessage) {
+        LocalDateTime now = LocalDateTime.now();
+        String message = truncate(errorMessage);
+        int updated;
+        if (task.getRetryCount() < task.getMaxRetryCount()) {
+            updated =
+                    dbQueueRepository.requeue(
+                            task.getId(),
+                            QueueStatus.PROCESSING,
+                            task.getClaimToken(),
+                            QueueStatus.PENDING,
+                            task.getRetryCount() + 1,
+                            nextRetryTime(now, task.getRetryCount()),
+                            message,
+                            now);
+        } else {
+            updated =
+                    dbQueueRepository.finish(
+                            task.getId(),
+                            QueueStatus.PROCESSING,
+                            task.getClaimToken(),
+                            QueueStatus.FAILED,
+                            null,
+                            message,
+                            now,
+                            processDuration(task, now));
+        }
+        if (updated == 0) {
+            log.warn("任务{}已被回收或重新领取，忽略失败结果", task.getId());
+        }
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public int extendLeases(Collection<DBQueue> tasks) {
+        // 同一次领取的任务共用令牌，按令牌分组后每组一条语句
+        Map<String, List<Long>> idsByToken = new LinkedHashMap<>();
+        for (DBQueue task : tasks) {
+            idsByToken
+                    .computeIfAbsent(task.getClaimToken(), k -> new ArrayList<>())
+                    .add(task.getId());
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime leaseExpireTime = leaseExpireTime(now);
+        int extended = 0;
+        for (Map.Entry<String, List<Long>> entry : idsByToken.entrySet()) {
+            for (List<Long> batch : Iterables.partition(entry.getValue(), LEASE_BATCH_SIZE)) {
+                extended +=
+                        dbQueueRepository.extendLeases(
+                                batch,
+                                QueueStatus.PROCESSING,
+                                entry.getKey(),
+                                leaseExpireTime,
+                                now);
+            }
+        }
+        return extended;
+    }
+
+    @Override
+    @Transactional(rollbackFor = Throwable.class, isolation = Isolation.READ_COMMITTED)
+    public int reapExpired() {
+        Boolean locked = jdbcTemplate.queryForObject(TRY_LOCK_SQL, Boolean.class, REAPER_LOCK_KEY);
+        if (!Boolean.TRUE.equals(locked)) {
+            return 0;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime legacyCutoff = now.minus(Duration.ofMillis(dbQueueProperties.getLeaseMs()));
+        List<DBQueue> expired =
+                jdbcTemplate.query(
+                        EXPIRED_SQL,
+                        ROW_MAPPER,
+                        Timestamp.valueOf(now),
+                        Timestamp.valueOf(legacyCutoff),
+                        dbQueueProperties.getReapBatchSize());
+        for (DBQueue task : expired) {
+            String message = "租约到期未续约，处理节点: " + task.getProcessorId();
+            if (task.getRetryCount() < task.getMaxRetryCount()) {
+                dbQueueRepository.requeueExpired(
+                        task.getId(),
+                        QueueStatus.PROCESSING,
+                        QueueStatus.PENDING,
+                        task.getRetryCount() + 1,
+                        nextRetryTime(now, task.getRetryCount()),
+                        message,
+                        now);
+            } else {
+                dbQueueRepository.failExpired(
+                        task.getId(),
+                        QueueStatus.PROCESSING,
+                        QueueStatus.FAILED,
+                        message,
+                        now,
+                        processDuration(task, now));
+            }
+        }
+        if (!expired.isEmpty()) {
+            log.warn("已回收{}个租约到期的任务", expired.size());
+        }
+        return expired.size();
+    }
+
+    private LocalDateTime leaseExpireTime(LocalDateTime now) {
+        return now.plus(Duration.ofMillis(dbQueueProperties.getLeaseMs()));
+    }
+
+    private LocalDateTime nextRetryTime(LocalDateTime now, int retryCount) {
+        long delay =
+                DBQueueUtils.retryDelayMs(
+                        dbQueueProperties.getRetryDelayMs(),
+                        dbQueueProperties.getRetryMaxDelayMs(),
+                        retryCount,
+                        ThreadLocalRandom.current());
+        return now.plus(Duration.ofMillis(delay));
+    }
+
+    private void insert(List<DBQueue> batch) {
+        String row = "(" + String.join(", ", Collections.nCopies(INSERT_COLUMN_COUNT, "?")) + ")";
+        String sql =
+                "insert into db_queue ("
+                        + INSERT_COLUMNS
+                        + ") values "
+                        + String.join(", ", Collections.nCopies(batch.size(), row));
+        jdbcTemplate.update(
+                sql,
+                ps -> {
+                    int parameterIndex = 1;
+                    for (DBQueue task : batch) {
+                        for (Object value : bindValues(task)) {
+                            if (value == null) {
+                                ps.setNull(parameterIndex++, Types.NULL);
+                            } else {
+                                ps.setObject(parameterIndex++, value);
+                            }
+                        }
+                    }
+                });
+    }
+
+    private void copy(Collection<DBQueue> tasks) {
+        // 在当前事务的连接上执行，与通知一同提交
+        ConnectionCallback<Long> callback =
+                con -> {
+                    CopyIn copyIn = con.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+                    try {
+                        writeCsv(copyIn, tasks);
+                        return copyIn.endCopy();
+                    } finally {
+                        if (copyIn.isActive()) {
+                            copyIn.cancelCopy();
+                        }
+                    }
+                };
+        Long copied = jdbcTemplate.execute(callback);
+        log.debug("已通过COPY写入{}个任务", copied);
+    }
+
+    private static void writeCsv(CopyIn copyIn, Collection<DBQueue> tasks) throws SQLException {
+        StringBuilder buffer = new StringBuilder(COPY_BUFFER_CHARS + 1024);
+        for (DBQueue task : tasks) {
+            Object[] values = bindValues(task);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    buffer.append(',');
+                }
+                // 未加引号的空字段表示null，其余字段一律加引号
+                if (values[i] != null) {
+                    buffer.append('"')
+                            .append(values[i].toString().replace("\"", "\"\""))
+                            .append('"');
+                }
+            }
+            buffer.append('\n');
+            if (buffer.length() >= COPY_BUFFER_CHARS) {
+                flush(copyIn, buffer);
+            }
+        }
+        flush(copyIn, buffer);
+    }
+
+    private static void flush(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+        byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        buffer.setLength(0);
+    }
+
+    /**
+     * 批量入队写入的列值，顺序与{@link #INSERT_COLUMNS}一致
+     */
+    private static @Nullable Object[] bindValues(DBQueue task) {
+        return new Object[] {
+            task.getId(),
+            task.getCreateTime(),
+            task.getUpdateTime(),
+            task.getQueueName(),
+            task.getTaskType(),
+            task.getStatus().name(),
+            task.getPriority(),
+            task.getTaskData(),
+            task.getRetryCount(),
+            task.getMaxRetryCount(),
+            task.getNextRetryTime(),
+            task.getCreatorId(),
+            task.getRemark()
+        };
+    }
+
+    private void publish(String queueName) {
+        jdbcTemplate.query(NOTIFY_SQL, rs -> {}, DBQueueUtils.notifyChannel(queueName));
+    }
+
+    private static @Nullable Long processDuration(DBQueue task, LocalDateTime now) {
+        if (task.getProcessStartTime() == null) {
+            return null;
+        }
+        return Duration.between(task.getProcessStartTime(), now).toMillis();
+    }
+
+    private static String truncate(String errorMessage) {
+        if (errorMessage.length() <= MAX_ERROR_LENGTH) {
+            return errorMessage;
+        }
+        return errorMessage.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private static DBQueue mapRow(ResultSet rs, int rowNum) throws SQLException {
+        DBQueue task = new DBQueue();
+        task.setId(rs.getLong("id"));
+        task.setCreateTime(rs.getObject("create_time", LocalDateTime.class));
+        task.setUpdateTime(rs.getObject("update_time", LocalDateTime.class));
+        task.setQueueName(rs.getString("queue_name"));
+        task.setTaskType(rs.getString("task_type"));
+        task.setStatus(QueueStatus.valueOf(rs.getString("status")));
+        task.setPriority(rs.getInt("priority"));
+        task.setTaskData(rs.getString("task_data"));
+        task.setResult(rs.getString("result"));
+        task.setErrorMessage(rs.getString("error_message"));
+        task.setRetryCount(rs.getInt("retry_count"));
+        task.setMaxRetryCount(rs.getInt("max_retry_count"));
+        task.setNextRetryTime(rs.getObject("next_retry_time", LocalDateTime.class));
+        task.setProcessStartTime(rs.getObject("process_start_time", LocalDateTime.class));
+        task.setLeaseExpireTime(rs.getObject("lease_expire_time", LocalDateTime.class));
+        task.setCompletedTime(rs.getObject("completed_time", LocalDateTime.class));
+        task.setProcessDuration(rs.getObject("process_duration", Long.class));
+        task.setCreatorId(rs.getObject("creator_id", Long.class));
+        task.setProcessorId(rs.getObject("processor_id", Long.class));
+        task.setClaimToken(rs.getString("claim_token"));
+        task.setRemark(rs.getString("remark"));
+        return task;
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.support.queue.db.repository;
+
+import github.luckygc.ecm.module.support.queue.db.domain.entity.DBQueue;
+import github.luckygc.ecm.module.support.queue.db.domain.entity.DBQueue.QueueStatus;
+import jakarta.data.repository.Insert;
+import jakarta.data.repository.Query;
+import jakarta.data.repository.Repository;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 数据库队列仓库
+ */
+@Repository
+public interface DBQueueRepository {
+
+    @Insert
+    void insert(DBQueue dbQueue);
+
+    /**
+     * 记录处理结果，仅更新仍处于本次领取中的任务
+     */
+    @Query(
+            "update DBQueue set status = :status, result = :result, errorMessage = :errorMessage,"
+                    + " completedTime = :completedTime, processDuration = :processDuration,"
+                    + " leaseExpireTime = null, updateTime = :completedTime"
+                    + " where id = :id and status = :expectedStatus and claimToken = :claimToken")
+    int finish(
+            Long id,
+            QueueStatus expectedStatus,
+            String claimToken,
+            QueueStatus status,
+            String result,
+            String errorMessage,
+            LocalDateTime completedTime,
+            Long processDuration);
+
+    /**
+     * 重新排队，仅更新仍处于本次领取中的任务
+     */
+    @Query(
+            "update DBQueue set status = :status, retryCount = :retryCount,"
+                    + " nextRetryTime = :nextRetryTime, errorMessage = :errorMessage,"
+                    + " processorId = null, claimToken = null, processStartTime = null,"
+                    + " leaseExpireTime = null, updateTime = :updateTime"
+                    + " where id = :id and status = :expectedStatus and claimToken = :claimToken")
+    int requeue(
+            Long id,
+            QueueStatus expectedStatus,
+            String claimToken,
+            QueueStatus status,
+            int retryCount,
+            LocalDateTime nextRetryTime,
+            String errorMessage,
+            LocalDateTime updateTime);
+
+    /**
+     * 续约，仅更新仍处于同一次领取中的任务
+     */
+    @Query(
+            "update DBQueue set leaseExpireTime = :leaseExpireTime, updateTime = :updateTime"
+                    + " where id in :ids and status = :expectedStatus"
+                    + " and claimToken = :claimToken")
+    int extendLeases(
+            List<Long> ids,
+            QueueStatus expectedStatus,
+            String claimToken,
+            LocalDateTime leaseExpireTime,
+            LocalDateTime updateTime);
+
+    /**
+     * 租约到期的任务重新排队，调用方需已锁定该任务
+     */
+    @Query(
+            "update DBQueue set status = :status, retryCount = :retryCount,"
+                    + " nextRetryTime = :nextRetryTime, errorMessage = :errorMessage,"
+                    + " processorId = null, claimToken = null, processStartTime = null,"
+                    + " leaseExpireTime = null, updateTime = :updateTime"
+                    + " where id = :id and status = :expectedStatus")
+    int requeueExpired(
+            Long id,
+            QueueStatus expectedStatus,
+            QueueStatus status,
+            int retryCount,
+            LocalDateTime nextRetryTime,
+            String errorMessage,
+            LocalDateTime updateTime);
+
+    /**
+     * 租约到期且重试次数用完的任务标记为失败，调用方需已锁定该任务
+     */
+    @Query(
+            "update DBQueue set status = :status, errorMessage = :errorMessage,"
+                    + " completedTime = :completedTime, processDuration = :processDuration,"
+                    + " leaseExpireTime = null, updateTime = :completedTime"
+                    + " where id = :id and status = :expectedStatus")
+    int failExpired(
+            Long id,
+            QueueStatus expectedStatus,
+            QueueStatus status,
+            String errorMessage,
+            LocalDateTime completedTime,
+            Long processDuration);
+}
@@ -0,0 +1,245 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.support.queue.db.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import github.luckygc.ecm.config.property.DBQueueProperties;
+import github.luckygc.ecm.module.support.queue.db.domain.entity.DBQueue;
+import github.luckygc.ecm.module.support.queue.db.handler.DBQueueHandler;
+import github.luckygc.ecm.module.support.queue.db.manager.DBQueueManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 单个队列的消费者 独立的领取线程和处理线程池，队列之间互不占用处理线程.
+ * 处理中和已领取待处理的任务数之和受许可数限制，达到上限时领取线程阻塞，直到有任务处理完成
+ */
+@Slf4j
+final class DBQueueConsumer {
+
+    /**
+     * 空闲的处理线程超过该时间后回收，任务稀少的队列不长期占用线程
+     */
+    private static final long KEEP_ALIVE_SECONDS = 60;
+
+    private final String queueName;
+    private final DBQueueManager dbQueueManager;
+    private final DBQueueProperties properties;
+    private final Map<String, DBQueueHandler> handlers;
+    private final BooleanSupplier listening;
+
+    /**
+     * 处理中和缓冲中的任务数上限，领取前获取许可，任务处理完成后归还
+     */
+    private final Semaphore permits;
+
+    /**
+     * 唤醒信号，空闲的领取线程在此等待通知或轮询间隔到期
+     */
+    private final Semaphore wakeup = new Semaphore(0);
+
+    /**
+     * 已领取且未处理完成的任务，包括缓冲中的任务，定期为其续约
+     */
+    private final Map<Long, DBQueue> claimed = new ConcurrentHashMap<>();
+
+    private final Thread poller;
+
+    /**
+     * 线程数固定为并发上限，工作队列的长度由许可数限制，不会无限增长
+     */
+    private final ThreadPoolExecutor executor;
+
+    private volatile boolean running = true;
+
+    DBQueueConsumer(
+            String queueName,
+            int concurrency,
+            DBQueueManager dbQueueManager,
+            DBQueueProperties properties,
+            Map<String, DBQueueHandler> handlers,
+            BooleanSupplier listening) {
+        if (concurrency <= 0) {
+            throw new IllegalArgumentException("队列" + queueName + "的并发数必须大于0: " + concurrency);
+        }
+        this.queueName = queueName;
+        this.dbQueueManager = dbQueueManager;
+        this.properties = properties;
+        this.handlers = handlers;
+        this.listening = listening;
+        this.permits = new Semaphore(concurrency + Math.max(0, properties.getBufferSize()));
+
+        // 线程名格式中的%需要转义
+        String namePrefix = "db-queue-" + queueName.replace("%", "%%");
+        this.executor =
+                new ThreadPoolExecutor(
+                        concurrency,
+                        concurrency,
+                        KEEP_ALIVE_SECONDS,
+                        TimeUnit.SECONDS,
+                        new LinkedBlockingQueue<>(),
+                        new ThreadFactoryBuilder()
+                                .setNameFormat(namePrefix + "-worker-%d")
+                                .setDaemon(true)
+                                .build());
+        this.executor.allowCoreThreadTimeOut(true);
+        this.poller =
+                new ThreadFactoryBuilder()
+                        .setNameFormat(namePrefix + "-poller")
+                        .setDaemon(true)
+                        .build()
+                        .newThread(this::poll);
+        this.poller.start();
+    }
+
+    /**
+     * 唤醒空闲的领取线程，领取线程忙碌时保留一个信号，使其处理完本轮后立即再次领取
+     */
+    void wakeup() {
+        if (wakeup.availablePermits() == 0) {
+            wakeup.release();
+        }
+    }
+
+    /**
+     * 已领取且未处理完成的任务
+     */
+    List<DBQueue> claimedTasks() {
+        return new ArrayList<>(claimed.values());
+    }
+
+    private void poll() {
+        List<String> taskTypes = new ArrayList<>(handlers.keySet());
+        while (running) {
+            try {
+                // 处理中和缓冲中的任务达到上限时在此暂停领取
+                permits.acquire();
+                int limit = 1 + drainPermits(properties.getClaimBatchSize() - 1);
+                List<DBQueue> tasks;
+                try {
+                    tasks = dbQueueManager.claim(queueName, taskTypes, limit);
+                } catch (RuntimeException e) {
+                    permits.release(limit);
+                    throw e;
+                }
+
+                permits.release(limit - tasks.size());
+                for (DBQueue task : tasks) {
+                    dispatch(task);
+                }
+                if (tasks.size() < limit) {
+                    awaitWakeup();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("领取队列{}的任务失败", queueName, e);
+                sleepQuietly(properties.getPollIntervalMs());
+            }
+        }
+    }
+
+    private void awaitWakeup() throws InterruptedException {
+        long timeout =
+                listening.getAsBoolean()
+                        ? properties.getIdlePollIntervalMs()
+                        : properties.getPollIntervalMs();
+        if (wakeup.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+            // 合并等待期间的多次通知
+            wakeup.drainPermits();
+        }
+    }
+
+    private int drainPermits(int max) {
+        int acquired = 0;
+        while (acquired < max && permits.tryAcquire()) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    private void dispatch(DBQueue task) {
+        claimed.put(task.getId(), task);
+        try {
+            executor.execute(() -> process(task));
+        } catch (RuntimeException e) {
+            // 关闭期间无法执行的任务不再续约，租约到期后由回收重新排队
+            claimed.remove(task.getId());
+            log.warn("任务{}未能提交执行: {}", task.getId(), e.getMessage());
+        }
+    }
+
+    private void process(DBQueue task) {
+        try {
+            DBQueueHandler handler = handlers.get(task.getTaskType());
+            String result;
+            try {
+                result = handler.handle(task);
+            } catch (Exception e) {
+                log.warn("任务{}处理失败: type={}", task.getId(), task.getTaskType(), e);
+                dbQueueManager.fail(task, e.toString());
+                return;
+            }
+            dbQueueManager.complete(task, result);
+        } catch (RuntimeException e) {
+            log.error("记录任务{}的处理结果失败", task.getId(), e);
+        } finally {
+            claimed.remove(task.getId());
+            permits.release();
+        }
+    }
+
+    private static void sleepQuietly(long millis) {
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 停止领取，已领取的任务继续处理
+     */
+    void shutdown() {
+        running = false;
+        poller.interrupt();
+        executor.shutdown();
+    }
+
+    /**
+     * 等待已领取的任务处理完成，超时后中断仍在处理的任务. 领取线程和处理线程池共用同一个截止时间
+     */
+    void awaitTermination(long timeoutMillis) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        poller.join(timeoutMillis);
+        long remaining = Math.max(0, deadline - System.nanoTime());
+        if (!executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+            log.warn("队列{}关闭超时，仍有{}个任务在处理中", queueName, executor.getActiveCount());
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.support.queue.db.service;
+
+import github.luckygc.ecm.util.DBQueueUtils;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+
+/**
+ * 数据库队列入队通知监听器 使用独立于连接池的连接执行LISTEN并阻塞等待通知，收到通知时唤醒对应队列的消费者.
+ * 连接断开后按固定间隔重连，重连成功时唤醒全部队列以补偿断开期间丢失的通知
+ */
+@Slf4j
+final class DBQueueNotificationListener implements AutoCloseable {
+
+    /**
+     * 单次等待通知的超时时间(毫秒)，超时后校验连接是否可用
+     */
+    private static final int WAIT_TIMEOUT_MS = 10 * 1000;
+
+    private static final int VALIDATION_TIMEOUT_SECONDS = 5;
+
+    private static final long RECONNECT_DELAY_MS = 5 * 1000;
+
+    private final DataSourceProperties dataSourceProperties;
+
+    /**
+     * 通知通道名到队列名的映射
+     */
+    private final Map<String, String> queueNames = new HashMap<>();
+
+    private final Consumer<String> wakeup;
+    private final Thread thread;
+
+    private volatile boolean running = true;
+    private volatile boolean listening;
+    private volatile @Nullable Connection connection;
+
+    DBQueueNotificationListener(
+            DataSourceProperties dataSourceProperties,
+            Collection<String> queueNames,
+            Consumer<String> wakeup) {
+        this.dataSourceProperties = dataSourceProperties;
+        for (String queueName : queueNames) {
+            this.queueNames.put(DBQueueUtils.notifyChannel(queueName), queueName);
+        }
+        this.wakeup = wakeup;
+        this.thread = new Thread(this::run, "db-queue-listener");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * 是否正在监听通知，未监听时消费者需按正常间隔轮询
+     */
+    boolean isListening() {
+        return listening;
+    }
+
+    private void run() {
+        while (running) {
+            try (Connection current = connect()) {
+                connection = current;
+                listening = true;
+                // 断开期间可能有任务入队
+                queueNames.values().forEach(wakeup);
+                await(current);
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("数据库队列通知连接中断，{}毫秒后重连: {}", RECONNECT_DELAY_MS, e.getMessage());
+                }
+            } finally {
+                listening = false;
+                connection = null;
+            }
+
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        Connection current =
+                DriverManager.getConnection(
+                        dataSourceProperties.determineUrl(),
+                        dataSourceProperties.determineUsername(),
+                        dataSourceProperties.determinePassword());
+        try (Statement statement = current.createStatement()) {
+            current.setAutoCommit(true);
+            for (String channel : queueNames.keySet()) {
+                statement.execute("listen " + DBQueueUtils.quoteIdentifier(channel));
+            }
+        } catch (SQLException e) {
+            current.close();
+            throw e;
+        }
+        log.info("已监听数据库队列通知: {}", queueNames.values());
+        return current;
+    }
+
+    private void await(Connection current) throws SQLException {
+        PGConnection pgConnection = current.unwrap(PGConnection.class);
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(WAIT_TIMEOUT_MS);
+            if (notifications == null || notifications.length == 0) {
+                // 网络中断时读取不会报错，需主动校验连接
+                if (!current.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+                    throw new SQLException("连接已失效");
+                }
+                continue;
+            }
+            for (PGNotification notification : notifications) {
+                String queueName = queueNames.get(notification.getName());
+                if (queueName != null) {
+                    wakeup.accept(queueName);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void close() throws InterruptedException {
+        running = false;
+        Connection current = connection;
+        if (current != null) {
+            try {
+                // 关闭连接使阻塞中的等待立即返回
+                current.close();
+            } catch (SQLException e) {
+                log.debug("关闭数据库队列通知连接失败: {}", e.getMessage());
+            }
+        }
+        thread.interrupt();
+        thread.join(RECONNECT_DELAY_MS);
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.support.queue.db.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import github.luckygc.ecm.config.property.DBQueueProperties;
+import github.luckygc.ecm.module.support.queue.db.domain.entity.DBQueue;
+import github.luckygc.ecm.module.support.queue.db.handler.DBQueueHandler;
+import github.luckygc.ecm.module.support.queue.db.manager.DBQueueManager;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.jspecify.annotations.Nullable;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * 数据库队列消费者 每个队列有独立的领取线程和按并发上限配置的处理线程池，批量领取任务交给按任务类型注册的处理器执行.
+ * 只领取本节点注册了处理器的任务类型，其余任务留给其他节点. 监听到入队通知时立即唤醒对应队列空闲的领取线程，
+ * 监听期间只按较长的兜底间隔轮询. 后台定期为已领取的任务续约，并回收集群中租约到期的任务
+ */
+@Slf4j
+@Component
+public class DBQueueWorker implements AutoCloseable {
+
+    private static final long SHUTDOWN_TIMEOUT_MS = 30 * 1000;
+
+    private final DBQueueManager dbQueueManager;
+    private final DBQueueProperties properties;
+    private final DataSourceProperties dataSourceProperties;
+    private final Map<String, DBQueueHandler> handlers;
+
+    private final Map<String, DBQueueConsumer> consumers = new LinkedHashMap<>();
+
+    private volatile @Nullable DBQueueNotificationListener listener;
+    private @Nullable ScheduledExecutorService maintainer;
+
+    public DBQueueWorker(
+            DBQueueManager dbQueueManager,
+            DBQueueProperties properties,
+            DataSourceProperties dataSourceProperties,
+            List<DBQueueHandler> handlers) {
+        this.dbQueueManager = dbQueueManager;
+        this.properties = properties;
+        this.dataSourceProperties = dataSourceProperties;
+        this.handlers = new HashMap<>();
+        for (DBQueueHandler handler : handlers) {
+            DBQueueHandler existing = this.handlers.putIfAbsent(handler.taskType(), handler);
+            if (existing != null) {
+                throw new IllegalStateException("任务类型" + handler.taskType() + "存在多个处理器");
+            }
+        }
+    }
+
+    /**
+     * 未启用消费的节点也参与回收，存储副本修复等自行领取任务的组件不依赖消费开关，
+     * 其领取的任务在节点失联后同样需要回收
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (maintainer != null) {
+            return;
+        }
+
+        maintainer =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setNameFormat("db-queue-maintainer-%d")
+                                .setDaemon(true)
+                                .build());
+        maintainer.scheduleWithFixedDelay(
+                this::reapQuietly,
+                properties.getReapIntervalMs(),
+                properties.getReapIntervalMs(),
+                TimeUnit.MILLISECONDS);
+        if (!properties.isEnabled() || properties.getQueues().isEmpty() || handlers.isEmpty()) {
+            return;
+        }
+
+        for (String queueName : properties.getQueues()) {
+            int concurrency =
+                    properties
+                            .getQueueConcurrency()
+                            .getOrDefault(queueName, properties.getConcurrency());
+            consumers.put(
+                    queueName,
+                    new DBQueueConsumer(
+                            queueName,
+                            concurrency,
+                            dbQueueManager,
+                            properties,
+                            handlers,
+                            this::isListening));
+        }
+        if (properties.isListenEnabled()) {
+            listener =
+                    new DBQueueNotificationListener(
+                            dataSourceProperties, properties.getQueues(), this::wakeup);
+        }
+        maintainer.scheduleWithFixedDelay(
+                this::heartbeatQuietly,
+                properties.getHeartbeatIntervalMs(),
+                properties.getHeartbeatIntervalMs(),
+                TimeUnit.MILLISECONDS);
+        log.info("数据库队列消费者已启动: 队列={}, 任务类型={}", properties.getQueues(), handlers.keySet());
+    }
+
+    /**
+     * 为本节点已领取的任务续约，续约失败的任务已被回收，处理结果会被忽略
+     */
+    private void heartbeatQuietly() {
+        try {
+            List<DBQueue> tasks = new ArrayList<>();
+            consumers.values().forEach(consumer -> tasks.addAll(consumer.claimedTasks()));
+            if (tasks.isEmpty()) {
+                return;
+            }
+            int extended = dbQueueManager.extendLeases(tasks);
+            if (extended < tasks.size()) {
+                log.warn("{}个处理中的任务续约失败，租约可能已被回收", tasks.size() - extended);
+            }
+        } catch (RuntimeException e) {
+            log.error("数据库队列任务续约失败", e);
+        }
+    }
+
+    private void reapQuietly() {
+        try {
+            // 一批回收满时继续回收，直到没有到期的任务或其他节点持有锁
+            while (dbQueueManager.reapExpired() >= properties.getReapBatchSize()) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return;
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("回收租约到期的数据库队列任务失败", e);
+        }
+    }
+
+    private boolean isListening() {
+        DBQueueNotificationListener currentListener = listener;
+        return currentListener != null && currentListener.isListening();
+    }
+
+    private void wakeup(String queueName) {
+        DBQueueConsumer consumer = consumers.get(queueName);
+        if (consumer != null) {
+            consumer.wakeup();
+        }
+    }
+
+    @Override
+    public synchronized void close() throws InterruptedException {
+        if (listener != null) {
+            listener.close();
+        }
+        consumers.values().forEach(DBQueueConsumer::shutdown);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_TIMEOUT_MS);
+        for (DBQueueConsumer consumer : consumers.values()) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            consumer.awaitTermination(Math.max(1, remaining));
+        }
+        // 等待处理中的任务期间仍需续约，最后再停止
+        if (maintainer != null) {
+            maintainer.shutdownNow();
+        }
+    }
+}
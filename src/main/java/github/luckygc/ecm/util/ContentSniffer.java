@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Map;
+import org.jspecify.annotations.Nullable;
+
+/**
+ * 按文件头的魔数识别内容类型并读取基本格式信息 只依赖开头的若干字节，可与写入在同一次读取中完成.
+ * 魔数无法区分的容器格式（zip、OLE2）和纯文本再参考文件扩展名.
+ */
+public final class ContentSniffer {
+
+    /**
+     * 识别时使用的文件头长度，足以覆盖常见图片格式的尺寸信息
+     */
+    public static final int HEAD_BYTES = 64 * 1024;
+
+    private static final byte[] PDF = ascii("%PDF-");
+    private static final byte[] PNG = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final byte[] JPEG = {(byte) 0xFF, (byte) 0xD8, (byte) 0xFF};
+    private static final byte[] GIF87A = ascii("GIF87a");
+    private static final byte[] GIF89A = ascii("GIF89a");
+    private static final byte[] TIFF_LE = {'I', 'I', 42, 0};
+    private static final byte[] TIFF_BE = {'M', 'M', 0, 42};
+    private static final byte[] ZIP = {'P', 'K', 3, 4};
+    private static final byte[] OLE2 = {
+        (byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1
+    };
+    private static final byte[] GZIP = {0x1F, (byte) 0x8B};
+    private static final byte[] SEVEN_ZIP = {'7', 'z', (byte) 0xBC, (byte) 0xAF, 0x27, 0x1C};
+    private static final byte[] XZ = {(byte) 0xFD, '7', 'z', 'X', 'Z', 0};
+    private static final byte[] ZSTD = {0x28, (byte) 0xB5, 0x2F, (byte) 0xFD};
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+
+    /**
+     * zip和OLE2容器按扩展名细分的类型
+     */
+    private static final Map<String, String> CONTAINER_TYPES =
+            Map.ofEntries(
+                    Map.entry(
+                            "docx",
+                            "application/vnd.openxmlformats-officedocument"
+                                    + ".wordprocessingml.document"),
+                    Map.entry(
+                            "xlsx",
+                            "application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"),
+                    Map.entry(
+                            "pptx",
+                            "application/vnd.openxmlformats-officedocument"
+                                    + ".presentationml.presentation"),
+                    Map.entry("odt", "application/vnd.oasis.opendocument.text"),
+                    Map.entry("ods", "application/vnd.oasis.opendocument.spreadsheet"),
+                    Map.entry("odp", "application/vnd.oasis.opendocument.presentation"),
+                    Map.entry("epub", "application/epub+zip"),
+                    Map.entry("jar", "application/java-archive"),
+                    Map.entry("doc", "application/msword"),
+                    Map.entry("xls", "application/vnd.ms-excel"),
+                    Map.entry("ppt", "application/vnd.ms-powerpoint"),
+                    Map.entry("msg", "application/vnd.ms-outlook"));
+
+    private ContentSniffer() {
+    }
+
+    /**
+     * 图片尺寸(像素)
+     */
+    public record ImageSize(int width, int height) {}
+
+    /**
+     * 读取文件开头识别内容类型
+     */
+    public static String detectContentType(Path filePath) throws IOException {
+        byte[] head;
+        try (InputStream inputStream = Files.newInputStream(filePath)) {
+            head = inputStream.readNBytes(HEAD_BYTES);
+        }
+        return detectContentType(head, head.length, filePath.getFileName().toString());
+    }
+
+    /**
+     * 根据文件头识别内容类型，无法识别时按文件名推断
+     *
+     * @param head 文件开头的字节
+     * @param length 有效字节数
+     * @param filename 原始文件名
+     * @return MIME类型
+     */
+    public static String detectContentType(byte[] head, int length, String filename) {
+        String guessed = StorageUtils.guessContentType(filename);
+        if (startsWith(head, length, 0, PDF)) {
+            return "application/pdf";
+        }
+        if (startsWith(head, length, 0, PNG)) {
+            return "image/png";
+        }
+        if (startsWith(head, length, 0, JPEG)) {
+            return "image/jpeg";
+        }
+        if (startsWith(head, length, 0, GIF87A) || startsWith(head, length, 0, GIF89A)) {
+            return "image/gif";
+        }
+        if (startsWith(head, length, 0, TIFF_LE) || startsWith(head, length, 0, TIFF_BE)) {
+            return "image/tiff";
+        }
+        if (isBmp(head, length)) {
+            return "image/bmp";
+        }
+        if (startsWith(head, length, 0, ascii("RIFF"))) {
+            if (startsWith(head, length, 8, ascii("WEBP"))) {
+                return "image/webp";
+            }
+            if (startsWith(head, length, 8, ascii("WAVE"))) {
+                return "audio/wav";
+            }
+            if (startsWith(head, length, 8, ascii("AVI "))) {
+                return "video/x-msvideo";
+            }
+        }
+        if (startsWith(head, length, 4, ascii("ftyp"))) {
+            if (startsWith(head, length, 8, ascii("qt  "))) {
+                return "video/quicktime";
+            }
+            if (startsWith(head, length, 8, ascii("heic"))
+                    || startsWith(head, length, 8, ascii("heix"))) {
+                return "image/heic";
+            }
+            return "video/mp4";
+        }
+        if (startsWith(head, length, 0, ascii("ID3"))) {
+            return "audio/mpeg";
+        }
+        if (startsWith(head, length, 0, ascii("OggS"))) {
+            return "audio/ogg";
+        }
+        if (startsWith(head, length, 0, ascii("fLaC"))) {
+            return "audio/flac";
+        }
+        if (startsWith(head, length, 0, ZIP)) {
+            return CONTAINER_TYPES.getOrDefault(extension(filename), "application/zip");
+        }
+        if (startsWith(head, length, 0, OLE2)) {
+            return CONTAINER_TYPES.getOrDefault(extension(filename), "application/x-ole-storage");
+        }
+        if (startsWith(head, length, 0, GZIP)) {
+            return "application/gzip";
+        }
+        if (startsWith(head, length, 0, SEVEN_ZIP)) {
+            return "application/x-7z-compressed";
+        }
+        if (startsWith(head, length, 0, ascii("Rar!"))) {
+            return "application/vnd.rar";
+        }
+        if (startsWith(head, length, 0, ascii("BZh"))) {
+            return "application/x-bzip2";
+        }
+        if (startsWith(head, length, 0, XZ)) {
+            return "application/x-xz";
+        }
+        if (startsWith(head, length, 0, ZSTD)) {
+            return "application/zstd";
+        }
+        if (length == 0 || !isText(head, length)) {
+            return guessed;
+        }
+        return detectTextType(head, length, guessed);
+    }
+
+    /**
+     * 从文件头读取图片尺寸，不是支持的图片格式或尺寸不在文件头内时返回null
+     *
+     * @param head 文件开头的字节
+     * @param length 有效字节数
+     * @return 图片尺寸
+     */
+    public static @Nullable ImageSize readImageSize(byte[] head, int length) {
+        if (startsWith(head, length, 0, PNG) && startsWith(head, length, 12, ascii("IHDR"))) {
+            return length >= 24 ? new ImageSize(int32be(head, 16), int32be(head, 20)) : null;
+        }
+        if (startsWith(head, length, 0, GIF87A) || startsWith(head, length, 0, GIF89A)) {
+            return length >= 10 ? new ImageSize(uint16le(head, 6), uint16le(head, 8)) : null;
+        }
+        if (startsWith(head, length, 0, JPEG)) {
+            return readJpegSize(head, length);
+        }
+        if (isBmp(head, length)) {
+            int headerSize = int32le(head, 14);
+            if (headerSize == 12) {
+                return new ImageSize(uint16le(head, 18), uint16le(head, 20));
+            }
+            return new ImageSize(int32le(head, 18), Math.abs(int32le(head, 22)));
+        }
+        if (startsWith(head, length, 0, ascii("RIFF"))
+                && startsWith(head, length, 8, ascii("WEBP"))) {
+            return readWebpSize(head, length);
+        }
+        if (startsWith(head, length, 0, TIFF_LE)) {
+            return readTiffSize(head, length, false);
+        }
+        if (startsWith(head, length, 0, TIFF_BE)) {
+            return readTiffSize(head, length, true);
+        }
+        return null;
+    }
+
+    private static String detectTextType(byte[] head, int length, String guessed) {
+        int offset = startsWith(head, length, 0, UTF8_BOM) ? UTF8_BOM.length : 0;
+        while (offset < length && Character.isWhitespace(head[offset])) {
+            offset++;
+        }
+        String prefix =
+                new String(head, offset, Math.min(length - offset, 64), StandardCharsets.ISO_8859_1)
+                        .toLowerCase(Locale.ROOT);
+        if (prefix.startsWith("{\\rtf")) {
+            return "application/rtf";
+        }
+        if (prefix.startsWith("<svg")) {
+            return "image/svg+xml";
+        }
+        if (prefix.startsWith("<!doctype html") || prefix.startsWith("<html")) {
+            return "text/html";
+        }
+        if (prefix.startsWith("<?xml")) {
+            // svg等基于xml的格式以扩展名为准
+            return guessed.endsWith("xml") ? guessed : "application/xml";
+        }
+        return StorageUtils.DEFAULT_CONTENT_TYPE.equals(guessed) ? "text/plain" : guessed;
+    }
+
+    /**
+     * 依次跳过各个标记段直到帧头(SOF)，帧头中记录了高度和宽度
+     */
+    private static @Nullable ImageSize readJpegSize(byte[] head, int length) {
+        int position = 2;
+        while (position + 9 <= length) {
+            if ((head[position] & 0xFF) != 0xFF) {
+                return null;
+            }
+            int marker = head[position + 1] & 0xFF;
+            if (marker == 0xFF) {
+                position++;
+                continue;
+            }
+            if (marker == 0x01 || (marker >= 0xD0 && marker <= 0xD9)) {
+                position += 2;
+                continue;
+            }
+            if (marker >= 0xC0
+                    && marker <= 0xCF
+                    && marker != 0xC4
+                    && marker != 0xC8
+                    && marker != 0xCC) {
+                return new ImageSize(uint16be(head, position + 7), uint16be(head, position + 5));
+            }
+            position += 2 + uint16be(head, position + 2);
+        }
+        return null;
+    }
+
+    private static @Nullable ImageSize readWebpSize(byte[] head, int length) {
+        if (startsWith(head, length, 12, ascii("VP8 ")) && length >= 30) {
+            return new ImageSize(uint16le(head, 26) & 0x3FFF, uint16le(head, 28) & 0x3FFF);
+        }
+        if (startsWith(head, length, 12, ascii("VP8L")) && length >= 25) {
+            int b1 = head[22] & 0xFF;
+            int b2 = head[23] & 0xFF;
+            int b3 = head[24] & 0xFF;
+            int width = 1 + (((b1 & 0x3F) << 8) | (head[21] & 0xFF));
+            int height = 1 + (((b3 & 0x0F) << 10) | (b2 << 2) | ((b1 & 0xC0) >> 6));
+            return new ImageSize(width, height);
+        }
+        if (startsWith(head, length, 12, ascii("VP8X")) && length >= 30) {
+            return new ImageSize(1 + uint24le(head, 24), 1 + uint24le(head, 27));
+        }
+        return null;
+    }
+
+    /**
+     * 读取第一个IFD中的ImageWidth(256)和ImageLength(257)
+     */
+    private static @Nullable ImageSize readTiffSize(byte[] head, int length, boolean bigEndian) {
+        long ifdOffset = Integer.toUnsignedLong(int32(head, 4, bigEndian));
+        if (ifdOffset + 2 > length) {
+            return null;
+        }
+        int offset = (int) ifdOffset;
+        int entryCount = uint16(head, offset, bigEndian);
+        int width = -1;
+        int height = -1;
+        for (int i = 0; i < entryCount; i++) {
+            int entry = offset + 2 + i * 12;
+            if (entry + 12 > length) {
+                return null;
+            }
+            int tag = uint16(head, entry, bigEndian);
+            int type = uint16(head, entry + 2, bigEndian);
+            // SHORT类型的值位于值字段的前两个字节，LONG类型占满四个字节
+            int value =
+                    type == 3
+                            ? uint16(head, entry + 8, bigEndian)
+                            : int32(head, entry + 8, bigEndian);
+            if (tag == 256) {
+                width = value;
+            } else if (tag == 257) {
+                height = value;
+            }
+        }
+        return width > 0 && height > 0 ? new ImageSize(width, height) : null;
+    }
+
+    /**
+     * BMP的魔数只有两个字节，需同时校验DIB头的长度
+     */
+    private static boolean isBmp(byte[] head, int length) {
+        if (length < 26 || head[0] != 'B' || head[1] != 'M') {
+            return false;
+        }
+        int headerSize = int32le(head, 14);
+        return headerSize == 12
+                || headerSize == 40
+                || headerSize == 52
+                || headerSize == 56
+                || headerSize == 108
+                || headerSize == 124;
+    }
+
+    /**
+     * 不含NUL和除制表、换行、换页、回车、ESC以外的控制字符即视为文本
+     */
+    private static boolean isText(byte[] head, int length) {
+        for (int i = 0; i < length; i++) {
+            int b = head[i] & 0xFF;
+            if (b < 0x20 && b != '\t' && b != '\n' && b != '\f' && b != '\r' && b != 0x1B) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String extension(String filename) {
+        int dotIndex = filename.lastIndexOf('.');
+        return dotIndex < 0 ? "" : filename.substring(dotIndex + 1).toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean startsWith(byte[] head, int length, int offset, byte[] magic) {
+        if (offset + magic.length > length) {
+            return false;
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (head[offset + i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static int uint16(byte[] data, int offset, boolean bigEndian) {
+        return bigEndian ? uint16be(data, offset) : uint16le(data, offset);
+    }
+
+    private static int int32(byte[] data, int offset, boolean bigEndian) {
+        return bigEndian ? int32be(data, offset) : int32le(data, offset);
+    }
+
+    private static int uint16be(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static int uint16le(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | ((data[offset + 1] & 0xFF) << 8);
+    }
+
+    private static int uint24le(byte[] data, int offset) {
+        return uint16le(data, offset) | ((data[offset + 2] & 0xFF) << 16);
+    }
+
+    private static int int32be(byte[] data, int offset) {
+        return (uint16be(data, offset) << 16) | uint16be(data, offset + 2);
+    }
+
+    private static int int32le(byte[] data, int offset) {
+        return uint16le(data, offset) | (uint16le(data, offset + 2) << 16);
+    }
+}
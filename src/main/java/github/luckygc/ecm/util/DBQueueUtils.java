@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.util;
+
+import com.google.common.hash.Hashing;
+import com.google.common.math.LongMath;
+import java.nio.charset.StandardCharsets;
+import java.util.random.RandomGenerator;
+
+public final class DBQueueUtils {
+
+    private static final String CHANNEL_PREFIX = "db_queue_";
+
+    /**
+     * PostgreSQL标识符的最大字节数，通知通道名超长时NOTIFY会报错
+     */
+    private static final int MAX_CHANNEL_BYTES = 63;
+
+    /**
+     * 重试等待时间翻倍的次数上限，避免移位溢出
+     */
+    private static final int MAX_BACKOFF_SHIFT = 30;
+
+    private DBQueueUtils() {
+    }
+
+    /**
+     * 队列对应的通知通道名，超长的队列名以其哈希值代替
+     */
+    public static String notifyChannel(String queueName) {
+        String channel = CHANNEL_PREFIX + queueName;
+        if (channel.getBytes(StandardCharsets.UTF_8).length <= MAX_CHANNEL_BYTES) {
+            return channel;
+        }
+        String hash = Hashing.sha256().hashString(queueName, StandardCharsets.UTF_8).toString();
+        return CHANNEL_PREFIX + hash.substring(0, MAX_CHANNEL_BYTES - CHANNEL_PREFIX.length());
+    }
+
+    /**
+     * 转义为LISTEN语句中的带引号标识符
+     */
+    public static String quoteIdentifier(String identifier) {
+        return '"' + identifier.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * 第retryCount次重试前的等待时间(毫秒) 指数退避并叠加等量抖动，一半等待时间固定、一半随机，
+     * 避免同时失败的任务同时重试
+     */
+    public static long retryDelayMs(
+            long baseDelayMs, long maxDelayMs, int retryCount, RandomGenerator random) {
+        long delay =
+                Math.min(
+                        maxDelayMs,
+                        LongMath.saturatedMultiply(
+                                baseDelayMs, 1L << Math.min(retryCount, MAX_BACKOFF_SHIFT)));
+        long half = delay / 2;
+        return delay - half + random.nextLong(half + 1);
+    }
+}
@@ -17,11 +17,14 @@
 
 package github.luckygc.ecm.util;
 
+import java.net.URLConnection;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 
 public final class StorageUtils {
 
+    public static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
     private static final DateTimeFormatter DATE_FORMATTER =
             DateTimeFormatter.ofPattern("yyyy/MM/dd");
 
@@ -30,6 +33,48 @@ public final class StorageUtils {
 
     public static String generateObjectName(Long uniqueSequence, String filename) {
         String datePath = LocalDate.now().format(DATE_FORMATTER);
-        return datePath + "/" + uniqueSequence + "/" + filename;
+        return datePath + "/" + uniqueSequence + "/" + sanitizeFilename(filename);
+    }
+
+    /**
+     * 去除文件名中的路径部分，防止客户端传入的文件名跳出存储目录
+     */
+    public static String sanitizeFilename(String filename) {
+        int separatorIndex = Math.max(filename.lastIndexOf('/'), filename.lastIndexOf('\\'));
+        String name = filename.substring(separatorIndex + 1).strip();
+        if (name.isEmpty() || ".".equals(name) || "..".equals(name)) {
+            throw new IllegalArgumentException("文件名不合法: " + filename);
+        }
+        return name;
+    }
+
+    /**
+     * 校验客户端传入的对象名，拒绝绝对路径、反斜杠和.、..路径段，避免访问存储目录之外的文件
+     */
+    public static boolean isSafeObjectName(String objectName) {
+        return !objectName.isEmpty() && isSafePrefix(objectName);
+    }
+
+    /**
+     * 校验客户端传入的前缀，规则与对象名相同，但允许为空和以/结尾
+     */
+    public static boolean isSafePrefix(String prefix) {
+        if (prefix.startsWith("/") || prefix.indexOf('\\') >= 0 || prefix.indexOf('\0') >= 0) {
+            return false;
+        }
+        for (String segment : prefix.split("/", -1)) {
+            if (".".equals(segment) || "..".equals(segment)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 根据文件名推断MIME类型，无法推断时返回application/octet-stream
+     */
+    public static String guessContentType(String filename) {
+        String contentType = URLConnection.getFileNameMap().getContentTypeFor(filename);
+        return contentType != null ? contentType : DEFAULT_CONTENT_TYPE;
     }
 }
@@ -42,9 +42,15 @@ public class SnowflakeIdGenerator {
     private static final long workerIdShift = sequenceBits;
     private static final long timestampLeftShift = sequenceBits + workerIdBits;
 
+    /**
+     * 批量生成时当前毫秒的序列号用完后最多预支的毫秒数，超出后等待时钟追上
+     */
+    private static final long maxBorrowMillis = 1000L;
+
     private final long workerId;
     private static long sequence = 0L;
     private static long lastTimestamp = -1L;
+    private static long lastClock = -1L;
 
     public SnowflakeIdGenerator(long workerId) {
         if (workerId < 0 || workerId > maxWorkerId) {
@@ -56,29 +62,62 @@ public class SnowflakeIdGenerator {
     public long nextId() {
         try {
             lock.lock();
-            long timestamp = currentTime();
+            return generate(false);
+        } finally {
+            lock.unlock();
+        }
+    }
 
-            if (timestamp < lastTimestamp) {
-                throw new RuntimeException("系统时钟回拨，拒绝生成 ID");
-            }
+    /**
+     * 批量生成ID 整批只加锁一次，当前毫秒的序列号用完时预支后续毫秒的时间戳，不逐毫秒等待
+     *
+     * @param count 生成的数量
+     * @return 递增的ID
+     */
+    public long[] nextIds(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("count 不能小于 0: " + count);
+        }
 
-            if (timestamp == lastTimestamp) {
-                sequence = (sequence + 1) & maxSequence;
-                if (sequence == 0) {
-                    timestamp = waitUntilNextMillis(lastTimestamp);
-                }
-            } else {
-                sequence = 0L;
+        long[] ids = new long[count];
+        try {
+            lock.lock();
+            for (int i = 0; i < count; i++) {
+                ids[i] = generate(true);
             }
-
-            lastTimestamp = timestamp;
-
-            return ((timestamp - epoch) << timestampLeftShift)
-                    | (workerId << workerIdShift)
-                    | sequence;
         } finally {
             lock.unlock();
         }
+        return ids;
+    }
+
+    private long generate(boolean borrow) {
+        long clock = currentTime();
+
+        if (clock < lastClock) {
+            throw new RuntimeException("系统时钟回拨，拒绝生成 ID");
+        }
+        lastClock = clock;
+
+        // 批量生成预支过时间戳时沿用预支的时间戳
+        long timestamp = Math.max(clock, lastTimestamp);
+        if (timestamp == lastTimestamp) {
+            sequence = (sequence + 1) & maxSequence;
+            if (sequence == 0) {
+                timestamp =
+                        borrow && lastTimestamp - clock < maxBorrowMillis
+                                ? lastTimestamp + 1
+                                : waitUntilNextMillis(lastTimestamp);
+            }
+        } else {
+            sequence = 0L;
+        }
+
+        lastTimestamp = timestamp;
+
+        return ((timestamp - epoch) << timestampLeftShift)
+                | (workerId << workerIdShift)
+                | sequence;
     }
 
     private long waitUntilNextMillis(long lastTimestamp) {
@@ -0,0 +1,200 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectMetadata;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CompressingStorageManagerTests {
+
+    @TempDir
+    Path tempDir;
+
+    private LocalStorageManager local;
+    private CompressingStorageManager storageManager;
+
+    @BeforeEach
+    void setUp() {
+        StorageProperties.Local properties = new StorageProperties.Local();
+        properties.setBasePath(tempDir.toString());
+        local = new LocalStorageManager(properties, new SnowflakeIdGenerator(0));
+        storageManager = new CompressingStorageManager(local, new StorageProperties.Compression());
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        storageManager.close();
+    }
+
+    @Test
+    void roundTripsBufferedContent() throws Exception {
+        byte[] content = text(64 * 1024);
+        storageManager.putStream("a.txt", new ByteArrayInputStream(content), content.length);
+
+        assertThat(storedSize("a.txt")).isLessThan(content.length);
+        assertThat(storageManager.stat("a.txt"))
+                .map(ObjectMetadata::size)
+                .hasValue((long) content.length);
+        assertThat(download("a.txt")).isEqualTo(content);
+    }
+
+    @Test
+    void roundTripsStreamedContent() throws Exception {
+        byte[] content = text(3 * 1024 * 1024);
+        String objectName =
+                storageManager.uploadStream(
+                        new ByteArrayInputStream(content), content.length, "large.txt");
+
+        assertThat(storedSize(objectName)).isLessThan(content.length);
+        assertThat(storageManager.stat(objectName))
+                .map(ObjectMetadata::size)
+                .hasValue((long) content.length);
+        assertThat(download(objectName)).isEqualTo(content);
+    }
+
+    @Test
+    void readsRangeOfCompressedObject() throws Exception {
+        byte[] content = text(64 * 1024);
+        storageManager.putStream("a.txt", new ByteArrayInputStream(content), content.length);
+
+        try (InputStream inputStream = storageManager.downloadRange("a.txt", 1000, 500)) {
+            assertThat(inputStream.readAllBytes())
+                    .isEqualTo(Arrays.copyOfRange(content, 1000, 1500));
+        }
+        try (InputStream inputStream =
+                storageManager.downloadRange("a.txt", content.length, 10)) {
+            assertThat(inputStream.readAllBytes()).isEmpty();
+        }
+    }
+
+    @Test
+    void storesIncompressibleTypesAsIs() throws Exception {
+        byte[] content = text(64 * 1024);
+        storageManager.putStream("a.png", new ByteArrayInputStream(content), content.length);
+
+        assertThat(storedSize("a.png")).isEqualTo(content.length);
+        assertThat(download("a.png")).isEqualTo(content);
+    }
+
+    @Test
+    void storesSmallObjectsAsIs() throws Exception {
+        byte[] content = text(100);
+        storageManager.putStream("a.txt", new ByteArrayInputStream(content), content.length);
+
+        assertThat(storedSize("a.txt")).isEqualTo(content.length);
+        assertThat(download("a.txt")).isEqualTo(content);
+    }
+
+    @Test
+    void readsObjectsWrittenWithoutCompression() throws Exception {
+        byte[] content = text(64 * 1024);
+        local.putStream("old.txt", new ByteArrayInputStream(content), content.length);
+
+        assertThat(storageManager.stat("old.txt"))
+                .map(ObjectMetadata::size)
+                .hasValue((long) content.length);
+        assertThat(download("old.txt")).isEqualTo(content);
+        try (InputStream inputStream = storageManager.downloadRange("old.txt", 10, 20)) {
+            assertThat(inputStream.readAllBytes()).isEqualTo(Arrays.copyOfRange(content, 10, 30));
+        }
+    }
+
+    @Test
+    void rejectsTruncatedUpload() throws Exception {
+        byte[] content = text(4096);
+
+        assertThatThrownBy(
+                        () ->
+                                storageManager.putStream(
+                                        "a.txt",
+                                        new ByteArrayInputStream(content),
+                                        content.length + 1))
+                .isInstanceOf(EOFException.class);
+        assertThat(local.fileExists("a.txt")).isFalse();
+    }
+
+    @Test
+    void parsesHeader() {
+        byte[] header = header(CompressingStorageManager.HEADER_BYTES, 12345L);
+        assertThat(CompressingStorageManager.parseOriginalLength(header)).isEqualTo(12345L);
+
+        byte[] badMagic = header.clone();
+        badMagic[1] = 'X';
+        assertThat(CompressingStorageManager.parseOriginalLength(badMagic)).isEqualTo(-1);
+
+        byte[] badMode = header.clone();
+        badMode[8] = 2;
+        assertThat(CompressingStorageManager.parseOriginalLength(badMode)).isEqualTo(-1);
+
+        byte[] truncated = Arrays.copyOf(header, CompressingStorageManager.HEADER_BYTES - 1);
+        assertThat(CompressingStorageManager.parseOriginalLength(truncated)).isEqualTo(-1);
+    }
+
+    @Test
+    void writesParsableHeader() throws Exception {
+        byte[] content = text(4096);
+        storageManager.putStream("a.txt", new ByteArrayInputStream(content), content.length);
+
+        try (InputStream inputStream =
+                local.downloadRange("a.txt", 0, CompressingStorageManager.HEADER_BYTES)) {
+            assertThat(CompressingStorageManager.parseOriginalLength(inputStream.readAllBytes()))
+                    .isEqualTo(content.length);
+        }
+    }
+
+    private long storedSize(String objectName) throws Exception {
+        return local.stat(objectName).orElseThrow().size();
+    }
+
+    private byte[] download(String objectName) throws Exception {
+        try (InputStream inputStream = storageManager.downloadFile(objectName)) {
+            return inputStream.readAllBytes();
+        }
+    }
+
+    private static byte[] header(int length, long originalLength) {
+        return ByteBuffer.allocate(length)
+                .put(new byte[] {(byte) 0x89, 'E', 'C', 'M', 'Z', '\r', '\n', 0x1A})
+                .put((byte) 1)
+                .putLong(originalLength)
+                .array();
+    }
+
+    private static byte[] text(int length) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; builder.length() < length; i++) {
+            builder.append("line ").append(i % 97).append(": the quick brown fox\n");
+        }
+        return builder.substring(0, length).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LocalStorageManagerTests {
+
+    @TempDir
+    Path tempDir;
+
+    private Path basePath;
+    private LocalStorageManager storageManager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        basePath = Files.createDirectory(tempDir.resolve("storage"));
+        Files.writeString(tempDir.resolve("secret.txt"), "secret");
+
+        StorageProperties.Local properties = new StorageProperties.Local();
+        properties.setBasePath(basePath.toString());
+        storageManager = new LocalStorageManager(properties, new SnowflakeIdGenerator(0));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        storageManager.close();
+    }
+
+    @Test
+    void readsObjectInsideBasePath() throws Exception {
+        byte[] content = "hello".getBytes(StandardCharsets.UTF_8);
+        storageManager.putStream("a/b.txt", new ByteArrayInputStream(content), content.length);
+
+        try (InputStream inputStream = storageManager.downloadFile("a/b.txt")) {
+            assertThat(inputStream.readAllBytes()).isEqualTo(content);
+        }
+    }
+
+    @Test
+    void rejectsParentTraversal() {
+        assertThatThrownBy(() -> storageManager.downloadFile("../secret.txt"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> storageManager.downloadRange("a/../../secret.txt", 0, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> storageManager.stat("../secret.txt"))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsAbsolutePath() {
+        String absolute = tempDir.resolve("secret.txt").toAbsolutePath().toString();
+
+        assertThatThrownBy(() -> storageManager.downloadFile(absolute))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> storageManager.fileExists(absolute))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void rejectsWriteOutsideBasePath() {
+        byte[] content = "x".getBytes(StandardCharsets.UTF_8);
+
+        assertThatThrownBy(
+                        () ->
+                                storageManager.putStream(
+                                        "../escaped.txt",
+                                        new ByteArrayInputStream(content),
+                                        content.length))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(tempDir.resolve("escaped.txt")).doesNotExist();
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.domain.dto.ObjectListing;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import org.jspecify.annotations.Nullable;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class MergingObjectListerTests {
+
+    /**
+     * S3的列举顺序
+     */
+    private static final Comparator<String> UTF8_ORDER =
+            Comparator.comparing(
+                    name -> name.getBytes(StandardCharsets.UTF_8), Arrays::compareUnsigned);
+
+    @TempDir
+    Path tempDir;
+
+    private LocalStorageManager first;
+    private LocalStorageManager second;
+    private List<StorageManager> sources;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        first = local("first");
+        second = local("second");
+        sources = List.of(first, second);
+
+        put(first, "a.txt", "b/1.txt", "b/3.txt", "c.txt", "d/e/f.txt", "shared.txt");
+        put(second, "a0.txt", "b/2.txt", "b/3.txt", "d/e/g.txt", "shared.txt", "z.txt");
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        first.close();
+        second.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 5, 100})
+    void pagesThroughMergedNamesOnce(int maxKeys) throws Exception {
+        List<String> expected = expected("");
+
+        List<String> actual = listAll("", maxKeys);
+
+        assertThat(actual).containsExactlyElementsOf(expected);
+        assertThat(actual).doesNotHaveDuplicates();
+    }
+
+    @Test
+    void filtersByPrefix() throws Exception {
+        assertThat(listAll("b/", 1)).containsExactly("b/1.txt", "b/2.txt", "b/3.txt");
+        assertThat(listAll("d/e/", 2)).containsExactly("d/e/f.txt", "d/e/g.txt");
+        assertThat(listAll("missing/", 2)).isEmpty();
+    }
+
+    @Test
+    void returnsNoTokenOnLastPage() throws Exception {
+        ObjectListing listing = MergingObjectLister.list(sources, "", null, 100);
+
+        assertThat(listing.objectNames()).hasSize(expected("").size());
+        assertThat(listing.nextContinuationToken()).isNull();
+    }
+
+    @Test
+    void continuesAfterOneSourceIsExhausted() throws Exception {
+        put(second, "y/1.txt", "y/2.txt", "y/3.txt");
+
+        assertThat(listAll("", 2)).containsExactlyElementsOf(expected(""));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 2, 3, 100})
+    void mergesLocalListingWithS3Order(int maxKeys) throws Exception {
+        // 小于分隔符的字符，按路径分段比较时排在同名目录之后
+        put(first, "a-1.txt", "a/1.txt", "a.txt", "a!/x.txt", "b.c/1.txt");
+        put(second, "a-2.txt", "a/2.txt", "a.txt", "a!/y.txt", "b/1.txt");
+        sources = List.of(first, s3Ordered(second));
+        List<String> expected = new ArrayList<>(first.listFiles(""));
+        for (String objectName : second.listFiles("")) {
+            if (!expected.contains(objectName)) {
+                expected.add(objectName);
+            }
+        }
+        expected.sort(UTF8_ORDER);
+
+        List<String> actual = listAll("", maxKeys);
+
+        assertThat(actual).containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    void rejectsTokenForDifferentSourceCount() throws Exception {
+        ObjectListing listing = MergingObjectLister.list(sources, "", null, 1);
+
+        assertThatThrownBy(
+                        () ->
+                                MergingObjectLister.list(
+                                        List.of(first),
+                                        "",
+                                        listing.nextContinuationToken(),
+                                        1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private List<String> listAll(String prefix, int maxKeys) throws Exception {
+        List<String> objectNames = new ArrayList<>();
+        String continuationToken = null;
+        int pages = 0;
+        do {
+            ObjectListing listing =
+                    MergingObjectLister.list(sources, prefix, continuationToken, maxKeys);
+            assertThat(listing.objectNames()).hasSizeLessThanOrEqualTo(maxKeys);
+            objectNames.addAll(listing.objectNames());
+            continuationToken = listing.nextContinuationToken();
+            assertThat(++pages).as("分页未结束").isLessThan(100);
+        } while (continuationToken != null);
+        return objectNames;
+    }
+
+    private List<String> expected(String prefix) throws Exception {
+        TreeSet<String> objectNames = new TreeSet<>(LocalObjectLister.OBJECT_NAME_ORDER);
+        for (StorageManager source : sources) {
+            objectNames.addAll(source.listFiles(prefix));
+        }
+        return List.copyOf(objectNames);
+    }
+
+    /**
+     * 按S3的顺序分页列举，续传标记为上一页最后一个对象名称
+     */
+    private static StorageManager s3Ordered(StorageManager storageManager) {
+        return new ForwardingStorageManager(storageManager) {
+            @Override
+            public ObjectListing listFiles(
+                    String prefix, @Nullable String continuationToken, int maxKeys)
+                    throws IOException {
+                TreeSet<String> objectNames = new TreeSet<>(UTF8_ORDER);
+                objectNames.addAll(delegate.listFiles(prefix));
+                NavigableSet<String> remaining =
+                        continuationToken == null
+                                ? objectNames
+                                : objectNames.tailSet(continuationToken, false);
+                List<String> page = remaining.stream().limit(maxKeys).toList();
+                return new ObjectListing(
+                        page, page.size() < maxKeys ? null : page.get(page.size() - 1));
+            }
+        };
+    }
+
+    private LocalStorageManager local(String name) {
+        StorageProperties.Local properties = new StorageProperties.Local();
+        properties.setBasePath(tempDir.resolve(name).toString());
+        return new LocalStorageManager(properties, new SnowflakeIdGenerator(0));
+    }
+
+    private static void put(StorageManager storageManager, String... objectNames)
+            throws Exception {
+        for (String objectName : objectNames) {
+            storageManager.putStream(objectName, new ByteArrayInputStream(new byte[0]), 0);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PackedStorageManagerTests {
+
+    @TempDir
+    Path tempDir;
+
+    private PackedStorageManager storageManager;
+
+    @AfterEach
+    void tearDown() throws Exception {
+        storageManager.close();
+    }
+
+    @Test
+    void recoversObjectsAfterReopen() throws Exception {
+        storageManager = open(1024 * 1024);
+        put("a.txt", "first");
+        put("b.txt", "second");
+        put("a.txt", "overwritten");
+        storageManager.deleteFile("b.txt");
+
+        reopen(1024 * 1024);
+
+        assertThat(read("a.txt")).isEqualTo("overwritten");
+        assertThat(storageManager.fileExists("b.txt")).isFalse();
+    }
+
+    @Test
+    void truncatesTornRecordOnReopen() throws Exception {
+        storageManager = open(1024 * 1024);
+        put("a.txt", "content");
+        storageManager.close();
+        try (Stream<Path> files = Files.list(packDirectory())) {
+            Path segment = files.sorted().reduce((first, second) -> second).orElseThrow();
+            Files.write(segment, new byte[] {0x45, 0x43, 0x4D}, StandardOpenOption.APPEND);
+        }
+
+        storageManager = open(1024 * 1024);
+        put("b.txt", "after");
+        reopen(1024 * 1024);
+
+        assertThat(read("a.txt")).isEqualTo("content");
+        assertThat(read("b.txt")).isEqualTo("after");
+    }
+
+    @Test
+    void compactionKeepsObjectRewrittenAfterDelete() throws Exception {
+        storageManager = open(4096);
+        // 段0: 存活的大对象使该段不会被压缩，X的首个版本在此段
+        put("y.txt", "y".repeat(3000));
+        put("x.txt", "x1");
+        put("z.txt", "z".repeat(1100));
+        // 段1: X的墓碑与随后被删除的填充对象
+        storageManager.deleteFile("x.txt");
+        put("w.txt", "w".repeat(4096));
+        // 段2: X重新写入
+        put("x.txt", "x2");
+        storageManager.deleteFile("w.txt");
+
+        storageManager.compact();
+        reopen(4096);
+
+        assertThat(read("x.txt")).isEqualTo("x2");
+        assertThat(read("y.txt")).hasSize(3000);
+        assertThat(storageManager.fileExists("w.txt")).isFalse();
+    }
+
+    @Test
+    void compactionKeepsTombstoneWhileOlderPutRemains() throws Exception {
+        storageManager = open(4096);
+        put("y.txt", "y".repeat(3000));
+        put("x.txt", "x1");
+        put("z.txt", "z".repeat(1100));
+        storageManager.deleteFile("x.txt");
+        put("w.txt", "w".repeat(4096));
+        storageManager.deleteFile("w.txt");
+
+        storageManager.compact();
+        reopen(4096);
+
+        assertThat(storageManager.fileExists("x.txt")).isFalse();
+        assertThat(read("y.txt")).hasSize(3000);
+    }
+
+    @Test
+    void compactionDropsTombstonesOnceNoPutRemains() throws Exception {
+        storageManager = open(1);
+        put("x.txt", "x");
+        storageManager.deleteFile("x.txt");
+        put("f.txt", "f");
+
+        storageManager.compact();
+        List<Path> segments = segmentFiles();
+        storageManager.compact();
+
+        assertThat(segments).hasSize(1);
+        assertThat(segmentFiles()).isEqualTo(segments);
+        reopen(1);
+        assertThat(storageManager.fileExists("x.txt")).isFalse();
+        assertThat(read("f.txt")).isEqualTo("f");
+    }
+
+    private PackedStorageManager open(long segmentBytes) {
+        StorageProperties.Local local = new StorageProperties.Local();
+        local.setBasePath(tempDir.resolve("storage").toString());
+        StorageProperties.Pack pack = new StorageProperties.Pack();
+        pack.setDirectory(packDirectory().toString());
+        pack.setSegmentBytes(segmentBytes);
+        pack.setCompactIntervalMs(60L * 60 * 1000);
+        SnowflakeIdGenerator snowflakeIdGenerator = new SnowflakeIdGenerator(0);
+        return new PackedStorageManager(
+                new LocalStorageManager(local, snowflakeIdGenerator), pack, snowflakeIdGenerator);
+    }
+
+    private void reopen(long segmentBytes) throws Exception {
+        storageManager.close();
+        storageManager = open(segmentBytes);
+    }
+
+    private Path packDirectory() {
+        return tempDir.resolve("pack");
+    }
+
+    private List<Path> segmentFiles() throws Exception {
+        try (Stream<Path> files = Files.list(packDirectory())) {
+            return files.sorted().toList();
+        }
+    }
+
+    private void put(String objectName, String content) throws Exception {
+        byte[] data = content.getBytes(StandardCharsets.UTF_8);
+        storageManager.putStream(objectName, new ByteArrayInputStream(data), data.length);
+    }
+
+    private String read(String objectName) throws Exception {
+        try (InputStream inputStream = storageManager.downloadFile(objectName)) {
+            return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.module.storage.service.impl;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import github.luckygc.ecm.config.property.StorageProperties;
+import github.luckygc.ecm.module.storage.service.StorageManager;
+import github.luckygc.ecm.util.id.SnowflakeIdGenerator;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ShardedStorageManagerTests {
+
+    private static final int OBJECT_COUNT = 10_000;
+
+    @TempDir
+    Path tempDir;
+
+    private final SnowflakeIdGenerator snowflakeIdGenerator = new SnowflakeIdGenerator(0);
+    private final List<ShardedStorageManager> managers = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() throws Exception {
+        for (ShardedStorageManager manager : managers) {
+            manager.close();
+        }
+    }
+
+    @Test
+    void addingShardOnlyMovesObjectsToNewShard() {
+        ShardedStorageManager before = sharded("a", "b", "c");
+        ShardedStorageManager after = sharded("a", "b", "c", "d");
+
+        int moved = 0;
+        for (String objectName : objectNames()) {
+            String previous = before.ownerName(objectName);
+            String current = after.ownerName(objectName);
+            if (!previous.equals(current)) {
+                assertThat(current).as(objectName).isEqualTo("d");
+                moved++;
+            }
+        }
+        // 新分片应分到约四分之一的对象
+        assertThat(moved).isBetween(OBJECT_COUNT / 8, OBJECT_COUNT * 3 / 8);
+    }
+
+    @Test
+    void ownershipDoesNotDependOnShardOrder() {
+        ShardedStorageManager forward = sharded("a", "b", "c");
+        ShardedStorageManager reversed = sharded("c", "b", "a");
+
+        for (String objectName : objectNames()) {
+            assertThat(reversed.ownerName(objectName)).isEqualTo(forward.ownerName(objectName));
+        }
+    }
+
+    @Test
+    void spreadsObjectsAcrossShards() {
+        ShardedStorageManager manager = sharded("a", "b", "c");
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (String objectName : objectNames()) {
+            counts.merge(manager.ownerName(objectName), 1, Integer::sum);
+        }
+        assertThat(counts).containsOnlyKeys("a", "b", "c");
+        assertThat(counts.values()).allSatisfy(count -> assertThat(count).isBetween(2000, 4700));
+    }
+
+    @Test
+    void rebalancesObjectsOntoNewShard() throws Exception {
+        ShardedStorageManager before = sharded("a", "b");
+        List<String> objectNames = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            String objectName = "dir/object-" + i + ".txt";
+            byte[] content = objectName.getBytes(StandardCharsets.UTF_8);
+            before.putStream(objectName, new ByteArrayInputStream(content), content.length);
+            objectNames.add(objectName);
+        }
+
+        Map<String, StorageManager> shards = shards("a", "b", "c");
+        ShardedStorageManager after = sharded(shards);
+        // 重新均衡期间读取会回退到其余分片
+        for (String objectName : objectNames) {
+            try (InputStream inputStream = after.downloadFile(objectName)) {
+                assertThat(inputStream.readAllBytes())
+                        .isEqualTo(objectName.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!onOwnerShards(after, shards, objectNames) && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(onOwnerShards(after, shards, objectNames)).isTrue();
+        assertThat(shards.get("c").listFiles("")).isNotEmpty();
+    }
+
+    /**
+     * 每个对象只存在于归属分片
+     */
+    private static boolean onOwnerShards(
+            ShardedStorageManager manager,
+            Map<String, StorageManager> shards,
+            List<String> objectNames)
+            throws IOException {
+        for (String objectName : objectNames) {
+            String owner = manager.ownerName(objectName);
+            for (Map.Entry<String, StorageManager> shard : shards.entrySet()) {
+                if (shard.getValue().fileExists(objectName) != shard.getKey().equals(owner)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private ShardedStorageManager sharded(String... shardNames) {
+        return sharded(shards(shardNames));
+    }
+
+    private ShardedStorageManager sharded(Map<String, StorageManager> shards) {
+        StorageProperties.Sharding properties = new StorageProperties.Sharding();
+        ShardedStorageManager manager =
+                new ShardedStorageManager(shards, properties, snowflakeIdGenerator);
+        managers.add(manager);
+        return manager;
+    }
+
+    private Map<String, StorageManager> shards(String... shardNames) {
+        Map<String, StorageManager> shards = new LinkedHashMap<>();
+        for (String shardName : shardNames) {
+            StorageProperties.Local properties = new StorageProperties.Local();
+            properties.setBasePath(tempDir.resolve(shardName).toString());
+            shards.put(shardName, new LocalStorageManager(properties, snowflakeIdGenerator));
+        }
+        return shards;
+    }
+
+    private static List<String> objectNames() {
+        List<String> objectNames = new ArrayList<>(OBJECT_COUNT);
+        for (int i = 0; i < OBJECT_COUNT; i++) {
+            objectNames.add(i + "/" + Long.toHexString(i * 0x9E3779B97F4A7C15L) + ".txt");
+        }
+        return objectNames;
+    }
+}
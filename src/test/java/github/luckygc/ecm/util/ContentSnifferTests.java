@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import github.luckygc.ecm.util.ContentSniffer.ImageSize;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class ContentSnifferTests {
+
+    @Test
+    void detectsTypeFromMagicRegardlessOfExtension() {
+        assertThat(detect(png(16, 8), "photo.jpg")).isEqualTo("image/png");
+        assertThat(detect(ascii("%PDF-1.7\n"), "report.txt")).isEqualTo("application/pdf");
+        assertThat(detect(bytes(0xFF, 0xD8, 0xFF, 0xE0), "upload")).isEqualTo("image/jpeg");
+        assertThat(detect(gif(3, 2), "upload")).isEqualTo("image/gif");
+        assertThat(detect(bytes(0x1F, 0x8B, 0x08), "upload")).isEqualTo("application/gzip");
+    }
+
+    @Test
+    void detectsRiffAndIsoMediaSubtypes() {
+        byte[] webp = ascii("RIFF\0\0\0\0WEBPVP8 ");
+        byte[] wav = ascii("RIFF\0\0\0\0WAVEfmt ");
+        byte[] mp4 = ascii("\0\0\0\u0018ftypisom");
+        byte[] mov = ascii("\0\0\0\u0014ftypqt  ");
+
+        assertThat(detect(webp, "upload")).isEqualTo("image/webp");
+        assertThat(detect(wav, "upload")).isEqualTo("audio/wav");
+        assertThat(detect(mp4, "upload")).isEqualTo("video/mp4");
+        assertThat(detect(mov, "upload")).isEqualTo("video/quicktime");
+    }
+
+    @Test
+    void refinesContainersByExtension() {
+        byte[] zip = bytes('P', 'K', 3, 4, 20, 0);
+
+        assertThat(detect(zip, "a.docx"))
+                .isEqualTo(
+                        "application/vnd.openxmlformats-officedocument"
+                                + ".wordprocessingml.document");
+        assertThat(detect(zip, "a.zip")).isEqualTo("application/zip");
+        assertThat(detect(zip, "upload")).isEqualTo("application/zip");
+    }
+
+    @Test
+    void detectsTextFormats() {
+        assertThat(detect(ascii("  <!DOCTYPE html><html>"), "upload")).isEqualTo("text/html");
+        assertThat(detect(ascii("<svg xmlns=\"http://www.w3.org/2000/svg\">"), "upload"))
+                .isEqualTo("image/svg+xml");
+        assertThat(detect(ascii("<?xml version=\"1.0\"?><a/>"), "upload"))
+                .isEqualTo("application/xml");
+        assertThat(detect(ascii("{\\rtf1\\ansi"), "upload")).isEqualTo("application/rtf");
+        assertThat(detect(ascii("hello\r\nworld\t!"), "upload")).isEqualTo("text/plain");
+    }
+
+    @Test
+    void fallsBackToFilenameForUnknownBinary() {
+        byte[] binary = bytes(0, 1, 2, 3, 4);
+
+        assertThat(detect(binary, "upload")).isEqualTo(StorageUtils.DEFAULT_CONTENT_TYPE);
+        assertThat(detect(new byte[0], "upload")).isEqualTo(StorageUtils.DEFAULT_CONTENT_TYPE);
+    }
+
+    @Test
+    void onlyConsidersValidLength() {
+        byte[] head = new byte[16];
+        System.arraycopy(ascii("%PDF-"), 0, head, 0, 5);
+
+        assertThat(ContentSniffer.detectContentType(head, 3, "upload"))
+                .isEqualTo("text/plain");
+    }
+
+    @Test
+    void readsImageSizeFromHeader() {
+        assertThat(ContentSniffer.readImageSize(png(640, 480), 24))
+                .isEqualTo(new ImageSize(640, 480));
+        assertThat(ContentSniffer.readImageSize(gif(320, 200), 10))
+                .isEqualTo(new ImageSize(320, 200));
+    }
+
+    @Test
+    void returnsNullWhenSizeIsOutsideHeader() {
+        assertThat(ContentSniffer.readImageSize(png(640, 480), 20)).isNull();
+        assertThat(ContentSniffer.readImageSize(ascii("%PDF-1.7"), 8)).isNull();
+    }
+
+    private static String detect(byte[] head, String filename) {
+        return ContentSniffer.detectContentType(head, head.length, filename);
+    }
+
+    private static byte[] png(int width, int height) {
+        return ByteBuffer.allocate(24)
+                .put(bytes(0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'))
+                .putInt(13)
+                .put(ascii("IHDR"))
+                .putInt(width)
+                .putInt(height)
+                .array();
+    }
+
+    private static byte[] gif(int width, int height) {
+        byte[] head = new byte[10];
+        System.arraycopy(ascii("GIF89a"), 0, head, 0, 6);
+        head[6] = (byte) width;
+        head[7] = (byte) (width >> 8);
+        head[8] = (byte) height;
+        head[9] = (byte) (height >> 8);
+        return head;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] result = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            result[i] = (byte) values[i];
+        }
+        return result;
+    }
+}
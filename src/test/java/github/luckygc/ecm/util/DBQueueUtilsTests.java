@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.random.RandomGenerator;
+import org.junit.jupiter.api.Test;
+
+class DBQueueUtilsTests {
+
+    private static final long BASE_DELAY_MS = 1000;
+    private static final long MAX_DELAY_MS = 60_000;
+
+    @Test
+    void firstRetryWaitsBetweenHalfAndFullBaseDelay() {
+        assertThat(retryDelay(0, new FixedRandom(false))).isEqualTo(500);
+        assertThat(retryDelay(0, new FixedRandom(true))).isEqualTo(1000);
+    }
+
+    @Test
+    void delayDoublesWithEachRetry() {
+        assertThat(retryDelay(1, new FixedRandom(true))).isEqualTo(2000);
+        assertThat(retryDelay(3, new FixedRandom(false))).isEqualTo(4000);
+        assertThat(retryDelay(3, new FixedRandom(true))).isEqualTo(8000);
+    }
+
+    @Test
+    void delayIsCappedAtMaximum() {
+        assertThat(retryDelay(10, new FixedRandom(false))).isEqualTo(30_000);
+        assertThat(retryDelay(10, new FixedRandom(true))).isEqualTo(60_000);
+    }
+
+    @Test
+    void largeRetryCountDoesNotOverflow() {
+        assertThat(retryDelay(Integer.MAX_VALUE, new FixedRandom(true))).isEqualTo(60_000);
+        assertThat(
+                        DBQueueUtils.retryDelayMs(
+                                Long.MAX_VALUE / 2, Long.MAX_VALUE, 62, new FixedRandom(true)))
+                .isEqualTo(Long.MAX_VALUE);
+    }
+
+    @Test
+    void jitterStaysWithinEqualJitterBounds() {
+        Random random = new Random(42);
+        for (int retryCount = 0; retryCount < 40; retryCount++) {
+            long delay = Math.min(MAX_DELAY_MS, BASE_DELAY_MS << Math.min(retryCount, 30));
+            for (int i = 0; i < 100; i++) {
+                assertThat(retryDelay(retryCount, random))
+                        .isBetween(delay - delay / 2, delay);
+            }
+        }
+    }
+
+    @Test
+    void zeroBaseDelayRetriesImmediately() {
+        assertThat(DBQueueUtils.retryDelayMs(0, MAX_DELAY_MS, 5, new Random())).isZero();
+    }
+
+    @Test
+    void keepsShortChannelName() {
+        assertThat(DBQueueUtils.notifyChannel("storage")).isEqualTo("db_queue_storage");
+    }
+
+    @Test
+    void hashesLongChannelNameWithinIdentifierLimit() {
+        String channel = DBQueueUtils.notifyChannel("队列".repeat(40));
+
+        assertThat(channel).startsWith("db_queue_");
+        assertThat(channel.getBytes(StandardCharsets.UTF_8)).hasSize(63);
+        assertThat(DBQueueUtils.notifyChannel("队列".repeat(40))).isEqualTo(channel);
+    }
+
+    @Test
+    void quotesIdentifier() {
+        assertThat(DBQueueUtils.quoteIdentifier("a\"b")).isEqualTo("\"a\"\"b\"");
+    }
+
+    private static long retryDelay(int retryCount, RandomGenerator random) {
+        return DBQueueUtils.retryDelayMs(BASE_DELAY_MS, MAX_DELAY_MS, retryCount, random);
+    }
+
+    /**
+     * 总是取随机区间的最小值或最大值
+     */
+    private record FixedRandom(boolean highest) implements RandomGenerator {
+
+        @Override
+        public long nextLong() {
+            return 0;
+        }
+
+        @Override
+        public long nextLong(long bound) {
+            return highest ? bound - 1 : 0;
+        }
+    }
+}
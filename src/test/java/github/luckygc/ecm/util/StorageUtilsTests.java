@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.util;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.junit.jupiter.api.Test;
+
+class StorageUtilsTests {
+
+    @Test
+    void acceptsRelativeObjectNames() {
+        assertThat(StorageUtils.isSafeObjectName("2025/01/01/1/a.txt")).isTrue();
+        assertThat(StorageUtils.isSafeObjectName("a..b/c.txt")).isTrue();
+    }
+
+    @Test
+    void rejectsTraversalAndAbsoluteObjectNames() {
+        assertThat(StorageUtils.isSafeObjectName("")).isFalse();
+        assertThat(StorageUtils.isSafeObjectName("../../etc/passwd")).isFalse();
+        assertThat(StorageUtils.isSafeObjectName("a/../../b")).isFalse();
+        assertThat(StorageUtils.isSafeObjectName("a/./b")).isFalse();
+        assertThat(StorageUtils.isSafeObjectName("/etc/passwd")).isFalse();
+        assertThat(StorageUtils.isSafeObjectName("..\\windows")).isFalse();
+        assertThat(StorageUtils.isSafeObjectName("a\0b")).isFalse();
+    }
+
+    @Test
+    void prefixMayBeEmptyOrEndWithSlash() {
+        assertThat(StorageUtils.isSafePrefix("")).isTrue();
+        assertThat(StorageUtils.isSafePrefix("2025/01/")).isTrue();
+        assertThat(StorageUtils.isSafePrefix("../")).isFalse();
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package github.luckygc.ecm.util.id;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class SnowflakeIdGeneratorTests {
+
+    private final SnowflakeIdGenerator generator = new SnowflakeIdGenerator(3);
+
+    @Test
+    void batchIdsAreStrictlyIncreasing() {
+        long[] ids = generator.nextIds(10_000);
+
+        assertThat(ids).hasSize(10_000);
+        for (int i = 1; i < ids.length; i++) {
+            assertThat(ids[i]).isGreaterThan(ids[i - 1]);
+        }
+        for (long id : ids) {
+            assertThat(SnowflakeIdGenerator.parseIdToWorkerId(id)).isEqualTo(3);
+        }
+    }
+
+    @Test
+    void batchAndSingleIdsStayIncreasing() {
+        long previous = generator.nextId();
+        for (int round = 0; round < 100; round++) {
+            for (long id : generator.nextIds(300)) {
+                assertThat(id).isGreaterThan(previous);
+                previous = id;
+            }
+            long id = generator.nextId();
+            assertThat(id).isGreaterThan(previous);
+            previous = id;
+        }
+    }
+
+    @Test
+    void borrowedTimestampsStayWithinLimit() {
+        long[] ids = generator.nextIds(128 * 500);
+        long now = System.currentTimeMillis();
+
+        long lastTimestamp = SnowflakeIdGenerator.parseId(ids[ids.length - 1]).getTimestamp();
+        assertThat(lastTimestamp).isLessThanOrEqualTo(now + 1000);
+    }
+
+    @Test
+    void concurrentBatchesDoNotCollide() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                futures.add(executor.submit(() -> generator.nextIds(5000)));
+            }
+
+            Set<Long> ids = new HashSet<>();
+            for (Future<long[]> future : futures) {
+                for (long id : future.get()) {
+                    assertThat(ids.add(id)).as("重复的ID: %d", id).isTrue();
+                }
+            }
+            assertThat(ids).hasSize(8 * 5000);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void emptyBatch() {
+        assertThat(generator.nextIds(0)).isEmpty();
+    }
+
+    @Test
+    void rejectsNegativeCount() {
+        assertThatThrownBy(() -> generator.nextIds(-1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}